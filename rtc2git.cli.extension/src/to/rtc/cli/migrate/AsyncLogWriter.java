@@ -0,0 +1,124 @@
+package to.rtc.cli.migrate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes complete lines to an {@link OutputStream} on a background thread, so that the producing threads only wait for
+ * a slow console once the queue is full. Once closed, lines are written synchronously. Producers check for the close
+ * and queue their line under a shared lock, which the close takes exclusively, so no line is queued after the final
+ * drain.
+ */
+final class AsyncLogWriter implements Runnable {
+	private static final long IDLE_POLL_MILLIS = 5;
+
+	private final OutputStream target;
+	private final BlockingQueue<byte[]> queue;
+	private final Thread thread;
+	private final ReadWriteLock closeLock;
+	private volatile boolean closed;
+
+	AsyncLogWriter(String name, OutputStream target, int capacity) {
+		this.target = target;
+		this.queue = new ArrayBlockingQueue<byte[]>(capacity);
+		this.thread = new Thread(this, name);
+		this.closeLock = new ReentrantReadWriteLock();
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void write(byte[] line) {
+		closeLock.readLock().lock();
+		try {
+			if (!closed) {
+				// waits while the queue is full, letting the writer catch up
+				queue.put(line);
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeLock.readLock().unlock();
+		}
+		writeDirect(line);
+	}
+
+	/**
+	 * Writes all pending lines and stops the background thread.
+	 */
+	void close() {
+		closeLock.writeLock().lock();
+		try {
+			closed = true;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// lines left if the join was interrupted
+		byte[] line;
+		while ((line = queue.poll()) != null) {
+			writeDirect(line);
+		}
+		flushTarget();
+	}
+
+	@Override
+	public void run() {
+		List<byte[]> lines = new ArrayList<byte[]>();
+		while (true) {
+			boolean stop = closed;
+			queue.drainTo(lines);
+			if (lines.isEmpty()) {
+				if (stop) {
+					return;
+				}
+				try {
+					byte[] line = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (line != null) {
+						lines.add(line);
+					}
+				} catch (InterruptedException e) {
+					// checks for the close again
+				}
+			}
+			if (!lines.isEmpty()) {
+				for (byte[] line : lines) {
+					writeDirect(line);
+				}
+				lines.clear();
+				flushTarget();
+			}
+		}
+	}
+
+	private void writeDirect(byte[] line) {
+		synchronized (target) {
+			try {
+				target.write(line);
+			} catch (IOException e) {
+				// nowhere left to report a failing log output
+			}
+		}
+	}
+
+	private void flushTarget() {
+		synchronized (target) {
+			try {
+				target.flush();
+			} catch (IOException e) {
+				// nowhere left to report a failing log output
+			}
+		}
+	}
+}
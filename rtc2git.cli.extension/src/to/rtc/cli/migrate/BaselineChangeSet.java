@@ -0,0 +1,84 @@
+package to.rtc.cli.migrate;
+
+import java.util.List;
+
+/**
+ * Represents all change sets of a tag being migrated as one single commit. The comment starts with the name of the
+ * tag followed by the comments of the change sets, the creator is the one of the change sets if they all share it.
+ */
+final class BaselineChangeSet implements ChangeSet {
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final String tagName;
+	private final CoalescedChangeSet changeSets;
+
+	BaselineChangeSet(String tagName, List<RtcChangeSet> changeSets) {
+		this.tagName = tagName;
+		this.changeSets = new CoalescedChangeSet(changeSets);
+	}
+
+	@Override
+	public String getComment() {
+		String comments = changeSets.getComment();
+		if (comments.isEmpty()) {
+			return "Baseline [" + tagName + "]";
+		}
+		return "Baseline [" + tagName + "]" + LINE_SEPARATOR + LINE_SEPARATOR + comments;
+	}
+
+	@Override
+	public String getCreatorName() {
+		return isSingleCreator() ? changeSets.getCreatorName() : "RTC 2 git";
+	}
+
+	@Override
+	public String getEmailAddress() {
+		return isSingleCreator() ? changeSets.getEmailAddress() : "rtc2git@rtc.to";
+	}
+
+	private boolean isSingleCreator() {
+		String creator = changeSets.getCreatorName();
+		for (RtcChangeSet changeSet : changeSets.getChangeSets()) {
+			if (creator == null ? changeSet.getCreatorName() != null : !creator.equals(changeSet.getCreatorName())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the creation date of the latest change set of the tag.
+	 */
+	@Override
+	public long getCreationDate() {
+		long creationDate = 0;
+		for (RtcChangeSet changeSet : changeSets.getChangeSets()) {
+			creationDate = Math.max(creationDate, changeSet.getCreationDate());
+		}
+		return creationDate;
+	}
+
+	@Override
+	public List<WorkItem> getWorkItems() {
+		return changeSets.getWorkItems();
+	}
+
+	/**
+	 * Returns the component of the change sets if they all belong to the same one, <code>null</code> otherwise.
+	 */
+	@Override
+	public String getComponent() {
+		String component = changeSets.getComponent();
+		for (RtcChangeSet changeSet : changeSets.getChangeSets()) {
+			if (component == null || !component.equals(changeSet.getComponent())) {
+				return null;
+			}
+		}
+		return component;
+	}
+
+	@Override
+	public List<String> getUuids() {
+		return changeSets.getUuids();
+	}
+}
@@ -0,0 +1,164 @@
+package to.rtc.cli.migrate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.ibm.team.filesystem.common.IFileContent;
+import com.ibm.team.filesystem.common.IFileItem;
+import com.ibm.team.filesystem.common.IFileItemHandle;
+import com.ibm.team.repository.client.ITeamRepository;
+import com.ibm.team.repository.common.IItemHandle;
+import com.ibm.team.repository.common.TeamRepositoryException;
+import com.ibm.team.repository.common.UUID;
+import com.ibm.team.scm.client.IConfiguration;
+import com.ibm.team.scm.client.IWorkspaceManager;
+import com.ibm.team.scm.client.SCMPlatform;
+import com.ibm.team.scm.common.IBaseline;
+import com.ibm.team.scm.common.IBaselineHandle;
+import com.ibm.team.scm.common.IFolderHandle;
+import com.ibm.team.scm.common.IVersionableHandle;
+
+/**
+ * Lists the files of baselines from the repository without loading them into a sandbox. Baselines of the same
+ * component mostly share their folders and files, so the children of every folder state and the size of every file
+ * state are cached and only fetched once for all baselines being listed, by any thread.
+ */
+final class BaselineFiles implements BaselineVerification.Baselines {
+	private static final String SEPARATOR = "/";
+	private static final int BATCH_SIZE = 512;
+	private static final int MAX_CACHED_FOLDERS = 100000;
+	private static final int MAX_CACHED_FILES = 2000000;
+
+	private final IWorkspaceManager workspaceManager;
+	private final IProgressMonitor monitor;
+	private final Map<String, Map<?, ?>> folderChildren;
+	private final Map<String, FileState> fileStates;
+
+	BaselineFiles(ITeamRepository repo) {
+		this.workspaceManager = SCMPlatform.getWorkspaceManager(repo);
+		this.monitor = new NullProgressMonitor();
+		this.folderChildren = createCache(MAX_CACHED_FOLDERS);
+		this.fileStates = createCache(MAX_CACHED_FILES);
+	}
+
+	@Override
+	public Map<String, FileState> listFiles(Collection<String> baselineUuids) {
+		Map<String, FileState> files = new HashMap<String, FileState>();
+		for (String uuid : baselineUuids) {
+			try {
+				IBaselineHandle handle = (IBaselineHandle) IBaseline.ITEM_TYPE.createItemHandle(UUID.valueOf(uuid),
+						null);
+				IConfiguration configuration = workspaceManager.getBaselineConnection(handle, monitor)
+						.configuration();
+				List<String> paths = new ArrayList<String>();
+				List<IVersionableHandle> handles = new ArrayList<IVersionableHandle>();
+				addFiles(configuration, "", configuration.childEntriesForRoot(monitor), paths, handles);
+				List<FileState> states = getStates(configuration, handles);
+				for (int i = 0; i < paths.size(); i++) {
+					FileState state = states.get(i);
+					if (state != null) {
+						files.put(paths.get(i), state);
+					}
+				}
+			} catch (TeamRepositoryException e) {
+				throw new RuntimeException("Unable to list the files of baseline " + uuid, e);
+			}
+		}
+		return files;
+	}
+
+	private void addFiles(IConfiguration configuration, String parentPath, Map<?, ?> children, List<String> paths,
+			List<IVersionableHandle> files) throws TeamRepositoryException {
+		for (Map.Entry<?, ?> child : children.entrySet()) {
+			IVersionableHandle handle = (IVersionableHandle) child.getValue();
+			String path = parentPath.isEmpty() ? (String) child.getKey() : parentPath + SEPARATOR + child.getKey();
+			if (handle instanceof IFolderHandle) {
+				addFiles(configuration, path, getChildren(configuration, (IFolderHandle) handle), paths, files);
+			} else if (handle instanceof IFileItemHandle) {
+				paths.add(path);
+				files.add(handle);
+			}
+		}
+	}
+
+	private Map<?, ?> getChildren(IConfiguration configuration, IFolderHandle folder)
+			throws TeamRepositoryException {
+		String key = getStateKey(folder);
+		Map<?, ?> children = key == null ? null : folderChildren.get(key);
+		if (children == null) {
+			children = configuration.childEntries(folder, monitor);
+			if (key != null) {
+				folderChildren.put(key, children);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Returns the states of the files, fetching the file items whose state is not cached yet. Files without a known
+	 * state are fetched on every listing.
+	 *
+	 * @return the state of every file at the index of its handle
+	 */
+	private List<FileState> getStates(IConfiguration configuration, List<IVersionableHandle> handles)
+			throws TeamRepositoryException {
+		List<FileState> states = new ArrayList<FileState>(handles.size());
+		List<Integer> missing = new ArrayList<Integer>();
+		for (IVersionableHandle handle : handles) {
+			String key = getStateKey(handle);
+			FileState state = key == null ? null : fileStates.get(key);
+			if (state == null) {
+				missing.add(states.size());
+			}
+			states.add(state);
+		}
+		for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+			List<Integer> indexes = missing.subList(start, Math.min(missing.size(), start + BATCH_SIZE));
+			List<IVersionableHandle> batch = new ArrayList<IVersionableHandle>(indexes.size());
+			for (Integer index : indexes) {
+				batch.add(handles.get(index));
+			}
+			List<?> items = configuration.fetchCompleteItems(batch, monitor);
+			for (int i = 0; i < items.size(); i++) {
+				if (items.get(i) instanceof IFileItem) {
+					IFileItem fileItem = (IFileItem) items.get(i);
+					IFileContent content = fileItem.getContent();
+					FileState state = new FileState(content == null ? 0 : content.getSize(), fileItem.isExecutable());
+					states.set(indexes.get(i), state);
+					String key = getStateKey(batch.get(i));
+					if (key != null) {
+						fileStates.put(key, state);
+					}
+				}
+			}
+		}
+		return states;
+	}
+
+	/**
+	 * @return the key of the state of the item, <code>null</code> if the handle does not denote a state
+	 */
+	private static String getStateKey(IItemHandle handle) {
+		UUID stateId = handle.getStateId();
+		return stateId == null ? null : stateId.getUuidValue();
+	}
+
+	private static <V> Map<String, V> createCache(final int maxEntries) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, V>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+}
@@ -0,0 +1,242 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verifies the migrated state of every tag against the baselines it stands for, on a bounded pool of threads. The
+ * files are compared by path, size and executable flag, without loading any content. The outcome of every tag is
+ * appended to the report as soon as it is verified, so the report of a long verification can be followed while it is
+ * running. A tag standing for the baselines of only some components is only compared within the top level folders of
+ * these components.
+ */
+final class BaselineVerification {
+	private static final String SEPARATOR = "/";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final StreamOutput output;
+	private final Baselines baselines;
+	private final MigratedTrees trees;
+	private final int componentCount;
+	private final int parallel;
+
+	/**
+	 * @param componentCount
+	 *            the number of components of the verified stream
+	 * @param parallel
+	 *            the number of tags verified at the same time
+	 */
+	BaselineVerification(StreamOutput output, Baselines baselines, MigratedTrees trees, int componentCount,
+			int parallel) {
+		this.output = output;
+		this.baselines = baselines;
+		this.trees = trees;
+		this.componentCount = componentCount;
+		this.parallel = Math.max(1, parallel);
+	}
+
+	/**
+	 * Verifies all tags standing for baselines and waits for them.
+	 *
+	 * @return the number of tags that differ or could not be verified
+	 */
+	int run(Iterable<RtcTag> tags, File reportFile) throws IOException {
+		final List<RtcTag> verifiedTags = new ArrayList<RtcTag>();
+		for (RtcTag tag : tags) {
+			if (!tag.getBaselineUuids().isEmpty()) {
+				verifiedTags.add(tag);
+			}
+		}
+		output.writeLine("Verify [" + verifiedTags.size() + "] tags with [" + parallel + "] threads into ["
+				+ reportFile.getAbsolutePath() + "]");
+		final Writer report = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+		final AtomicInteger verified = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final AtomicReference<IOException> reportFailure = new AtomicReference<IOException>();
+		final AtomicInteger threadCounter = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallel, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "rtc-verify-" + threadCounter.incrementAndGet());
+			}
+		});
+		try {
+			for (final RtcTag tag : verifiedTags) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						Result result;
+						try {
+							result = verify(tag);
+						} catch (Throwable t) {
+							result = new Result(false, Collections.singletonList("Tag [" + tag.getName()
+									+ "] could not be verified: " + t));
+						}
+						if (!result.matches()) {
+							failed.incrementAndGet();
+						}
+						List<String> lines = result.getLines();
+						output.writeLine(lines.get(0) + " [" + verified.incrementAndGet() + "/" + verifiedTags.size()
+								+ "]");
+						try {
+							append(report, lines);
+						} catch (IOException e) {
+							reportFailure.compareAndSet(null, e);
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			String summary = "Verification finished, [" + (verifiedTags.size() - failed.get()) + "] tags match, ["
+					+ failed.get() + "] differ or could not be verified";
+			append(report, Collections.singletonList(summary));
+			output.writeLine(summary);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			throw new RuntimeException("Interrupted while verifying the tags", e);
+		} finally {
+			report.close();
+		}
+		if (reportFailure.get() != null) {
+			throw reportFailure.get();
+		}
+		return failed.get();
+	}
+
+	Result verify(RtcTag tag) throws IOException {
+		Map<String, FileState> migratedFiles = trees.listFiles(tag);
+		if (migratedFiles == null) {
+			return new Result(false, Collections.singletonList("Tag [" + tag.getName() + "] has not been migrated"));
+		}
+		Map<String, FileState> baselineFiles = baselines.listFiles(tag.getBaselineUuids());
+		Set<String> roots = null;
+		if (tag.getBaselineUuids().size() < componentCount) {
+			roots = new HashSet<String>();
+			for (String path : baselineFiles.keySet()) {
+				roots.add(getRoot(path));
+			}
+		}
+		Map<String, FileState> expectedFiles = new HashMap<String, FileState>();
+		for (Entry<String, FileState> file : baselineFiles.entrySet()) {
+			if (trees.isMigrated(file.getKey(), file.getValue())) {
+				expectedFiles.put(file.getKey(), file.getValue());
+			}
+		}
+		List<String> differences = compare(expectedFiles, migratedFiles, roots);
+		List<String> lines = new ArrayList<String>(differences.size() + 1);
+		String scope = roots == null ? "" : " within [" + roots.size() + "] top level folders";
+		if (differences.isEmpty()) {
+			lines.add("Tag [" + tag.getName() + "] matches in [" + expectedFiles.size() + "] files" + scope);
+		} else {
+			lines.add("Tag [" + tag.getName() + "] differs in [" + differences.size() + "] of ["
+					+ expectedFiles.size() + "] files" + scope + ":");
+			for (String difference : differences) {
+				lines.add("\t" + difference);
+			}
+		}
+		return new Result(differences.isEmpty(), lines);
+	}
+
+	/**
+	 * Compares the files of the baselines with the migrated ones.
+	 *
+	 * @param roots
+	 *            the top level names the migrated files are compared within, <code>null</code> to compare all of
+	 *            them
+	 * @return one line per differing file, ordered by path
+	 */
+	static List<String> compare(Map<String, FileState> expectedFiles, Map<String, FileState> migratedFiles,
+			Set<String> roots) {
+		SortedSet<String> paths = new TreeSet<String>(expectedFiles.keySet());
+		for (String path : migratedFiles.keySet()) {
+			if (roots == null || roots.contains(getRoot(path))) {
+				paths.add(path);
+			}
+		}
+		List<String> differences = new ArrayList<String>();
+		for (String path : paths) {
+			FileState expected = expectedFiles.get(path);
+			FileState migrated = migratedFiles.get(path);
+			if (migrated == null) {
+				differences.add("missing " + path);
+			} else if (expected == null) {
+				differences.add("extra " + path);
+			} else if (!expected.equals(migrated)) {
+				differences.add("changed " + path + " RTC [" + expected + "] git [" + migrated + "]");
+			}
+		}
+		return differences;
+	}
+
+	private static String getRoot(String path) {
+		int index = path.indexOf(SEPARATOR);
+		return index < 0 ? path : path.substring(0, index);
+	}
+
+	private static void append(Writer report, List<String> lines) throws IOException {
+		synchronized (report) {
+			for (String line : lines) {
+				report.write(line);
+				report.write(LINE_SEPARATOR);
+			}
+			report.flush();
+		}
+	}
+
+	/**
+	 * The outcome of the verification of one tag.
+	 */
+	static final class Result {
+		private final boolean matches;
+		private final List<String> lines;
+
+		Result(boolean matches, List<String> lines) {
+			this.matches = matches;
+			this.lines = lines;
+		}
+
+		boolean matches() {
+			return matches;
+		}
+
+		/**
+		 * @return the outcome of the tag, followed by one line per differing file if it differs
+		 */
+		List<String> getLines() {
+			return lines;
+		}
+	}
+
+	/**
+	 * Lists the files of baselines, called by several threads at once.
+	 */
+	interface Baselines {
+
+		/**
+		 * @return the files of all the baselines by their path
+		 */
+		Map<String, FileState> listFiles(Collection<String> baselineUuids);
+	}
+}
@@ -0,0 +1,113 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * The migrations of a batch, read from a manifest file with one migration per line. A line holds the source
+ * workspace, the destination workspace, the sandbox directory and optionally the migration properties file, separated
+ * by semicolons. Empty lines and lines starting with <code>#</code> are ignored, relative paths are resolved against
+ * the directory of the manifest.
+ */
+public final class BatchManifest {
+	private static final String SEPARATOR = ";";
+
+	private BatchManifest() {
+	}
+
+	public static List<Entry> read(File manifestFile) throws IOException {
+		return parse(Files.readLines(manifestFile, Charset.forName("UTF-8")), manifestFile.getAbsoluteFile()
+				.getParentFile());
+	}
+
+	static List<Entry> parse(List<String> lines, File baseDirectory) {
+		List<Entry> entries = new ArrayList<Entry>();
+		Set<File> sandboxDirectories = new HashSet<File>();
+		int lineNumber = 0;
+		for (String line : lines) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+				continue;
+			}
+			String[] fields = trimmed.split(SEPARATOR, -1);
+			if (fields.length < 3 || fields.length > 4) {
+				throw new IllegalArgumentException("Line " + lineNumber + " of the manifest is not of the form "
+						+ "source;destination;sandbox[;properties]: " + line);
+			}
+			for (int i = 0; i < 3; i++) {
+				if (fields[i].trim().isEmpty()) {
+					throw new IllegalArgumentException("Line " + lineNumber + " of the manifest has an empty field: "
+							+ line);
+				}
+			}
+			File sandboxDirectory = resolve(baseDirectory, fields[2].trim());
+			if (!sandboxDirectories.add(sandboxDirectory)) {
+				throw new IllegalArgumentException("Line " + lineNumber + " of the manifest migrates into sandbox "
+						+ sandboxDirectory + " again");
+			}
+			File propertiesFile = null;
+			if (fields.length == 4 && !fields[3].trim().isEmpty()) {
+				propertiesFile = resolve(baseDirectory, fields[3].trim());
+			}
+			entries.add(new Entry(fields[0].trim(), fields[1].trim(), sandboxDirectory, propertiesFile));
+		}
+		return entries;
+	}
+
+	private static File resolve(File baseDirectory, String path) {
+		File file = new File(path);
+		if (!file.isAbsolute()) {
+			file = new File(baseDirectory, path);
+		}
+		return file.getAbsoluteFile();
+	}
+
+	/**
+	 * One migration of the batch.
+	 */
+	public static final class Entry {
+		private final String sourceWorkspace;
+		private final String destinationWorkspace;
+		private final File sandboxDirectory;
+		private final File propertiesFile;
+
+		Entry(String sourceWorkspace, String destinationWorkspace, File sandboxDirectory, File propertiesFile) {
+			this.sourceWorkspace = sourceWorkspace;
+			this.destinationWorkspace = destinationWorkspace;
+			this.sandboxDirectory = sandboxDirectory;
+			this.propertiesFile = propertiesFile;
+		}
+
+		public String getSourceWorkspace() {
+			return sourceWorkspace;
+		}
+
+		public String getDestinationWorkspace() {
+			return destinationWorkspace;
+		}
+
+		public File getSandboxDirectory() {
+			return sandboxDirectory;
+		}
+
+		/**
+		 * @return the migration properties file, <code>null</code> if none is given
+		 */
+		public File getPropertiesFile() {
+			return propertiesFile;
+		}
+
+		@Override
+		public String toString() {
+			return sourceWorkspace + " -> " + destinationWorkspace;
+		}
+	}
+}
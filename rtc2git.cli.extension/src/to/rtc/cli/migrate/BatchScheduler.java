@@ -0,0 +1,198 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import to.rtc.cli.migrate.BatchManifest.Entry;
+
+/**
+ * Runs the migrations of a batch on a bounded pool of threads, in the order of the manifest. A migration is only
+ * started while the budget of the batch admits it: the free heap has to hold another migration and the disk of its
+ * sandbox has to keep the minimum free space. While migrations are running, the next one waits for them to release
+ * resources. If none is running, a migration lacking heap is started anyway and one lacking disk space fails. The
+ * outcome of every migration is reported as soon as it ends, a failing migration does not stop the others.
+ */
+public final class BatchScheduler {
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private final StreamOutput output;
+	private final int parallel;
+	private long heapPerMigration;
+	private long minFreeDisk;
+	private long admissionPollMillis = TimeUnit.SECONDS.toMillis(5);
+
+	public BatchScheduler(StreamOutput output, int parallel) {
+		this.output = output;
+		this.parallel = Math.max(1, parallel);
+	}
+
+	/**
+	 * @param bytes
+	 *            the free heap needed to start another migration
+	 * @return this scheduler
+	 */
+	public BatchScheduler setHeapPerMigration(long bytes) {
+		heapPerMigration = bytes;
+		return this;
+	}
+
+	/**
+	 * @param bytes
+	 *            the free space the disk of a sandbox has to keep to start a migration into it
+	 * @return this scheduler
+	 */
+	public BatchScheduler setMinFreeDisk(long bytes) {
+		minFreeDisk = bytes;
+		return this;
+	}
+
+	BatchScheduler setAdmissionPollMillis(long millis) {
+		admissionPollMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Runs all migrations and waits for them.
+	 *
+	 * @return the results in the order of the entries
+	 */
+	public List<Result> run(List<Entry> entries, final Job job) {
+		final Result[] results = new Result[entries.size()];
+		final Semaphore slots = new Semaphore(parallel);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger threadCounter = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallel, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "rtc-batch-" + threadCounter.incrementAndGet());
+			}
+		});
+		try {
+			for (int i = 0; i < entries.size(); i++) {
+				final int index = i;
+				final Entry entry = entries.get(i);
+				slots.acquire();
+				File sandboxDirectory = entry.getSandboxDirectory();
+				boolean waiting = false;
+				while (running.get() > 0 && !(hasHeap() && hasDisk(sandboxDirectory))) {
+					if (!waiting) {
+						output.writeLine("Migration [" + entry + "] waits for [" + running.get()
+								+ "] running migrations to release heap or disk space");
+						waiting = true;
+					}
+					Thread.sleep(admissionPollMillis);
+				}
+				if (!hasDisk(sandboxDirectory)) {
+					results[index] = report(new Result(entry, new IllegalStateException("Less than ["
+							+ minFreeDisk / MEGABYTE + "] MB free disk space left for " + sandboxDirectory), 0));
+					slots.release();
+					continue;
+				}
+				running.incrementAndGet();
+				output.writeLine("Start migration [" + (index + 1) + "/" + entries.size() + "] of [" + entry
+						+ "] into [" + sandboxDirectory + "]");
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						long start = System.currentTimeMillis();
+						Throwable failure = null;
+						try {
+							job.migrate(entry);
+						} catch (Throwable t) {
+							failure = t;
+						} finally {
+							running.decrementAndGet();
+							slots.release();
+						}
+						results[index] = report(new Result(entry, failure, System.currentTimeMillis() - start));
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			throw new RuntimeException("Interrupted while running the batch", e);
+		}
+		int failed = 0;
+		for (Result result : results) {
+			if (!result.isSuccessful()) {
+				failed++;
+			}
+		}
+		output.writeLine("Batch finished, [" + (results.length - failed) + "] migrations succeeded, [" + failed
+				+ "] failed");
+		return Arrays.asList(results);
+	}
+
+	private Result report(Result result) {
+		output.writeLine(result.toString());
+		return result;
+	}
+
+	private boolean hasHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory() >= heapPerMigration;
+	}
+
+	private boolean hasDisk(File sandboxDirectory) {
+		File existing = sandboxDirectory.getAbsoluteFile();
+		while (existing != null && !existing.exists()) {
+			existing = existing.getParentFile();
+		}
+		return existing == null || existing.getUsableSpace() >= minFreeDisk;
+	}
+
+	/**
+	 * Migrates one entry of the batch.
+	 */
+	public interface Job {
+		void migrate(Entry entry) throws Exception;
+	}
+
+	/**
+	 * The outcome of the migration of one entry.
+	 */
+	public static final class Result {
+		private final Entry entry;
+		private final Throwable failure;
+		private final long durationMillis;
+
+		Result(Entry entry, Throwable failure, long durationMillis) {
+			this.entry = entry;
+			this.failure = failure;
+			this.durationMillis = durationMillis;
+		}
+
+		public Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return the reason the migration failed, <code>null</code> if it succeeded
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		public boolean isSuccessful() {
+			return failure == null;
+		}
+
+		@Override
+		public String toString() {
+			if (failure == null) {
+				return "Migration of [" + entry + "] succeeded after [" + durationMillis / 1000 + "] s";
+			}
+			return "Migration of [" + entry + "] failed after [" + durationMillis / 1000 + "] s: " + failure;
+		}
+	}
+}
@@ -44,6 +44,20 @@ public interface ChangeSet {
 	 */
 	public List<WorkItem> getWorkItems();
 
+	/**
+	 * Returns the name of the component the change set belongs to.
+	 * 
+	 * @return the component name or <code>null</code> if unknown
+	 */
+	public String getComponent();
+
+	/**
+	 * Returns the UUIDs of the RTC change sets that are committed together as this change set.
+	 * 
+	 * @return the change set UUIDs, empty if unknown
+	 */
+	public List<String> getUuids();
+
 	/**
 	 * Represents a work item reference
 	 */
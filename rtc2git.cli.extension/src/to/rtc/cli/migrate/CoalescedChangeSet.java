@@ -0,0 +1,108 @@
+package to.rtc.cli.migrate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents a group of consecutive change sets of the same creator and component that are migrated as one single
+ * commit.
+ */
+final class CoalescedChangeSet implements ChangeSet {
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final List<RtcChangeSet> changeSets;
+
+	CoalescedChangeSet(List<RtcChangeSet> changeSets) {
+		if (changeSets.isEmpty()) {
+			throw new IllegalArgumentException("At least one change set is required");
+		}
+		this.changeSets = Collections.unmodifiableList(new ArrayList<RtcChangeSet>(changeSets));
+	}
+
+	List<RtcChangeSet> getChangeSets() {
+		return changeSets;
+	}
+
+	private RtcChangeSet getFirst() {
+		return changeSets.get(0);
+	}
+
+	private RtcChangeSet getLast() {
+		return changeSets.get(changeSets.size() - 1);
+	}
+
+	/**
+	 * Returns all distinct non empty comments of the grouped change sets, each on its own line.
+	 */
+	@Override
+	public String getComment() {
+		Set<String> comments = new LinkedHashSet<String>();
+		for (RtcChangeSet changeSet : changeSets) {
+			String comment = changeSet.getComment();
+			if (comment != null && !comment.trim().isEmpty()) {
+				comments.add(comment);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String comment : comments) {
+			if (sb.length() > 0) {
+				sb.append(LINE_SEPARATOR);
+			}
+			sb.append(comment);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String getCreatorName() {
+		return getFirst().getCreatorName();
+	}
+
+	@Override
+	public String getEmailAddress() {
+		return getFirst().getEmailAddress();
+	}
+
+	@Override
+	public String getComponent() {
+		return getFirst().getComponent();
+	}
+
+	@Override
+	public List<String> getUuids() {
+		List<String> uuids = new ArrayList<String>(changeSets.size());
+		for (RtcChangeSet changeSet : changeSets) {
+			uuids.add(changeSet.getUuid());
+		}
+		return uuids;
+	}
+
+	/**
+	 * Returns the creation date of the latest change set within the group.
+	 */
+	@Override
+	public long getCreationDate() {
+		return getLast().getCreationDate();
+	}
+
+	/**
+	 * Returns the work items of all grouped change sets, each work item number only once.
+	 */
+	@Override
+	public List<WorkItem> getWorkItems() {
+		List<WorkItem> workItems = new ArrayList<WorkItem>();
+		Set<Long> numbers = new HashSet<Long>();
+		for (RtcChangeSet changeSet : changeSets) {
+			for (WorkItem workItem : changeSet.getWorkItems()) {
+				if (numbers.add(Long.valueOf(workItem.getNumber()))) {
+					workItems.add(workItem);
+				}
+			}
+		}
+		return workItems;
+	}
+}
@@ -0,0 +1,159 @@
+package to.rtc.cli.migrate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import to.rtc.cli.migrate.metrics.Counter;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.Phase;
+
+/**
+ * Paces the cycles of an update migration that keeps running and polls the source stream, so the RTC session, the
+ * migrator and its caches stay alive between the cycles. The latency of every cycle and the age of the newest change
+ * set it migrated are recorded as {@link Phase#SYNC_CYCLE} and {@link Phase#SYNC_LAG}. After a failed cycle the
+ * interval is doubled for every further failure in a row, up to {@value #MAX_BACKOFF_FACTOR} times the interval, until
+ * a cycle succeeds again. A shutdown of the JVM ends the sync after the running cycle, leaving the migrator closed
+ * properly.
+ */
+final class ContinuousSync {
+	private static final long STOP_TIMEOUT_MINUTES = 10;
+	private static final int MAX_BACKOFF_FACTOR = 16;
+
+	private final StreamOutput output;
+	private final long intervalMillis;
+	private final MetricsRegistry metrics;
+	private final CountDownLatch finished;
+	private final Thread shutdownHook;
+	private boolean stopRequested;
+	private int cycles;
+	private int failures;
+
+	ContinuousSync(StreamOutput output, long intervalMillis) {
+		this.output = output;
+		this.intervalMillis = intervalMillis;
+		this.metrics = MetricsRegistry.getInstance();
+		this.finished = new CountDownLatch(1);
+		this.shutdownHook = new Thread("rtc-sync-shutdown") {
+			@Override
+			public void run() {
+				requestStop();
+				try {
+					finished.await(STOP_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Lets a shutdown of the JVM stop the sync.
+	 *
+	 * @return this sync
+	 */
+	ContinuousSync start() {
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		return this;
+	}
+
+	/**
+	 * Waits for the interval between two cycles, backing off after failed cycles.
+	 *
+	 * @return <code>true</code> if the next cycle is due, <code>false</code> if the sync has to stop
+	 */
+	synchronized boolean awaitNextCycle() {
+		long delay = getDelayMillis();
+		long end = System.currentTimeMillis() + delay;
+		long remaining = delay;
+		try {
+			while (!stopRequested && remaining > 0) {
+				wait(remaining);
+				remaining = end - System.currentTimeMillis();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stopRequested = true;
+		}
+		return !stopRequested;
+	}
+
+	/**
+	 * @return the time to wait before the next cycle
+	 */
+	synchronized long getDelayMillis() {
+		long factor = 1;
+		for (int i = 0; i < failures && factor < MAX_BACKOFF_FACTOR; i++) {
+			factor *= 2;
+		}
+		return intervalMillis * factor;
+	}
+
+	synchronized void requestStop() {
+		stopRequested = true;
+		notifyAll();
+	}
+
+	/**
+	 * Records a finished cycle.
+	 *
+	 * @param startMillis
+	 *            the time the cycle started at
+	 * @param migratedTags
+	 *            the tags migrated within the cycle, <code>null</code> if the source stream had nothing new
+	 * @return the creation time of the newest change set migrated, 0 if none was migrated
+	 */
+	synchronized long recordCycle(long startMillis, RtcTagList migratedTags) {
+		long nowMillis = System.currentTimeMillis();
+		int changeSets = 0;
+		long newestChangeSet = 0;
+		if (migratedTags != null) {
+			for (RtcTag tag : migratedTags) {
+				for (RtcChangeSet changeSet : tag.getOrderedChangeSets()) {
+					changeSets++;
+					newestChangeSet = Math.max(newestChangeSet, changeSet.getCreationDate());
+				}
+			}
+		}
+		cycles++;
+		failures = 0;
+		metrics.record(Phase.SYNC_CYCLE, TimeUnit.MILLISECONDS.toNanos(nowMillis - startMillis));
+		metrics.increment(Counter.SYNC_CYCLES, 1);
+		if (changeSets == 0) {
+			return 0;
+		}
+		long lagMillis = Math.max(0, nowMillis - newestChangeSet);
+		metrics.record(Phase.SYNC_LAG, TimeUnit.MILLISECONDS.toNanos(lagMillis));
+		output.writeLine("Sync cycle [" + cycles + "] migrated [" + changeSets + "] changesets in ["
+				+ (nowMillis - startMillis) + "] ms, the newest one is [" + lagMillis / 1000 + "] s old");
+		return newestChangeSet;
+	}
+
+	/**
+	 * Records a cycle that failed, so the next one is delayed. The failure is logged, the sync goes on.
+	 *
+	 * @param startMillis
+	 *            the time the cycle started at
+	 */
+	synchronized void recordFailure(long startMillis, Exception failure) {
+		cycles++;
+		failures++;
+		metrics.increment(Counter.SYNC_FAILURES, 1);
+		failure.printStackTrace(output.getOutputStream());
+		output.writeLine("Sync cycle [" + cycles + "] failed after [" + (System.currentTimeMillis() - startMillis)
+				+ "] ms with [" + failure + "], retry in [" + getDelayMillis() / 1000 + "] s");
+	}
+
+	/**
+	 * Releases a pending shutdown, to be called once the migrator is closed.
+	 */
+	void finished() {
+		finished.countDown();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is shutting down already
+		} catch (IllegalArgumentException e) {
+			// the sync was never started
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package to.rtc.cli.migrate;
+
+/**
+ * Represents one change to the file tree caused by a change set. Paths are relative to the sandbox root and use a
+ * forward slash as separator.
+ */
+public final class FileChange {
+	public enum Kind {
+		/** a file or folder (including its content) was deleted */
+		DELETE,
+		/** a file or folder (including its content) was moved and/or renamed */
+		MOVE,
+		/** a file was added or its content was modified */
+		PUT
+	}
+
+	private final Kind kind;
+	private final String path;
+	private final String previousPath;
+	private final boolean folder;
+	private final FileContent content;
+
+	private FileChange(Kind kind, String path, String previousPath, boolean folder, FileContent content) {
+		this.kind = kind;
+		this.path = path;
+		this.previousPath = previousPath;
+		this.folder = folder;
+		this.content = content;
+	}
+
+	public static FileChange delete(String path, boolean folder) {
+		return new FileChange(Kind.DELETE, path, path, folder, null);
+	}
+
+	public static FileChange move(String previousPath, String path, boolean folder) {
+		return new FileChange(Kind.MOVE, path, previousPath, folder, null);
+	}
+
+	public static FileChange put(String path, FileContent content) {
+		return new FileChange(Kind.PUT, path, null, false, content);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the path after the change, the deleted path for {@link Kind#DELETE}.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the path before the change or <code>null</code> for {@link Kind#PUT}.
+	 */
+	public String getPreviousPath() {
+		return previousPath;
+	}
+
+	public boolean isFolder() {
+		return folder;
+	}
+
+	/**
+	 * Returns the new content for {@link Kind#PUT} or <code>null</code> otherwise.
+	 */
+	public FileContent getContent() {
+		return content;
+	}
+
+	@Override
+	public String toString() {
+		return kind + (previousPath != null && !previousPath.equals(path) ? " " + previousPath + " ->" : "") + " "
+				+ path;
+	}
+}
@@ -0,0 +1,33 @@
+package to.rtc.cli.migrate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Represents the content of a file version in the source system, fetched only when written.
+ */
+public interface FileContent {
+	/**
+	 * Returns the size of the content.
+	 *
+	 * @return the content size in bytes or <code>-1</code> if unknown
+	 */
+	public long getSize();
+
+	/**
+	 * Returns whether the file is executable.
+	 *
+	 * @return <code>true</code> if executable, <code>false</code> otherwise
+	 */
+	public boolean isExecutable();
+
+	/**
+	 * Writes the content to the given <code>out</code> stream.
+	 *
+	 * @param out
+	 *            the stream receiving the content
+	 * @throws IOException
+	 *             if the content could not be fetched or written
+	 */
+	public void writeTo(OutputStream out) throws IOException;
+}
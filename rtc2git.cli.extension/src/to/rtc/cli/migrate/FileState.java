@@ -0,0 +1,45 @@
+package to.rtc.cli.migrate;
+
+/**
+ * The size and the executable flag of a file, being what is compared of a file when verifying the migrated tree of a
+ * tag against its baselines.
+ */
+public final class FileState {
+	private final long size;
+	private final boolean executable;
+
+	public FileState(long size, boolean executable) {
+		this.size = size;
+		this.executable = executable;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public boolean isExecutable() {
+		return executable;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (size ^ (size >>> 32)) * 31 + (executable ? 1231 : 1237);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof FileState)) {
+			return false;
+		}
+		FileState other = (FileState) obj;
+		return size == other.size && executable == other.executable;
+	}
+
+	@Override
+	public String toString() {
+		return size + " bytes" + (executable ? ", executable" : "");
+	}
+}
@@ -1,59 +1,167 @@
 package to.rtc.cli.migrate;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Date;
 
+/**
+ * Prefixes every line with a time stamp and hands the complete lines over to a background writer. Lines written while
+ * a RTC command is delegated are considered chatter and can be suppressed or redirected to another output.
+ */
 public class LoggingPrintStream extends PrintStream {
 	private static final byte NEWLINE = (byte) '\n';
+	private static final int BUFFERED_LINES = 8192;
+	private static final byte[] NO_PREFIX = new byte[0];
+	private static final ThreadLocal<Boolean> CHATTER = new ThreadLocal<Boolean>();
 
+	private final AsyncLogWriter console;
+	private AsyncLogWriter chatter;
+	private OutputStream chatterOutput;
+	private boolean chatterSuppressed;
 	private boolean afterNewLine;
+	private byte[] line;
+	private int lineLength;
+	private long timestampSecond;
+	private byte[] timestamp;
 
 	LoggingPrintStream(OutputStream stream) {
 		super(stream);
+		console = new AsyncLogWriter("console-log-writer", stream, BUFFERED_LINES);
 		afterNewLine = true;
+		line = new byte[256];
+		timestampSecond = -1;
+	}
+
+	/**
+	 * Marks all output of the current thread as chatter of a delegated RTC command until {@link #endChatter()}.
+	 */
+	public static void beginChatter() {
+		CHATTER.set(Boolean.TRUE);
+	}
+
+	public static void endChatter() {
+		CHATTER.remove();
+	}
+
+	/**
+	 * Drops all chatter lines.
+	 */
+	synchronized void suppressChatter() {
+		chatterSuppressed = true;
+	}
+
+	/**
+	 * Writes all chatter lines to the given output instead of the console.
+	 */
+	synchronized void redirectChatter(OutputStream chatterOutput) {
+		this.chatterOutput = chatterOutput;
+		chatter = new AsyncLogWriter("chatter-log-writer", chatterOutput, BUFFERED_LINES);
 	}
 
 	@Override
-	public void write(byte[] bytes, int i, int j) {
-		if (afterNewLine) {
-			byte[] dateBytes = getDateTime();
-			super.write(dateBytes, 0, dateBytes.length);
-			afterNewLine = false;
+	public synchronized void write(int b) {
+		if (lineLength == line.length) {
+			grow(1);
 		}
-		super.write(bytes, i, j);
-		if (endsWithNewLine(bytes, i, j)) {
-			afterNewLine = true;
+		line[lineLength++] = (byte) b;
+		if (NEWLINE == (byte) b) {
+			emit();
 		}
 	}
 
-	boolean endsWithNewLine(byte[] bytes, int offset, int length) {
-		int position = bytes.length - 1;
-		if (position > (offset + length)) {
-			position = offset + length;
+	@Override
+	public synchronized void write(byte[] bytes, int offset, int length) {
+		int start = offset;
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (NEWLINE == bytes[i]) {
+				append(bytes, start, i + 1 - start);
+				emit();
+				start = i + 1;
+			}
 		}
-		return NEWLINE == bytes[position];
+		append(bytes, start, end - start);
 	}
 
+	/**
+	 * Hands an incomplete line over to the writer without waiting for it to be written.
+	 */
 	@Override
-	public void println(String s) {
-		super.println(s);
-		afterNewLine = true;
+	public synchronized void flush() {
+		if (lineLength > 0) {
+			emit();
+		}
 	}
 
-	@Override
-	public void println() {
-		super.println();
-		afterNewLine = true;
+	/**
+	 * Writes all pending lines and continues writing synchronously from now on. The underlying console stream stays
+	 * open, a chatter output is closed.
+	 */
+	void shutdown() {
+		flush();
+		console.close();
+		AsyncLogWriter chatterWriter;
+		synchronized (this) {
+			chatterWriter = chatter;
+			chatter = null;
+		}
+		if (chatterWriter != null) {
+			chatterWriter.close();
+			try {
+				chatterOutput.close();
+			} catch (IOException e) {
+				e.printStackTrace(this);
+			}
+		}
 	}
 
-	@Override
-	public void println(char[] ac) {
-		super.println(ac);
-		afterNewLine = true;
+	private void append(byte[] bytes, int offset, int length) {
+		if (length <= 0) {
+			return;
+		}
+		if (lineLength + length > line.length) {
+			grow(length);
+		}
+		System.arraycopy(bytes, offset, line, lineLength, length);
+		lineLength += length;
+	}
+
+	private void grow(int length) {
+		byte[] grown = new byte[Math.max(line.length * 2, lineLength + length)];
+		System.arraycopy(line, 0, grown, 0, lineLength);
+		line = grown;
 	}
 
+	private void emit() {
+		boolean isChatter = Boolean.TRUE.equals(CHATTER.get());
+		if (!isChatter || !chatterSuppressed) {
+			byte[] prefix = afterNewLine ? getDateTime() : NO_PREFIX;
+			byte[] bytes = new byte[prefix.length + lineLength];
+			System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+			System.arraycopy(line, 0, bytes, prefix.length, lineLength);
+			(isChatter && chatter != null ? chatter : console).write(bytes);
+		}
+		afterNewLine = NEWLINE == line[lineLength - 1];
+		lineLength = 0;
+	}
+
+	/**
+	 * Returns the time stamp prefix, formatted at most once per second.
+	 */
 	private byte[] getDateTime() {
-		return String.format("[%1$tY-%1$tm-%1$td %1$tT] ", new Date()).getBytes();
+		long now = System.currentTimeMillis();
+		long second = now / 1000;
+		if (second != timestampSecond) {
+			timestamp = String.format("[%1$tY-%1$tm-%1$td %1$tT] ", new Date(now)).getBytes();
+			timestampSecond = second;
+		}
+		return timestamp;
+	}
+
+	@Override
+	public void close() {
+		shutdown();
+		super.close();
 	}
 }
@@ -1,19 +1,34 @@
 package to.rtc.cli.migrate;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
+import to.rtc.cli.migrate.command.InProcessAcceptEngine;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.MetricsReporter;
+import to.rtc.cli.migrate.metrics.Phase;
+import to.rtc.cli.migrate.metrics.PhaseTimer;
+import to.rtc.cli.migrate.replay.RecordingMigrator;
+import to.rtc.cli.migrate.util.RotatingFileOutputStream;
+
 import com.ibm.team.filesystem.cli.client.AbstractSubcommand;
 import com.ibm.team.filesystem.cli.core.internal.ScmCommandLineArgument;
 import com.ibm.team.filesystem.cli.core.subcommands.CommonOptions;
+import com.ibm.team.filesystem.cli.core.subcommands.IScmClientConfiguration;
 import com.ibm.team.filesystem.cli.core.util.RepoUtil;
 import com.ibm.team.filesystem.cli.core.util.RepoUtil.ItemType;
 import com.ibm.team.filesystem.cli.core.util.SubcommandUtil;
@@ -55,21 +70,106 @@ import com.ibm.team.scm.common.IWorkspaceHandle;
 
 @SuppressWarnings("restriction")
 public abstract class MigrateTo extends AbstractSubcommand implements ISubcommand {
+	private static final int MAX_BASELINES = 1000000;
+	private static final int INCREMENTAL_BASELINES = 100;
+	// baselines are listed a bit before the last migrated change set to tolerate clocks of different servers
+	private static final long LISTED_SINCE_MARGIN = TimeUnit.HOURS.toMillis(1);
 
 	private StreamOutput output;
+	private LoggingPrintStream loggingStream;
 	private boolean listTagsOnly = false;
+	private File sandboxDirectory;
+	private List<File> shardDirectories = Collections.emptyList();
+	private ContinuousSync continuousSync;
 
 	private IProgressMonitor getMonitor() {
-		return new LogTaskMonitor(new StreamOutput(config.getContext().stdout()));
+		return new LogTaskMonitor(output);
 	}
 
 	public abstract Migrator getMigrator();
 
 	public abstract Pattern getBaselineIncludePattern();
 
+	/**
+	 * Rejects the settings the migrator cannot migrate with, before anything is listed or migrated.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the settings are not supported
+	 */
+	protected abstract void validate(MigrationSettings settings);
+
+	/**
+	 * Creates a new migrator for the repository of one shard, called once per shard from the thread migrating it.
+	 * Only called if {@link #validate(MigrationSettings)} accepted more than one shard.
+	 */
+	protected abstract Migrator createShardMigrator();
+
+	/**
+	 * Locates the commits of the change sets the destination workspace ends with, so an update migration is known to
+	 * continue where the last one stopped and a migration of another stream into the same repository where it
+	 * branches off.
+	 *
+	 * @param sandboxDirectory
+	 *            the directory the migrator is initialized with
+	 * @param lastChangeSets
+	 *            the UUID of the last change set in the destination workspace by component name
+	 * @return the lines describing the starting point, empty if unknown
+	 */
+	protected List<String> locateStartingPoint(File sandboxDirectory, Map<String, String> lastChangeSets) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Determines the time the last update migration ended at. Every change set delivered to the source stream since
+	 * then is newer, and so is every baseline holding one, so older baselines need not be listed again.
+	 *
+	 * @param sandboxDirectory
+	 *            the directory the migrator is initialized with
+	 * @param lastChangeSets
+	 *            the UUID of the last change set in the destination workspace by component name
+	 * @return the creation time of the last migrated change set in milliseconds, 0 if unknown
+	 */
+	protected long getLastMigratedTime(File sandboxDirectory, Map<String, String> lastChangeSets) {
+		return 0;
+	}
+
+	/**
+	 * Opens the migrated states of the tags for verifying them against their baselines, to be closed by the caller.
+	 * Only called if {@link #validate(MigrationSettings)} accepted a verification.
+	 *
+	 * @param sandboxDirectory
+	 *            the directory the migration has been done into
+	 */
+	protected abstract MigratedTrees openMigratedTrees(File sandboxDirectory) throws IOException;
+
+	/**
+	 * @return the directory the migrator has been initialized with
+	 */
+	protected File getSandboxDirectory() {
+		return sandboxDirectory;
+	}
+
+	/**
+	 * Releases a pending shutdown of a continuous sync, to be called once the migrator is closed, whether the
+	 * migration succeeded or not.
+	 */
+	public void releaseShutdown() {
+		if (continuousSync != null) {
+			continuousSync.finished();
+			continuousSync = null;
+		}
+	}
+
+	/**
+	 * @return the directories of the repositories of all shards but the first one, in the order of the shards
+	 */
+	protected List<File> getShardDirectories() {
+		return shardDirectories;
+	}
+
 	@Override
 	public void run() throws FileSystemException {
-		boolean isUpdateMigration = false;
+		MetricsReporter metricsReporter = null;
 		long start = System.currentTimeMillis();
 		setStdOut();
 		output = new StreamOutput(config.getContext().stdout());
@@ -85,14 +185,27 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 				timeout = Integer.parseInt(timeoutOptionValue);
 			}
 
-			if (subargs.hasOption(MigrateToOptions.OPT_RTC_LIST_TAGS_ONLY)) {
-				listTagsOnly = true;
-				output.writeLine("***** LIST ONLY THE TAGS *****");
+			MigrationSettings settings = readSettings(subargs);
+
+			if (subargs.hasOption(MigrateToOptions.OPT_RTC_OUTPUT)) {
+				String rtcOutput = subargs.getOptionValue(MigrateToOptions.OPT_RTC_OUTPUT).getValue();
+				if ("none".equalsIgnoreCase(rtcOutput)) {
+					output.writeLine("***** SUPPRESS OUTPUT OF SCM COMMANDS *****");
+					loggingStream.suppressChatter();
+				} else if (!"console".equalsIgnoreCase(rtcOutput)) {
+					File rtcOutputFile = new File(rtcOutput);
+					output.writeLine("***** WRITE OUTPUT OF SCM COMMANDS TO " + rtcOutputFile.getAbsolutePath()
+							+ " *****");
+					loggingStream.redirectChatter(new RotatingFileOutputStream(rtcOutputFile, 50 * 1024 * 1024, 5));
+				}
 			}
 
-			if (subargs.hasOption(MigrateToOptions.OPT_RTC_IS_UPDATE_MIGRATION)) {
-				isUpdateMigration = true;
-				output.writeLine("***** IS UPDATE MIGRATION *****");
+			if (subargs.hasOption(MigrateToOptions.OPT_METRICS_DIRECTORY)) {
+				File metricsDirectory = new File(subargs.getOptionValue(MigrateToOptions.OPT_METRICS_DIRECTORY)
+						.getValue());
+				output.writeLine("***** WRITE METRICS TO " + metricsDirectory.getAbsolutePath() + " *****");
+				metricsReporter = new MetricsReporter(MetricsRegistry.getInstance(), metricsDirectory);
+				metricsReporter.start(60);
 			}
 
 			final ScmCommandLineArgument sourceWsOption = ScmCommandLineArgument.create(
@@ -112,75 +225,386 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 			IWorkspace destinationWs = RepoUtil.getWorkspace(destinationWsOption.getItemSelector(), true, false, repo,
 					config);
 
-			output.writeLine("Get full history information from RTC. This could take a large amount of time.");
-			output.writeLine("Create the list of baselines");
-			RtcTagList tagList = createTagListFromBaselines(client, repo, sourceWs);
+			migrate(config, output, settings, client, repo, sourceWs, destinationWs,
+					destinationWsOption.getStringValue());
+		} catch (Throwable t) {
+			t.printStackTrace(output.getOutputStream());
+			throw new RuntimeException(t);
+		} finally {
+			if (metricsReporter != null) {
+				metricsReporter.close();
+			}
+			output.writeLine("Migration took [" + (System.currentTimeMillis() - start) / 1000 + "] s");
+			loggingStream.shutdown();
+		}
+	}
+
+	private MigrationSettings readSettings(ICommandLine subargs) {
+		MigrationSettings settings = new MigrationSettings();
+		if (subargs.hasOption(CommonOptions.OPT_DIRECTORY)) {
+			settings.setSandboxDirectory(new File(subargs.getOption(CommonOptions.OPT_DIRECTORY)));
+		} else {
+			settings.setSandboxDirectory(new File(System.getProperty("user.dir")));
+		}
+
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_LIST_TAGS_ONLY)) {
+			settings.setListTagsOnly(true);
+			output.writeLine("***** LIST ONLY THE TAGS *****");
+		}
+
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_IS_UPDATE_MIGRATION)) {
+			settings.setUpdateMigration(true);
+			output.writeLine("***** IS UPDATE MIGRATION *****");
+		}
+
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_COALESCING_WINDOW)) {
+			settings.setCoalescingWindow(TimeUnit.SECONDS.toMillis(Long.parseLong(subargs.getOptionValue(
+					MigrateToOptions.OPT_RTC_COALESCING_WINDOW).getValue())));
+			output.writeLine("***** COALESCE CHANGESETS WITHIN " + settings.getCoalescingWindow() / 1000 + "s *****");
+		}
+
+		settings.setStreamContent(subargs.hasOption(MigrateToOptions.OPT_RTC_STREAM_CONTENT));
+		settings.setInProcessAccept(subargs.hasOption(MigrateToOptions.OPT_RTC_IN_PROCESS_ACCEPT));
+		if (subargs.hasOption(MigrateToOptions.OPT_RECORD_ARCHIVE)) {
+			settings.setRecordArchive(new File(subargs.getOptionValue(MigrateToOptions.OPT_RECORD_ARCHIVE).getValue()));
+		}
+		if (subargs.hasOption(MigrateToOptions.OPT_STATUS_FILE)) {
+			settings.setStatusFile(new File(subargs.getOptionValue(MigrateToOptions.OPT_STATUS_FILE).getValue()));
+		}
+
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_SHARDS)) {
+			settings.setShardCount(Integer.parseInt(subargs.getOptionValue(MigrateToOptions.OPT_RTC_SHARDS)
+					.getValue()));
+			if (settings.getShardCount() > 1 && (!settings.isStreamContent() || settings.isUpdateMigration()
+					|| settings.getRecordArchive() != null)) {
+				throw new IllegalArgumentException(
+						"--shards requires --stream-content and is not supported with --update or --record");
+			}
+			output.writeLine("***** MIGRATE IN " + settings.getShardCount() + " SHARDS *****");
+		}
 
-			output.writeLine("Get changeset information for all baselines");
-			addChangeSetInfo(tagList, repo, sourceWs, destinationWs);
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_SYNC_INTERVAL)) {
+			settings.setSyncInterval(TimeUnit.SECONDS.toMillis(Long.parseLong(subargs.getOptionValue(
+					MigrateToOptions.OPT_RTC_SYNC_INTERVAL).getValue())));
+			if (!settings.isUpdateMigration() || settings.isListTagsOnly() || settings.getShardCount() > 1
+					|| settings.getRecordArchive() != null) {
+				throw new IllegalArgumentException("--sync-interval requires --update and is not supported with "
+						+ "--list-tags-only, --shards or --record");
+			}
+			output.writeLine("***** SYNC EVERY " + settings.getSyncInterval() / 1000 + "s *****");
+		}
+
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_CUTOFF_BASELINE)) {
+			settings.setCutoffBaseline(subargs.getOptionValue(MigrateToOptions.OPT_RTC_CUTOFF_BASELINE).getValue());
+			if (settings.isUpdateMigration() || settings.getShardCount() > 1 || settings.getRecordArchive() != null) {
+				throw new IllegalArgumentException(
+						"--cutoff-baseline is not supported with --update, --shards or --record");
+			}
+			output.writeLine("***** SNAPSHOT HISTORY UP TO BASELINE " + settings.getCutoffBaseline() + " *****");
+		}
 
-			tagList.printTagList(listTagsOnly);
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_BASELINE_COMMITS)) {
+			settings.setBaselineCommits(true);
+			if (settings.getShardCount() > 1 || settings.getCutoffBaseline() != null
+					|| settings.getCoalescingWindow() > 0) {
+				throw new IllegalArgumentException(
+						"--baseline-commits is not supported with --shards, --cutoff-baseline or --coalescing-window");
+			}
+			output.writeLine("***** ONE COMMIT PER BASELINE *****");
+		}
 
-			output.writeLine("Filter included baselines...");
+		if (subargs.hasOption(MigrateToOptions.OPT_RTC_VERIFY_REPORT)) {
+			settings.setVerifyReport(new File(subargs.getOptionValue(MigrateToOptions.OPT_RTC_VERIFY_REPORT)
+					.getValue()));
+			if (settings.isListTagsOnly() || settings.isUpdateMigration() || settings.getShardCount() > 1
+					|| settings.getSyncInterval() > 0 || settings.getRecordArchive() != null) {
+				throw new IllegalArgumentException("--verify is not supported with --list-tags-only, --update, "
+						+ "--shards, --sync-interval or --record");
+			}
+			if (subargs.hasOption(MigrateToOptions.OPT_RTC_VERIFY_THREADS)) {
+				settings.setVerifyThreads(Integer.parseInt(subargs.getOptionValue(
+						MigrateToOptions.OPT_RTC_VERIFY_THREADS).getValue()));
+			}
+			output.writeLine("***** VERIFY THE MIGRATED TAGS INTO " + settings.getVerifyReport().getAbsolutePath()
+					+ " *****");
+		}
+		return settings;
+	}
 
-			// Sorting is required berore pruning if migration from multiple components should be done. Otherwise tags
-			// of some code could be wrong.
-			tagList.sortByCreationDate();
-			tagList.pruneInactiveTags();
-			tagList.pruneExcludedTags(getBaselineIncludePattern());
+	/**
+	 * Migrates the source workspace into the sandbox directory of the given settings, using an RTC session that is
+	 * logged in already. Several migrations may share the session, each running on its own instance. The caller closes
+	 * the migrator afterwards and then calls {@link #releaseShutdown()}.
+	 *
+	 * @param config
+	 *            the configuration of the subcommand running the migration
+	 * @param output
+	 *            the output of this migration
+	 * @param settings
+	 *            the settings of this migration
+	 * @param destinationWsName
+	 *            the name the destination workspace was given by
+	 */
+	public void migrate(IScmClientConfiguration config, StreamOutput output, MigrationSettings settings,
+			IFilesystemRestClient client, ITeamRepository repo, IWorkspace sourceWs, IWorkspace destinationWs,
+			String destinationWsName) throws FileSystemException, TeamRepositoryException, IOException {
+		this.config = config;
+		this.output = output;
+		validate(settings);
+		long start = System.currentTimeMillis();
+		boolean isUpdateMigration = settings.isUpdateMigration();
+		long coalescingWindow = settings.getCoalescingWindow();
+		listTagsOnly = settings.isListTagsOnly();
+		sandboxDirectory = settings.getSandboxDirectory();
+		RecordingMigrator recorder = null;
+		if (settings.getSyncInterval() > 0) {
+			continuousSync = new ContinuousSync(output, settings.getSyncInterval());
+		}
+		try {
+			if (settings.getVerifyReport() != null) {
+				verify(settings, client, repo, sourceWs);
+				return;
+			}
+			long lastMigratedTime = 0;
+			Map<String, String> lastChangeSets = getLastChangeSetUuids(repo, destinationWs);
+			for (String line : locateStartingPoint(sandboxDirectory, lastChangeSets)) {
+				output.writeLine(line);
+			}
+			if (isUpdateMigration) {
+				lastMigratedTime = getLastMigratedTime(sandboxDirectory, lastChangeSets);
+			}
 
-			tagList.printTagList(true);
+			output.writeLine("Get full history information from RTC. This could take a large amount of time.");
+			RtcTagList tagList = discoverTags(client, repo, sourceWs, destinationWs, lastMigratedTime, null, null);
 
 			if (listTagsOnly) {
 				// Stop here before migration of any data
 				return;
 			}
 
-			final File sandboxDirectory;
-			output.writeLine("Start migration of tags.");
-			if (subargs.hasOption(CommonOptions.OPT_DIRECTORY)) {
-				sandboxDirectory = new File(subargs.getOption(CommonOptions.OPT_DIRECTORY));
-			} else {
-				sandboxDirectory = new File(System.getProperty("user.dir"));
+			RtcTagList snapshotTags = null;
+			if (settings.getCutoffBaseline() != null) {
+				List<RtcTagList> parts = tagList.splitAfter(settings.getCutoffBaseline());
+				snapshotTags = parts.get(0);
+				tagList = parts.get(1);
+				output.writeLine("Migrate [" + snapshotTags.size() + "] tags up to baseline ["
+						+ settings.getCutoffBaseline() + "] as snapshot and [" + tagList.size() + "] tags after it");
 			}
+
+			output.writeLine("Start migration of tags.");
 			Migrator migrator = getMigrator();
+			if (settings.getRecordArchive() != null) {
+				File archiveFile = settings.getRecordArchive();
+				output.writeLine("***** RECORD MIGRATION TO " + archiveFile.getAbsolutePath() + " *****");
+				recorder = RecordingMigrator.wrap(migrator, archiveFile);
+				migrator = recorder;
+			}
 			migrator.init(sandboxDirectory);
 
 			Map<String, String> destinationWsComponents = RepoUtil.getComponentsInSandbox(
 					destinationWs.getItemId().getUuidValue(), new PathLocation(sandboxDirectory.getAbsolutePath()),
 					client, config);
 
-			RtcMigrator rtcMigrator = new RtcMigrator(output, config, destinationWsOption.getStringValue(), migrator,
-					sandboxDirectory, destinationWsComponents.values(), isUpdateMigration);
-			boolean isFirstTag = true;
-			int numberOfTags = tagList.size();
-			int tagCounter = 0;
-			for (RtcTag tag : tagList) {
-				if (isUpdateMigration && isFirstTag && tag.isEmpty()) {
-					output.writeLine("Ignore migration of tag [" + tag.toString() + "] because it is empty.");
-					tagCounter++;
-					continue;
+			RtcTagList migratedTags = tagList;
+			ShardedMigration shardedMigration = null;
+			List<RtcTagList> shards = null;
+			RtcMigrator rtcMigrator = new RtcMigrator(output, config, destinationWsName, migrator, sandboxDirectory,
+					destinationWsComponents.values(), isUpdateMigration).setCoalescingWindow(coalescingWindow)
+					.setBaselineCommits(settings.isBaselineCommits());
+			if (settings.isStreamContent()) {
+				output.writeLine("Use streaming of changeset contents without sandbox");
+				IWorkspaceManager workspaceManager = SCMPlatform.getWorkspaceManager(repo);
+				IWorkspaceConnection destinationWsConnection = workspaceManager.getWorkspaceConnection(
+						destinationWs, getMonitor());
+				IWorkspaceConnection sourceWsConnection = workspaceManager.getWorkspaceConnection(sourceWs,
+						getMonitor());
+				rtcMigrator.setAcceptEngine(
+						new InProcessAcceptEngine(output, destinationWsConnection, sourceWsConnection))
+						.setChangeResolver(new RtcChangeResolver(repo, destinationWsConnection));
+				if (settings.getShardCount() > 1) {
+					shards = tagList.split(settings.getShardCount());
+					output.writeLine("Migrate [" + shards.size() + "] shards concurrently");
+					migratedTags = shards.get(0);
+					shardedMigration = new ShardedMigration(this, output, repo, sourceWsConnection,
+							destinationWsConnection, sandboxDirectory).setCoalescingWindow(coalescingWindow);
 				}
-				isFirstTag = false;
-				final long startTag = System.currentTimeMillis();
-				output.writeLine("Start migration of Tag [" + tag.getName() + "] [" + (tagCounter + 1) + "/"
-						+ numberOfTags + "]");
+			} else if (settings.isInProcessAccept()) {
+				output.writeLine("Use in process accept of changesets");
+				IWorkspaceManager workspaceManager = SCMPlatform.getWorkspaceManager(repo);
+				rtcMigrator.setAcceptEngine(new InProcessAcceptEngine(output, workspaceManager
+						.getWorkspaceConnection(destinationWs, getMonitor()), workspaceManager.getWorkspaceConnection(
+						sourceWs, getMonitor()), sandboxDirectory));
+			}
+			// the progress of a sharded migration covers all shards, they report their change sets concurrently
+			MigrationProgress progress = new MigrationProgress(tagList, System.currentTimeMillis());
+			if (settings.getStatusFile() != null) {
+				progress.setStatusFile(settings.getStatusFile());
+			}
+			output.writeLine(progress.getStatusLine());
+			rtcMigrator.setProgress(progress).disableLocalHistory();
+			try {
+				progress.startStatusWriter(output);
 				try {
-					rtcMigrator.migrateTag(tag);
-					tagCounter++;
-				} catch (CLIClientException e) {
-					e.printStackTrace(output.getOutputStream());
-					throw new RuntimeException(e);
+					if (shardedMigration != null) {
+						shardedMigration.setProgress(progress).start(shards);
+					}
+					if (snapshotTags != null) {
+						migrateSnapshot(rtcMigrator, snapshotTags);
+					}
+					migrateTags(rtcMigrator, migratedTags, isUpdateMigration);
+					if (shardedMigration != null) {
+						output.writeLine("Wait for the remaining shards");
+						shardDirectories = shardedMigration.await();
+					}
+				} finally {
+					progress.stopStatusWriter();
 				}
-				output.writeLine("Migration of tag [" + tag.getName() + "] [" + (tagCounter) + "/" + numberOfTags
-						+ "] took [" + (System.currentTimeMillis() - startTag) / 1000 + "] s");
+				output.writeLine(progress.getStatusLine());
+				if (continuousSync != null) {
+					continuousSync.start();
+					long newestChangeSet = continuousSync.recordCycle(start, migratedTags);
+					syncContinuously(continuousSync, client, repo, sourceWs, destinationWs, rtcMigrator,
+							settings.getStatusFile(), Math.max(lastMigratedTime, newestChangeSet));
+				}
+			} finally {
+				rtcMigrator.close();
 			}
-		} catch (Throwable t) {
-			t.printStackTrace(output.getOutputStream());
-			throw new RuntimeException(t);
 		} finally {
-			output.writeLine("Migration took [" + (System.currentTimeMillis() - start) / 1000 + "] s");
+			if (recorder != null) {
+				recorder.finish();
+			}
+		}
+	}
+
+	/**
+	 * Migrates the tags in their order, skipping the first one of an update migration if it is empty.
+	 */
+	private void migrateTags(RtcMigrator rtcMigrator, RtcTagList tagList, boolean isUpdateMigration) {
+		boolean isFirstTag = true;
+		int numberOfTags = tagList.size();
+		int tagCounter = 0;
+		for (RtcTag tag : tagList) {
+			if (isUpdateMigration && isFirstTag && tag.isEmpty()) {
+				output.writeLine("Ignore migration of tag [" + tag.toString() + "] because it is empty.");
+				tagCounter++;
+				continue;
+			}
+			isFirstTag = false;
+			final long startTag = System.currentTimeMillis();
+			output.writeLine("Start migration of Tag [" + tag.getName() + "] [" + (tagCounter + 1) + "/"
+					+ numberOfTags + "]");
+			try {
+				rtcMigrator.migrateTag(tag);
+				tagCounter++;
+			} catch (CLIClientException e) {
+				e.printStackTrace(output.getOutputStream());
+				throw new RuntimeException(e);
+			}
+			output.writeLine("Migration of tag [" + tag.getName() + "] [" + (tagCounter) + "/" + numberOfTags
+					+ "] took [" + (System.currentTimeMillis() - startTag) / 1000 + "] s");
+		}
+	}
+
+	private void migrateSnapshot(RtcMigrator rtcMigrator, RtcTagList snapshotTags) {
+		long start = System.currentTimeMillis();
+		output.writeLine("Start migration of the snapshot of [" + snapshotTags.size() + "] tags");
+		try {
+			rtcMigrator.migrateSnapshot(snapshotTags);
+		} catch (CLIClientException e) {
+			e.printStackTrace(output.getOutputStream());
+			throw new RuntimeException(e);
+		}
+		output.writeLine("Migration of the snapshot took [" + (System.currentTimeMillis() - start) / 1000 + "] s");
+	}
+
+	/**
+	 * Verifies the tags of all baselines of the source stream against the migrated states in the sandbox directory.
+	 * The baselines are listed like for a migration from scratch, but without their change sets.
+	 */
+	private void verify(MigrationSettings settings, IFilesystemRestClient client, ITeamRepository repo,
+			IWorkspace sourceWs) throws IOException, TeamRepositoryException {
+		long start = System.currentTimeMillis();
+		RtcTagList tagList = createTagListFromBaselines(client, repo, sourceWs, 0);
+		tagList.sortByCreationDate();
+		tagList.pruneExcludedTags(getBaselineIncludePattern());
+		int componentCount = SCMPlatform.getWorkspaceManager(repo).getWorkspaceConnection(sourceWs, getMonitor())
+				.getComponents().size();
+		MigratedTrees trees = openMigratedTrees(sandboxDirectory);
+		try {
+			new BaselineVerification(output, new BaselineFiles(repo), trees, componentCount,
+					settings.getVerifyThreads()).run(tagList, settings.getVerifyReport());
+		} finally {
+			trees.close();
+		}
+		output.writeLine("Verification took [" + (System.currentTimeMillis() - start) / 1000 + "] s");
+	}
+
+	/**
+	 * Runs update cycles until the sync is stopped. A cycle only discovers baselines and change sets if the last
+	 * change set of a component differs between the source stream and the destination workspace, and only compares
+	 * the snapshots of these components. The last change sets migrated are kept between the cycles, the destination
+	 * workspace is only read again after a failed cycle. A failed cycle is logged and delays the next one.
+	 */
+	private void syncContinuously(ContinuousSync sync, IFilesystemRestClient client, ITeamRepository repo,
+			IWorkspace sourceWs, IWorkspace destinationWs, RtcMigrator rtcMigrator, File statusFile,
+			long lastMigratedTime) {
+		Map<String, String> migratedChangeSets = null;
+		while (sync.awaitNextCycle()) {
+			long cycleStart = System.currentTimeMillis();
+			try {
+				if (migratedChangeSets == null) {
+					migratedChangeSets = getLastChangeSetUuids(repo, destinationWs);
+				}
+				Map<String, String> sourceChangeSets = getLastChangeSetUuids(repo, sourceWs);
+				if (sourceChangeSets.equals(migratedChangeSets)) {
+					sync.recordCycle(cycleStart, null);
+					continue;
+				}
+				Set<String> changedComponents = getChangedComponents(sourceChangeSets, migratedChangeSets);
+				migratedChangeSets = null;
+				RtcTagList tagList = discoverTags(client, repo, sourceWs, destinationWs, lastMigratedTime,
+						changedComponents, sourceChangeSets);
+				MigrationProgress progress = new MigrationProgress(tagList, cycleStart);
+				if (statusFile != null) {
+					progress.setStatusFile(statusFile);
+				}
+				rtcMigrator.setProgress(progress);
+				progress.startStatusWriter(output);
+				try {
+					migrateTags(rtcMigrator, tagList, true);
+				} finally {
+					progress.stopStatusWriter();
+				}
+				migratedChangeSets = sourceChangeSets;
+				lastMigratedTime = Math.max(lastMigratedTime, sync.recordCycle(cycleStart, tagList));
+			} catch (RuntimeException e) {
+				migratedChangeSets = null;
+				sync.recordFailure(cycleStart, e);
+			} catch (IOException e) {
+				migratedChangeSets = null;
+				sync.recordFailure(cycleStart, e);
+			}
 		}
+		output.writeLine("Sync stopped");
+	}
+
+	/**
+	 * @return the names of the components whose last change set differs, including the ones only one side has
+	 */
+	static Set<String> getChangedComponents(Map<String, String> sourceChangeSets,
+			Map<String, String> migratedChangeSets) {
+		Set<String> changed = new TreeSet<String>();
+		for (Map.Entry<String, String> entry : sourceChangeSets.entrySet()) {
+			if (!entry.getValue().equals(migratedChangeSets.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String component : migratedChangeSets.keySet()) {
+			if (!sourceChangeSets.containsKey(component)) {
+				changed.add(component);
+			}
+		}
+		return changed;
 	}
 
 	private void setStdOut() {
@@ -189,7 +613,8 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 		try {
 			subargs = c.getDeclaredField("stdout");
 			subargs.setAccessible(true);
-			subargs.set(config.getContext(), new LoggingPrintStream(config.getContext().stdout()));
+			loggingStream = new LoggingPrintStream(config.getContext().stdout());
+			subargs.set(config.getContext(), loggingStream);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -223,9 +648,50 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 		return lastChangeSets;
 	}
 
+	/**
+	 * Lists the baselines and their change sets to migrate, ordered by creation date and pruned to the included
+	 * baselines.
+	 *
+	 * @param lastMigratedTime
+	 *            the creation time of the last migrated change set of an update migration, 0 if unknown
+	 * @param changedComponents
+	 *            the names of the components whose snapshots are compared, <code>null</code> to compare all of them
+	 * @param sourceChangeSets
+	 *            the last change set of every component of the source stream, <code>null</code> if not read yet
+	 */
+	private RtcTagList discoverTags(IFilesystemRestClient client, ITeamRepository repo, IWorkspace sourceWs,
+			IWorkspace destinationWs, long lastMigratedTime, Set<String> changedComponents,
+			Map<String, String> sourceChangeSets) {
+		long listedSince = 0;
+		if (lastMigratedTime > LISTED_SINCE_MARGIN) {
+			listedSince = lastMigratedTime - LISTED_SINCE_MARGIN;
+			output.writeLine("Last migrated changeset was created at [" + new Date(lastMigratedTime)
+					+ "], only baselines created since [" + new Date(listedSince) + "] are listed");
+		}
+		output.writeLine("Create the list of baselines");
+		RtcTagList tagList = createTagListFromBaselines(client, repo, sourceWs, listedSince);
+
+		output.writeLine("Get changeset information for all baselines");
+		addChangeSetInfo(tagList, repo, sourceWs, destinationWs, changedComponents, sourceChangeSets);
+
+		tagList.printTagList(listTagsOnly);
+
+		output.writeLine("Filter included baselines...");
+
+		// Sorting is required berore pruning if migration from multiple components should be done. Otherwise tags
+		// of some code could be wrong.
+		tagList.sortByCreationDate();
+		tagList.pruneInactiveTags();
+		tagList.pruneExcludedTags(getBaselineIncludePattern());
+
+		tagList.printTagList(true);
+		return tagList;
+	}
+
 	private RtcTagList createTagListFromBaselines(IFilesystemRestClient client, ITeamRepository repo,
-			IWorkspace sourceWs) {
-		RtcTagList tagList = new RtcTagList(output);
+			IWorkspace sourceWs, long listedSince) {
+		RtcTagList tagList = new RtcTagList(output).setListedSince(listedSince);
+		PhaseTimer timer = MetricsRegistry.getInstance().start(Phase.LIST_BASELINES);
 		try {
 			IWorkspaceConnection sourceWsConnection = SCMPlatform.getWorkspaceManager(repo).getWorkspaceConnection(
 					sourceWs, getMonitor());
@@ -239,16 +705,16 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 			ParmsGetBaselines parms = new ParmsGetBaselines();
 			parms.workspaceItemId = sourceStreamHandle.getItemId().getUuidValue();
 			parms.repositoryUrl = repo.getRepositoryURI();
-			parms.max = 1000000;
 
-			GetBaselinesDTO result = null;
 			for (IComponentHandle component : componentHandles) {
 				parms.componentItemId = component.getItemId().getUuidValue();
-				result = client.getBaselines(parms, getMonitor());
-				for (Object obj : result.getBaselineHistoryEntriesInWorkspace()) {
+				for (Object obj : getBaselineEntries(client, parms, listedSince)) {
 					BaselineHistoryEntryDTO baselineEntry = (BaselineHistoryEntryDTO) obj;
 					BaselineDTO baseline = baselineEntry.getBaseline();
 					long creationDate = baseline.getCreationDate();
+					if (creationDate < listedSince) {
+						continue;
+					}
 					RtcTag tag = new RtcTag(baseline.getItemId()).setCreationDate(creationDate).setOriginalName(
 							baseline.getName());
 					tag = tagList.add(tag);
@@ -256,16 +722,54 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 			}
 			// add default tag
 			tagList.getHeadTag();
+			timer.setFileCount(tagList.size());
 		} catch (TeamRepositoryException e) {
 			e.printStackTrace(output.getOutputStream());
+		} finally {
+			timer.stop();
 		}
 		return tagList;
 	}
 
+	/**
+	 * Gets the baselines of a component, starting with a few of the most recent ones if only the baselines since a
+	 * given time are needed and getting more until the oldest one got is older than that.
+	 */
+	private List<?> getBaselineEntries(IFilesystemRestClient client, ParmsGetBaselines parms, long listedSince)
+			throws TeamRepositoryException {
+		int max = listedSince > 0 ? INCREMENTAL_BASELINES : MAX_BASELINES;
+		while (true) {
+			parms.max = max;
+			GetBaselinesDTO result = client.getBaselines(parms, getMonitor());
+			List<?> entries = result.getBaselineHistoryEntriesInWorkspace();
+			if (entries.size() < max || max >= MAX_BASELINES || reachesBefore(entries, listedSince)) {
+				return entries;
+			}
+			max = (int) Math.min(MAX_BASELINES, max * 10L);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the entries are ordered from the newest to the oldest baseline and the oldest one is
+	 *         older than the given time
+	 */
+	private static boolean reachesBefore(List<?> entries, long time) {
+		long previous = Long.MAX_VALUE;
+		for (Object obj : entries) {
+			long creationDate = ((BaselineHistoryEntryDTO) obj).getBaseline().getCreationDate();
+			if (creationDate > previous) {
+				return false;
+			}
+			previous = creationDate;
+		}
+		return previous < time;
+	}
+
 	private void addChangeSetInfo(RtcTagList tagList, ITeamRepository repo, IWorkspace sourceWs,
-			IWorkspace destinationWs) {
+			IWorkspace destinationWs, Set<String> changedComponents, Map<String, String> sourceChangeSets) {
 
 		SnapshotSyncReport syncReport;
+		PhaseTimer timer = MetricsRegistry.getInstance().start(Phase.CHANGESET_HISTORY);
 		try {
 			IWorkspaceConnection sourceWsConnection = SCMPlatform.getWorkspaceManager(repo).getWorkspaceConnection(
 					sourceWs, getMonitor());
@@ -276,7 +780,8 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 			SnapshotId destinationSnapshotId = SnapshotId.getSnapshotId(destinationWs.getItemHandle());
 
 			@SuppressWarnings("unchecked")
-			List<IComponentHandle> componentHandles = sourceWsConnection.getComponents();
+			List<IComponentHandle> componentHandles = selectComponents(repo, sourceWsConnection.getComponents(),
+					changedComponents);
 			syncReport = SnapshotSyncReport.compare(destinationSnapshotId.getSnapshot(null),
 					sourceSnapshotId.getSnapshot(null), componentHandles, getMonitor());
 			GenerateChangeLogOperation clOp = new GenerateChangeLogOperation();
@@ -302,8 +807,11 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 			output.writeLine("Get list of baselines and changesets form RTC took ["
 					+ (System.currentTimeMillis() - startTime) / 1000 + "]s.");
 			output.writeLine("Parse the list of baselines and changesets.");
-			HistoryEntryVisitor visitor = new HistoryEntryVisitor(tagList, getLastChangeSetUuids(repo, sourceWs),
-					new ChangeLogStreamOutput(config.getContext().stdout()));
+			if (sourceChangeSets == null) {
+				sourceChangeSets = getLastChangeSetUuids(repo, sourceWs);
+			}
+			HistoryEntryVisitor visitor = new HistoryEntryVisitor(tagList, sourceChangeSets,
+					new ChangeLogStreamOutput(output.getOutputStream()));
 
 			startTime = System.currentTimeMillis();
 			visitor.acceptInto(changelog);
@@ -312,7 +820,32 @@ public abstract class MigrateTo extends AbstractSubcommand implements ISubcomman
 
 		} catch (TeamRepositoryException e) {
 			e.printStackTrace(output.getOutputStream());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * @param names
+	 *            the names of the components to keep, <code>null</code> to keep all of them
+	 */
+	private List<IComponentHandle> selectComponents(ITeamRepository repo, List<IComponentHandle> componentHandles,
+			Set<String> names) throws TeamRepositoryException {
+		if (names == null) {
+			return componentHandles;
+		}
+		@SuppressWarnings("unchecked")
+		List<IComponent> components = repo.itemManager().fetchCompleteItems(componentHandles, IItemManager.DEFAULT,
+				getMonitor());
+		List<IComponentHandle> selected = new ArrayList<IComponentHandle>();
+		for (int i = 0; i < components.size(); i++) {
+			if (names.contains(components.get(i).getName())) {
+				selected.add(componentHandles.get(i));
+			}
 		}
+		output.writeLine("Compare the snapshots of [" + selected.size() + "] of [" + componentHandles.size()
+				+ "] components");
+		return selected;
 	}
 
 	static class LogTaskMonitor extends NullProgressMonitor {
@@ -17,6 +17,19 @@ public class MigrateToOptions implements IOptionSource {
 	public static final IOptionKey OPT_RTC_CONNECTION_TIMEOUT = new OptionKey("timeout");
 	public static final IOptionKey OPT_RTC_LIST_TAGS_ONLY = new OptionKey("listTagsOnly");
 	public static final IOptionKey OPT_RTC_IS_UPDATE_MIGRATION = new OptionKey("updateMigration");
+	public static final IOptionKey OPT_RTC_COALESCING_WINDOW = new OptionKey("coalescingWindow");
+	public static final IOptionKey OPT_RTC_IN_PROCESS_ACCEPT = new OptionKey("inProcessAccept");
+	public static final IOptionKey OPT_RTC_STREAM_CONTENT = new OptionKey("streamContent");
+	public static final IOptionKey OPT_METRICS_DIRECTORY = new OptionKey("metricsDirectory");
+	public static final IOptionKey OPT_RTC_OUTPUT = new OptionKey("rtcOutput");
+	public static final IOptionKey OPT_STATUS_FILE = new OptionKey("statusFile");
+	public static final IOptionKey OPT_RECORD_ARCHIVE = new OptionKey("recordArchive");
+	public static final IOptionKey OPT_RTC_SHARDS = new OptionKey("shards");
+	public static final IOptionKey OPT_RTC_SYNC_INTERVAL = new OptionKey("syncInterval");
+	public static final IOptionKey OPT_RTC_CUTOFF_BASELINE = new OptionKey("cutoffBaseline");
+	public static final IOptionKey OPT_RTC_BASELINE_COMMITS = new OptionKey("baselineCommits");
+	public static final IOptionKey OPT_RTC_VERIFY_REPORT = new OptionKey("verifyReport");
+	public static final IOptionKey OPT_RTC_VERIFY_THREADS = new OptionKey("verifyThreads");
 
 	@Override
 	public Options getOptions() throws ConflictingOptionException {
@@ -36,6 +49,48 @@ public class MigrateToOptions implements IOptionSource {
 				"List only all tags that would be migrated but do not migrate them.");
 		options.addOption(new NamedOptionDefinition(OPT_RTC_IS_UPDATE_MIGRATION, "U", "update", 0),
 				"Update the content of an already migrated workspace.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_COALESCING_WINDOW, "W", "coalescing-window", 1),
+				"Coalesce consecutive changesets of the same creator and component created within the given "
+						+ "number of seconds into one accept and commit. Default is 0 (disabled).");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_IN_PROCESS_ACCEPT, "I", "in-process-accept", 0),
+				"Accept changesets through the SCM client API using the existing RTC connection instead of running "
+						+ "a scm accept command per changeset.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_STREAM_CONTENT, "S", "stream-content", 0),
+				"Accept changesets only in the repository and stream the changed file contents directly into git "
+						+ "instead of loading them into the sandbox. The sandbox has to be loaded once before. Only the "
+						+ "git index is updated, the files of the sandbox keep their loaded state until checked out.");
+		options.addOption(new NamedOptionDefinition(OPT_METRICS_DIRECTORY, "M", "metrics-dir", 1),
+				"Directory receiving the phase metrics of the migration as metrics.json and metrics.csv at the end "
+						+ "and as Prometheus text file metrics.prom refreshed every minute.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_OUTPUT, "O", "rtc-output", 1),
+				"Where the output of the delegated scm commands goes: console (default), none or the path of a log "
+						+ "file rotated every 50MB.");
+		options.addOption(new NamedOptionDefinition(OPT_STATUS_FILE, "T", "status-file", 1),
+				"JSON file refreshed every 30 seconds with the progress, throughput and estimated end of the "
+						+ "migration.");
+		options.addOption(new NamedOptionDefinition(OPT_RECORD_ARCHIVE, "R", "record", 1),
+				"Record the initial sandbox, all changesets with their file changes and all tags into the given "
+						+ "replay archive, which can be replayed offline against a migrator later on.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_SHARDS, "N", "shards", 1),
+				"Split the baselines into the given number of shards of about the same number of changesets, migrate "
+						+ "them concurrently, each in its own temporary workspace and repository, and stitch the "
+						+ "histories together at the end. Requires --stream-content.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_SYNC_INTERVAL, "Y", "sync-interval", 1),
+				"Keep running after the update and poll the source stream every given number of seconds, migrating "
+						+ "new changesets with the same RTC session and repository until the process is stopped. "
+						+ "Requires --update.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_CUTOFF_BASELINE, "B", "cutoff-baseline", 1),
+				"Migrate the history up to the baseline of the given name as one snapshot commit of its state and "
+						+ "only the changesets of the later baselines one by one.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_BASELINE_COMMITS, "G", "baseline-commits", 0),
+				"Accept every baseline as a whole and migrate it as one commit with the comments of all its "
+						+ "changesets instead of one commit per changeset. With --stream-content every component "
+						+ "of a baseline gets its own commit.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_VERIFY_REPORT, "V", "verify", 1),
+				"Do not migrate but verify the migrated tags against their baselines by the paths, sizes and "
+						+ "executable flags of their files, and write the differences into the given report file.");
+		options.addOption(new NamedOptionDefinition(OPT_RTC_VERIFY_THREADS, "K", "verify-threads", 1),
+				"Number of tags verified at the same time by --verify, default is 8.");
 		return options;
 	}
 }
@@ -0,0 +1,27 @@
+package to.rtc.cli.migrate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The migrated states of the tags, read by several threads at once when verifying them against their baselines.
+ */
+public interface MigratedTrees extends Closeable {
+
+	/**
+	 * @param tag
+	 *            the tag to read the migrated state of
+	 * @return the files of the migrated state by their path, <code>null</code> if the tag has not been migrated
+	 */
+	Map<String, FileState> listFiles(Tag tag) throws IOException;
+
+	/**
+	 * @param path
+	 *            the path of a file of a baseline
+	 * @param file
+	 *            the state of the file in the baseline
+	 * @return <code>false</code> if the migration leaves out the file on purpose
+	 */
+	boolean isMigrated(String path, FileState file);
+}
@@ -0,0 +1,248 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Tracks the progress of the whole migration plan given by the {@link RtcTagList}. The throughput of change sets and
+ * files is kept as exponentially weighted moving average per component, based on the time spent migrating the
+ * change sets of that component. The estimated remaining time is the sum of the remaining change sets of every
+ * component divided by their throughput. The status file is rewritten on a timer, independent of the migration
+ * making progress, so a migration hanging in an accept shows an advancing timestamp with a stale last progress.
+ */
+final class MigrationProgress {
+	private static final long SMOOTHING_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	private static final long REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	private final Map<String, Throughput> components;
+	private final Throughput overall;
+	private long lastUpdateMillis;
+	private long lastReportMillis;
+	private File statusFile;
+	private Timer statusTimer;
+
+	MigrationProgress(RtcTagList tagList, long startMillis) {
+		components = new LinkedHashMap<String, Throughput>();
+		overall = new Throughput();
+		for (RtcTag tag : tagList) {
+			for (Entry<String, List<RtcChangeSet>> entry : tag.getComponentsChangeSets().entrySet()) {
+				getThroughput(entry.getKey()).total += entry.getValue().size();
+				overall.total += entry.getValue().size();
+			}
+		}
+		lastUpdateMillis = startMillis;
+		lastReportMillis = startMillis;
+	}
+
+	/**
+	 * Writes the status periodically to the given file, in addition to the console.
+	 */
+	void setStatusFile(File statusFile) {
+		this.statusFile = statusFile;
+	}
+
+	/**
+	 * Starts rewriting the status file every 30 seconds until {@link #stopStatusWriter()} is called, if there is a
+	 * status file.
+	 *
+	 * @param output
+	 *            the output failures to write the status file are reported to
+	 */
+	synchronized void startStatusWriter(final StreamOutput output) {
+		if (statusFile == null || statusTimer != null) {
+			return;
+		}
+		statusTimer = new Timer("rtc-migration-status", true);
+		statusTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					writeStatus(System.currentTimeMillis());
+				} catch (IOException e) {
+					output.writeLine("Unable to write status file (" + e.getMessage() + ")");
+				}
+			}
+		}, 0, REPORT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Stops rewriting the status file and writes the final status.
+	 */
+	void stopStatusWriter() throws IOException {
+		synchronized (this) {
+			if (statusTimer != null) {
+				statusTimer.cancel();
+				statusTimer = null;
+			}
+		}
+		writeStatus(System.currentTimeMillis());
+	}
+
+	/**
+	 * Records the migration of change sets of one component.
+	 *
+	 * @return <code>true</code> if a new status report is due
+	 */
+	synchronized boolean migrated(String component, int changeSets, long files, long nowMillis) {
+		long elapsedMillis = nowMillis - lastUpdateMillis;
+		lastUpdateMillis = nowMillis;
+		getThroughput(component).update(changeSets, files, elapsedMillis);
+		overall.update(changeSets, files, elapsedMillis);
+		if (nowMillis - lastReportMillis >= REPORT_INTERVAL_MILLIS) {
+			lastReportMillis = nowMillis;
+			return true;
+		}
+		return false;
+	}
+
+	synchronized double getPercentComplete() {
+		return overall.total == 0 ? 100 : Math.min(100, 100d * overall.done / overall.total);
+	}
+
+	/**
+	 * Returns the estimated remaining time in milliseconds or <code>-1</code> while there is no throughput known.
+	 */
+	synchronized long getRemainingMillis() {
+		double remainingSeconds = 0;
+		for (Throughput throughput : components.values()) {
+			long remaining = Math.max(0, throughput.total - throughput.done);
+			if (remaining == 0) {
+				continue;
+			}
+			double rate = throughput.changeSetRate > 0 ? throughput.changeSetRate : overall.changeSetRate;
+			if (rate <= 0) {
+				return -1;
+			}
+			remainingSeconds += remaining / rate;
+		}
+		return (long) (remainingSeconds * 1000);
+	}
+
+	synchronized String getStatusLine() {
+		long remainingMillis = getRemainingMillis();
+		return String.format(Locale.ROOT, "Progress %.2f%% [%d/%d] changesets, %.2f changesets/s, %.2f files/s, ETA %s",
+				getPercentComplete(), overall.done, overall.total, overall.changeSetRate, overall.fileRate,
+				remainingMillis < 0 ? "unknown" : formatDuration(remainingMillis));
+	}
+
+	/**
+	 * Writes the status to the status file, if there is one.
+	 */
+	synchronized void writeStatus(long nowMillis) throws IOException {
+		if (statusFile != null) {
+			Files.replaceLines(statusFile, toJson(nowMillis), Charset.forName("UTF-8"));
+		}
+	}
+
+	synchronized List<String> toJson(long nowMillis) {
+		long remainingMillis = getRemainingMillis();
+		List<String> lines = new ArrayList<String>();
+		lines.add("{");
+		lines.add("  \"timestamp\": \"" + formatTimestamp(nowMillis) + "\",");
+		lines.add("  \"last_progress\": \"" + formatTimestamp(lastUpdateMillis) + "\",");
+		lines.add("  \"percent_complete\": " + format(getPercentComplete()) + ",");
+		lines.add("  \"changesets_done\": " + overall.done + ",");
+		lines.add("  \"changesets_total\": " + overall.total + ",");
+		lines.add("  \"files_done\": " + overall.files + ",");
+		lines.add("  \"changesets_per_second\": " + format(overall.changeSetRate) + ",");
+		lines.add("  \"files_per_second\": " + format(overall.fileRate) + ",");
+		lines.add("  \"eta_seconds\": " + (remainingMillis < 0 ? "null" : String.valueOf(remainingMillis / 1000))
+				+ ",");
+		lines.add("  \"eta\": " + (remainingMillis < 0 ? "null" : "\""
+				+ formatTimestamp(nowMillis + remainingMillis) + "\"") + ",");
+		lines.add("  \"components\": {");
+		int count = 0;
+		for (Entry<String, Throughput> entry : components.entrySet()) {
+			Throughput throughput = entry.getValue();
+			lines.add("    \"" + escape(entry.getKey()) + "\": {\"changesets_done\": " + throughput.done
+					+ ", \"changesets_total\": " + throughput.total + ", \"changesets_per_second\": "
+					+ format(throughput.changeSetRate) + ", \"files_per_second\": " + format(throughput.fileRate)
+					+ (++count < components.size() ? "}," : "}"));
+		}
+		lines.add("  }");
+		lines.add("}");
+		return lines;
+	}
+
+	private Throughput getThroughput(String component) {
+		Throughput throughput = components.get(component);
+		if (throughput == null) {
+			throughput = new Throughput();
+			components.put(component, throughput);
+		}
+		return throughput;
+	}
+
+	static String formatDuration(long millis) {
+		long minutes = TimeUnit.MILLISECONDS.toMinutes(millis);
+		long days = minutes / (24 * 60);
+		long hours = minutes / 60 % 24;
+		return (days > 0 ? days + "d " : "") + (days > 0 || hours > 0 ? hours + "h " : "") + minutes % 60 + "m";
+	}
+
+	/**
+	 * Formats the time as ISO-8601 local date and time with the offset of the default time zone, like
+	 * <code>2016-05-04T13:14:15+02:00</code>.
+	 */
+	static String formatTimestamp(long millis) {
+		int offsetMinutes = TimeZone.getDefault().getOffset(millis) / 60000;
+		return String.format(Locale.ROOT, "%1$tFT%1$tT%2$s%3$02d:%4$02d", new Date(millis), offsetMinutes < 0 ? "-"
+				: "+", Math.abs(offsetMinutes) / 60, Math.abs(offsetMinutes) % 60);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static final class Throughput {
+		private long total;
+		private long done;
+		private long files;
+		private double changeSetRate;
+		private double fileRate;
+		private int pendingChangeSets;
+		private long pendingFiles;
+
+		void update(int changeSets, long fileCount, long elapsedMillis) {
+			done += changeSets;
+			files += fileCount;
+			pendingChangeSets += changeSets;
+			pendingFiles += fileCount;
+			if (elapsedMillis <= 0) {
+				// no time measured, account the numbers to the next update
+				return;
+			}
+			double seconds = elapsedMillis / 1000d;
+			double changeSetSample = pendingChangeSets / seconds;
+			double fileSample = pendingFiles / seconds;
+			if (changeSetRate == 0 && fileRate == 0) {
+				changeSetRate = changeSetSample;
+				fileRate = fileSample;
+			} else {
+				double alpha = 1 - Math.exp(-(double) elapsedMillis / SMOOTHING_MILLIS);
+				changeSetRate += alpha * (changeSetSample - changeSetRate);
+				fileRate += alpha * (fileSample - fileRate);
+			}
+			pendingChangeSets = 0;
+			pendingFiles = 0;
+		}
+	}
+}
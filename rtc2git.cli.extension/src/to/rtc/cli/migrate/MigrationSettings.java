@@ -0,0 +1,176 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+
+/**
+ * The settings of one migration of a source workspace into a sandbox directory, as given on the command line of a
+ * single migration or by an entry of a batch manifest.
+ */
+public final class MigrationSettings {
+	private File sandboxDirectory;
+	private boolean listTagsOnly;
+	private boolean updateMigration;
+	private long coalescingWindow;
+	private int shardCount = 1;
+	private long syncInterval;
+	private boolean streamContent;
+	private boolean inProcessAccept;
+	private File recordArchive;
+	private File statusFile;
+	private String cutoffBaseline;
+	private boolean baselineCommits;
+	private File verifyReport;
+	private int verifyThreads = 8;
+
+	public File getSandboxDirectory() {
+		return sandboxDirectory;
+	}
+
+	public MigrationSettings setSandboxDirectory(File sandboxDirectory) {
+		this.sandboxDirectory = sandboxDirectory;
+		return this;
+	}
+
+	public boolean isListTagsOnly() {
+		return listTagsOnly;
+	}
+
+	public MigrationSettings setListTagsOnly(boolean listTagsOnly) {
+		this.listTagsOnly = listTagsOnly;
+		return this;
+	}
+
+	public boolean isUpdateMigration() {
+		return updateMigration;
+	}
+
+	public MigrationSettings setUpdateMigration(boolean updateMigration) {
+		this.updateMigration = updateMigration;
+		return this;
+	}
+
+	/**
+	 * @return the window in milliseconds within which change sets of the same author are coalesced, 0 if disabled
+	 */
+	public long getCoalescingWindow() {
+		return coalescingWindow;
+	}
+
+	public MigrationSettings setCoalescingWindow(long windowMillis) {
+		this.coalescingWindow = windowMillis;
+		return this;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	public MigrationSettings setShardCount(int shardCount) {
+		this.shardCount = shardCount;
+		return this;
+	}
+
+	/**
+	 * @return the interval in milliseconds between the cycles of a continuous sync, 0 if the migration stops after
+	 *         the first run
+	 */
+	public long getSyncInterval() {
+		return syncInterval;
+	}
+
+	public MigrationSettings setSyncInterval(long intervalMillis) {
+		this.syncInterval = intervalMillis;
+		return this;
+	}
+
+	public boolean isStreamContent() {
+		return streamContent;
+	}
+
+	public MigrationSettings setStreamContent(boolean streamContent) {
+		this.streamContent = streamContent;
+		return this;
+	}
+
+	public boolean isInProcessAccept() {
+		return inProcessAccept;
+	}
+
+	public MigrationSettings setInProcessAccept(boolean inProcessAccept) {
+		this.inProcessAccept = inProcessAccept;
+		return this;
+	}
+
+	/**
+	 * @return the archive the migration is recorded to, <code>null</code> if not recorded
+	 */
+	public File getRecordArchive() {
+		return recordArchive;
+	}
+
+	public MigrationSettings setRecordArchive(File recordArchive) {
+		this.recordArchive = recordArchive;
+		return this;
+	}
+
+	/**
+	 * @return the file the progress is written to, <code>null</code> if only written to the console
+	 */
+	public File getStatusFile() {
+		return statusFile;
+	}
+
+	public MigrationSettings setStatusFile(File statusFile) {
+		this.statusFile = statusFile;
+		return this;
+	}
+
+	/**
+	 * @return the baseline the history up to is migrated as one snapshot commit, <code>null</code> to migrate the
+	 *         whole history change set by change set
+	 */
+	public String getCutoffBaseline() {
+		return cutoffBaseline;
+	}
+
+	public MigrationSettings setCutoffBaseline(String cutoffBaseline) {
+		this.cutoffBaseline = cutoffBaseline;
+		return this;
+	}
+
+	/**
+	 * @return <code>true</code> if every baseline is migrated as one commit instead of one commit per change set
+	 */
+	public boolean isBaselineCommits() {
+		return baselineCommits;
+	}
+
+	public MigrationSettings setBaselineCommits(boolean baselineCommits) {
+		this.baselineCommits = baselineCommits;
+		return this;
+	}
+
+	/**
+	 * @return the report file of the verification of the migrated tags, <code>null</code> to migrate instead
+	 */
+	public File getVerifyReport() {
+		return verifyReport;
+	}
+
+	public MigrationSettings setVerifyReport(File verifyReport) {
+		this.verifyReport = verifyReport;
+		return this;
+	}
+
+	/**
+	 * @return the number of tags verified at the same time
+	 */
+	public int getVerifyThreads() {
+		return verifyThreads;
+	}
+
+	public MigrationSettings setVerifyThreads(int verifyThreads) {
+		this.verifyThreads = verifyThreads;
+		return this;
+	}
+}
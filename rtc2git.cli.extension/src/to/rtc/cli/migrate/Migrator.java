@@ -23,7 +23,12 @@ public interface Migrator {
 
 	void createTag(Tag tag);
 
-	void commitChanges(ChangeSet changeSet);
+	/**
+	 * Commits the state of the sandbox as the given change set.
+	 *
+	 * @return the number of files added, modified or removed by the commit
+	 */
+	int commitChanges(ChangeSet changeSet);
 
 	void intermediateCleanup();
 
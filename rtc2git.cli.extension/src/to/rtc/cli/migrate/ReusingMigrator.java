@@ -0,0 +1,30 @@
+package to.rtc.cli.migrate;
+
+/**
+ * A {@link StreamingMigrator} being able to continue on the commits an earlier migration of the same change sets has
+ * created already, for instance of another stream sharing the history. A change set is reused as long as its existing
+ * commit directly follows the current one. A commit of coalesced change sets is only reused once all of them have
+ * been seen, until then the reuse is pending.
+ */
+public interface ReusingMigrator extends StreamingMigrator {
+
+	/**
+	 * Continues on the existing commit of the given change set instead of committing it again.
+	 *
+	 * @param changeSet
+	 *            the change set to be migrated next
+	 * @return <code>true</code> if the change set is part of the commit following the current one,
+	 *         <code>false</code> if it has to be committed
+	 */
+	boolean reuse(ChangeSet changeSet);
+
+	/**
+	 * @return <code>true</code> if the reused change sets do not yet complete the commit they are part of
+	 */
+	boolean isReusePending();
+
+	/**
+	 * Forgets the pending reuse, the change sets reused since the last completed commit have to be committed instead.
+	 */
+	void abandonReuse();
+}
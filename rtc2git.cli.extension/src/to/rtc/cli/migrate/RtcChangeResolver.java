@@ -0,0 +1,356 @@
+package to.rtc.cli.migrate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.ibm.team.filesystem.client.FileSystemCore;
+import com.ibm.team.filesystem.client.IFileContentManager;
+import com.ibm.team.filesystem.common.IFileContent;
+import com.ibm.team.filesystem.common.IFileItem;
+import com.ibm.team.filesystem.common.IFileItemHandle;
+import com.ibm.team.repository.client.IItemManager;
+import com.ibm.team.repository.client.ITeamRepository;
+import com.ibm.team.repository.common.IItemHandle;
+import com.ibm.team.repository.common.TeamRepositoryException;
+import com.ibm.team.repository.common.UUID;
+import com.ibm.team.scm.client.IConfiguration;
+import com.ibm.team.scm.client.IVersionableManager;
+import com.ibm.team.scm.client.IWorkspaceConnection;
+import com.ibm.team.scm.client.SCMPlatform;
+import com.ibm.team.scm.common.IChange;
+import com.ibm.team.scm.common.IChangeSet;
+import com.ibm.team.scm.common.IComponentHandle;
+import com.ibm.team.scm.common.IFolder;
+import com.ibm.team.scm.common.IFolderHandle;
+import com.ibm.team.scm.common.IVersionable;
+import com.ibm.team.scm.common.IVersionableHandle;
+
+/**
+ * Translates the changes of accepted change sets into {@link FileChange}s without a sandbox. The paths of all items
+ * of a component are kept in an index that is read once from the destination workspace and then updated with every
+ * resolved change set. File contents are only streamed from the repository when they are written to git.
+ */
+final class RtcChangeResolver {
+	private static final String SEPARATOR = "/";
+	private static final int SNAPSHOT_BATCH_SIZE = 512;
+
+	private final IItemManager itemManager;
+	private final IVersionableManager versionableManager;
+	private final IFileContentManager contentManager;
+	private final IWorkspaceConnection workspace;
+	private final IProgressMonitor monitor;
+	private final Map<String, Map<String, Item>> componentIndexes;
+	private final Map<String, IChangeSet> preparedChangeSets;
+
+	RtcChangeResolver(ITeamRepository repo, IWorkspaceConnection workspace) {
+		this.itemManager = repo.itemManager();
+		this.versionableManager = SCMPlatform.getWorkspaceManager(repo).versionableManager();
+		this.contentManager = FileSystemCore.getContentManager(repo);
+		this.workspace = workspace;
+		this.monitor = new NullProgressMonitor();
+		this.componentIndexes = new HashMap<String, Map<String, Item>>();
+		this.preparedChangeSets = new HashMap<String, IChangeSet>();
+	}
+
+	/**
+	 * Fetches the change sets of the group and indexes their components while the workspace still holds the state
+	 * before the accept.
+	 */
+	void prepare(List<RtcChangeSet> group) {
+		List<IItemHandle> handles = new ArrayList<IItemHandle>(group.size());
+		for (RtcChangeSet changeSet : group) {
+			handles.add(IChangeSet.ITEM_TYPE.createItemHandle(UUID.valueOf(changeSet.getUuid()), null));
+		}
+		try {
+			List<?> changeSets = itemManager.fetchCompleteItems(handles, IItemManager.DEFAULT, monitor);
+			for (int i = 0; i < group.size(); i++) {
+				IChangeSet changeSet = (IChangeSet) changeSets.get(i);
+				getIndex(changeSet.getComponent());
+				preparedChangeSets.put(group.get(i).getUuid(), changeSet);
+			}
+		} catch (TeamRepositoryException e) {
+			throw new RuntimeException("Unable to fetch changesets " + handles.size(), e);
+		}
+	}
+
+	/**
+	 * Returns the file changes of the already accepted and prepared group in the order they have to be applied.
+	 */
+	List<FileChange> resolve(List<RtcChangeSet> group) {
+		List<FileChange> fileChanges = new ArrayList<FileChange>();
+		try {
+			for (RtcChangeSet rtcChangeSet : group) {
+				IChangeSet changeSet = preparedChangeSets.remove(rtcChangeSet.getUuid());
+				if (changeSet == null) {
+					throw new IllegalStateException("Changeset [" + rtcChangeSet.getUuid() + "] was not prepared");
+				}
+				resolve(changeSet, fileChanges);
+			}
+		} catch (TeamRepositoryException e) {
+			throw new RuntimeException("Unable to resolve changes of " + group.size() + " changesets", e);
+		}
+		return fileChanges;
+	}
+
+	/**
+	 * Forgets the indexed paths after change sets have been accepted without being resolved, so they are read from
+	 * the destination workspace again when needed.
+	 */
+	void invalidate() {
+		componentIndexes.clear();
+	}
+
+	/**
+	 * Returns the puts of all files of all components in the workspace, being the complete state of the workspace
+	 * before any further change set is accepted.
+	 */
+	List<FileChange> snapshot() {
+		List<FileChange> puts = new ArrayList<FileChange>();
+		try {
+			for (Object component : workspace.getComponents()) {
+				IConfiguration configuration = workspace.configuration((IComponentHandle) component);
+				List<String> paths = new ArrayList<String>();
+				List<IVersionableHandle> files = new ArrayList<IVersionableHandle>();
+				addFiles(configuration, "", configuration.childEntriesForRoot(monitor), paths, files);
+				for (int start = 0; start < files.size(); start += SNAPSHOT_BATCH_SIZE) {
+					int end = Math.min(files.size(), start + SNAPSHOT_BATCH_SIZE);
+					List<?> items = configuration.fetchCompleteItems(files.subList(start, end), monitor);
+					for (int i = 0; i < items.size(); i++) {
+						if (items.get(i) instanceof IFileItem) {
+							puts.add(FileChange.put(paths.get(start + i), new RepositoryFileContent(
+									(IFileItem) items.get(i))));
+						}
+					}
+				}
+			}
+		} catch (TeamRepositoryException e) {
+			throw new RuntimeException("Unable to read the snapshot of " + workspace.getName(), e);
+		}
+		return puts;
+	}
+
+	/**
+	 * Returns the paths of all files of all components in the workspace, without fetching the files.
+	 */
+	Set<String> listFiles() {
+		Set<String> files = new HashSet<String>();
+		try {
+			for (Object component : workspace.getComponents()) {
+				IConfiguration configuration = workspace.configuration((IComponentHandle) component);
+				List<String> paths = new ArrayList<String>();
+				addFiles(configuration, "", configuration.childEntriesForRoot(monitor), paths,
+						new ArrayList<IVersionableHandle>());
+				files.addAll(paths);
+			}
+		} catch (TeamRepositoryException e) {
+			throw new RuntimeException("Unable to list the files of " + workspace.getName(), e);
+		}
+		return files;
+	}
+
+	private void addFiles(IConfiguration configuration, String parentPath, Map<?, ?> children, List<String> paths,
+			List<IVersionableHandle> files) throws TeamRepositoryException {
+		for (Map.Entry<?, ?> child : children.entrySet()) {
+			IVersionableHandle handle = (IVersionableHandle) child.getValue();
+			String path = parentPath.isEmpty() ? (String) child.getKey() : parentPath + SEPARATOR + child.getKey();
+			if (handle instanceof IFolderHandle) {
+				addFiles(configuration, path, configuration.childEntries((IFolderHandle) handle, monitor), paths,
+						files);
+			} else if (handle instanceof IFileItemHandle) {
+				paths.add(path);
+				files.add(handle);
+			}
+		}
+	}
+
+	private void resolve(IChangeSet changeSet, List<FileChange> fileChanges) throws TeamRepositoryException {
+		Map<String, Item> index = getIndex(changeSet.getComponent());
+		List<?> changes = changeSet.changes();
+		List<IVersionableHandle> afterStates = new ArrayList<IVersionableHandle>();
+		for (Object change : changes) {
+			IVersionableHandle afterState = ((IChange) change).afterState();
+			if (afterState != null) {
+				afterStates.add(afterState);
+			}
+		}
+		Map<String, IVersionable> versionables = new HashMap<String, IVersionable>();
+		if (!afterStates.isEmpty()) {
+			for (Object state : versionableManager.fetchCompleteStates(afterStates, monitor)) {
+				if (state != null) {
+					IVersionable versionable = (IVersionable) state;
+					versionables.put(versionable.getItemId().getUuidValue(), versionable);
+				}
+			}
+		}
+
+		Map<String, String> previousPaths = new HashMap<String, String>();
+		for (Object change : changes) {
+			String itemId = ((IChange) change).item().getItemId().getUuidValue();
+			previousPaths.put(itemId, getPath(index, itemId));
+		}
+		for (Object change : changes) {
+			IChange iChange = (IChange) change;
+			String itemId = iChange.item().getItemId().getUuidValue();
+			if ((iChange.kind() & IChange.DELETE) != 0) {
+				index.remove(itemId);
+			} else {
+				IVersionable versionable = versionables.get(itemId);
+				if (versionable != null) {
+					index.put(itemId, new Item(getItemId(versionable.getParent()), versionable.getName()));
+				}
+			}
+		}
+
+		List<FileChange> deletes = new ArrayList<FileChange>();
+		List<FileChange> folderDeletes = new ArrayList<FileChange>();
+		List<FileChange> moves = new ArrayList<FileChange>();
+		List<FileChange> puts = new ArrayList<FileChange>();
+		for (Object change : changes) {
+			IChange iChange = (IChange) change;
+			String itemId = iChange.item().getItemId().getUuidValue();
+			String previousPath = previousPaths.get(itemId);
+			int kind = iChange.kind();
+			if ((kind & IChange.DELETE) != 0) {
+				if (previousPath != null) {
+					boolean folder = iChange.item() instanceof IFolderHandle;
+					(folder ? folderDeletes : deletes).add(FileChange.delete(previousPath, folder));
+				}
+				continue;
+			}
+			IVersionable versionable = versionables.get(itemId);
+			String path = getPath(index, itemId);
+			if (versionable == null || path == null) {
+				continue;
+			}
+			boolean folder = versionable instanceof IFolder;
+			if (previousPath != null && !previousPath.equals(path)) {
+				moves.add(FileChange.move(previousPath, path, folder));
+			}
+			boolean added = (kind & IChange.ADD) != 0 || previousPath == null;
+			if (versionable instanceof IFileItem && (added || (kind & IChange.MODIFY) != 0)) {
+				puts.add(FileChange.put(path, new RepositoryFileContent((IFileItem) versionable)));
+			}
+		}
+		// move children out of renamed folders before moving the folders themselves
+		Collections.sort(moves, new Comparator<FileChange>() {
+			@Override
+			public int compare(FileChange first, FileChange second) {
+				return depth(second.getPreviousPath()) - depth(first.getPreviousPath());
+			}
+		});
+		fileChanges.addAll(deletes);
+		fileChanges.addAll(moves);
+		fileChanges.addAll(folderDeletes);
+		fileChanges.addAll(puts);
+	}
+
+	private Map<String, Item> getIndex(IComponentHandle component) throws TeamRepositoryException {
+		String componentId = component.getItemId().getUuidValue();
+		Map<String, Item> index = componentIndexes.get(componentId);
+		if (index == null) {
+			index = new HashMap<String, Item>();
+			IConfiguration configuration = workspace.configuration(component);
+			String rootId = configuration.rootFolderHandle(monitor).getItemId().getUuidValue();
+			index.put(rootId, new Item(null, ""));
+			addChildren(index, configuration, rootId, configuration.childEntriesForRoot(monitor));
+			componentIndexes.put(componentId, index);
+		}
+		return index;
+	}
+
+	private void addChildren(Map<String, Item> index, IConfiguration configuration, String parentId,
+			Map<?, ?> children) throws TeamRepositoryException {
+		for (Map.Entry<?, ?> child : children.entrySet()) {
+			IVersionableHandle handle = (IVersionableHandle) child.getValue();
+			String itemId = handle.getItemId().getUuidValue();
+			index.put(itemId, new Item(parentId, (String) child.getKey()));
+			if (handle instanceof IFolderHandle) {
+				addChildren(index, configuration, itemId, configuration.childEntries((IFolderHandle) handle, monitor));
+			}
+		}
+	}
+
+	/**
+	 * Returns the path of the item relative to the component root or <code>null</code> if the item or one of its
+	 * parents is not known.
+	 */
+	private static String getPath(Map<String, Item> index, String itemId) {
+		Item item = index.get(itemId);
+		if (item == null) {
+			return null;
+		}
+		if (item.parentId == null) {
+			return "";
+		}
+		String parentPath = getPath(index, item.parentId);
+		if (parentPath == null) {
+			return null;
+		}
+		return parentPath.isEmpty() ? item.name : parentPath + SEPARATOR + item.name;
+	}
+
+	private static String getItemId(IItemHandle handle) {
+		return handle == null ? null : handle.getItemId().getUuidValue();
+	}
+
+	private static int depth(String path) {
+		int depth = 0;
+		for (int i = path.indexOf(SEPARATOR); i >= 0; i = path.indexOf(SEPARATOR, i + 1)) {
+			depth++;
+		}
+		return depth;
+	}
+
+	private static final class Item {
+		private final String parentId;
+		private final String name;
+
+		Item(String parentId, String name) {
+			this.parentId = parentId;
+			this.name = name;
+		}
+	}
+
+	private final class RepositoryFileContent implements FileContent {
+		private final IFileItem fileItem;
+
+		RepositoryFileContent(IFileItem fileItem) {
+			this.fileItem = fileItem;
+		}
+
+		@Override
+		public long getSize() {
+			IFileContent content = fileItem.getContent();
+			return content == null ? 0 : content.getSize();
+		}
+
+		@Override
+		public boolean isExecutable() {
+			return fileItem.isExecutable();
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			IFileContent content = fileItem.getContent();
+			if (content == null) {
+				return;
+			}
+			try {
+				contentManager.retrieveContent(fileItem, content, out, monitor);
+			} catch (TeamRepositoryException e) {
+				throw new IOException("Unable to retrieve content of [" + fileItem.getName() + "]", e);
+			}
+		}
+	}
+}
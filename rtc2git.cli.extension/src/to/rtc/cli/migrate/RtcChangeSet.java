@@ -1,6 +1,7 @@
 package to.rtc.cli.migrate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -55,7 +56,13 @@ final class RtcChangeSet implements ChangeSet {
 		return uuid;
 	}
 
-	String getComponent() {
+	@Override
+	public List<String> getUuids() {
+		return Collections.singletonList(uuid);
+	}
+
+	@Override
+	public String getComponent() {
 		return component;
 	}
 
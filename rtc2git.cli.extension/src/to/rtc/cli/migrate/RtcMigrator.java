@@ -1,18 +1,30 @@
 package to.rtc.cli.migrate;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import to.rtc.cli.migrate.command.AcceptCommandDelegate;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import to.rtc.cli.migrate.command.AcceptEngine;
+import to.rtc.cli.migrate.command.AcceptResult;
+import to.rtc.cli.migrate.command.CliAcceptEngine;
 import to.rtc.cli.migrate.command.LoadCommandDelegate;
-import to.rtc.cli.migrate.util.Files;
+import to.rtc.cli.migrate.metrics.Counter;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.Phase;
+import to.rtc.cli.migrate.metrics.PhaseTimer;
+import to.rtc.cli.migrate.util.BackgroundDeleter;
 
-import com.ibm.team.filesystem.cli.core.Constants;
 import com.ibm.team.filesystem.cli.core.subcommands.IScmClientConfiguration;
 import com.ibm.team.filesystem.rcp.core.internal.changelog.IChangeLogOutput;
 import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
@@ -23,12 +35,29 @@ public class RtcMigrator {
     *
     */
 	private static final int ACCEPTS_BEFORE_LOCAL_HISTORY_CLEAN = 1000;
+	private static final String LOCAL_HISTORY_PATH = ".metadata/.plugins/org.eclipse.core.resources/.history";
+	/**
+	 * Upper limit of change sets accepted within one single accept call while coalescing
+	 */
+	static final int MAX_COALESCED_CHANGESETS = 100;
+	/**
+	 * Upper limit of change sets accepted within one single accept call while bringing the workspace to a snapshot
+	 */
+	static final int MAX_SNAPSHOT_CHANGESETS = 1000;
 	protected final IChangeLogOutput output;
 	private final IScmClientConfiguration config;
 	private final String workspace;
 	private final Migrator migrator;
 	private final Set<String> initiallyLoadedComponents;
 	private File sandboxDirectory;
+	private AcceptEngine acceptEngine;
+	private RtcChangeResolver changeResolver;
+	private MigrationProgress progress;
+	private long coalescingWindow;
+	private boolean baselineCommits;
+	private int acceptsSinceLocalHistoryClean;
+	private final BackgroundDeleter historyDeleter;
+	private final MetricsRegistry metrics;
 
 	public RtcMigrator(IChangeLogOutput output, IScmClientConfiguration config, String workspace, Migrator migrator,
 			File sandboxDirectory, Collection<String> initiallyLoadedComponents, boolean isUpdateMigration) {
@@ -38,37 +67,200 @@ public class RtcMigrator {
 		this.migrator = migrator;
 		this.sandboxDirectory = sandboxDirectory;
 		this.initiallyLoadedComponents = new HashSet<String>(initiallyLoadedComponents);
+		this.acceptEngine = new CliAcceptEngine(config, output, workspace);
+		this.coalescingWindow = 0;
+		this.acceptsSinceLocalHistoryClean = 0;
+		this.historyDeleter = new BackgroundDeleter(Math.min(4, Runtime.getRuntime().availableProcessors()));
+		this.metrics = MetricsRegistry.getInstance();
+	}
+
+	/**
+	 * Replaces the default accept engine running a <code>scm accept</code> command per accept.
+	 *
+	 * @param acceptEngine
+	 *            the engine used for all accepts of change sets
+	 * @return this migrator
+	 */
+	public RtcMigrator setAcceptEngine(AcceptEngine acceptEngine) {
+		this.acceptEngine = acceptEngine;
+		return this;
+	}
+
+	/**
+	 * Enables the streaming of the change set contents directly from the repository into the migrator. The accept
+	 * engine must then only update the destination workspace in the repository, the sandbox is not loaded anymore and
+	 * its files stay in the state they were loaded with. Every accept not ending cleanly fails the migration.
+	 *
+	 * @param changeResolver
+	 *            the resolver translating the accepted changes into file changes
+	 * @return this migrator
+	 */
+	RtcMigrator setChangeResolver(RtcChangeResolver changeResolver) {
+		if (!(migrator instanceof StreamingMigrator)) {
+			throw new IllegalArgumentException("The migrator does not support streaming of contents");
+		}
+		this.changeResolver = changeResolver;
+		return this;
+	}
+
+	/**
+	 * Reports the progress of the whole migration after every migrated group of change sets.
+	 *
+	 * @param progress
+	 *            the progress of the migration plan
+	 * @return this migrator
+	 */
+	RtcMigrator setProgress(MigrationProgress progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	/**
+	 * Enables the coalescing of consecutive change sets of the same creator and component into one accept and commit,
+	 * as long as they have been created within the given time window. A window of zero or less disables coalescing.
+	 *
+	 * @param windowMillis
+	 *            the maximum time in milliseconds between the first and the last change set of a group
+	 * @return this migrator
+	 */
+	public RtcMigrator setCoalescingWindow(long windowMillis) {
+		this.coalescingWindow = windowMillis;
+		return this;
+	}
+
+	/**
+	 * Migrates every tag as accept of its baselines and one commit with the comments of all its change sets, instead
+	 * of accepting and committing change set by change set. When streaming, every component gets its own commit, as
+	 * an RTC baseline is one of a single component.
+	 *
+	 * @param baselineCommits
+	 *            <code>true</code> to commit per baseline
+	 * @return this migrator
+	 */
+	public RtcMigrator setBaselineCommits(boolean baselineCommits) {
+		this.baselineCommits = baselineCommits;
+		return this;
 	}
 
 	public void migrateTag(RtcTag tag) throws CLIClientException {
+		if (baselineCommits) {
+			migrateBaseline(tag);
+			return;
+		}
 		List<RtcChangeSet> changeSets = tag.getOrderedChangeSets();
 		int changeSetCounter = 0;
 		int numberOfChangesets = changeSets.size();
 		String tagName = tag.getName();
-		for (RtcChangeSet changeSet : changeSets) {
-			try {
-				long acceptDuration = accept(changeSet);
-				long commitDuration = commit(changeSet);
-				changeSetCounter++;
-				output.writeLine("Migrated [" + tagName + "] [" + changeSetCounter + "]/[" + numberOfChangesets
-						+ "] changesets. Accept took " + acceptDuration + "ms commit took " + commitDuration + "ms");
-				if (migrator.needsIntermediateCleanup()) {
-					intermediateCleanup();
-				}
-				if (changeSetCounter % ACCEPTS_BEFORE_LOCAL_HISTORY_CLEAN == 0) {
-					cleanLocalHistory();
+		ReusingMigrator reuser = getReuser();
+		List<List<RtcChangeSet>> reusedGroups = new ArrayList<List<RtcChangeSet>>();
+		for (List<RtcChangeSet> group : groupChangeSets(changeSets)) {
+			if (reuser != null) {
+				if (reuser.reuse(toChangeSet(group))) {
+					reusedGroups.add(group);
+					if (!reuser.isReusePending()) {
+						changeSetCounter += acceptReused(tag, reusedGroups, changeSetCounter, numberOfChangesets);
+						reusedGroups.clear();
+					}
+					continue;
 				}
+				changeSetCounter += migrateAbandoned(tag, reuser, reusedGroups, changeSetCounter, numberOfChangesets);
+			}
+			changeSetCounter += migrateGroup(tag, group, changeSetCounter, numberOfChangesets);
+		}
+		if (reuser != null) {
+			migrateAbandoned(tag, reuser, reusedGroups, changeSetCounter, numberOfChangesets);
+		}
+		cleanLocalHistory();
+		if (tag.doCreateTag()) {
+			migrator.createTag(tag);
+		}
+	}
+
+	/**
+	 * Brings the destination workspace to the state of the last of the given tags by accepting all their change sets
+	 * in a few large accepts, and commits that state as one snapshot commit instead of one commit per change set.
+	 * The snapshot is tagged like the last tag and indexed as the commit of all its change sets.
+	 *
+	 * @param tags
+	 *            the tags up to the cutoff baseline, in the order of the migration
+	 */
+	public void migrateSnapshot(RtcTagList tags) throws CLIClientException {
+		RtcTag cutoff = null;
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		for (RtcTag tag : tags) {
+			cutoff = tag;
+			changeSets.addAll(tag.getOrderedChangeSets());
+		}
+		if (cutoff == null) {
+			return;
+		}
+		Set<String> filesBefore = changeResolver == null ? null : changeResolver.listFiles();
+		long startAccept = System.currentTimeMillis();
+		List<String> uuids = new ArrayList<String>(changeSets.size());
+		long newestChangeSet = 0;
+		for (int i = 0; i < changeSets.size(); i += MAX_SNAPSHOT_CHANGESETS) {
+			List<RtcChangeSet> chunk = changeSets.subList(i, Math.min(changeSets.size(), i + MAX_SNAPSHOT_CHANGESETS));
+			try {
+				acceptAndLoadChangeSets(chunk);
 			} catch (CLIClientException clie) {
-				output.writeLine("Changeset details:");
-				output.writeLine("  Tag original name       : " + tag.getOriginalName());
-				output.writeLine("  Tag creation date       : " + new Date(tag.getCreationDate()));
-				output.writeLine("  Changeset comment       : " + changeSet.getComment());
-				output.writeLine("  Changeset creator       : " + changeSet.getCreatorName());
-				output.writeLine("  Changeset creation date : " + new Date(changeSet.getCreationDate()));
-				output.writeLine("  Changeset component     : " + changeSet.getComponent());
-				output.writeLine("  Changeset UUID          : " + changeSet.getUuid());
+				writeDetails(cutoff, chunk);
 				throw clie;
 			}
+			for (RtcChangeSet changeSet : chunk) {
+				if (changeResolver == null) {
+					handleInitialLoad(changeSet);
+				}
+				uuids.add(changeSet.getUuid());
+				newestChangeSet = Math.max(newestChangeSet, changeSet.getCreationDate());
+			}
+			output.writeLine("Accepted [" + (i + chunk.size()) + "]/[" + changeSets.size()
+					+ "] changesets up to [" + cutoff.getName() + "]");
+		}
+		long acceptDuration = System.currentTimeMillis() - startAccept;
+		long startCommit = System.currentTimeMillis();
+		ChangeSet snapshot = new SnapshotChangeSet("Snapshot of [" + cutoff.getName() + "]",
+				newestChangeSet > 0 ? newestChangeSet : cutoff.getCreationDate(), uuids);
+		if (changeResolver != null) {
+			changeResolver.invalidate();
+			List<FileChange> puts = changeResolver.snapshot();
+			for (FileChange put : puts) {
+				filesBefore.remove(put.getPath());
+			}
+			List<FileChange> changes = new ArrayList<FileChange>(filesBefore.size() + puts.size());
+			for (String removed : filesBefore) {
+				changes.add(FileChange.delete(removed, false));
+			}
+			changes.addAll(puts);
+			((StreamingMigrator) migrator).commitChanges(snapshot, changes);
+		} else {
+			migrator.commitChanges(snapshot);
+		}
+		metrics.increment(Counter.CHANGESETS, changeSets.size());
+		output.writeLine("Migrated [" + changeSets.size() + "] changesets of [" + tags.size()
+				+ "] tags as snapshot of [" + cutoff.getName() + "]. Accept took " + acceptDuration
+				+ "ms commit took " + (System.currentTimeMillis() - startCommit) + "ms");
+		cleanLocalHistory();
+		if (cutoff.doCreateTag()) {
+			migrator.createTag(cutoff);
+		}
+	}
+
+	/**
+	 * Accepts the baselines of the tag and then its change sets in a few large accepts, so change sets not being part
+	 * of the baselines, as the ones of the <code>HEAD</code> tag or of excluded tags merged into this one, are not
+	 * missed. The accepted state is committed once for the whole tag.
+	 */
+	private void migrateBaseline(RtcTag tag) throws CLIClientException {
+		List<RtcChangeSet> changeSets = tag.getOrderedChangeSets();
+		if (!changeSets.isEmpty()) {
+			List<List<RtcChangeSet>> componentGroups = new ArrayList<List<RtcChangeSet>>(groupByComponent(changeSets));
+			String component = componentGroups.size() == 1 ? changeSets.get(0).getComponent() : null;
+			metrics.enterChangeSet(getUuids(changeSets), component);
+			try {
+				migrateBaselineChangeSets(tag, changeSets, componentGroups);
+			} finally {
+				metrics.leaveChangeSet();
+			}
 		}
 		cleanLocalHistory();
 		if (tag.doCreateTag()) {
@@ -76,6 +268,211 @@ public class RtcMigrator {
 		}
 	}
 
+	/**
+	 * @param componentGroups
+	 *            the change sets of the tag split by component
+	 */
+	private void migrateBaselineChangeSets(RtcTag tag, List<RtcChangeSet> changeSets,
+			List<List<RtcChangeSet>> componentGroups) throws CLIClientException {
+		long startAccept = System.currentTimeMillis();
+		if (changeResolver != null) {
+			for (int i = 0; i < changeSets.size(); i += MAX_SNAPSHOT_CHANGESETS) {
+				changeResolver.prepare(changeSets.subList(i, Math.min(changeSets.size(), i + MAX_SNAPSHOT_CHANGESETS)));
+			}
+		}
+		try {
+			if (!tag.getBaselineUuids().isEmpty()) {
+				acceptAndLoad(new ArrayList<String>(tag.getBaselineUuids()), true);
+			}
+			for (int i = 0; i < changeSets.size(); i += MAX_SNAPSHOT_CHANGESETS) {
+				acceptAndLoadChangeSets(changeSets.subList(i,
+						Math.min(changeSets.size(), i + MAX_SNAPSHOT_CHANGESETS)));
+			}
+		} catch (CLIClientException clie) {
+			writeDetails(tag, changeSets);
+			throw clie;
+		}
+		long acceptDuration = System.currentTimeMillis() - startAccept;
+		long startCommit = System.currentTimeMillis();
+		int[] files = new int[componentGroups.size()];
+		int commits = 0;
+		if (changeResolver != null) {
+			for (List<RtcChangeSet> componentChangeSets : componentGroups) {
+				files[commits] = ((StreamingMigrator) migrator).commitChanges(new BaselineChangeSet(tag.getName(),
+						componentChangeSets), dropOverwrittenPuts(changeResolver.resolve(componentChangeSets)));
+				commits++;
+			}
+		} else {
+			for (RtcChangeSet changeSet : changeSets) {
+				handleInitialLoad(changeSet);
+			}
+			files[0] = migrator.commitChanges(new BaselineChangeSet(tag.getName(), changeSets));
+			commits++;
+		}
+		metrics.increment(Counter.CHANGESETS, changeSets.size());
+		output.writeLine("Migrated [" + tag.getName() + "] [" + changeSets.size() + "] changesets as ["
+				+ commits + "] commits. Accept took " + acceptDuration + "ms commit took "
+				+ (System.currentTimeMillis() - startCommit) + "ms");
+		for (int i = 0; i < componentGroups.size(); i++) {
+			reportProgress(componentGroups.get(i), files[i]);
+		}
+		if (migrator.needsIntermediateCleanup()) {
+			intermediateCleanup();
+		}
+	}
+
+	/**
+	 * Splits the ordered change sets by component, keeping their order within each component.
+	 */
+	private static Collection<List<RtcChangeSet>> groupByComponent(List<RtcChangeSet> changeSets) {
+		Map<String, List<RtcChangeSet>> components = new LinkedHashMap<String, List<RtcChangeSet>>();
+		for (RtcChangeSet changeSet : changeSets) {
+			List<RtcChangeSet> componentChangeSets = components.get(changeSet.getComponent());
+			if (componentChangeSets == null) {
+				componentChangeSets = new ArrayList<RtcChangeSet>();
+				components.put(changeSet.getComponent(), componentChangeSets);
+			}
+			componentChangeSets.add(changeSet);
+		}
+		return components.values();
+	}
+
+	/**
+	 * Drops the puts of files being put again later on without any move or delete in between, so only the last
+	 * content of a file changed several times within one commit is streamed.
+	 */
+	static List<FileChange> dropOverwrittenPuts(List<FileChange> changes) {
+		boolean[] keep = new boolean[changes.size()];
+		Set<String> putLater = new HashSet<String>();
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			FileChange change = changes.get(i);
+			if (change.getKind() == FileChange.Kind.PUT) {
+				keep[i] = putLater.add(change.getPath());
+			} else {
+				putLater.clear();
+				keep[i] = true;
+			}
+		}
+		List<FileChange> kept = new ArrayList<FileChange>(changes.size());
+		for (int i = 0; i < keep.length; i++) {
+			if (keep[i]) {
+				kept.add(changes.get(i));
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * @return the migrator continuing on existing commits, <code>null</code> if every change set is committed
+	 */
+	private ReusingMigrator getReuser() {
+		if (changeResolver != null && migrator instanceof ReusingMigrator) {
+			return (ReusingMigrator) migrator;
+		}
+		return null;
+	}
+
+	private int migrateGroup(RtcTag tag, List<RtcChangeSet> group, int changeSetCounter, int numberOfChangesets)
+			throws CLIClientException {
+		metrics.enterChangeSet(getUuids(group), group.get(0).getComponent());
+		try {
+			long acceptDuration = accept(group);
+			long startCommit = System.currentTimeMillis();
+			int files = commit(group);
+			long commitDuration = System.currentTimeMillis() - startCommit;
+			metrics.increment(Counter.CHANGESETS, group.size());
+			output.writeLine("Migrated [" + tag.getName() + "] [" + (changeSetCounter + group.size()) + "]/["
+					+ numberOfChangesets + "] changesets. Accept took " + acceptDuration + "ms commit took "
+					+ commitDuration + "ms"
+					+ (group.size() > 1 ? " for [" + group.size() + "] coalesced changesets" : ""));
+			reportProgress(group, files);
+			if (migrator.needsIntermediateCleanup()) {
+				intermediateCleanup();
+			}
+			acceptsSinceLocalHistoryClean += group.size();
+			if (acceptsSinceLocalHistoryClean >= ACCEPTS_BEFORE_LOCAL_HISTORY_CLEAN) {
+				cleanLocalHistory();
+			}
+			return group.size();
+		} catch (CLIClientException clie) {
+			writeDetails(tag, group);
+			throw clie;
+		} finally {
+			metrics.leaveChangeSet();
+		}
+	}
+
+	/**
+	 * Accepts the change sets the migrator continued on existing commits for, in as few accepts as possible. They
+	 * are neither resolved nor committed, so the paths the change resolver knows are outdated afterwards.
+	 */
+	private int acceptReused(RtcTag tag, List<List<RtcChangeSet>> groups, int changeSetCounter,
+			int numberOfChangesets) throws CLIClientException {
+		List<RtcChangeSet> reused = new ArrayList<RtcChangeSet>();
+		for (List<RtcChangeSet> group : groups) {
+			reused.addAll(group);
+		}
+		long startAccept = System.currentTimeMillis();
+		for (int i = 0; i < reused.size(); i += MAX_COALESCED_CHANGESETS) {
+			List<RtcChangeSet> chunk = reused.subList(i, Math.min(reused.size(), i + MAX_COALESCED_CHANGESETS));
+			try {
+				acceptAndLoadChangeSets(chunk);
+			} catch (CLIClientException clie) {
+				writeDetails(tag, chunk);
+				throw clie;
+			}
+		}
+		changeResolver.invalidate();
+		metrics.increment(Counter.CHANGESETS, reused.size());
+		metrics.increment(Counter.CHANGESETS_REUSED, reused.size());
+		output.writeLine("Reused [" + tag.getName() + "] [" + (changeSetCounter + reused.size()) + "]/["
+				+ numberOfChangesets + "] changesets of existing commits. Accept took "
+				+ (System.currentTimeMillis() - startAccept) + "ms for [" + reused.size() + "] changesets");
+		for (List<RtcChangeSet> group : groups) {
+			reportProgress(group, 0);
+		}
+		acceptsSinceLocalHistoryClean += reused.size();
+		return reused.size();
+	}
+
+	/**
+	 * Commits the change sets of a pending reuse that did not complete its commit after all.
+	 */
+	private int migrateAbandoned(RtcTag tag, ReusingMigrator reuser, List<List<RtcChangeSet>> groups,
+			int changeSetCounter, int numberOfChangesets) throws CLIClientException {
+		int migrated = 0;
+		if (!groups.isEmpty()) {
+			reuser.abandonReuse();
+			for (List<RtcChangeSet> group : groups) {
+				migrated += migrateGroup(tag, group, changeSetCounter + migrated, numberOfChangesets);
+			}
+			groups.clear();
+		}
+		return migrated;
+	}
+
+	private void writeDetails(RtcTag tag, List<RtcChangeSet> group) {
+		output.writeLine("Changeset details:");
+		output.writeLine("  Tag original name       : " + tag.getOriginalName());
+		output.writeLine("  Tag creation date       : " + new Date(tag.getCreationDate()));
+		for (RtcChangeSet changeSet : group) {
+			output.writeLine("  Changeset comment       : " + changeSet.getComment());
+			output.writeLine("  Changeset creator       : " + changeSet.getCreatorName());
+			output.writeLine("  Changeset creation date : " + new Date(changeSet.getCreationDate()));
+			output.writeLine("  Changeset component     : " + changeSet.getComponent());
+			output.writeLine("  Changeset UUID          : " + changeSet.getUuid());
+		}
+	}
+
+	private void reportProgress(List<RtcChangeSet> group, long files) {
+		if (progress != null) {
+			long now = System.currentTimeMillis();
+			if (progress.migrated(group.get(0).getComponent(), group.size(), files, now)) {
+				output.writeLine(progress.getStatusLine());
+			}
+		}
+	}
+
 	void intermediateCleanup() {
 		long startCleanup = System.currentTimeMillis();
 		migrator.intermediateCleanup();
@@ -83,44 +480,161 @@ public class RtcMigrator {
 				+ (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startCleanup)) + "]sec");
 	}
 
-	long commit(RtcChangeSet changeSet) {
-		long startCommit = System.currentTimeMillis();
-		migrator.commitChanges(changeSet);
-		long commitDuration = System.currentTimeMillis() - startCommit;
-		return commitDuration;
+	/**
+	 * Splits the ordered change sets of a tag into groups being accepted and committed together. Without a coalescing
+	 * window each change set forms its own group. The groups never span tags, so baselines are still tagged on the
+	 * right commit.
+	 */
+	List<List<RtcChangeSet>> groupChangeSets(List<RtcChangeSet> changeSets) {
+		List<List<RtcChangeSet>> groups = new ArrayList<List<RtcChangeSet>>();
+		List<RtcChangeSet> group = null;
+		for (RtcChangeSet changeSet : changeSets) {
+			if (group == null || !belongsToGroup(group, changeSet)) {
+				group = new ArrayList<RtcChangeSet>();
+				groups.add(group);
+			}
+			group.add(changeSet);
+		}
+		return groups;
+	}
+
+	private boolean belongsToGroup(List<RtcChangeSet> group, RtcChangeSet changeSet) {
+		if (coalescingWindow <= 0 || group.size() >= MAX_COALESCED_CHANGESETS) {
+			return false;
+		}
+		RtcChangeSet first = group.get(0);
+		return equals(first.getCreatorName(), changeSet.getCreatorName())
+				&& equals(first.getComponent(), changeSet.getComponent())
+				&& changeSet.getCreationDate() - first.getCreationDate() <= coalescingWindow;
+	}
+
+	private static String getUuids(List<RtcChangeSet> group) {
+		StringBuilder sb = new StringBuilder();
+		for (RtcChangeSet changeSet : group) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(changeSet.getUuid());
+		}
+		return sb.toString();
+	}
+
+	private static boolean equals(String first, String second) {
+		return first == null ? second == null : first.equals(second);
+	}
+
+	/**
+	 * @return the number of files touched by the commit
+	 */
+	int commit(List<RtcChangeSet> group) {
+		ChangeSet changeSet = toChangeSet(group);
+		if (changeResolver != null) {
+			return ((StreamingMigrator) migrator).commitChanges(changeSet, changeResolver.resolve(group));
+		}
+		return migrator.commitChanges(changeSet);
 	}
 
-	long accept(RtcChangeSet changeSet) throws CLIClientException {
+	private static ChangeSet toChangeSet(List<RtcChangeSet> group) {
+		return group.size() == 1 ? group.get(0) : new CoalescedChangeSet(group);
+	}
+
+	long accept(List<RtcChangeSet> group) throws CLIClientException {
 		long startAccept = System.currentTimeMillis();
-		acceptAndLoadChangeSet(changeSet);
-		handleInitialLoad(changeSet);
+		if (changeResolver != null) {
+			changeResolver.prepare(group);
+			acceptAndLoadChangeSets(group);
+		} else {
+			acceptAndLoadChangeSets(group);
+			handleInitialLoad(group.get(0));
+		}
 		long acceptDuration = System.currentTimeMillis() - startAccept;
 		return acceptDuration;
 	}
 
+	/**
+	 * Limits the Eclipse local history of the workspace used for accepting and loading to one state of at most one
+	 * byte per file, so that the <code>.history</code> folder no longer fills up with every accepted file change.
+	 */
+	public void disableLocalHistory() {
+		try {
+			IWorkspace eclipseWorkspace = ResourcesPlugin.getWorkspace();
+			IWorkspaceDescription description = eclipseWorkspace.getDescription();
+			description.setMaxFileStates(1);
+			description.setMaxFileStateSize(1);
+			description.setApplyFileStatePolicy(true);
+			eclipseWorkspace.setDescription(description);
+			output.writeLine("Disabled local history of workspace");
+		} catch (Exception e) {
+			output.writeLine("Unable to disable local history (" + e.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * Waits for the pending background cleanups of the local history, reporting what could not be deleted.
+	 */
+	public void close() {
+		for (File tombstone : historyDeleter.close()) {
+			output.writeLine("Unable to delete the local history [" + tombstone.getAbsolutePath()
+					+ "], delete it manually");
+		}
+	}
+
 	private void cleanLocalHistory() {
-		File localHistoryDirectory = new File(sandboxDirectory,
-				".metadata/.plugins/org.eclipse.core.resources/.history");
-		if (localHistoryDirectory.exists() && localHistoryDirectory.isDirectory()) {
-			long start = System.currentTimeMillis();
-			Files.delete(localHistoryDirectory);
-			output.writeLine("Cleanup of local history had ["
-					+ (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start)) + "]sec");
+		acceptsSinceLocalHistoryClean = 0;
+		File localHistoryDirectory = new File(sandboxDirectory, LOCAL_HISTORY_PATH);
+		if (localHistoryDirectory.isDirectory()) {
+			PhaseTimer timer = metrics.start(Phase.HISTORY_CLEANUP);
+			boolean scheduled = historyDeleter.deleteLater(localHistoryDirectory);
+			timer.stop();
+			if (scheduled) {
+				output.writeLine("Scheduled background cleanup of local history");
+			} else {
+				output.writeLine("Unable to move local history out of the way, try again on next cleanup");
+			}
+		}
+	}
+
+	private void acceptAndLoadChangeSets(List<RtcChangeSet> group) throws CLIClientException {
+		List<String> changeSetUuids = new ArrayList<String>(group.size());
+		for (RtcChangeSet changeSet : group) {
+			changeSetUuids.add(changeSet.getUuid());
 		}
+		acceptAndLoad(changeSetUuids, false);
 	}
 
-	private void acceptAndLoadChangeSet(RtcChangeSet changeSet) throws CLIClientException {
+	/**
+	 * Accepts the change sets or baselines into the destination workspace. When streaming, the contents are resolved
+	 * from the accepted state, so any accept not ending cleanly fails the migration instead of committing contents
+	 * that were not accepted.
+	 */
+	private void acceptAndLoad(List<String> uuids, boolean baseline) throws CLIClientException {
 		output.setIndent(2);
-		int result = new AcceptCommandDelegate(config, output, workspace, changeSet.getUuid(), false, false).run();
+		AcceptResult result = accept(uuids, baseline, false);
+		if (changeResolver != null) {
+			if (AcceptResult.GAP == result) {
+				output.writeLine("Retry accepting with --accept-missing-changesets");
+				result = accept(uuids, baseline, true);
+			}
+			if (AcceptResult.OK != result && AcceptResult.WORKSPACE_UNCHANGED != result) {
+				throw new CLIClientException("Accepting " + uuids + " ended with [" + result
+						+ "], the contents to stream would not match the accepted state");
+			}
+			return;
+		}
 		switch (result) {
-		case Constants.STATUS_OUT_OF_SYNC:
+		case OUT_OF_SYNC:
 			output.writeLine("Try loading of workspace again with force option");
-			result = new LoadCommandDelegate(config, output, workspace, null, true).run();
+			PhaseTimer timer = metrics.start(Phase.FORCED_RELOAD);
+			try {
+				new LoadCommandDelegate(config, output, workspace, null, true).run();
+			} finally {
+				timer.stop();
+			}
 			break;
-		case Constants.STATUS_GAP:
+		case GAP:
 			output.writeLine("Retry accepting with --accept-missing-changesets");
-			result = new AcceptCommandDelegate(config, output, workspace, changeSet.getUuid(), false, true).run();
-			if (Constants.STATUS_GAP == result || Constants.STATUS_OUT_OF_SYNC == result) {
+			result = accept(uuids, baseline, true);
+			if (AcceptResult.GAP == result || AcceptResult.OUT_OF_SYNC == result) {
 				throw new CLIClientException("There was a PROBLEM in accepting that we cannot solve.");
 			}
 			break;
@@ -129,14 +643,27 @@ public class RtcMigrator {
 		}
 	}
 
+	private AcceptResult accept(List<String> uuids, boolean baseline, boolean acceptMissingChangesets)
+			throws CLIClientException {
+		PhaseTimer timer = metrics.start(Phase.ACCEPT);
+		try {
+			return acceptEngine.accept(uuids, baseline, acceptMissingChangesets);
+		} finally {
+			timer.stop();
+		}
+	}
+
 	private void handleInitialLoad(RtcChangeSet changeSet) {
 		if (!initiallyLoadedComponents.contains(changeSet.getComponent())) {
+			PhaseTimer timer = metrics.start(Phase.LOAD);
 			try {
 				new LoadCommandDelegate(config, output, workspace, changeSet.getComponent(), false).run();
 				initiallyLoadedComponents.add(changeSet.getComponent());
 			} catch (CLIClientException e) {
 				throw new RuntimeException("Not a valid sandbox. Please run [scm load " + workspace
 						+ "] before [scm migrate-to-git] command");
+			} finally {
+				timer.stop();
 			}
 		}
 	}
@@ -2,11 +2,14 @@ package to.rtc.cli.migrate;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -18,6 +21,7 @@ final class RtcTag implements Tag {
 	private static final long TIME_DIFFERENCE_PLUS_MINUS_MILLISECONDS = TimeUnit.SECONDS.toMillis(90);
 	private static final RtcChangeSet EARLYEST_CHANGESET = new RtcChangeSet("").setCreationDate(Long.MAX_VALUE);
 	private String uuid;
+	private final Set<String> baselineUuids;
 	private String originalName;
 	private boolean makeNameUnique;
 	private long creationDate;
@@ -28,6 +32,10 @@ final class RtcTag implements Tag {
 
 	RtcTag(String uuid) {
 		this.uuid = uuid;
+		baselineUuids = new LinkedHashSet<String>();
+		if (uuid != null) {
+			baselineUuids.add(uuid);
+		}
 		components = new HashMap<String, List<RtcChangeSet>>();
 		totalChangeSetCount = 0;
 		makeNameUnique = false;
@@ -54,6 +62,26 @@ final class RtcTag implements Tag {
 		return this;
 	}
 
+	/**
+	 * @return the UUIDs of the baselines of all components the tag stands for, empty for the <code>HEAD</code> tag
+	 */
+	Set<String> getBaselineUuids() {
+		return baselineUuids;
+	}
+
+	RtcTag addBaselineUuid(String baselineUuid) {
+		if (baselineUuid != null) {
+			baselineUuids.add(baselineUuid);
+		}
+		return this;
+	}
+
+	RtcTag setBaselineUuids(Collection<String> baselineUuids) {
+		this.baselineUuids.clear();
+		this.baselineUuids.addAll(baselineUuids);
+		return this;
+	}
+
 	void add(RtcChangeSet changeSet) {
 		List<RtcChangeSet> changesets = null;
 		String component = changeSet.getComponent();
@@ -121,6 +149,10 @@ final class RtcTag implements Tag {
 		return totalChangeSetCount <= 0;
 	}
 
+	long getChangeSetCount() {
+		return totalChangeSetCount;
+	}
+
 	RtcTag setMakeNameUnique(boolean makeNameUnique) {
 		this.makeNameUnique = makeNameUnique;
 		return this;
@@ -7,8 +7,10 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,30 +19,86 @@ public class RtcTagList implements Iterable<RtcTag> {
 
 	private final StreamOutput output;
 	private List<RtcTag> rtcTags;
+	private Map<String, List<RtcTag>> tagsByName;
+	private long listedSince;
 
 	public RtcTagList(StreamOutput output) {
 		this.output = output;
 		rtcTags = new ArrayList<RtcTag>();
 	}
 
+	private RtcTagList(StreamOutput output, List<RtcTag> rtcTags) {
+		this.output = output;
+		this.rtcTags = rtcTags;
+	}
+
+	/**
+	 * Marks the list as holding only the baselines created after the given time, as done by an update migration. A
+	 * baseline created before is added when it is looked up instead of failing the lookup.
+	 *
+	 * @param since
+	 *            the time in milliseconds the baselines were listed from, 0 if all baselines were listed
+	 * @return this list
+	 */
+	public RtcTagList setListedSince(long since) {
+		listedSince = since;
+		return this;
+	}
+
 	public RtcTag add(RtcTag tag) {
 		long creationDate = tag.getCreationDate();
-		int tagIndex = rtcTags.indexOf(tag);
-		if (tagIndex < 0) {
-			for (RtcTag tagToCheck : rtcTags) {
-				if (tagToCheck.getOriginalName().equals(tag.getOriginalName())) {
-					tag.setMakeNameUnique(true);
-					break;
-				}
+		List<RtcTag> sameName = getTagsByName().get(tag.getOriginalName());
+		RtcTag existingTag = find(sameName, tag);
+		if (existingTag == null) {
+			if (sameName == null) {
+				sameName = new ArrayList<RtcTag>(1);
+				tagsByName.put(tag.getOriginalName(), sameName);
+			} else {
+				tag.setMakeNameUnique(true);
 			}
+			sameName.add(tag);
 			rtcTags.add(tag);
 		} else {
-			tag = rtcTags.get(tagIndex);
+			existingTag.addBaselineUuid(tag.getUuid());
+			tag = existingTag;
 			tag.setCreationDate(creationDate / 2 + tag.getCreationDate() / 2);
 		}
 		return tag;
 	}
 
+	/**
+	 * @return the tags by their original name, rebuilt if the tags have been replaced or renamed since
+	 */
+	private Map<String, List<RtcTag>> getTagsByName() {
+		if (tagsByName == null) {
+			tagsByName = new HashMap<String, List<RtcTag>>();
+			for (RtcTag tag : rtcTags) {
+				List<RtcTag> sameName = tagsByName.get(tag.getOriginalName());
+				if (sameName == null) {
+					sameName = new ArrayList<RtcTag>(1);
+					tagsByName.put(tag.getOriginalName(), sameName);
+				}
+				sameName.add(tag);
+			}
+		}
+		return tagsByName;
+	}
+
+	private RtcTag find(RtcTag tag) {
+		return find(getTagsByName().get(tag.getOriginalName()), tag);
+	}
+
+	private static RtcTag find(List<RtcTag> sameName, RtcTag tag) {
+		if (sameName != null) {
+			for (RtcTag tagToCheck : sameName) {
+				if (tagToCheck.equals(tag)) {
+					return tagToCheck;
+				}
+			}
+		}
+		return null;
+	}
+
 	public void printTagList(boolean printChangesetDetails) {
 		output.writeLine("********** BASELINE INFOS **********");
 		int totalChangeSets = 0;
@@ -91,9 +149,9 @@ public class RtcTagList implements Iterable<RtcTag> {
 			if (tmpTag == null) {
 				tmpTag = currentTag;
 			} else {
-				tmpTag.setUuid(currentTag.getUuid()).setOriginalName(currentTag.getOriginalName())
-						.setCreationDate(currentTag.getCreationDate()).setMakeNameUnique(currentTag.isMakeNameUnique())
-						.setDoCreateTag(currentTag.doCreateTag());
+				tmpTag.setUuid(currentTag.getUuid()).setBaselineUuids(currentTag.getBaselineUuids())
+						.setOriginalName(currentTag.getOriginalName()).setCreationDate(currentTag.getCreationDate())
+						.setMakeNameUnique(currentTag.isMakeNameUnique()).setDoCreateTag(currentTag.doCreateTag());
 				tmpTag.addAll(currentTag.getComponentsChangeSets());
 			}
 
@@ -108,12 +166,78 @@ public class RtcTagList implements Iterable<RtcTag> {
 			prunedList.add(tmpTag);
 		}
 		rtcTags = prunedList;
+		tagsByName = null;
 	}
 
 	public void sortByCreationDate() {
 		Collections.sort(rtcTags, new TagCreationDateComparator());
 	}
 
+	/**
+	 * Splits the tags into at most the given number of consecutive shards with about the same number of change sets.
+	 * The shards are only split between tags, so every shard starts right after the baseline ending the previous one.
+	 *
+	 * @param shards
+	 *            the maximum number of shards
+	 * @return the non empty shards in the order of the tags
+	 */
+	public List<RtcTagList> split(int shards) {
+		long total = 0;
+		for (RtcTag tag : rtcTags) {
+			total += tag.getChangeSetCount();
+		}
+		List<RtcTagList> result = new ArrayList<RtcTagList>();
+		List<RtcTag> shard = new ArrayList<RtcTag>();
+		long changeSets = 0;
+		long shardChangeSets = 0;
+		for (RtcTag tag : rtcTags) {
+			shard.add(tag);
+			long tagChangeSets = tag.getChangeSetCount();
+			changeSets += tagChangeSets;
+			shardChangeSets += tagChangeSets;
+			// cut as soon as all shards so far hold their share of the change sets
+			if (result.size() < shards - 1 && shardChangeSets > 0 && changeSets < total
+					&& changeSets * shards >= total * (result.size() + 1)) {
+				result.add(new RtcTagList(output, shard));
+				shard = new ArrayList<RtcTag>();
+				shardChangeSets = 0;
+			}
+		}
+		if (!shard.isEmpty()) {
+			result.add(new RtcTagList(output, shard));
+		}
+		return result;
+	}
+
+	/**
+	 * Splits the tags after the tag of the given baseline, so the history up to the baseline can be migrated as one
+	 * snapshot.
+	 *
+	 * @param baselineName
+	 *            the name of the baseline, either as in RTC or as made unique for the tag
+	 * @return the tags up to and including the baseline and the tags after it, possibly being empty
+	 */
+	public List<RtcTagList> splitAfter(String baselineName) {
+		int cutoff = -1;
+		for (int i = 0; i < rtcTags.size(); i++) {
+			RtcTag tag = rtcTags.get(i);
+			if (baselineName.equals(tag.getName()) || baselineName.equals(tag.getOriginalName())) {
+				if (cutoff >= 0) {
+					throw new IllegalArgumentException("Baseline [" + baselineName + "] is ambiguous, use one of "
+							+ "the tag names [" + rtcTags.get(cutoff).getName() + "] and [" + tag.getName() + "]");
+				}
+				cutoff = i;
+			}
+		}
+		if (cutoff < 0) {
+			throw new IllegalArgumentException("Baseline [" + baselineName + "] is not a tag of the migration");
+		}
+		List<RtcTagList> result = new ArrayList<RtcTagList>();
+		result.add(new RtcTagList(output, new ArrayList<RtcTag>(rtcTags.subList(0, cutoff + 1))));
+		result.add(new RtcTagList(output, new ArrayList<RtcTag>(rtcTags.subList(cutoff + 1, rtcTags.size()))));
+		return result;
+	}
+
 	public int size() {
 		return rtcTags.size();
 	}
@@ -125,32 +249,33 @@ public class RtcTagList implements Iterable<RtcTag> {
 
 	public RtcTag getTag(String itemId, String tagName, long creationDate) {
 		RtcTag tag = new RtcTag(itemId).setOriginalName(tagName).setCreationDate(creationDate);
-		int tagIndex = rtcTags.indexOf(tag);
-		if (tagIndex < 0) {
+		RtcTag existingTag = find(tag);
+		if (existingTag == null && creationDate < listedSince) {
+			// not listed because it is older than the last migration
+			return add(tag);
+		}
+		if (existingTag == null) {
 			output.writeLine("Error: Tag could not be found in Stream");
 			output.writeLine("Searching for Tag: [" + tagName + "] ["
 					+ (new SimpleDateFormat("yyyyMMdd_HHmmss")).format(new Date(creationDate)) + "]");
 			sortByCreationDate();
 			printTagList(false);
 			throw new RuntimeException("Tag not found");
-		} else {
-			tag = rtcTags.get(tagIndex);
 		}
-		return tag;
+		return existingTag.addBaselineUuid(itemId);
 	}
 
 	public RtcTag getHeadTag() {
 		RtcTag tag = new RtcTag(null).setDoCreateTag(false).setOriginalName("HEAD").setCreationDate(Long.MAX_VALUE);
-		int tagIndex = rtcTags.indexOf(tag);
-		if (tagIndex < 0) {
+		RtcTag existingTag = find(tag);
+		if (existingTag == null) {
 			add(tag);
-		} else {
-			tag = rtcTags.get(tagIndex);
+			return tag;
 		}
-		return tag;
+		return existingTag;
 	}
 
 	public Boolean contains(RtcTag tag) {
-		return Boolean.valueOf(rtcTags.contains(tag));
+		return Boolean.valueOf(find(tag) != null);
 	}
 }
@@ -0,0 +1,208 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import to.rtc.cli.migrate.command.AcceptResult;
+import to.rtc.cli.migrate.command.InProcessAcceptEngine;
+
+import com.ibm.team.repository.client.ITeamRepository;
+import com.ibm.team.repository.common.TeamRepositoryException;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
+import com.ibm.team.scm.client.IWorkspaceConnection;
+import com.ibm.team.scm.client.IWorkspaceManager;
+import com.ibm.team.scm.client.SCMPlatform;
+import com.ibm.team.scm.common.IComponentHandle;
+
+/**
+ * Migrates all shards of a migration plan but the first one concurrently. Every shard gets its own temporary RTC
+ * workspace, created from the components of the destination workspace and brought to the start of the shard by
+ * accepting the change sets of all previous shards at once. The shard is then migrated into its own repository, that
+ * starts with a snapshot of the workspace and is stitched onto the history of the first shard later on. The shards
+ * only stream contents and never run an scm command, so they need no configuration of their own.
+ */
+@SuppressWarnings("restriction")
+final class ShardedMigration {
+	private static final int ACCEPT_BATCH_SIZE = 1000;
+	private static final String SHARD_SUFFIX = ".shard-";
+
+	private final MigrateTo owner;
+	private final StreamOutput output;
+	private final ITeamRepository repo;
+	private final IWorkspaceManager workspaceManager;
+	private final IWorkspaceConnection sourceWs;
+	private final IWorkspaceConnection destinationWs;
+	private final File sandboxDirectory;
+	private final IProgressMonitor monitor;
+	private final List<File> shardDirectories;
+	private final List<Future<File>> shardResults;
+	private long coalescingWindow;
+	private MigrationProgress progress;
+	private ExecutorService executor;
+
+	ShardedMigration(MigrateTo owner, StreamOutput output, ITeamRepository repo, IWorkspaceConnection sourceWs,
+			IWorkspaceConnection destinationWs, File sandboxDirectory) {
+		this.owner = owner;
+		this.output = output;
+		this.repo = repo;
+		this.workspaceManager = SCMPlatform.getWorkspaceManager(repo);
+		this.sourceWs = sourceWs;
+		this.destinationWs = destinationWs;
+		this.sandboxDirectory = sandboxDirectory;
+		this.monitor = new NullProgressMonitor();
+		this.shardDirectories = new ArrayList<File>();
+		this.shardResults = new ArrayList<Future<File>>();
+	}
+
+	ShardedMigration setCoalescingWindow(long windowMillis) {
+		this.coalescingWindow = windowMillis;
+		return this;
+	}
+
+	/**
+	 * Reports the change sets migrated by the shards to the progress of the whole migration plan.
+	 */
+	ShardedMigration setProgress(MigrationProgress progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	/**
+	 * Starts the migration of all shards but the first one, which is left to the caller.
+	 *
+	 * @param shards
+	 *            the shards of the migration plan in the order of their tags
+	 */
+	void start(List<RtcTagList> shards) {
+		final AtomicInteger threadCounter = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(Math.max(1, shards.size() - 1), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rtc-shard-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final List<String> previousChangeSets = new ArrayList<String>();
+		for (int i = 0; i < shards.size(); i++) {
+			final int shardNumber = i;
+			final RtcTagList shard = shards.get(i);
+			if (i > 0) {
+				final List<String> startChangeSets = new ArrayList<String>(previousChangeSets);
+				final File shardDirectory = new File(sandboxDirectory.getAbsoluteFile().getParentFile(),
+						sandboxDirectory.getName() + SHARD_SUFFIX + i);
+				shardDirectories.add(shardDirectory);
+				shardResults.add(executor.submit(new Callable<File>() {
+					@Override
+					public File call() throws Exception {
+						migrateShard(shardNumber, shard, startChangeSets, shardDirectory);
+						return shardDirectory;
+					}
+				}));
+			}
+			for (RtcTag tag : shard) {
+				for (RtcChangeSet changeSet : tag.getOrderedChangeSets()) {
+					previousChangeSets.add(changeSet.getUuid());
+				}
+			}
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for all started shards.
+	 *
+	 * @return the directories of the shard repositories in the order of the shards
+	 */
+	List<File> await() {
+		Throwable failure = null;
+		for (Future<File> result : shardResults) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for the shards", e);
+			}
+		}
+		if (failure != null) {
+			throw new RuntimeException("Unable to migrate all shards", failure);
+		}
+		return shardDirectories;
+	}
+
+	private void migrateShard(int shardNumber, RtcTagList shard, List<String> startChangeSets, File shardDirectory)
+			throws TeamRepositoryException, CLIClientException {
+		long start = System.currentTimeMillis();
+		String name = destinationWs.getName() + SHARD_SUFFIX + shardNumber;
+		output.writeLine("Create workspace [" + name + "] for shard [" + shardNumber + "]");
+		IWorkspaceConnection shardWs = workspaceManager.createWorkspace(repo.loggedInContributor(), name,
+				"Temporary workspace of shard " + shardNumber + " migrating " + destinationWs.getName(), monitor);
+		try {
+			List<Object> operations = new ArrayList<Object>();
+			for (Object component : destinationWs.getComponents()) {
+				operations.add(shardWs.componentOpFactory().addComponent((IComponentHandle) component,
+						destinationWs, false));
+			}
+			shardWs.applyComponentOperations(operations, monitor);
+
+			InProcessAcceptEngine acceptEngine = new InProcessAcceptEngine(output, shardWs, sourceWs);
+			for (int i = 0; i < startChangeSets.size(); i += ACCEPT_BATCH_SIZE) {
+				List<String> batch = startChangeSets.subList(i, Math.min(startChangeSets.size(), i
+						+ ACCEPT_BATCH_SIZE));
+				AcceptResult result = acceptEngine.accept(batch, false, true);
+				if (result != AcceptResult.OK && result != AcceptResult.WORKSPACE_UNCHANGED) {
+					throw new RuntimeException("Unable to bring workspace [" + name + "] to the start of shard ["
+							+ shardNumber + "]: " + result);
+				}
+			}
+			output.writeLine("Workspace [" + name + "] reached the start of shard [" + shardNumber + "] after ["
+					+ startChangeSets.size() + "] changesets");
+
+			if (!shardDirectory.isDirectory() && !shardDirectory.mkdirs()) {
+				throw new RuntimeException("Unable to create shard directory " + shardDirectory);
+			}
+			Migrator migrator = owner.createShardMigrator();
+			migrator.init(shardDirectory);
+			RtcMigrator rtcMigrator = null;
+			try {
+				RtcChangeResolver changeResolver = new RtcChangeResolver(repo, shardWs);
+				RtcTag firstTag = shard.iterator().next();
+				((StreamingMigrator) migrator).commitChanges(new SnapshotChangeSet("Snapshot before ["
+						+ firstTag.getName() + "]", firstTag.getCreationDate(), Collections.<String> emptyList()),
+						changeResolver.snapshot());
+				rtcMigrator = new RtcMigrator(output, null, name, migrator, shardDirectory,
+						Collections.<String> emptyList(), false).setCoalescingWindow(coalescingWindow)
+						.setAcceptEngine(acceptEngine).setChangeResolver(changeResolver).setProgress(progress);
+				for (RtcTag tag : shard) {
+					output.writeLine("Start migration of Tag [" + tag.getName() + "] in shard [" + shardNumber + "]");
+					rtcMigrator.migrateTag(tag);
+				}
+			} finally {
+				if (rtcMigrator != null) {
+					rtcMigrator.close();
+				}
+				migrator.close();
+			}
+		} finally {
+			workspaceManager.deleteWorkspace(shardWs.getResolvedWorkspace(), monitor);
+		}
+		output.writeLine("Migration of shard [" + shardNumber + "] took ["
+				+ (System.currentTimeMillis() - start) / 1000 + "] s");
+	}
+}
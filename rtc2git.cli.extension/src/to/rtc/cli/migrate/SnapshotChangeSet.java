@@ -0,0 +1,58 @@
+package to.rtc.cli.migrate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The commit holding the complete state of a workspace instead of the changes of single change sets.
+ */
+final class SnapshotChangeSet implements ChangeSet {
+	private final String comment;
+	private final long creationDate;
+	private final List<String> uuids;
+
+	/**
+	 * @param uuids
+	 *            the change sets the state holds that have not been committed on their own
+	 */
+	SnapshotChangeSet(String comment, long creationDate, List<String> uuids) {
+		this.comment = comment;
+		this.creationDate = creationDate;
+		this.uuids = uuids;
+	}
+
+	@Override
+	public String getComment() {
+		return comment;
+	}
+
+	@Override
+	public String getCreatorName() {
+		return "RTC 2 git";
+	}
+
+	@Override
+	public String getEmailAddress() {
+		return "rtc2git@rtc.to";
+	}
+
+	@Override
+	public long getCreationDate() {
+		return creationDate;
+	}
+
+	@Override
+	public List<WorkItem> getWorkItems() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public String getComponent() {
+		return null;
+	}
+
+	@Override
+	public List<String> getUuids() {
+		return uuids;
+	}
+}
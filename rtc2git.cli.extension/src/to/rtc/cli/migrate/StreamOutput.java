@@ -8,7 +8,7 @@ public class StreamOutput extends ChangeLogStreamOutput {
 
 	private PrintStream stream;
 
-	StreamOutput(PrintStream out) {
+	public StreamOutput(PrintStream out) {
 		super(out);
 		stream = out;
 	}
@@ -0,0 +1,21 @@
+package to.rtc.cli.migrate;
+
+import java.util.List;
+
+/**
+ * A {@link Migrator} being able to commit changes directly from the source system without the need of a loaded
+ * sandbox. The files of the sandbox are not updated, so they stay in their last loaded state.
+ */
+public interface StreamingMigrator extends Migrator {
+
+	/**
+	 * Commits the given file <code>changes</code> of a change set, applied in the given order.
+	 *
+	 * @param changeSet
+	 *            the change set information used for the commit
+	 * @param changes
+	 *            the file changes of the change set
+	 * @return the number of files added, modified or removed by the commit
+	 */
+	int commitChanges(ChangeSet changeSet, List<FileChange> changes);
+}
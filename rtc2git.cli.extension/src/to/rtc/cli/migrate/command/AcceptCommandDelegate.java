@@ -1,6 +1,7 @@
 package to.rtc.cli.migrate.command;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.core.runtime.IStatus;
@@ -23,8 +24,14 @@ public class AcceptCommandDelegate extends RtcCommandDelegate {
 
 	public AcceptCommandDelegate(IScmClientConfiguration config, IChangeLogOutput output, String targetWorkspace,
 			String changeSetUuid, boolean baseline, boolean acceptMissingChangesets) {
-		super(config, output, "accept " + targetWorkspace + " " + changeSetUuid + " baseline[" + baseline + "]");
-		setSubCommandLine(targetWorkspace, changeSetUuid, baseline, acceptMissingChangesets);
+		this(config, output, targetWorkspace, Collections.singletonList(changeSetUuid), baseline,
+				acceptMissingChangesets);
+	}
+
+	public AcceptCommandDelegate(IScmClientConfiguration config, IChangeLogOutput output, String targetWorkspace,
+			List<String> changeSetUuids, boolean baseline, boolean acceptMissingChangesets) {
+		super(config, output, "accept " + targetWorkspace + " " + changeSetUuids + " baseline[" + baseline + "]");
+		setSubCommandLine(targetWorkspace, changeSetUuids, baseline, acceptMissingChangesets);
 	}
 
 	@Override
@@ -81,7 +88,7 @@ public class AcceptCommandDelegate extends RtcCommandDelegate {
 		return new AcceptCmdOptions().getOptions();
 	}
 
-	void setSubCommandLine(String targetWorkspace, String changeSetUuid, boolean isBaseline,
+	void setSubCommandLine(String targetWorkspace, List<String> changeSetUuids, boolean isBaseline,
 			boolean acceptMissingChangesets) {
 		String uri = getSubCommandOption(config, CommonOptions.OPT_URI);
 		String username = getSubCommandOption(config, CommonOptions.OPT_USERNAME);
@@ -97,12 +104,12 @@ public class AcceptCommandDelegate extends RtcCommandDelegate {
 		}
 		setSubCommandLine(
 				config,
-				generateCommandLine(uri, username, password, targetWorkspace, changeSetUuid, isBaseline,
+				generateCommandLine(uri, username, password, targetWorkspace, changeSetUuids, isBaseline,
 						acceptMissingChangesets));
 	}
 
 	private ICommandLine generateCommandLine(String uri, String username, String password, String rtcWorkspace,
-			String changeSetUuid, boolean isBaseline, boolean acceptMissingChangesets) {
+			List<String> changeSetUuids, boolean isBaseline, boolean acceptMissingChangesets) {
 		List<String> args = new ArrayList<String>();
 		args.add("-o");
 		args.add("--no-merge");
@@ -124,7 +131,7 @@ public class AcceptCommandDelegate extends RtcCommandDelegate {
 		} else {
 			args.add("--changes");
 		}
-		args.add(changeSetUuid);
+		args.addAll(changeSetUuids);
 		return generateCommandLine(args);
 	}
 }
@@ -0,0 +1,27 @@
+package to.rtc.cli.migrate.command;
+
+import java.util.List;
+
+import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
+
+/**
+ * Accepts change sets or baselines into the destination workspace and its loaded sandbox.
+ */
+public interface AcceptEngine {
+
+	/**
+	 * Accepts the given change sets or baselines into the destination workspace.
+	 *
+	 * @param uuids
+	 *            the change set or baseline UUIDs to be accepted
+	 * @param baseline
+	 *            <code>true</code> if the <code>uuids</code> are baselines, <code>false</code> for change sets
+	 * @param acceptMissingChangesets
+	 *            <code>true</code> if change sets missing to close a gap should be accepted as well
+	 * @return the result of the accept
+	 * @throws CLIClientException
+	 *             if the accept failed with an unexpected problem
+	 */
+	AcceptResult accept(List<String> uuids, boolean baseline, boolean acceptMissingChangesets)
+			throws CLIClientException;
+}
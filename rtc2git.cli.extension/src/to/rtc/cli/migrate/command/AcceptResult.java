@@ -0,0 +1,50 @@
+package to.rtc.cli.migrate.command;
+
+import com.ibm.team.filesystem.cli.core.Constants;
+
+/**
+ * Typed result of an accept operation, mapped from the <code>Constants.STATUS_*</code> codes of the RTC CLI.
+ */
+@SuppressWarnings("restriction")
+public enum AcceptResult {
+	OK(0), //
+	FAILURE(Constants.STATUS_FAILURE), //
+	INTERNAL_ERROR(Constants.STATUS_INTERNAL_ERROR), //
+	GAP(Constants.STATUS_GAP), //
+	CONFLICT(Constants.STATUS_CONFLICT), //
+	NWAY_CONFLICT(Constants.STATUS_NWAY_CONFLICT), //
+	WORKSPACE_UNCHANGED(Constants.STATUS_WORKSPACE_UNCHANGED), //
+	OUT_OF_SYNC(Constants.STATUS_OUT_OF_SYNC);
+
+	private final int status;
+
+	private AcceptResult(int status) {
+		this.status = status;
+	}
+
+	/**
+	 * Returns the RTC CLI status code of this result.
+	 *
+	 * @return the <code>Constants.STATUS_*</code> code
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the result for the given RTC CLI status code. Any code not being one of the known error codes is treated
+	 * as success.
+	 *
+	 * @param status
+	 *            the <code>Constants.STATUS_*</code> code returned by the CLI command
+	 * @return the matching result
+	 */
+	public static AcceptResult fromCode(int status) {
+		for (AcceptResult result : values()) {
+			if (result.status == status) {
+				return result;
+			}
+		}
+		return OK;
+	}
+}
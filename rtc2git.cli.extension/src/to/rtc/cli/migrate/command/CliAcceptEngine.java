@@ -0,0 +1,30 @@
+package to.rtc.cli.migrate.command;
+
+import java.util.List;
+
+import com.ibm.team.filesystem.cli.core.subcommands.IScmClientConfiguration;
+import com.ibm.team.filesystem.rcp.core.internal.changelog.IChangeLogOutput;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
+
+/**
+ * Accepts by running a <code>scm accept</code> command through the {@link AcceptCommandDelegate}.
+ */
+@SuppressWarnings("restriction")
+public class CliAcceptEngine implements AcceptEngine {
+	private final IScmClientConfiguration config;
+	private final IChangeLogOutput output;
+	private final String workspace;
+
+	public CliAcceptEngine(IScmClientConfiguration config, IChangeLogOutput output, String workspace) {
+		this.config = config;
+		this.output = output;
+		this.workspace = workspace;
+	}
+
+	@Override
+	public AcceptResult accept(List<String> uuids, boolean baseline, boolean acceptMissingChangesets)
+			throws CLIClientException {
+		return AcceptResult.fromCode(new AcceptCommandDelegate(config, output, workspace, uuids, baseline,
+				acceptMissingChangesets).run());
+	}
+}
@@ -0,0 +1,175 @@
+package to.rtc.cli.migrate.command;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.ibm.team.filesystem.client.FileSystemCore;
+import com.ibm.team.filesystem.client.ISandbox;
+import com.ibm.team.filesystem.client.internal.PathLocation;
+import com.ibm.team.filesystem.client.operations.AcceptDilemmaHandler;
+import com.ibm.team.filesystem.client.operations.AcceptOperation;
+import com.ibm.team.filesystem.client.operations.IOperationFactory;
+import com.ibm.team.filesystem.rcp.core.internal.changelog.IChangeLogOutput;
+import com.ibm.team.repository.common.TeamRepositoryException;
+import com.ibm.team.repository.common.UUID;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
+import com.ibm.team.scm.client.IWorkspaceConnection;
+import com.ibm.team.scm.common.GapException;
+import com.ibm.team.scm.common.IBaseline;
+import com.ibm.team.scm.common.IBaselineHandle;
+import com.ibm.team.scm.common.IChangeSet;
+import com.ibm.team.scm.common.IChangeSetHandle;
+
+/**
+ * Accepts by calling the SCM client API directly, reusing the already logged in repository and the workspace
+ * connections opened once for the whole migration. This avoids the command line parsing, login and daemon setup of a
+ * <code>scm accept</code> command per change set.
+ * <p>
+ * The outcome is the one of <code>scm accept -o --no-merge</code>: the accept operation of the client API never merges
+ * by itself, the command line only runs an auto merge afterwards unless <code>--no-merge</code> is given. Conflicts
+ * are left in the workspace and reported as {@link AcceptResult#CONFLICT} or {@link AcceptResult#NWAY_CONFLICT}, an
+ * accept cancelled because the sandbox is out of sync as {@link AcceptResult#OUT_OF_SYNC}. An accept failing for any
+ * other reason has not happened and is thrown as {@link CLIClientException}.
+ */
+@SuppressWarnings("restriction")
+public class InProcessAcceptEngine implements AcceptEngine {
+	private final IChangeLogOutput output;
+	private final IWorkspaceConnection destinationWs;
+	private final IWorkspaceConnection sourceWs;
+	private final Collection<ISandbox> sandboxes;
+	private final IProgressMonitor monitor;
+
+	public InProcessAcceptEngine(IChangeLogOutput output, IWorkspaceConnection destinationWs,
+			IWorkspaceConnection sourceWs, File sandboxDirectory) {
+		this(output, destinationWs, sourceWs, Collections.singletonList(FileSystemCore.getSharingManager()
+				.getSandbox(new PathLocation(sandboxDirectory.getAbsolutePath()), false)));
+	}
+
+	/**
+	 * Creates an engine that only updates the destination workspace in the repository without touching any sandbox.
+	 */
+	public InProcessAcceptEngine(IChangeLogOutput output, IWorkspaceConnection destinationWs,
+			IWorkspaceConnection sourceWs) {
+		this(output, destinationWs, sourceWs, Collections.<ISandbox> emptyList());
+	}
+
+	private InProcessAcceptEngine(IChangeLogOutput output, IWorkspaceConnection destinationWs,
+			IWorkspaceConnection sourceWs, Collection<ISandbox> sandboxes) {
+		this.output = output;
+		this.destinationWs = destinationWs;
+		this.sourceWs = sourceWs;
+		this.sandboxes = sandboxes;
+		this.monitor = new NullProgressMonitor();
+	}
+
+	@Override
+	public AcceptResult accept(List<String> uuids, boolean baseline, boolean acceptMissingChangesets)
+			throws CLIClientException {
+		if (uuids.isEmpty()) {
+			return AcceptResult.WORKSPACE_UNCHANGED;
+		}
+		long start = System.currentTimeMillis();
+		NoMergeDilemmaHandler dilemmaHandler = new NoMergeDilemmaHandler();
+		Exception failure = null;
+		try {
+			AcceptOperation operation = IOperationFactory.instance.getAcceptOperation(sandboxes, dilemmaHandler,
+					acceptMissingChangesets);
+			if (baseline) {
+				operation.requestAccept(destinationWs, sourceWs, toBaselineHandles(uuids),
+						Collections.<IChangeSetHandle> emptyList(), Collections.emptyList());
+			} else {
+				operation.requestAccept(destinationWs, sourceWs, Collections.<IBaselineHandle> emptyList(),
+						toChangeSetHandles(uuids), Collections.emptyList());
+			}
+			operation.run(monitor);
+		} catch (TeamRepositoryException e) {
+			failure = e;
+		} catch (OperationCanceledException e) {
+			failure = e;
+		} finally {
+			output.writeLine("InProcessAccept [" + uuids + " baseline[" + baseline + "]] finished in ["
+					+ (System.currentTimeMillis() - start) + "]ms");
+		}
+		AcceptResult result = toResult(dilemmaHandler.getDilemma(), failure);
+		if (result != AcceptResult.OK) {
+			output.writeLine("There was a [" + result + "](" + (failure == null ? "" : failure.getMessage()) + ")");
+		}
+		return result;
+	}
+
+	/**
+	 * Maps the outcome of an accept operation to the result <code>scm accept -o --no-merge</code> ends with.
+	 *
+	 * @param dilemma
+	 *            the conflict the accept has run into, {@link AcceptResult#OK} if none
+	 * @param failure
+	 *            the exception the accept failed with, <code>null</code> if it finished
+	 * @return the result of the accept
+	 * @throws CLIClientException
+	 *             if the accept failed for another reason than a gap or a sandbox out of sync
+	 */
+	static AcceptResult toResult(AcceptResult dilemma, Exception failure) throws CLIClientException {
+		if (failure == null) {
+			return dilemma;
+		}
+		if (failure instanceof GapException) {
+			return AcceptResult.GAP;
+		}
+		if (failure instanceof OperationCanceledException) {
+			return AcceptResult.OUT_OF_SYNC;
+		}
+		throw new CLIClientException("Unable to accept: " + failure.getMessage(), failure);
+	}
+
+	private static List<IChangeSetHandle> toChangeSetHandles(List<String> uuids) {
+		List<IChangeSetHandle> handles = new ArrayList<IChangeSetHandle>(uuids.size());
+		for (String uuid : uuids) {
+			handles.add((IChangeSetHandle) IChangeSet.ITEM_TYPE.createItemHandle(UUID.valueOf(uuid), null));
+		}
+		return handles;
+	}
+
+	private static List<IBaselineHandle> toBaselineHandles(List<String> uuids) {
+		List<IBaselineHandle> handles = new ArrayList<IBaselineHandle>(uuids.size());
+		for (String uuid : uuids) {
+			handles.add((IBaselineHandle) IBaseline.ITEM_TYPE.createItemHandle(UUID.valueOf(uuid), null));
+		}
+		return handles;
+	}
+
+	/**
+	 * Continues the accept without merging when it runs into conflicts and remembers the worst of them. All other
+	 * dilemmas are handled like by the default handler, which cancels the accept if the sandbox is out of sync.
+	 */
+	static final class NoMergeDilemmaHandler extends AcceptDilemmaHandler {
+		private AcceptResult dilemma = AcceptResult.OK;
+
+		@Override
+		public int willCreateNewConflicts(Collection<IWorkspaceConnection> workspaces) {
+			if (dilemma == AcceptResult.OK) {
+				dilemma = AcceptResult.CONFLICT;
+			}
+			return CONTINUE;
+		}
+
+		@Override
+		public int nWayConflict(Collection<IWorkspaceConnection> workspaces) {
+			dilemma = AcceptResult.NWAY_CONFLICT;
+			return CONTINUE;
+		}
+
+		/**
+		 * @return the worst conflict met, {@link AcceptResult#OK} if none
+		 */
+		AcceptResult getDilemma() {
+			return dilemma;
+		}
+	}
+}
@@ -3,6 +3,11 @@ package to.rtc.cli.migrate.command;
 import java.lang.reflect.Field;
 import java.util.List;
 
+import to.rtc.cli.migrate.LoggingPrintStream;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.Phase;
+import to.rtc.cli.migrate.metrics.PhaseTimer;
+
 import com.ibm.team.filesystem.cli.core.AbstractSubcommand;
 import com.ibm.team.filesystem.cli.core.subcommands.IScmClientConfiguration;
 import com.ibm.team.filesystem.rcp.core.internal.changelog.IChangeLogOutput;
@@ -29,13 +34,14 @@ public abstract class RtcCommandDelegate {
 	}
 
 	public int run() throws CLIClientException {
-		long start = System.currentTimeMillis();
+		PhaseTimer timer = MetricsRegistry.getInstance().start(Phase.RTC_COMMAND);
 		AbstractSubcommand command = getCommand();
+		LoggingPrintStream.beginChatter();
 		try {
 			return command.run(config);
 		} finally {
-			output.writeLine(
-					"DelegateCommand [" + this + "] finished in [" + (System.currentTimeMillis() - start) + "]ms");
+			LoggingPrintStream.endChatter();
+			output.writeLine("DelegateCommand [" + this + "] finished in [" + timer.stop() + "]ms");
 		}
 	}
 
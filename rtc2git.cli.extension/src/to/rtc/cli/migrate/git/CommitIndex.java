@@ -0,0 +1,527 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The index from the UUIDs of the migrated RTC change sets to their git commits and back, stored in the directory
+ * <code>rtc2git</code> of the git directory. The index of a generation consists of the compacted file
+ * <code>changesets-&lt;generation&gt;.idx</code> and the log <code>changesets-&lt;generation&gt;.log</code> the later
+ * entries are appended to. The compacted file holds a header with the number of entries, followed by the entries
+ * sorted by UUID, each being the UUID padded to 24 bytes and the commit id, and the same entries sorted by commit, each
+ * being the commit id and the position of the entry within the first table. It is memory mapped, so both lookups are
+ * binary searches not reading more than a few pages. The log holds the UUID and commit id of each appended entry and is
+ * read into memory. Once the log has grown as large as the compacted file, both are compacted into the file of the
+ * next generation. A file is never replaced, so a reader still mapping the file of an older generation is not
+ * disturbed, and the files of the older generations are deleted as soon as the file system allows it.
+ */
+public final class CommitIndex {
+	static final String NOTES_REF = "refs/notes/rtc2git";
+	private static final String DIRECTORY = "rtc2git";
+	private static final Pattern FILE_NAME = Pattern.compile("changesets-(\\d+)\\.(idx|log)");
+	private static final int MAGIC = 0x52324749;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 12;
+	private static final int UUID_LENGTH = 24;
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+	private static final int UUID_ENTRY_LENGTH = UUID_LENGTH + ID_LENGTH;
+	private static final int COMMIT_ENTRY_LENGTH = ID_LENGTH + 4;
+	private static final int MIN_LOG_SIZE = 4096;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File directory;
+	private final SortedMap<String, ObjectId> log = new TreeMap<String, ObjectId>();
+	private final Map<ObjectId, List<String>> logByCommit = new HashMap<ObjectId, List<String>>();
+	private int generation;
+	private ByteBuffer buffer;
+	private int baseSize;
+	private int commitTable;
+	private long logLength;
+	private int size;
+
+	private CommitIndex(File directory, int generation) throws IOException {
+		this.directory = directory;
+		mapGeneration(generation);
+	}
+
+	/**
+	 * Opens the index of the given git directory.
+	 *
+	 * @param gitDirectory
+	 *            the <code>.git</code> directory of the repository
+	 * @return the index, being empty if the repository has none
+	 */
+	public static CommitIndex open(File gitDirectory) throws IOException {
+		File directory = new File(gitDirectory, DIRECTORY);
+		int generation = 0;
+		for (String name : list(directory)) {
+			Matcher matcher = FILE_NAME.matcher(name);
+			if (matcher.matches() && "idx".equals(matcher.group(2))) {
+				generation = Math.max(generation, Integer.parseInt(matcher.group(1)));
+			}
+		}
+		CommitIndex index = new CommitIndex(directory, generation);
+		index.readLog();
+		return index;
+	}
+
+	/**
+	 * @param gitDirectory
+	 *            the <code>.git</code> directory of the repository
+	 * @return whether the repository has an index
+	 */
+	static boolean exists(File gitDirectory) {
+		for (String name : list(new File(gitDirectory, DIRECTORY))) {
+			if (FILE_NAME.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of indexed change sets
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the commit containing the given change set.
+	 *
+	 * @param changeSetUuid
+	 *            the UUID of the RTC change set
+	 * @return the commit or <code>null</code> if the change set has not been migrated
+	 */
+	public ObjectId findCommit(String changeSetUuid) {
+		byte[] key = toKey(changeSetUuid);
+		if (key == null) {
+			return null;
+		}
+		ObjectId commit = log.get(changeSetUuid);
+		return commit != null ? commit : findBaseCommit(key);
+	}
+
+	/**
+	 * Returns the change sets committed as the given commit, being more than one for coalesced change sets.
+	 *
+	 * @param commit
+	 *            the id of the commit
+	 * @return the UUIDs of the change sets, empty if the commit is not the result of a change set
+	 */
+	public List<String> findChangeSets(AnyObjectId commit) {
+		byte[] id = new byte[ID_LENGTH];
+		commit.copyRawTo(id, 0);
+		// the first entry not sorting before the commit
+		int low = 0;
+		int high = baseSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(id, commitTable + mid * COMMIT_ENTRY_LENGTH) > 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		List<String> uuids = new ArrayList<String>(1);
+		for (int i = low; i < baseSize; i++) {
+			int offset = commitTable + i * COMMIT_ENTRY_LENGTH;
+			if (compare(id, offset) != 0) {
+				break;
+			}
+			String uuid = readUuid(HEADER_LENGTH + buffer.getInt(offset + ID_LENGTH) * UUID_ENTRY_LENGTH);
+			// the log replaces the entries of the compacted file
+			if (!log.containsKey(uuid)) {
+				uuids.add(uuid);
+			}
+		}
+		List<String> logged = logByCommit.get(commit);
+		if (logged != null) {
+			uuids.addAll(logged);
+			Collections.sort(uuids);
+		}
+		return uuids;
+	}
+
+	/**
+	 * Adds the given entries to the index of the given git directory, replacing the commits of already indexed change
+	 * sets.
+	 *
+	 * @param gitDirectory
+	 *            the <code>.git</code> directory of the repository
+	 * @param entries
+	 *            the commits of the change sets by UUID
+	 */
+	static void update(File gitDirectory, Map<String, ObjectId> entries) throws IOException {
+		open(gitDirectory).add(entries);
+	}
+
+	/**
+	 * Appends the given entries to the log, replacing the commits of already indexed change sets, and compacts the
+	 * index once the log has grown as large as the compacted file. The index sees the entries right away, other
+	 * readers once they open the index again.
+	 *
+	 * @param entries
+	 *            the commits of the change sets by UUID
+	 */
+	void add(Map<String, ObjectId> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * UUID_ENTRY_LENGTH);
+		byte[] id = new byte[ID_LENGTH];
+		for (Entry<String, ObjectId> entry : entries.entrySet()) {
+			byte[] key = toKey(entry.getKey());
+			if (key == null) {
+				throw new IllegalArgumentException("Invalid changeset UUID " + entry.getKey());
+			}
+			bytes.write(key);
+			entry.getValue().copyRawTo(id, 0);
+			bytes.write(id);
+		}
+		directory.mkdirs();
+		RandomAccessFile out = new RandomAccessFile(getFile("log"), "rw");
+		try {
+			// overwrites the partial entry of an interrupted append
+			out.seek(logLength);
+			out.write(bytes.toByteArray());
+			logLength += bytes.size();
+			out.setLength(logLength);
+		} finally {
+			out.close();
+		}
+		for (Entry<String, ObjectId> entry : entries.entrySet()) {
+			putLog(entry.getKey(), entry.getValue().copy());
+		}
+		if (log.size() >= Math.max(MIN_LOG_SIZE, baseSize)) {
+			compact();
+		}
+	}
+
+	/**
+	 * @return all entries of the index
+	 */
+	SortedMap<String, ObjectId> getEntries() {
+		SortedMap<String, ObjectId> entries = new TreeMap<String, ObjectId>();
+		for (int i = 0; i < baseSize; i++) {
+			int offset = HEADER_LENGTH + i * UUID_ENTRY_LENGTH;
+			entries.put(readUuid(offset), readObjectId(offset + UUID_LENGTH));
+		}
+		entries.putAll(log);
+		return entries;
+	}
+
+	/**
+	 * Writes all entries to the compacted file of the next generation, which becomes visible by its rename only, and
+	 * deletes the files of the older generations.
+	 */
+	private void compact() throws IOException {
+		int next = generation + 1;
+		File file = new File(directory, "changesets-" + next + ".idx");
+		File tmp = new File(directory, file.getName() + ".tmp");
+		write(tmp, getEntries());
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Unable to create " + file);
+		}
+		mapGeneration(next);
+		log.clear();
+		logByCommit.clear();
+		logLength = 0;
+		for (String name : list(directory)) {
+			Matcher matcher = FILE_NAME.matcher(name);
+			if (matcher.matches() && Integer.parseInt(matcher.group(1)) < next) {
+				// fails as long as a reader maps the file on some platforms, the next compaction tries again
+				new File(directory, name).delete();
+			}
+		}
+	}
+
+	private void mapGeneration(int generation) throws IOException {
+		this.generation = generation;
+		buffer = ByteBuffer.allocate(0);
+		baseSize = 0;
+		File file = getFile("idx");
+		if (generation > 0) {
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				// the mapping stays valid after the file has been closed
+				buffer = in.getChannel().map(MapMode.READ_ONLY, 0, in.length());
+			} finally {
+				in.close();
+			}
+			if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a changeset index");
+			}
+			baseSize = buffer.getInt(8);
+			if (buffer.capacity() != HEADER_LENGTH + (long) baseSize * (UUID_ENTRY_LENGTH + COMMIT_ENTRY_LENGTH)) {
+				throw new IOException(file + " is truncated");
+			}
+		}
+		commitTable = HEADER_LENGTH + baseSize * UUID_ENTRY_LENGTH;
+		size = baseSize;
+	}
+
+	/**
+	 * Reads the log of the generation, ignoring a partial entry left by an interrupted append.
+	 */
+	private void readLog() throws IOException {
+		File file = getFile("log");
+		if (!file.isFile()) {
+			return;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			long count = file.length() / UUID_ENTRY_LENGTH;
+			byte[] entry = new byte[UUID_ENTRY_LENGTH];
+			for (long i = 0; i < count; i++) {
+				in.readFully(entry);
+				int length = 0;
+				while (length < UUID_LENGTH && entry[length] != 0) {
+					length++;
+				}
+				putLog(new String(entry, 0, length, ASCII), ObjectId.fromRaw(entry, UUID_LENGTH));
+			}
+			logLength = count * UUID_ENTRY_LENGTH;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void putLog(String uuid, ObjectId commit) {
+		ObjectId previous = log.put(uuid, commit);
+		if (previous != null) {
+			logByCommit.get(previous).remove(uuid);
+		} else if (findBaseCommit(toKey(uuid)) == null) {
+			size++;
+		}
+		List<String> uuids = logByCommit.get(commit);
+		if (uuids == null) {
+			uuids = new ArrayList<String>(1);
+			logByCommit.put(commit, uuids);
+		}
+		uuids.add(uuid);
+	}
+
+	private File getFile(String extension) {
+		return new File(directory, "changesets-" + generation + "." + extension);
+	}
+
+	private static String[] list(File directory) {
+		String[] names = directory.list();
+		return names == null ? new String[0] : names;
+	}
+
+	/**
+	 * Mirrors the given entries as notes of the commits in <code>refs/notes/rtc2git</code>, all within one notes
+	 * commit.
+	 *
+	 * @param repository
+	 *            the repository holding the commits
+	 * @param entries
+	 *            the commits of the change sets by UUID
+	 * @param ident
+	 *            the author and committer of the notes commit
+	 */
+	static void writeNotes(Repository repository, Map<String, ObjectId> entries, PersonIdent ident)
+			throws IOException {
+		Map<ObjectId, StringBuilder> notes = new LinkedHashMap<ObjectId, StringBuilder>();
+		for (Entry<String, ObjectId> entry : entries.entrySet()) {
+			StringBuilder note = notes.get(entry.getValue());
+			if (note == null) {
+				note = new StringBuilder();
+				notes.put(entry.getValue(), note);
+			}
+			note.append("RTC-Changeset: ").append(entry.getKey()).append('\n');
+		}
+		ObjectInserter inserter = repository.newObjectInserter();
+		ObjectReader reader = inserter.newReader();
+		RevWalk walk = new RevWalk(reader);
+		try {
+			Ref ref = repository.exactRef(NOTES_REF);
+			RevCommit parent = ref == null ? null : walk.parseCommit(ref.getObjectId());
+			NoteMap noteMap = parent == null ? NoteMap.newEmptyMap() : NoteMap.read(reader, parent);
+			for (Entry<ObjectId, StringBuilder> note : notes.entrySet()) {
+				String text = note.getValue().toString();
+				ObjectId existing = noteMap.get(note.getKey());
+				if (existing != null) {
+					String existingText = new String(reader.open(existing).getBytes(), UTF8);
+					if (existingText.contains(text)) {
+						continue;
+					}
+					text = existingText.concat(text);
+				}
+				noteMap.set(note.getKey(), inserter.insert(Constants.OBJ_BLOB, text.getBytes(UTF8)));
+			}
+			CommitBuilder builder = new CommitBuilder();
+			builder.setTreeId(noteMap.writeTree(inserter));
+			if (parent != null) {
+				builder.setParentId(parent);
+			}
+			builder.setAuthor(ident);
+			builder.setCommitter(ident);
+			builder.setMessage("Notes added by rtc2git\n");
+			ObjectId commit = inserter.insert(builder);
+			inserter.flush();
+			RefUpdate update = repository.updateRef(NOTES_REF);
+			update.setNewObjectId(commit);
+			update.setExpectedOldObjectId(parent == null ? ObjectId.zeroId() : parent);
+			RefUpdate.Result result = update.update(walk);
+			if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+				throw new IOException("Unable to update " + NOTES_REF + ": " + result);
+			}
+		} finally {
+			walk.close();
+			reader.close();
+			inserter.close();
+		}
+	}
+
+	private static void write(File file, SortedMap<String, ObjectId> entries) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			List<CommitEntry> byCommit = new ArrayList<CommitEntry>(entries.size());
+			byte[] id = new byte[ID_LENGTH];
+			int position = 0;
+			for (Entry<String, ObjectId> entry : entries.entrySet()) {
+				byte[] key = toKey(entry.getKey());
+				if (key == null) {
+					throw new IllegalArgumentException("Invalid changeset UUID " + entry.getKey());
+				}
+				out.write(key);
+				entry.getValue().copyRawTo(id, 0);
+				out.write(id);
+				byCommit.add(new CommitEntry(entry.getValue(), position++));
+			}
+			Collections.sort(byCommit);
+			for (CommitEntry entry : byCommit) {
+				entry.commit.copyRawTo(id, 0);
+				out.write(id);
+				out.writeInt(entry.position);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * RTC UUIDs are 23 ASCII characters, so the sort order of the padded keys is the one of the strings.
+	 */
+	private static byte[] toKey(String uuid) {
+		if (uuid == null || uuid.isEmpty() || uuid.length() > UUID_LENGTH) {
+			return null;
+		}
+		byte[] key = new byte[UUID_LENGTH];
+		for (int i = 0; i < uuid.length(); i++) {
+			char c = uuid.charAt(i);
+			if (c == 0 || c > 127) {
+				return null;
+			}
+			key[i] = (byte) c;
+		}
+		return key;
+	}
+
+	private ObjectId findBaseCommit(byte[] key) {
+		int low = 0;
+		int high = baseSize - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = HEADER_LENGTH + mid * UUID_ENTRY_LENGTH;
+			int cmp = compare(key, offset);
+			if (cmp == 0) {
+				return readObjectId(offset + UUID_LENGTH);
+			} else if (cmp < 0) {
+				high = mid - 1;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return null;
+	}
+
+	private int compare(byte[] key, int offset) {
+		for (int i = 0; i < key.length; i++) {
+			int cmp = (key[i] & 0xff) - (buffer.get(offset + i) & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+	private ObjectId readObjectId(int offset) {
+		byte[] id = new byte[ID_LENGTH];
+		for (int i = 0; i < ID_LENGTH; i++) {
+			id[i] = buffer.get(offset + i);
+		}
+		return ObjectId.fromRaw(id);
+	}
+
+	private String readUuid(int offset) {
+		StringBuilder sb = new StringBuilder(UUID_LENGTH);
+		for (int i = 0; i < UUID_LENGTH; i++) {
+			byte b = buffer.get(offset + i);
+			if (b == 0) {
+				break;
+			}
+			sb.append((char) b);
+		}
+		return sb.toString();
+	}
+
+	private static final class CommitEntry implements Comparable<CommitEntry> {
+		private final ObjectId commit;
+		private final int position;
+
+		CommitEntry(ObjectId commit, int position) {
+			this.commit = commit;
+			this.position = position;
+		}
+
+		/**
+		 * Object ids compare by their raw bytes, being the order of the binary search.
+		 */
+		@Override
+		public int compareTo(CommitEntry other) {
+			int cmp = commit.compareTo(other.commit);
+			return cmp != 0 ? cmp : position - other.position;
+		}
+	}
+}
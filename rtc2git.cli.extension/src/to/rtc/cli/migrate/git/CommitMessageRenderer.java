@@ -0,0 +1,259 @@
+package to.rtc.cli.migrate.git;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.util.CommitCommentTranslator;
+
+/**
+ * Renders the commit message of a change set from the <code>commit.message.format</code>,
+ * <code>rtc.changeset.comment.*</code> and <code>rtc.workitem.*</code> properties and the
+ * {@link CommitCommentTranslator} definitions. All properties are read and the format templates are compiled once, the
+ * message is then assembled into reused builders without any {@link Formatter}.
+ * <p>
+ * Templates using only <code>%s</code> conversions with optional argument index, <code>-</code> flag, width and
+ * precision, <code>%n</code> and <code>%%</code> are compiled, any other template is rendered by a {@link Formatter}
+ * with the same result as before. A renderer is not thread safe.
+ */
+final class CommitMessageRenderer {
+	private final Template messageFormat;
+	private final Template commentFormat;
+	private final boolean substituteComment;
+	private final Template workItemNumberFormat;
+	private final String workItemNumberDelimiter;
+	private final Template workItemTextFormat;
+	private final String workItemTextDelimiter;
+	private final CommitCommentTranslator commentTranslator;
+
+	private final StringBuilder message = new StringBuilder(256);
+	private final StringBuilder workItemNumbers = new StringBuilder(64);
+	private final StringBuilder comment = new StringBuilder(128);
+	private final StringBuilder workItemTexts = new StringBuilder(256);
+	private final String[] arguments = new String[3];
+
+	CommitMessageRenderer(Properties props) {
+		messageFormat = Template.compile(props.getProperty("commit.message.format", "%1s %2s"));
+		commentFormat = Template.compile(props.getProperty("rtc.changeset.comment.format", "%1s"));
+		substituteComment = Boolean
+				.valueOf(props.getProperty("rtc.changeset.comment.substitute", Boolean.FALSE.toString()));
+		workItemNumberFormat = Template.compile(props.getProperty("rtc.workitem.number.format", "%1s"));
+		workItemNumberDelimiter = props.getProperty("rtc.workitem.number.delimiter", " ");
+		workItemTextFormat = Template.compile(props.getProperty("rtc.workitem.text.format", "%1s %2s"));
+		workItemTextDelimiter = props.getProperty("rtc.workitem.text.delimiter",
+				System.getProperty("line.separator"));
+		commentTranslator = new CommitCommentTranslator(props);
+	}
+
+	/**
+	 * @return the complete commit message of the given change set
+	 */
+	String render(ChangeSet changeSet) {
+		List<WorkItem> workItems = changeSet.getWorkItems();
+		return getCommitMessage(getWorkItemNumbers(workItems), getCommentText(changeSet), getWorkItemTexts(workItems));
+	}
+
+	String getCommitMessage(String workItemNumbers, String comment, String workItemTexts) {
+		message.setLength(0);
+		arguments[0] = workItemNumbers;
+		arguments[1] = commentTranslator.translate(comment);
+		arguments[2] = workItemTexts;
+		messageFormat.appendTo(message, arguments);
+		int start = 0;
+		int end = message.length();
+		while (start < end && message.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && message.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return message.substring(start, end);
+	}
+
+	String getCommentText(ChangeSet changeSet) {
+		String text = changeSet.getComment();
+		String workItemText = changeSet.getWorkItems().isEmpty() ? "" : changeSet.getWorkItems().get(0).getText();
+		if (text.isEmpty() && substituteComment) {
+			return workItemText;
+		}
+		comment.setLength(0);
+		arguments[0] = text;
+		arguments[1] = workItemText;
+		commentFormat.appendTo(comment, arguments, 2);
+		return comment.toString();
+	}
+
+	String getWorkItemNumbers(List<WorkItem> workItems) {
+		if (workItems.isEmpty()) {
+			return "";
+		}
+		workItemNumbers.setLength(0);
+		arguments[1] = null;
+		arguments[2] = null;
+		for (int i = 0; i < workItems.size(); i++) {
+			if (i > 0) {
+				workItemNumbers.append(workItemNumberDelimiter);
+			}
+			arguments[0] = String.valueOf(workItems.get(i).getNumber());
+			workItemNumberFormat.appendTo(workItemNumbers, arguments, 1);
+		}
+		return workItemNumbers.toString();
+	}
+
+	String getWorkItemTexts(List<WorkItem> workItems) {
+		if (workItems.isEmpty()) {
+			return "";
+		}
+		workItemTexts.setLength(0);
+		arguments[2] = null;
+		for (int i = 0; i < workItems.size(); i++) {
+			if (i > 0) {
+				workItemTexts.append(workItemTextDelimiter);
+			}
+			WorkItem workItem = workItems.get(i);
+			arguments[0] = String.valueOf(workItem.getNumber());
+			arguments[1] = workItem.getText();
+			workItemTextFormat.appendTo(workItemTexts, arguments, 2);
+		}
+		return workItemTexts.toString();
+	}
+
+	/**
+	 * A format string compiled into its literal parts and <code>%s</code> conversions.
+	 */
+	static final class Template {
+		private static final Pattern SPECIFIER = Pattern
+				.compile("%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+		private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+		private final String format;
+		private final String[] literals;
+		private final int[] indexes;
+		private final int[] widths;
+		private final int[] precisions;
+		private final boolean[] leftJustified;
+		private final int argumentCount;
+
+		private Template(String format, List<String> literals, List<int[]> specifiers, int argumentCount) {
+			this.format = format;
+			this.argumentCount = argumentCount;
+			this.literals = literals == null ? null : literals.toArray(new String[literals.size()]);
+			int size = specifiers == null ? 0 : specifiers.size();
+			indexes = new int[size];
+			widths = new int[size];
+			precisions = new int[size];
+			leftJustified = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				int[] specifier = specifiers.get(i);
+				indexes[i] = specifier[0];
+				widths[i] = specifier[1];
+				precisions[i] = specifier[2];
+				leftJustified[i] = specifier[3] != 0;
+			}
+		}
+
+		/**
+		 * Compiles the given format string, falling back to a {@link Formatter} for any conversion other than a plain
+		 * <code>%s</code>.
+		 */
+		static Template compile(String format) {
+			List<String> literals = new ArrayList<String>();
+			List<int[]> specifiers = new ArrayList<int[]>();
+			StringBuilder literal = new StringBuilder();
+			Matcher matcher = SPECIFIER.matcher(format);
+			int ordinaryIndex = 0;
+			int argumentCount = 0;
+			int position = 0;
+			while (position < format.length()) {
+				int percent = format.indexOf('%', position);
+				if (percent < 0) {
+					literal.append(format, position, format.length());
+					break;
+				}
+				literal.append(format, position, percent);
+				if (!matcher.find(percent) || matcher.start() != percent) {
+					return new Template(format, null, null, 0);
+				}
+				position = matcher.end();
+				String flags = matcher.group(2) == null ? "" : matcher.group(2);
+				char conversion = matcher.group(6).charAt(0);
+				boolean plain = matcher.group(1) == null && flags.isEmpty() && matcher.group(3) == null
+						&& matcher.group(4) == null && matcher.group(5) == null;
+				if (conversion == 'n' && plain) {
+					literal.append(LINE_SEPARATOR);
+				} else if (conversion == '%' && plain) {
+					literal.append('%');
+				} else if (conversion == 's' && matcher.group(5) == null && (flags.isEmpty()
+						|| "-".equals(flags) && matcher.group(3) != null)) {
+					int index = matcher.group(1) == null ? ordinaryIndex++
+							: Integer.parseInt(matcher.group(1).substring(0, matcher.group(1).length() - 1)) - 1;
+					if (index < 0) {
+						return new Template(format, null, null, 0);
+					}
+					int width = matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3));
+					int precision = matcher.group(4) == null ? -1 : Integer.parseInt(matcher.group(4).substring(1));
+					literals.add(literal.toString());
+					literal.setLength(0);
+					specifiers.add(new int[] { index, width, precision, flags.isEmpty() ? 0 : 1 });
+					argumentCount = Math.max(argumentCount, index + 1);
+				} else {
+					return new Template(format, null, null, 0);
+				}
+			}
+			literals.add(literal.toString());
+			return new Template(format, literals, specifiers, argumentCount);
+		}
+
+		boolean isCompiled() {
+			return literals != null;
+		}
+
+		StringBuilder appendTo(StringBuilder sb, String[] args) {
+			return appendTo(sb, args, args.length);
+		}
+
+		/**
+		 * Appends the formatted arguments, only the first <code>count</code> arguments are passed to the template.
+		 */
+		StringBuilder appendTo(StringBuilder sb, String[] args, int count) {
+			if (literals == null || argumentCount > count) {
+				Object[] formatArgs = new Object[count];
+				System.arraycopy(args, 0, formatArgs, 0, count);
+				Formatter formatter = new Formatter(sb);
+				try {
+					formatter.format(format, formatArgs);
+				} finally {
+					formatter.close();
+				}
+				return sb;
+			}
+			for (int i = 0; i < indexes.length; i++) {
+				sb.append(literals[i]);
+				String value = String.valueOf(args[indexes[i]]);
+				if (precisions[i] >= 0 && precisions[i] < value.length()) {
+					value = value.substring(0, precisions[i]);
+				}
+				int padding = widths[i] - value.length();
+				if (!leftJustified[i]) {
+					pad(sb, padding);
+				}
+				sb.append(value);
+				if (leftJustified[i]) {
+					pad(sb, padding);
+				}
+			}
+			return sb.append(literals[indexes.length]);
+		}
+
+		private static void pad(StringBuilder sb, int padding) {
+			for (int i = 0; i < padding; i++) {
+				sb.append(' ');
+			}
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.StreamingMigrator;
+import to.rtc.cli.migrate.Tag;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+
+/**
+ * A {@link StreamingMigrator} migrating every RTC component, or a group of components, into its own git repository.
+ * Configured by the following properties:
+ * <ul>
+ * <li><code>component.fanout</code>: <code>true</code> enables this migrator</li>
+ * <li><code>component.repository.&lt;component&gt;</code>: the name of the repository the component is migrated into,
+ * by default the name of the component</li>
+ * <li><code>component.superproject</code>: <code>true</code> records all repositories as submodules of a superproject
+ * in the sandbox root</li>
+ * <li><code>component.queue.size</code>: the maximum number of change sets waiting for a repository</li>
+ * </ul>
+ * The repositories are created as sub directories of the sandbox root. Every repository has its own writer thread and
+ * commit queue, so commits to different repositories proceed in parallel, while the commits of one repository keep the
+ * order of the change sets. All other properties apply to each repository like to a single {@link GitMigrator}.
+ */
+final class ComponentFanOutMigrator implements StreamingMigrator {
+	static final String DEFAULT_REPOSITORY = "default";
+	private static final String REPOSITORY_PROPERTY = "component.repository.";
+
+	private final Properties properties;
+	private final boolean withSuperproject;
+	private final int queueSize;
+	private final Map<String, Writer> writers;
+	private final AtomicReference<Throwable> failure;
+	private File rootDirectory;
+	private Writer superprojectWriter;
+	private Superproject superproject;
+
+	ComponentFanOutMigrator(Properties properties) {
+		this.properties = properties;
+		this.withSuperproject = Boolean.parseBoolean(properties.getProperty("component.superproject"));
+		this.queueSize = Integer.parseInt(properties.getProperty("component.queue.size", "64"));
+		this.writers = new LinkedHashMap<String, Writer>();
+		this.failure = new AtomicReference<Throwable>();
+	}
+
+	static boolean isEnabled(Properties properties) {
+		return Boolean.parseBoolean(properties.getProperty("component.fanout"));
+	}
+
+	/**
+	 * @return the name of the repository the given component is migrated into
+	 */
+	String getRepositoryName(String component) {
+		if (component == null) {
+			return DEFAULT_REPOSITORY;
+		}
+		String name = properties.getProperty(REPOSITORY_PROPERTY.concat(component), component);
+		StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+		}
+		return sb.length() == 0 || sb.charAt(0) == '.' ? "_".concat(sb.toString()) : sb.toString();
+	}
+
+	/**
+	 * @return the names of all repositories written so far
+	 */
+	Collection<String> getRepositoryNames() {
+		return writers.keySet();
+	}
+
+	@Override
+	public void init(File sandboxRootDirectory) {
+		rootDirectory = sandboxRootDirectory;
+		if (withSuperproject) {
+			superproject = new Superproject(properties);
+			superproject.init(sandboxRootDirectory);
+			superprojectWriter = new Writer("superproject", null);
+		}
+	}
+
+	@Override
+	public int commitChanges(ChangeSet changeSet) {
+		throw new IllegalStateException("component.fanout is only supported with --stream-content");
+	}
+
+	/**
+	 * The changes are committed by the writer of the repository of the component later on.
+	 *
+	 * @return the number of file changes handed to the writer
+	 */
+	@Override
+	public int commitChanges(final ChangeSet changeSet, final List<FileChange> changes) {
+		checkFailure();
+		final String name = getRepositoryName(changeSet.getComponent());
+		final Writer writer = getWriter(name);
+		final Future<ObjectId> commit = writer.submit(inChangeSet(new Callable<ObjectId>() {
+			@Override
+			public ObjectId call() {
+				writer.migrator.commitChanges(changeSet, changes);
+				if (writer.migrator.needsIntermediateCleanup()) {
+					writer.migrator.intermediateCleanup();
+				}
+				return writer.migrator.getHead();
+			}
+		}));
+		if (superprojectWriter != null) {
+			superprojectWriter.submit(inChangeSet(new Callable<ObjectId>() {
+				@Override
+				public ObjectId call() throws Exception {
+					ObjectId head = commit.get();
+					return head == null ? null : superproject.record(changeSet, name, head);
+				}
+			}));
+		}
+		return changes.size();
+	}
+
+	@Override
+	public void createTag(final Tag tag) {
+		checkFailure();
+		for (final Writer writer : writers.values()) {
+			writer.submit(new Callable<ObjectId>() {
+				@Override
+				public ObjectId call() {
+					writer.migrator.createTag(tag);
+					return null;
+				}
+			});
+		}
+		if (superprojectWriter != null) {
+			superprojectWriter.submit(new Callable<ObjectId>() {
+				@Override
+				public ObjectId call() {
+					superproject.createTag(tag);
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * The repositories are cleaned up by their writers, whenever needed.
+	 */
+	@Override
+	public boolean needsIntermediateCleanup() {
+		return false;
+	}
+
+	@Override
+	public void intermediateCleanup() {
+		// done by the writers
+	}
+
+	/**
+	 * Waits for all queued commits and closes all repositories in parallel.
+	 */
+	@Override
+	public void close() {
+		List<Writer> all = new ArrayList<Writer>(writers.values());
+		for (final Writer writer : all) {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					writer.migrator.close();
+				}
+			});
+		}
+		if (superprojectWriter != null) {
+			superprojectWriter.execute(new Runnable() {
+				@Override
+				public void run() {
+					superproject.close();
+				}
+			});
+			all.add(superprojectWriter);
+		}
+		for (Writer writer : all) {
+			writer.shutdown();
+		}
+		checkFailure();
+	}
+
+	private Writer getWriter(String name) {
+		Writer writer = writers.get(name);
+		if (writer == null) {
+			File directory = new File(rootDirectory, name);
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new RuntimeException("Unable to create repository directory " + directory);
+			}
+			GitMigrator migrator = new GitMigrator(properties);
+			migrator.init(directory);
+			writer = new Writer(name, migrator);
+			writers.put(name, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Wraps the given task, so its phases are attributed to the change sets the current thread is migrating, although
+	 * the task runs on a writer thread.
+	 */
+	static Callable<ObjectId> inChangeSet(final Callable<ObjectId> task) {
+		final MetricsRegistry metrics = MetricsRegistry.getInstance();
+		final String changeSetUuids = metrics.getChangeSetUuids();
+		final String component = metrics.getComponent();
+		return new Callable<ObjectId>() {
+			@Override
+			public ObjectId call() throws Exception {
+				metrics.enterChangeSet(changeSetUuids, component);
+				try {
+					return task.call();
+				} finally {
+					metrics.leaveChangeSet();
+				}
+			}
+		};
+	}
+
+		private void checkFailure() {
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new RuntimeException("Unable to migrate into the component repositories", cause);
+		}
+	}
+
+	/**
+	 * Executes the tasks of one repository in the order they are submitted on its own thread. The number of queued
+	 * tasks is limited, so the producer waits for a repository falling behind.
+	 */
+	private final class Writer {
+		private final GitMigrator migrator;
+		private final ExecutorService executor;
+		private final Semaphore slots;
+
+		Writer(final String name, GitMigrator migrator) {
+			this.migrator = migrator;
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "git-writer-" + name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			slots = new Semaphore(queueSize);
+		}
+
+		Future<ObjectId> submit(final Callable<ObjectId> task) {
+			slots.acquireUninterruptibly();
+			return executor.submit(new Callable<ObjectId>() {
+				@Override
+				public ObjectId call() {
+					try {
+						if (failure.get() == null) {
+							return task.call();
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						slots.release();
+					}
+					return null;
+				}
+			});
+		}
+
+		/**
+		 * Executes the given task after all queued tasks, even after a failure.
+		 */
+		void execute(final Runnable task) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+
+		void shutdown() {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -1,20 +1,24 @@
 package to.rtc.cli.migrate.git;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Formatter;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,15 +30,28 @@ import org.eclipse.jgit.api.RmCommand;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.WindowCacheConfig;
 
 import to.rtc.cli.migrate.ChangeSet;
 import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
 import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.ReusingMigrator;
 import to.rtc.cli.migrate.Tag;
-import to.rtc.cli.migrate.util.CommitCommentTranslator;
+import to.rtc.cli.migrate.metrics.Counter;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.Phase;
+import to.rtc.cli.migrate.metrics.PhaseTimer;
 import to.rtc.cli.migrate.util.Files;
 import to.rtc.cli.migrate.util.JazzignoreTranslator;
 
@@ -44,7 +61,7 @@ import to.rtc.cli.migrate.util.JazzignoreTranslator;
  * @author otmar.humbel
  * @author patrick.reinhart
  */
-public final class GitMigrator implements Migrator {
+public final class GitMigrator implements ReusingMigrator {
 	private static final String GIT_CONFIG_PREFIX = "git.config.";
 	static final List<String> ROOT_IGNORED_ENTRIES = Arrays.asList("/.jazz5", "/.jazzShed", "/.metadata");
 	static final Pattern GITIGNORE_PATTERN = Pattern.compile("(^.*(/|))\\.gitignore$");
@@ -54,19 +71,35 @@ public final class GitMigrator implements Migrator {
 	private final Charset defaultCharset;
 	private final Set<String> ignoredFileExtensions;
 	private final WindowCacheConfig WindowCacheConfig;
+	private final MetricsRegistry metrics;
 
 	private int commitsAfterClean;
 	private Git git;
 	private Properties properties;
 	private PersonIdent defaultIdent;
 	private File rootDir;
-	private CommitCommentTranslator commentTranslator;
+	private CommitMessageRenderer messageRenderer;
+	private InMemoryTree inMemoryTree;
+	private IgnoreIndex ignoreIndex = new IgnoreIndex();
+	private IgnoredFileMatcher ignoredFileMatcher;
+	private PathFilter pathFilter;
+	private Set<String> rootGitignoreEntries;
+	private boolean indexChangeSets;
+	private boolean indexNotes;
+	private final Map<String, ObjectId> pendingIndexEntries = new TreeMap<String, ObjectId>();
+	private String branch;
+	private ObjectId branchStart;
+	private CommitIndex reuseIndex;
+	private ObjectId reusedCommit;
+	private Set<String> outstandingChangeSets;
+	private boolean headReused;
 
 	public GitMigrator(Properties properties) {
 		defaultCharset = Charset.forName("UTF-8");
 		ignoredFileExtensions = new HashSet<String>();
 		WindowCacheConfig = new WindowCacheConfig();
 		commitsAfterClean = 0;
+		metrics = MetricsRegistry.getInstance();
 		initialize(properties);
 	}
 
@@ -84,6 +117,16 @@ public final class GitMigrator implements Migrator {
 		initRootFile(new File(sandboxRootDirectory, ".gitattributes"), getGitattributeLines());
 	}
 
+	private void initInfoExclude() throws IOException {
+		List<String> excludePatterns = getPathFilter().getExcludePatterns();
+		if (!excludePatterns.isEmpty()) {
+			// excluded paths are not even walked by git status
+			File exclude = new File(git.getRepository().getDirectory(), "info/exclude");
+			exclude.getParentFile().mkdirs();
+			initRootFile(exclude, excludePatterns);
+		}
+	}
+
 	private void initRootFile(File rootFile, Collection<String> linesToAdd) throws IOException {
 		Charset charset = getCharset();
 		List<String> existingLines = Files.readLines(rootFile, charset);
@@ -112,9 +155,22 @@ public final class GitMigrator implements Migrator {
 		}
 	}
 
+	private CommitMessageRenderer getMessageRenderer() {
+		if (messageRenderer == null) {
+			messageRenderer = new CommitMessageRenderer(properties);
+		}
+		return messageRenderer;
+	}
+
+	private PathFilter getPathFilter() {
+		if (pathFilter == null) {
+			pathFilter = new PathFilter(properties);
+		}
+		return pathFilter;
+	}
+
 	String getCommitMessage(String workItemNumbers, String comment, String workItemTexts) {
-		return String.format(properties.getProperty("commit.message.format", "%1s %2s"), workItemNumbers,
-				commentTranslator.translate(comment), workItemTexts).trim();
+		return getMessageRenderer().getCommitMessage(workItemNumbers, comment, workItemTexts);
 	}
 
 	List<String> getGitattributeLines() {
@@ -132,65 +188,15 @@ public final class GitMigrator implements Migrator {
 	}
 
 	String getCommentText(ChangeSet changeSet) {
-		String comment = changeSet.getComment();
-		String workItemText = changeSet.getWorkItems().isEmpty() ? "" : changeSet.getWorkItems().get(0).getText();
-		final boolean substituteWorkItemText = Boolean
-				.valueOf(properties.getProperty("rtc.changeset.comment.substitute", Boolean.FALSE.toString()));
-		if (comment.isEmpty() && substituteWorkItemText)
-			return workItemText;
-		final String format = properties.getProperty("rtc.changeset.comment.format", "%1s");
-		return String.format(format, comment, workItemText);
+		return getMessageRenderer().getCommentText(changeSet);
 	}
 
 	String getWorkItemNumbers(List<WorkItem> workItems) {
-		if (workItems.isEmpty()) {
-			return "";
-		}
-		final String format = properties.getProperty("rtc.workitem.number.format", "%1s");
-		final String delimiter = properties.getProperty("rtc.workitem.number.delimiter", " ");
-		final StringBuilder sb = new StringBuilder();
-		boolean isFirst = true;
-		Formatter formatter = new Formatter(sb);
-		try {
-			for (WorkItem workItem : workItems) {
-				if (isFirst) {
-					isFirst = false;
-				} else {
-					sb.append(delimiter);
-				}
-				formatter.format(format, String.valueOf(workItem.getNumber()));
-			}
-
-		} finally {
-			formatter.close();
-		}
-		return sb.toString();
+		return getMessageRenderer().getWorkItemNumbers(workItems);
 	}
 
 	String getWorkItemTexts(List<WorkItem> workItems) {
-		if (workItems.isEmpty()) {
-			return "";
-		}
-		final String format = properties.getProperty("rtc.workitem.text.format", "%1s %2s");
-		final String delimiter = properties.getProperty("rtc.workitem.text.delimiter",
-				System.getProperty("line.separator"));
-		final StringBuilder sb = new StringBuilder();
-		boolean isFirst = true;
-		Formatter formatter = new Formatter(sb);
-		try {
-			for (WorkItem workItem : workItems) {
-				if (isFirst) {
-					isFirst = false;
-				} else {
-					sb.append(delimiter);
-				}
-				formatter.format(format, String.valueOf(workItem.getNumber()), workItem.getText());
-			}
-
-		} finally {
-			formatter.close();
-		}
-		return sb.toString();
+		return getMessageRenderer().getWorkItemTexts(workItems);
 	}
 
 	SortedSet<String> getExistingIgnoredFiles() {
@@ -210,10 +216,13 @@ public final class GitMigrator implements Migrator {
 		}
 	}
 
-	private void gitCommit(PersonIdent ident, String comment) {
+	private int gitCommit(PersonIdent ident, String comment) {
 		try {
 			// add all untracked files
+			PhaseTimer timer = metrics.start(Phase.STATUS);
 			Status status = git.status().call();
+			timer.setFileCount(status.getUntracked().size() + status.getModified().size()
+					+ status.getMissing().size()).stop();
 
 			Set<String> toAdd = handleAdded(status);
 			Set<String> toRestore = new HashSet<String>();
@@ -221,18 +230,27 @@ public final class GitMigrator implements Migrator {
 
 			// execute the git index commands if needed
 			if (!toAdd.isEmpty()) {
+				timer = metrics.start(Phase.ADD);
 				AddCommand add = git.add();
+				long bytes = 0;
 				for (String filepattern : toAdd) {
 					add.addFilepattern(filepattern);
+					bytes += new File(rootDir, filepattern).length();
 				}
 				add.call();
+				timer.setFileCount(toAdd.size()).stop();
+				metrics.increment(Counter.FILES_TOUCHED, toAdd.size());
+				metrics.increment(Counter.BYTES_HASHED, bytes);
 			}
 			if (!toRemove.isEmpty()) {
+				timer = metrics.start(Phase.RM);
 				RmCommand rm = git.rm();
 				for (String filepattern : toRemove) {
 					rm.addFilepattern(filepattern);
 				}
 				rm.call();
+				timer.setFileCount(toRemove.size()).stop();
+				metrics.increment(Counter.FILES_TOUCHED, toRemove.size());
 			}
 			if (!toRestore.isEmpty()) {
 				CheckoutCommand checkout = git.checkout();
@@ -244,10 +262,13 @@ public final class GitMigrator implements Migrator {
 
 			// execute commit if something has changed
 			if (!toAdd.isEmpty() || !toRemove.isEmpty()) {
+				timer = metrics.start(Phase.COMMIT);
 				git.commit().setMessage(comment).setAuthor(ident).setCommitter(ident).call();
+				timer.setFileCount(toAdd.size() + toRemove.size()).stop();
 			}
 
 			++commitsAfterClean;
+			return toAdd.size() + toRemove.size();
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
@@ -262,6 +283,7 @@ public final class GitMigrator implements Migrator {
 
 	@Override
 	public void intermediateCleanup() {
+		flushIndex();
 		runGitGc();
 		commitsAfterClean = 0;
 	}
@@ -270,6 +292,9 @@ public final class GitMigrator implements Migrator {
 		Set<String> toRemove = new HashSet<String>();
 		// go over all deleted files
 		for (String removed : status.getMissing()) {
+			if (!getPathFilter().isIncluded(removed, false)) {
+				continue;
+			}
 			Matcher matcher = GITIGNORE_PATTERN.matcher(removed);
 			if (matcher.matches()) {
 				File jazzignore = new File(rootDir, matcher.group(1).concat(".jazzignore"));
@@ -291,12 +316,16 @@ public final class GitMigrator implements Migrator {
 		// go over untracked files
 		for (String untracked : status.getUntracked()) {
 			// add it to the index
-			toAdd.add(untracked);
+			if (getPathFilter().isIncluded(untracked, false)) {
+				toAdd.add(untracked);
+			}
 		}
 		// go over modified files
 		for (String modified : status.getModified()) {
 			// adds a modified entry to the index
-			toAdd.add(modified);
+			if (getPathFilter().isIncluded(modified, false)) {
+				toAdd.add(modified);
+			}
 		}
 		handleGlobalFileExtensions(toAdd);
 		handleJazzignores(toAdd);
@@ -311,13 +340,22 @@ public final class GitMigrator implements Migrator {
 				if (matcher.matches()) {
 					File jazzIgnore = new File(rootDir, relativeFileName);
 					String gitignoreFile = matcher.group(1).concat(".gitignore");
+					File gitignore = new File(rootDir, gitignoreFile);
+					if (gitignoreFile.equals(".gitignore")) {
+						rootGitignoreEntries = null;
+					}
 					if (jazzIgnore.exists()) {
-						// change/add case
-						List<String> ignoreContent = JazzignoreTranslator.toGitignore(jazzIgnore);
-						Files.writeLines(new File(rootDir, gitignoreFile), ignoreContent, getCharset(), false);
+						// change/add case, only rewritten if the translation differs
+						byte[] content = Files.readBytes(jazzIgnore);
+						List<String> ignoreContent = translateJazzignore(ignoreIndex.idFor(content), content);
+						if (!ignoreIndex.update(matcher.group(1), ignoreContent) && gitignore.exists()) {
+							continue;
+						}
+						Files.writeLines(gitignore, ignoreContent, getCharset(), false);
 					} else {
 						// delete case
-						new File(rootDir, gitignoreFile).delete();
+						ignoreIndex.remove(matcher.group(1));
+						gitignore.delete();
 					}
 					additionalNames.add(gitignoreFile);
 				}
@@ -329,21 +367,40 @@ public final class GitMigrator implements Migrator {
 		}
 	}
 
+	private List<String> translateJazzignore(ObjectId jazzignoreId, byte[] content) throws IOException {
+		List<String> translation = ignoreIndex.getTranslation(jazzignoreId);
+		if (translation == null) {
+			translation = ignoreIndex.translate(jazzignoreId, content);
+		}
+		return translation;
+	}
+
 	private void handleGlobalFileExtensions(Set<String> addToGitIndex) {
+		if (ignoredFileMatcher.isEmpty()) {
+			return;
+		}
 		Set<String> gitignoreEntries = new LinkedHashSet<String>();
-		for (String extension : getIgnoredFileExtensions()) {
-			for (Iterator<String> candidateIt = addToGitIndex.iterator(); candidateIt.hasNext();) {
-				String addCandidate = candidateIt.next();
-				if (addCandidate.endsWith(extension)) {
-					gitignoreEntries.add("/".concat(addCandidate));
-					candidateIt.remove();
-				}
+		boolean needsSize = ignoredFileMatcher.hasSizeLimit();
+		for (Iterator<String> candidateIt = addToGitIndex.iterator(); candidateIt.hasNext();) {
+			String addCandidate = candidateIt.next();
+			long size = needsSize ? new File(rootDir, addCandidate).length() : -1;
+			if (ignoredFileMatcher.matches(addCandidate, size)) {
+				gitignoreEntries.add("/".concat(addCandidate));
+				candidateIt.remove();
 			}
 		}
 		if (!gitignoreEntries.isEmpty()) {
 			try {
-				Files.writeLines(new File(rootDir, ".gitignore"), gitignoreEntries, getCharset(), true);
-				addToGitIndex.add(".gitignore");
+				File gitignore = new File(rootDir, ".gitignore");
+				if (rootGitignoreEntries == null) {
+					rootGitignoreEntries = new HashSet<String>(Files.readLines(gitignore, getCharset()));
+				}
+				gitignoreEntries.removeAll(rootGitignoreEntries);
+				if (!gitignoreEntries.isEmpty()) {
+					Files.writeLines(gitignore, gitignoreEntries, getCharset(), true);
+					rootGitignoreEntries.addAll(gitignoreEntries);
+					addToGitIndex.add(".gitignore");
+				}
 			} catch (IOException e) {
 				throw new RuntimeException("Unable to handle .gitignore", e);
 			}
@@ -386,10 +443,19 @@ public final class GitMigrator implements Migrator {
 
 	void initialize(Properties props) {
 		properties = props;
-		commentTranslator = new CommitCommentTranslator(props);
+		// built from the properties at their first use, being init at the latest
+		messageRenderer = null;
+		pathFilter = null;
 		defaultIdent = new PersonIdent(props.getProperty("user.name", "RTC 2 git"),
 				props.getProperty("user.email", "rtc2git@rtc.to"));
+		indexChangeSets = Boolean.parseBoolean(props.getProperty("index.changesets", "true"));
+		indexNotes = indexChangeSets && Boolean.parseBoolean(props.getProperty("index.notes"));
+		branch = getBranch(props);
 		parseElements(props.getProperty("ignore.file.extensions", ""), ignoredFileExtensions);
+		List<String> ignoredPaths = new ArrayList<String>();
+		parseElements(props.getProperty("ignore.file.paths", ""), ignoredPaths);
+		ignoredFileMatcher = new IgnoredFileMatcher(ignoredFileExtensions, ignoredPaths,
+				parseConfigValue(props.getProperty("ignore.file.size"), IgnoredFileMatcher.NO_SIZE_LIMIT));
 		// update window cache config
 		WindowCacheConfig cfg = getWindowCacheConfig();
 		cfg.setPackedGitOpenFiles(
@@ -412,13 +478,45 @@ public final class GitMigrator implements Migrator {
 		return (int) configThreshold;
 	}
 
-	String createTagName(String tagName) {
+	/**
+	 * @return the branch the migration commits to, <code>null</code> if it commits to the current branch
+	 */
+	static String getBranch(Properties props) {
+		String branch = props.getProperty("branch", "").trim();
+		return branch.isEmpty() ? null : branch;
+	}
+
+	/**
+	 * Sets the commit a branch not existing yet is created at, being the state of the destination workspace.
+	 */
+	void setBranchStart(ObjectId start) {
+		branchStart = start;
+	}
+
+	static String createTagName(String tagName) {
 		return tagName.replace(' ', '_').replace('[', '_').replace(']', '_');
 	}
 
+	/**
+	 * @return <code>true</code> if a file of the sandbox of the given path and size gets committed, being neither
+	 *         excluded by the path filter nor generally ignored
+	 */
+	boolean isMigrated(String path, long size) {
+		return getPathFilter().isIncluded(path, false) && !ignoredFileMatcher.matches(path, size);
+	}
+
+	/**
+	 * @return <code>true</code> if the paths in git differ from the ones in the sandbox
+	 */
+	boolean rewritesPaths() {
+		return getPathFilter().rewritesPaths();
+	}
+
 	@Override
 	public void init(File sandboxRootDirectory) {
 		rootDir = sandboxRootDirectory;
+		ignoreIndex = new IgnoreIndex();
+		rootGitignoreEntries = null;
 		try {
 			File bareGitDirectory = new File(sandboxRootDirectory, ".git");
 			if (bareGitDirectory.exists()) {
@@ -431,8 +529,14 @@ public final class GitMigrator implements Migrator {
 			getWindowCacheConfig().install();
 			initRootGitignore(sandboxRootDirectory);
 			initRootGitattributes(sandboxRootDirectory);
+			initInfoExclude();
 			initConfig();
-			gitCommit(new PersonIdent(defaultIdent, System.currentTimeMillis(), 0), "Initial commit");
+			if (branch != null) {
+				initBranch();
+			}
+			if (branch == null || getHead() == null) {
+				gitCommit(new PersonIdent(defaultIdent, System.currentTimeMillis(), 0), "Initial commit");
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("Unable to initialize GIT repository", e);
 		} catch (GitAPIException e) {
@@ -440,9 +544,55 @@ public final class GitMigrator implements Migrator {
 		}
 	}
 
+	/**
+	 * Points <code>HEAD</code> to the branch, creating it at the start commit if needed. The sandbox holds the files
+	 * of another branch then, so the branch only gets an initial commit of them in an empty repository.
+	 */
+	private void initBranch() throws IOException {
+		Repository repository = git.getRepository();
+		String branchRef = Constants.R_HEADS + branch;
+		if (repository.exactRef(branchRef) == null && repository.resolve(Constants.HEAD) != null) {
+			if (branchStart == null) {
+				throw new IllegalStateException("Branch [" + branch + "] does not exist and no commit of the last "
+						+ "changesets of the destination workspace can be its start");
+			}
+			RefUpdate create = repository.updateRef(branchRef);
+			create.setNewObjectId(branchStart);
+			create.setExpectedOldObjectId(ObjectId.zeroId());
+			create.setRefLogMessage("branch: Created from " + branchStart.name(), false);
+			RefUpdate.Result result = create.update();
+			if (result != RefUpdate.Result.NEW) {
+				throw new IOException("Unable to create " + branchRef + ": " + result);
+			}
+		}
+		RefUpdate.Result result = repository.updateRef(Constants.HEAD).link(branchRef);
+		if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED
+				&& result != RefUpdate.Result.NO_CHANGE) {
+			throw new IOException("Unable to point HEAD to " + branchRef + ": " + result);
+		}
+	}
+
 	@Override
 	public void close() {
+		if (headReused && inMemoryTree == null) {
+			try {
+				getInMemoryTree();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (inMemoryTree != null) {
+			try {
+				inMemoryTree.writeIndex();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				inMemoryTree.close();
+				inMemoryTree = null;
+			}
+		}
 		if (git != null) {
+			flushIndex();
 			runGitGc();
 		}
 		SortedSet<String> existingIgnoredFiles = getExistingIgnoredFiles();
@@ -455,38 +605,423 @@ public final class GitMigrator implements Migrator {
 	}
 
 	private void runGitGc() {
+		PhaseTimer timer = metrics.start(Phase.GC);
 		try {
 			git.gc().call();
 		} catch (GitAPIException e) {
 			e.printStackTrace();
 		} finally {
 			git.close();
+			timer.stop();
 		}
 	}
 
 	@Override
-	public void commitChanges(ChangeSet changeset) {
-		gitCommit(
+	public int commitChanges(ChangeSet changeset) {
+		if (getPathFilter().rewritesPaths()) {
+			throw new IllegalStateException("path.root and path.prefix.* are only supported with --stream-content");
+		}
+		if (branch != null) {
+			throw new IllegalStateException("branch is only supported with --stream-content");
+		}
+		int files = gitCommit(
 				new PersonIdent(changeset.getCreatorName(), changeset.getEmailAddress(), changeset.getCreationDate(),
 						0),
-				getCommitMessage(getWorkItemNumbers(changeset.getWorkItems()), getCommentText(changeset),
-						getWorkItemTexts(changeset.getWorkItems())));
+				getMessageRenderer().render(changeset));
+		indexCommit(changeset);
+		return files;
+	}
+
+	@Override
+	public int commitChanges(ChangeSet changeset, List<FileChange> changes) {
+		changes = getPathFilter().apply(changes, changeset.getComponent());
+		try {
+			InMemoryTree tree = getInMemoryTree();
+			Set<String> jazzignores = new LinkedHashSet<String>();
+			Set<String> gitignoreEntries = new LinkedHashSet<String>();
+			List<FileChange> moves = new ArrayList<FileChange>();
+			boolean movedUntracked = false;
+			List<String> newUntracked = new ArrayList<String>();
+			PhaseTimer timer = metrics.start(Phase.ADD);
+			long bytes = 0;
+			for (FileChange change : changes) {
+				String path = change.getPath();
+				if (!moves.isEmpty() && (change.getKind() != FileChange.Kind.MOVE || dependsOn(tree, change, moves))) {
+					movedUntracked |= move(tree, moves, jazzignores);
+				}
+				switch (change.getKind()) {
+				case DELETE:
+					tree.delete(path, change.isFolder());
+					collectJazzignore(path, jazzignores);
+					break;
+				case MOVE:
+					moves.add(change);
+					collectJazzignore(change.getPreviousPath(), jazzignores);
+					collectJazzignore(path, jazzignores);
+					break;
+				case PUT:
+					FileContent content = change.getContent();
+					FileMode mode = content.isExecutable() ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE;
+					if (ignoredFileMatcher.matches(path, content.getSize())) {
+						gitignoreEntries.add("/".concat(path));
+						tree.delete(path, false);
+					} else if (!tree.contains(path) && !JAZZIGNORE_PATTERN.matcher(path).matches()
+							&& ignoreIndex.isIgnored(path)) {
+						// same as an untracked file ignored by git when committing from the sandbox
+						bytes += content.getSize();
+						tree.putUntracked(path, tree.insert(content), mode, content.getSize());
+						newUntracked.add(path);
+					} else {
+						bytes += content.getSize();
+						tree.put(path, tree.insert(content), mode, content.getSize());
+						collectJazzignore(path, jazzignores);
+					}
+					break;
+				}
+			}
+			if (!moves.isEmpty()) {
+				movedUntracked |= move(tree, moves, jazzignores);
+			}
+			for (String jazzignore : jazzignores) {
+				updateGitignore(tree, jazzignore);
+			}
+			// same as an untracked file no longer ignored by git when committing from the sandbox
+			for (String path : jazzignores.isEmpty() && !movedUntracked ? newUntracked : tree.getUntracked()) {
+				if (!ignoreIndex.isIgnored(path)) {
+					tree.track(path);
+				}
+			}
+			if (!gitignoreEntries.isEmpty()) {
+				List<String> rootIgnoreLines = readLines(tree, ".gitignore");
+				addMissing(rootIgnoreLines, gitignoreEntries);
+				putLines(tree, ".gitignore", rootIgnoreLines);
+				ignoreIndex.update("", rootIgnoreLines);
+			}
+			timer.setFileCount(changes.size()).stop();
+			metrics.increment(Counter.FILES_TOUCHED, changes.size());
+			metrics.increment(Counter.BYTES_HASHED, bytes);
+			PersonIdent ident = new PersonIdent(changeset.getCreatorName(), changeset.getEmailAddress(),
+					changeset.getCreationDate(), 0);
+			timer = metrics.start(Phase.COMMIT);
+			tree.commit(ident, ident, getMessageRenderer().render(changeset));
+			timer.setFileCount(changes.size()).stop();
+			++commitsAfterClean;
+			indexCommit(changeset);
+			return changes.size();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to commit changes", e);
+		}
+	}
+
+	/**
+	 * @return the commit <code>HEAD</code> points to after the last commit or <code>null</code> if there is none
+	 */
+	ObjectId getHead() {
+		if (inMemoryTree != null) {
+			return inMemoryTree.getHead();
+		}
+		try {
+			return git.getRepository().resolve(Constants.HEAD);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to resolve HEAD", e);
+		}
+	}
+
+	@Override
+	public boolean reuse(ChangeSet changeset) {
+		if (branch == null || !indexChangeSets || changeset.getUuids().isEmpty()) {
+			return false;
+		}
+		try {
+			ObjectId commit = null;
+			for (String uuid : changeset.getUuids()) {
+				ObjectId found = findCommit(uuid);
+				if (found == null || (commit != null && !commit.equals(found))) {
+					return false;
+				}
+				commit = found;
+			}
+			if (reusedCommit == null) {
+				if (!isParentOfHead(commit)) {
+					return false;
+				}
+				reusedCommit = commit;
+				outstandingChangeSets = findChangeSets(commit);
+			} else if (!reusedCommit.equals(commit)) {
+				return false;
+			}
+			outstandingChangeSets.removeAll(changeset.getUuids());
+			if (outstandingChangeSets.isEmpty()) {
+				moveHead(reusedCommit);
+				abandonReuse();
+			}
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to reuse the commit of changeset " + changeset.getUuids(), e);
+		}
+	}
+
+	@Override
+	public boolean isReusePending() {
+		return reusedCommit != null;
+	}
+
+	@Override
+	public void abandonReuse() {
+		reusedCommit = null;
+		outstandingChangeSets = null;
+	}
+
+	private ObjectId findCommit(String uuid) throws IOException {
+		ObjectId commit = pendingIndexEntries.get(uuid);
+		if (commit == null) {
+			commit = getReuseIndex().findCommit(uuid);
+		}
+		return commit;
+	}
+
+	/**
+	 * @return all change sets currently indexed as the given commit, whether written or still pending
+	 */
+	private Set<String> findChangeSets(ObjectId commit) throws IOException {
+		Set<String> uuids = new HashSet<String>();
+		for (String uuid : getReuseIndex().findChangeSets(commit)) {
+			if (!pendingIndexEntries.containsKey(uuid)) {
+				uuids.add(uuid);
+			}
+		}
+		for (Entry<String, ObjectId> entry : pendingIndexEntries.entrySet()) {
+			if (commit.equals(entry.getValue())) {
+				uuids.add(entry.getKey());
+			}
+		}
+		return uuids;
+	}
+
+	private CommitIndex getReuseIndex() throws IOException {
+		if (reuseIndex == null) {
+			reuseIndex = CommitIndex.open(git.getRepository().getDirectory());
+		}
+		return reuseIndex;
+	}
+
+	private boolean isParentOfHead(ObjectId commit) throws IOException {
+		ObjectId head = getHead();
+		if (head == null) {
+			return false;
+		}
+		RevWalk walk = new RevWalk(git.getRepository());
+		try {
+			RevCommit candidate = walk.parseCommit(commit);
+			return candidate.getParentCount() > 0 && head.equals(candidate.getParent(0));
+		} finally {
+			walk.close();
+		}
+	}
+
+	/**
+	 * Fast forwards the branch to the reused commit. The in memory tree is read again at the next commit only, so a
+	 * series of reused commits costs one ref update each.
+	 */
+	private void moveHead(ObjectId commit) throws IOException {
+		ObjectId head = getHead();
+		if (inMemoryTree != null) {
+			inMemoryTree.close();
+			inMemoryTree = null;
+			ignoreIndex = new IgnoreIndex();
+		}
+		headReused = true;
+		RefUpdate update = git.getRepository().updateRef(Constants.HEAD);
+		update.setNewObjectId(commit);
+		update.setExpectedOldObjectId(head);
+		update.setRefLogMessage("reuse: " + commit.name(), false);
+		RefUpdate.Result result = update.update();
+		if (result != RefUpdate.Result.FAST_FORWARD) {
+			throw new IOException("Unable to update HEAD to " + commit.name() + ": " + result);
+		}
+	}
+
+	/**
+	 * Remembers the commit of the change set until the index is written at the next cleanup. A change set not changing
+	 * anything maps to the commit already containing its state.
+	 */
+	private void indexCommit(ChangeSet changeset) {
+		if (indexChangeSets) {
+			ObjectId head = getHead();
+			if (head != null) {
+				for (String uuid : changeset.getUuids()) {
+					pendingIndexEntries.put(uuid, head);
+				}
+			}
+		}
+	}
+
+	private void flushIndex() {
+		if (pendingIndexEntries.isEmpty()) {
+			return;
+		}
+		try {
+			// appends to the open index, so its mapped file is never replaced
+			getReuseIndex().add(pendingIndexEntries);
+			if (indexNotes) {
+				CommitIndex.writeNotes(git.getRepository(), pendingIndexEntries,
+						new PersonIdent(defaultIdent, System.currentTimeMillis(), 0));
+			}
+			pendingIndexEntries.clear();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write the changeset index", e);
+		}
+	}
+
+	private InMemoryTree getInMemoryTree() throws IOException {
+		if (inMemoryTree == null) {
+			inMemoryTree = new InMemoryTree(git.getRepository(), getWindowCacheConfig().getStreamFileThreshold());
+			for (String gitignore : inMemoryTree.findFiles(".gitignore")) {
+				ignoreIndex.update(IgnoreIndex.getDirectory(gitignore), readLines(inMemoryTree, gitignore));
+			}
+		}
+		return inMemoryTree;
+	}
+
+	/**
+	 * Applies the pending moves of one change set and clears them. The <code>.jazzignore</code> files moved along with
+	 * a folder are collected at their previous and their new path.
+	 *
+	 * @return whether untracked files may have been moved
+	 */
+	private static boolean move(InMemoryTree tree, List<FileChange> moves, Set<String> jazzignores) {
+		List<String> existing = null;
+		for (FileChange move : moves) {
+			if (move.isFolder()) {
+				if (existing == null) {
+					existing = tree.findFiles(".jazzignore");
+				}
+				for (String jazzignore : existing) {
+					if (jazzignore.startsWith(move.getPreviousPath() + "/")) {
+						jazzignores.add(jazzignore);
+						FileChange jazzignoreMove = InMemoryTree.findMove(jazzignore, moves);
+						jazzignores.add(InMemoryTree.getMovedPath(jazzignore, jazzignoreMove));
+					}
+				}
+			}
+		}
+		boolean movedUntracked = tree.hasUntracked();
+		tree.move(moves);
+		moves.clear();
+		return movedUntracked;
+	}
+
+	/**
+	 * Tells whether the move continues on the outcome of the pending moves, so it belongs to a later change set of a
+	 * coalesced group. The moves of one change set only refer to the paths before the change set, so a path is moved
+	 * only once, and a path being the target of another move only exists if it is moved away itself.
+	 */
+	private static boolean dependsOn(InMemoryTree tree, FileChange move, List<FileChange> pendingMoves) {
+		String previousPath = move.getPreviousPath();
+		boolean movedHere = false;
+		for (FileChange pending : pendingMoves) {
+			if (pending.getPreviousPath().equals(previousPath)) {
+				return true;
+			}
+			movedHere |= previousPath.equals(pending.getPath()) || previousPath.startsWith(pending.getPath() + "/");
+		}
+		return movedHere && !tree.exists(previousPath, move.isFolder());
+	}
+
+	private void collectJazzignore(String path, Set<String> jazzignores) {
+		if (JAZZIGNORE_PATTERN.matcher(path).matches()) {
+			jazzignores.add(path);
+		}
+	}
+
+	private void updateGitignore(InMemoryTree tree, String jazzignore) throws IOException {
+		Matcher matcher = JAZZIGNORE_PATTERN.matcher(jazzignore);
+		if (matcher.matches()) {
+			String gitignore = matcher.group(1).concat(".gitignore");
+			ObjectId jazzignoreId = tree.getObjectId(jazzignore);
+			if (jazzignoreId != null) {
+				List<String> translation = ignoreIndex.getTranslation(jazzignoreId);
+				if (translation == null) {
+					translation = ignoreIndex.translate(jazzignoreId, tree.read(jazzignore));
+				}
+				if (ignoreIndex.update(matcher.group(1), translation) || !tree.contains(gitignore)) {
+					putLines(tree, gitignore, translation);
+				}
+			} else {
+				ignoreIndex.remove(matcher.group(1));
+				tree.delete(gitignore, false);
+			}
+		}
+	}
+
+	private List<String> readLines(InMemoryTree tree, String path) throws IOException {
+		return readLines(tree, path, getCharset());
+	}
+
+	private List<String> readLines(InMemoryTree tree, String path, Charset charset) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		byte[] content = tree.read(path);
+		if (content != null) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), charset));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private void putLines(InMemoryTree tree, String path, Collection<String> lines) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		byte[] content = sb.toString().getBytes(getCharset());
+		tree.put(path, tree.insert(content), FileMode.REGULAR_FILE, content.length);
 	}
 
 	@Override
 	public void createTag(Tag tag) {
 		String tagName = tag.getName();
 		if (tagName != null && !tagName.isEmpty()) {
+			PhaseTimer timer = metrics.start(Phase.TAG);
 			try {
-				git.tag().setTagger(defaultIdent).setName(createTagName(tagName)).call();
+				String name = createTagName(tagName);
+				if (branch != null) {
+					name = getBranchTagName(name);
+					if (name == null) {
+						return;
+					}
+				}
+				git.tag().setTagger(defaultIdent).setName(name).call();
 			} catch (RuntimeException e) {
 				throw e;
 			} catch (Exception e) {
 				throw new RuntimeException("Unable to tag", e);
+			} finally {
+				timer.stop();
 			}
 		}
 	}
 
+	/**
+	 * Baselines shared by several streams are tagged once, the tag of a baseline of another branch on a different
+	 * commit is kept and the one of this branch gets the branch as prefix.
+	 *
+	 * @return the name of the tag to create, <code>null</code> if the tag exists on <code>HEAD</code> already
+	 */
+	private String getBranchTagName(String name) throws IOException {
+		Repository repository = git.getRepository();
+		ObjectId existing = repository.resolve(Constants.R_TAGS + name + "^{commit}");
+		if (existing == null) {
+			return name;
+		}
+		if (existing.equals(getHead())) {
+			return null;
+		}
+		return createTagName(branch + "/" + name);
+	}
+
 	private void fillConfigFromProperties(Config config) {
 		for (Entry<Object, Object> entry : properties.entrySet()) {
 			if (entry.getKey() instanceof String && (((String) entry.getKey()).startsWith(GIT_CONFIG_PREFIX))) {
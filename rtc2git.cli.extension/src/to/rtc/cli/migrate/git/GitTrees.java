@@ -0,0 +1,116 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import to.rtc.cli.migrate.FileState;
+import to.rtc.cli.migrate.MigratedTrees;
+import to.rtc.cli.migrate.Tag;
+
+/**
+ * The trees of the tags of a migrated repository. The files of a tree are listed without reading their content, the
+ * size of a file is read from the header of its blob once for all tags sharing the blob. The <code>.gitignore</code>
+ * and <code>.gitattributes</code> files are written by the migration itself and are left out.
+ */
+final class GitTrees implements MigratedTrees {
+	private static final int MAX_CACHED_SIZES = 2000000;
+
+	private final Git git;
+	private final GitMigrator migrator;
+	private final String branch;
+	private final Map<ObjectId, Long> blobSizes;
+
+	/**
+	 * @param migrator
+	 *            the migrator configured like the migration, telling which files of the sandbox are committed,
+	 *            without rewriting their paths
+	 * @param branch
+	 *            the branch the tags have been created on, <code>null</code> if migrated without branch
+	 */
+	GitTrees(File sandboxDirectory, GitMigrator migrator, String branch) throws IOException {
+		this.git = Git.open(sandboxDirectory);
+		this.migrator = migrator;
+		this.branch = branch;
+		this.blobSizes = new ConcurrentHashMap<ObjectId, Long>();
+	}
+
+	@Override
+	public Map<String, FileState> listFiles(Tag tag) throws IOException {
+		ObjectId commit = resolveTag(GitMigrator.createTagName(tag.getName()));
+		if (commit == null) {
+			return null;
+		}
+		Map<String, FileState> files = new HashMap<String, FileState>();
+		ObjectReader reader = git.getRepository().newObjectReader();
+		try {
+			TreeWalk treeWalk = new TreeWalk(reader);
+			treeWalk.setRecursive(true);
+			treeWalk.addTree(new RevWalk(reader).parseCommit(commit).getTree());
+			while (treeWalk.next()) {
+				int mode = treeWalk.getRawMode(0);
+				boolean executable = FileMode.EXECUTABLE_FILE.equals(mode);
+				String path = treeWalk.getPathString();
+				if ((executable || FileMode.REGULAR_FILE.equals(mode)) && !isWrittenByMigration(path)) {
+					files.put(path, new FileState(getSize(reader, treeWalk.getObjectId(0)), executable));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	}
+
+	@Override
+	public boolean isMigrated(String path, FileState file) {
+		return !isWrittenByMigration(path) && migrator.isMigrated(path, file.getSize());
+	}
+
+	@Override
+	public void close() {
+		git.close();
+	}
+
+	/**
+	 * A tag of a branch is only prefixed with the branch if the tag of another branch exists already.
+	 *
+	 * @return the commit of the tag, <code>null</code> if there is no such tag
+	 */
+	private ObjectId resolveTag(String name) throws IOException {
+		if (branch != null) {
+			ObjectId commit = git.getRepository().resolve(
+					Constants.R_TAGS + GitMigrator.createTagName(branch + "/" + name) + "^{commit}");
+			if (commit != null) {
+				return commit;
+			}
+		}
+		return git.getRepository().resolve(Constants.R_TAGS + name + "^{commit}");
+	}
+
+	private long getSize(ObjectReader reader, ObjectId blob) throws IOException {
+		Long size = blobSizes.get(blob);
+		if (size == null) {
+			size = Long.valueOf(reader.getObjectSize(blob, Constants.OBJ_BLOB));
+			if (blobSizes.size() >= MAX_CACHED_SIZES) {
+				blobSizes.clear();
+			}
+			blobSizes.put(blob.copy(), size);
+		}
+		return size.longValue();
+	}
+
+	private static boolean isWrittenByMigration(String path) {
+		String name = path.substring(path.lastIndexOf('/') + 1);
+		return ".gitignore".equals(name) || ".gitattributes".equals(name);
+	}
+}
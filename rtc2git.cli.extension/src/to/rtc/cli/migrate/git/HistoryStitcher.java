@@ -0,0 +1,213 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+
+/**
+ * Stitches the repositories of a time sharded migration into one linear history. Every shard repository starts with
+ * its own initial commits holding the state of the shard's starting baseline, followed by the commits of its change
+ * sets. The commits are rewritten one by one onto the tip of the target repository, keeping their trees, authors and
+ * messages, and the tags and the changeset index of the shard are moved to the rewritten commits.
+ */
+public final class HistoryStitcher {
+	private static final String SHARD_REFS = "refs/shards/";
+
+	private final Git git;
+	private final Repository repository;
+
+	public HistoryStitcher(File targetDirectory) throws IOException {
+		git = Git.open(targetDirectory);
+		repository = git.getRepository();
+	}
+
+	/**
+	 * Appends the history of the given shard repository to the target repository.
+	 *
+	 * @param shardDirectory
+	 *            the working directory of the shard repository
+	 * @param initialCommits
+	 *            the number of commits the shard repository got before its snapshot commit
+	 * @return the number of commits appended
+	 */
+	public int stitch(File shardDirectory, int initialCommits) throws IOException {
+		String name = shardDirectory.getName();
+		String shardBranch = getBranch(shardDirectory);
+		try {
+			git.fetch().setRemote(shardDirectory.getAbsolutePath()).setTagOpt(TagOpt.NO_TAGS)
+					.setRefSpecs(new RefSpec("+" + shardBranch + ":" + SHARD_REFS + name + "/head"),
+							new RefSpec("+refs/tags/*:" + SHARD_REFS + name + "/tags/*")).call();
+		} catch (GitAPIException e) {
+			throw new IOException("Unable to fetch shard " + name, e);
+		}
+		ObjectInserter inserter = repository.newObjectInserter();
+		RevWalk walk = new RevWalk(repository);
+		try {
+			ObjectId oldTip = repository.resolve(Constants.HEAD);
+			ObjectId tip = oldTip;
+			ObjectId tipTree = tip == null ? null : walk.parseCommit(tip).getTree().getId();
+			Map<ObjectId, ObjectId> rewritten = new HashMap<ObjectId, ObjectId>();
+			walk.sort(RevSort.TOPO, true);
+			walk.sort(RevSort.REVERSE, true);
+			walk.markStart(walk.parseCommit(repository.resolve(SHARD_REFS + name + "/head")));
+			int position = 0;
+			int appended = 0;
+			for (RevCommit commit : walk) {
+				// the initial commits and an unchanged snapshot collapse onto the current tip
+				if (position++ < initialCommits
+						|| (position == initialCommits + 1 && commit.getTree().getId().equals(tipTree))) {
+					rewritten.put(commit.copy(), tip);
+					continue;
+				}
+				CommitBuilder builder = new CommitBuilder();
+				builder.setTreeId(commit.getTree());
+				if (tip != null) {
+					builder.setParentId(tip);
+				}
+				builder.setAuthor(commit.getAuthorIdent());
+				builder.setCommitter(commit.getCommitterIdent());
+				builder.setEncoding(commit.getEncoding());
+				builder.setMessage(commit.getFullMessage());
+				tip = inserter.insert(builder);
+				tipTree = commit.getTree().getId();
+				rewritten.put(commit.copy(), tip);
+				appended++;
+			}
+			Collection<Ref> tags = repository.getRefDatabase().getRefs(SHARD_REFS + name + "/tags/").values();
+			for (Ref tag : tags) {
+				moveTag(walk, inserter, tag, rewritten);
+			}
+			inserter.flush();
+			if (tip != null && !tip.equals(oldTip)) {
+				RefUpdate update = repository.updateRef(Constants.HEAD);
+				update.setNewObjectId(tip);
+				update.setExpectedOldObjectId(oldTip == null ? ObjectId.zeroId() : oldTip);
+				update.setRefLogMessage("stitch: " + name, false);
+				checkResult(update.update(), Constants.HEAD);
+			}
+			moveIndex(shardDirectory, rewritten);
+			deleteRef(SHARD_REFS + name + "/head");
+			for (Ref tag : tags) {
+				deleteRef(tag.getName());
+			}
+			return appended;
+		} finally {
+			walk.close();
+			inserter.close();
+		}
+	}
+
+	/**
+	 * Resets the index to the stitched <code>HEAD</code> and releases the target repository.
+	 */
+	public void close() {
+		try {
+			git.reset().setMode(ResetType.MIXED).call();
+			git.gc().call();
+		} catch (GitAPIException e) {
+			throw new RuntimeException("Unable to finish stitched repository", e);
+		} finally {
+			git.close();
+		}
+	}
+
+	private void moveTag(RevWalk walk, ObjectInserter inserter, Ref tag, Map<ObjectId, ObjectId> rewritten)
+			throws IOException {
+		String tagName = tag.getName().substring(tag.getName().lastIndexOf("/tags/") + 6);
+		RevObject object = walk.parseAny(tag.getObjectId());
+		ObjectId target;
+		if (object instanceof RevTag) {
+			RevTag revTag = (RevTag) object;
+			ObjectId commit = rewritten.get(walk.peel(revTag));
+			if (commit == null) {
+				return;
+			}
+			TagBuilder builder = new TagBuilder();
+			builder.setObjectId(commit, Constants.OBJ_COMMIT);
+			builder.setTag(revTag.getTagName());
+			builder.setTagger(revTag.getTaggerIdent());
+			builder.setMessage(revTag.getFullMessage());
+			target = inserter.insert(builder);
+		} else {
+			target = rewritten.get(object);
+			if (target == null) {
+				return;
+			}
+		}
+		RefUpdate update = repository.updateRef(Constants.R_TAGS + tagName);
+		update.setNewObjectId(target);
+		update.setExpectedOldObjectId(ObjectId.zeroId());
+		checkResult(update.update(), Constants.R_TAGS + tagName);
+	}
+
+	/**
+	 * Adds the changeset index of the shard to the one of the target, mirroring it into the notes if the target has
+	 * some.
+	 */
+	private void moveIndex(File shardDirectory, Map<ObjectId, ObjectId> rewritten) throws IOException {
+		Map<String, ObjectId> entries = new TreeMap<String, ObjectId>();
+		for (Entry<String, ObjectId> entry : CommitIndex.open(new File(shardDirectory, Constants.DOT_GIT)).getEntries()
+				.entrySet()) {
+			ObjectId commit = rewritten.get(entry.getValue());
+			if (commit != null) {
+				entries.put(entry.getKey(), commit);
+			}
+		}
+		if (!entries.isEmpty()) {
+			CommitIndex.update(repository.getDirectory(), entries);
+			if (repository.exactRef(CommitIndex.NOTES_REF) != null) {
+				CommitIndex.writeNotes(repository, entries, new PersonIdent("RTC 2 git", "rtc2git@rtc.to"));
+			}
+		}
+	}
+
+	private void deleteRef(String refName) throws IOException {
+		RefUpdate update = repository.updateRef(refName);
+		update.setForceUpdate(true);
+		update.delete();
+	}
+
+	private static String getBranch(File shardDirectory) throws IOException {
+		Git shard = Git.open(shardDirectory);
+		try {
+			return shard.getRepository().getFullBranch();
+		} finally {
+			shard.close();
+		}
+	}
+
+	private static void checkResult(RefUpdate.Result result, String refName) throws IOException {
+		switch (result) {
+		case NEW:
+		case FAST_FORWARD:
+		case FORCED:
+			break;
+		default:
+			throw new IOException("Unable to update " + refName + ": " + result);
+		}
+	}
+}
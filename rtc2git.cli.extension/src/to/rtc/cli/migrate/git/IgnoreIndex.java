@@ -0,0 +1,173 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.ignore.IgnoreNode.MatchResult;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+import to.rtc.cli.migrate.util.JazzignoreTranslator;
+
+/**
+ * Keeps the translated <code>.jazzignore</code> files and the compiled <code>.gitignore</code> rules of every
+ * directory in memory.
+ * <p>
+ * Translations are cached by the content hash of the <code>.jazzignore</code>, so the same content is translated only
+ * once, no matter in how many directories or change sets it shows up. The rules per directory tell whether the
+ * <code>.gitignore</code> really changes and allow to check paths against the rules without asking JGit.
+ */
+final class IgnoreIndex {
+	private static final int TRANSLATION_CACHE_SIZE = 256;
+
+	private final Map<ObjectId, List<String>> translations = new LinkedHashMap<ObjectId, List<String>>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ObjectId, List<String>> eldest) {
+			return size() > TRANSLATION_CACHE_SIZE;
+		}
+	};
+	private final Map<String, Rules> directories = new HashMap<String, Rules>();
+	private final ObjectInserter.Formatter hasher = new ObjectInserter.Formatter();
+	private int hits;
+	private int misses;
+
+	/**
+	 * @return the content hash of the given <code>.jazzignore</code> content, the same as its git blob id
+	 */
+	ObjectId idFor(byte[] content) {
+		return hasher.idFor(Constants.OBJ_BLOB, content);
+	}
+
+	/**
+	 * @return the cached translation of the <code>.jazzignore</code> with the given content hash or <code>null</code>
+	 */
+	List<String> getTranslation(ObjectId jazzignoreId) {
+		List<String> lines = translations.get(jazzignoreId);
+		if (lines != null) {
+			hits++;
+		}
+		return lines;
+	}
+
+	/**
+	 * Translates the given <code>.jazzignore</code> content, read in the default charset like a
+	 * <code>.jazzignore</code> file in the sandbox, and caches the result by its content hash.
+	 */
+	List<String> translate(ObjectId jazzignoreId, byte[] content) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		for (String line : new String(content, Charset.defaultCharset()).split("\r?\n|\r")) {
+			lines.add(line);
+		}
+		List<String> translation = Collections.unmodifiableList(JazzignoreTranslator.toGitignore(lines));
+		translations.put(jazzignoreId, translation);
+		misses++;
+		return translation;
+	}
+
+	/**
+	 * Sets the lines of the <code>.gitignore</code> in the given directory.
+	 *
+	 * @param directory
+	 *            the directory with trailing slash or the empty string for the root directory
+	 * @param lines
+	 *            the lines of the <code>.gitignore</code>
+	 * @return <code>false</code> if the directory already had exactly these lines, <code>true</code> otherwise
+	 */
+	boolean update(String directory, List<String> lines) throws IOException {
+		Rules rules = directories.get(directory);
+		if (rules != null && rules.lines.equals(lines)) {
+			return false;
+		}
+		directories.put(directory, new Rules(lines));
+		return true;
+	}
+
+	void remove(String directory) {
+		directories.remove(directory);
+	}
+
+	boolean isEmpty() {
+		return directories.isEmpty();
+	}
+
+	/**
+	 * Checks the given path against the rules of all its parent directories, like git does for an untracked file. A
+	 * path within an ignored directory is ignored as well.
+	 *
+	 * @param path
+	 *            the path relative to the root directory
+	 * @return <code>true</code> if the path is ignored
+	 */
+	boolean isIgnored(String path) {
+		if (directories.isEmpty()) {
+			return false;
+		}
+		for (int slash = path.indexOf('/'); slash > 0; slash = path.indexOf('/', slash + 1)) {
+			if (isIgnored(path.substring(0, slash), true)) {
+				return true;
+			}
+		}
+		return isIgnored(path, false);
+	}
+
+	private boolean isIgnored(String path, boolean isDirectory) {
+		int end = path.lastIndexOf('/') + 1;
+		while (true) {
+			Rules rules = directories.get(path.substring(0, end));
+			if (rules != null) {
+				MatchResult result = rules.node.isIgnored(path.substring(end), isDirectory);
+				if (result == MatchResult.IGNORED) {
+					return true;
+				} else if (result == MatchResult.NOT_IGNORED) {
+					return false;
+				}
+			}
+			if (end == 0) {
+				return false;
+			}
+			end = path.lastIndexOf('/', end - 2) + 1;
+		}
+	}
+
+	int getHits() {
+		return hits;
+	}
+
+	int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the directory with trailing slash of the given <code>.jazzignore</code> or <code>.gitignore</code> path
+	 */
+	static String getDirectory(String ignoreFile) {
+		return ignoreFile.substring(0, ignoreFile.lastIndexOf('/') + 1);
+	}
+
+	private static final class Rules {
+		private final List<String> lines;
+		private final IgnoreNode node;
+
+		Rules(List<String> lines) throws IOException {
+			this.lines = new ArrayList<String>(lines);
+			StringBuilder sb = new StringBuilder();
+			for (String line : lines) {
+				sb.append(line).append('\n');
+			}
+			node = new IgnoreNode();
+			node.parse(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")));
+		}
+	}
+}
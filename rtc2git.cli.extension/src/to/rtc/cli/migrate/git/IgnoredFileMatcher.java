@@ -0,0 +1,138 @@
+package to.rtc.cli.migrate.git;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+
+/**
+ * Classifies the files to be generally ignored with a single look at each path: by extension, by size and by path
+ * glob. The extensions are compiled into a trie of their reversed characters, so a path is checked against all
+ * extensions by walking its last characters once, no matter how many extensions are configured.
+ */
+final class IgnoredFileMatcher {
+	static final long NO_SIZE_LIMIT = Long.MAX_VALUE;
+
+	private final Node extensions = new Node();
+	private final List<FastIgnoreRule> pathRules = new ArrayList<FastIgnoreRule>();
+	private final long maxFileSize;
+	private final boolean empty;
+
+	/**
+	 * @param extensions
+	 *            the file name endings to be ignored
+	 * @param pathGlobs
+	 *            the <code>.gitignore</code> style patterns of the paths to be ignored
+	 * @param maxFileSize
+	 *            the size in bytes above which files are ignored or {@link #NO_SIZE_LIMIT}
+	 */
+	IgnoredFileMatcher(Collection<String> extensions, Collection<String> pathGlobs, long maxFileSize) {
+		boolean hasExtensions = false;
+		for (String extension : extensions) {
+			if (!extension.isEmpty()) {
+				this.extensions.add(extension);
+				hasExtensions = true;
+			}
+		}
+		for (String glob : pathGlobs) {
+			FastIgnoreRule rule = new FastIgnoreRule(glob);
+			if (!rule.isEmpty()) {
+				pathRules.add(rule);
+			}
+		}
+		this.maxFileSize = maxFileSize;
+		this.empty = !hasExtensions && pathRules.isEmpty() && maxFileSize == NO_SIZE_LIMIT;
+	}
+
+	/**
+	 * @return <code>true</code> if no file is ever ignored
+	 */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @return <code>true</code> if the size of the files needs to be known for classifying them
+	 */
+	boolean hasSizeLimit() {
+		return maxFileSize != NO_SIZE_LIMIT;
+	}
+
+	/**
+	 * Checks whether the file with the given path and size is to be ignored.
+	 *
+	 * @param path
+	 *            the path relative to the root directory
+	 * @param size
+	 *            the size of the file in bytes or a negative value if unknown
+	 * @return <code>true</code> if the file is ignored
+	 */
+	boolean matches(String path, long size) {
+		if (empty) {
+			return false;
+		}
+		if (size > maxFileSize || extensions.matchesSuffix(path)) {
+			return true;
+		}
+		for (int i = 0; i < pathRules.size(); i++) {
+			FastIgnoreRule rule = pathRules.get(i);
+			if (rule.isMatch(path, false) && rule.getResult()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A node of the trie of reversed extensions, with the children sorted by their character.
+	 */
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private boolean terminal;
+
+		void add(String extension) {
+			Node node = this;
+			for (int i = extension.length() - 1; i >= 0; i--) {
+				node = node.getOrCreate(extension.charAt(i));
+			}
+			node.terminal = true;
+		}
+
+		private Node getOrCreate(char c) {
+			int pos = Arrays.binarySearch(keys, c);
+			if (pos >= 0) {
+				return children[pos];
+			}
+			int insert = -pos - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+			System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+			newKeys[insert] = c;
+			newChildren[insert] = new Node();
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[insert];
+		}
+
+		boolean matchesSuffix(String path) {
+			Node node = this;
+			for (int i = path.length() - 1; i >= 0 && node.keys.length > 0; i--) {
+				int pos = Arrays.binarySearch(node.keys, path.charAt(i));
+				if (pos < 0) {
+					return false;
+				}
+				node = node.children[pos];
+				if (node.terminal) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
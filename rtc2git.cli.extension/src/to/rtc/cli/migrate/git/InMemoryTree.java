@@ -0,0 +1,399 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeletePath;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeleteTree;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+
+/**
+ * Keeps the tree of the current <code>HEAD</code> commit as in memory index and creates commits from it without any
+ * working tree I/O. All blobs are inserted directly into the object database.
+ * <p>
+ * Files being put while ignored are kept aside like the untracked files of a sandbox. They are deleted and moved
+ * along with the tree and can be added to it once they are no longer ignored.
+ */
+final class InMemoryTree {
+	private final Repository repository;
+	private final int streamFileThreshold;
+	private final DirCache index;
+	private final ObjectInserter inserter;
+	private final TreeMap<String, DirCacheEntry> untracked;
+
+	private ObjectId head;
+	private ObjectId headTree;
+
+	InMemoryTree(Repository repository, int streamFileThreshold) throws IOException {
+		this.repository = repository;
+		this.streamFileThreshold = streamFileThreshold;
+		this.index = DirCache.newInCore();
+		this.inserter = repository.newObjectInserter();
+		this.untracked = new TreeMap<String, DirCacheEntry>();
+		load();
+	}
+
+	private void load() throws IOException {
+		head = repository.resolve(Constants.HEAD);
+		DirCacheBuilder builder = index.builder();
+		if (head != null) {
+			RevWalk walk = new RevWalk(repository);
+			try {
+				RevCommit commit = walk.parseCommit(head);
+				headTree = commit.getTree().getId();
+				ObjectReader reader = repository.newObjectReader();
+				try {
+					builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, headTree);
+				} finally {
+					reader.close();
+				}
+			} finally {
+				walk.close();
+			}
+		}
+		builder.finish();
+	}
+
+	boolean contains(String path) {
+		return index.findEntry(path) >= 0;
+	}
+
+	/**
+	 * @return whether the given file or any file within the given folder exists, tracked or not
+	 */
+	boolean exists(String path, boolean folder) {
+		if (!folder) {
+			return contains(path) || untracked.containsKey(path);
+		}
+		String prefix = path.concat("/");
+		String next = untracked.ceilingKey(prefix);
+		return index.getEntriesWithin(path).length > 0 || (next != null && next.startsWith(prefix));
+	}
+
+	/**
+	 * Returns the blob id of the given file or <code>null</code> if not existing.
+	 */
+	ObjectId getObjectId(String path) {
+		DirCacheEntry entry = index.getEntry(path);
+		return entry == null ? null : entry.getObjectId();
+	}
+
+	/**
+	 * Returns the paths of all files with the given name in any directory.
+	 */
+	List<String> findFiles(String name) {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < index.getEntryCount(); i++) {
+			String path = index.getEntry(i).getPathString();
+			if (path.endsWith(name) && (path.length() == name.length() || path.charAt(path.length() - name.length()
+					- 1) == '/')) {
+				paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the current content of the given file or <code>null</code> if not existing.
+	 */
+	byte[] read(String path) throws IOException {
+		DirCacheEntry entry = index.getEntry(path);
+		if (entry == null) {
+			return null;
+		}
+		inserter.flush();
+		ObjectReader reader = repository.newObjectReader();
+		try {
+			return reader.open(entry.getObjectId(), Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+		} finally {
+			reader.close();
+		}
+	}
+
+	ObjectId insert(byte[] content) throws IOException {
+		return inserter.insert(Constants.OBJ_BLOB, content);
+	}
+
+	/**
+	 * Inserts the given content as blob, buffered in memory up to the stream file threshold and spooled to a temporary
+	 * file otherwise.
+	 */
+	ObjectId insert(FileContent content) throws IOException {
+		if (content.getSize() >= 0 && content.getSize() <= streamFileThreshold) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) content.getSize());
+			content.writeTo(out);
+			return insert(out.toByteArray());
+		}
+		File spool = File.createTempFile("rtc2git", ".blob");
+		try {
+			OutputStream out = new FileOutputStream(spool);
+			try {
+				content.writeTo(out);
+			} finally {
+				out.close();
+			}
+			InputStream in = new FileInputStream(spool);
+			try {
+				return inserter.insert(Constants.OBJ_BLOB, spool.length(), in);
+			} finally {
+				in.close();
+			}
+		} finally {
+			spool.delete();
+		}
+	}
+
+	void put(String path, final ObjectId blob, final FileMode mode, final long length) {
+		untracked.remove(path);
+		DirCacheEditor editor = index.editor();
+		editor.add(new PathEdit(path) {
+			@Override
+			public void apply(DirCacheEntry entry) {
+				entry.setFileMode(mode);
+				entry.setObjectId(blob);
+				entry.setLength(length);
+			}
+		});
+		editor.finish();
+	}
+
+	/**
+	 * Keeps the given file aside as untracked file, not being part of the tree.
+	 */
+	void putUntracked(String path, ObjectId blob, FileMode mode, long length) {
+		DirCacheEntry entry = new DirCacheEntry(path);
+		entry.setFileMode(mode);
+		entry.setObjectId(blob);
+		entry.setLength(length);
+		untracked.put(path, entry);
+	}
+
+	boolean hasUntracked() {
+		return !untracked.isEmpty();
+	}
+
+	/**
+	 * @return the paths of all untracked files
+	 */
+	List<String> getUntracked() {
+		return new ArrayList<String>(untracked.keySet());
+	}
+
+	/**
+	 * Adds the untracked file to the tree.
+	 */
+	void track(String path) {
+		DirCacheEntry entry = untracked.remove(path);
+		if (entry != null) {
+			put(path, entry.getObjectId(), entry.getFileMode(), entry.getLength());
+		}
+	}
+
+	void delete(String path, boolean folder) {
+		Iterator<String> untrackedPaths = untracked.keySet().iterator();
+		while (untrackedPaths.hasNext()) {
+			String untrackedPath = untrackedPaths.next();
+			if (untrackedPath.equals(path) || (folder && untrackedPath.startsWith(path.concat("/")))) {
+				untrackedPaths.remove();
+			}
+		}
+		DirCacheEditor editor = index.editor();
+		if (folder) {
+			editor.add(new DeleteTree(path));
+		} else {
+			editor.add(new DeletePath(path));
+		}
+		editor.finish();
+	}
+
+	/**
+	 * Moves the files and all files within the folders of the given moves of one change set at once. Every move is
+	 * resolved against the tree as it was before any of them, so files swapping their paths keep their content. A
+	 * file within a moved folder being moved itself only ends up at its own new path.
+	 */
+	void move(List<FileChange> moves) {
+		Map<String, DirCacheEntry> moved = new LinkedHashMap<String, DirCacheEntry>();
+		Set<String> removed = new HashSet<String>();
+		for (FileChange move : moves) {
+			DirCacheEntry[] entries;
+			if (move.isFolder()) {
+				entries = index.getEntriesWithin(move.getPreviousPath());
+			} else {
+				DirCacheEntry entry = index.getEntry(move.getPreviousPath());
+				entries = entry == null ? new DirCacheEntry[0] : new DirCacheEntry[] { entry };
+			}
+			for (DirCacheEntry entry : entries) {
+				String entryPath = entry.getPathString();
+				if (findMove(entryPath, moves) == move) {
+					removed.add(entryPath);
+					moved.put(getMovedPath(entryPath, move), entry);
+				}
+			}
+		}
+		DirCacheEditor editor = index.editor();
+		for (String path : removed) {
+			if (!moved.containsKey(path)) {
+				editor.add(new DeletePath(path));
+			}
+		}
+		for (Entry<String, DirCacheEntry> entry : moved.entrySet()) {
+			// the entries are updated in place, so a swapped entry may have been changed before being read
+			final FileMode mode = entry.getValue().getFileMode();
+			final ObjectId blob = entry.getValue().getObjectId();
+			final long length = entry.getValue().getLength();
+			editor.add(new PathEdit(entry.getKey()) {
+				@Override
+				public void apply(DirCacheEntry target) {
+					target.setFileMode(mode);
+					target.setObjectId(blob);
+					target.setLength(length);
+				}
+			});
+		}
+		editor.finish();
+		moveUntracked(moves);
+	}
+
+	private void moveUntracked(List<FileChange> moves) {
+		if (untracked.isEmpty()) {
+			return;
+		}
+		Map<String, DirCacheEntry> moved = new TreeMap<String, DirCacheEntry>();
+		Iterator<DirCacheEntry> entries = untracked.values().iterator();
+		while (entries.hasNext()) {
+			DirCacheEntry entry = entries.next();
+			FileChange move = findMove(entry.getPathString(), moves);
+			if (move != null) {
+				entries.remove();
+				DirCacheEntry target = new DirCacheEntry(getMovedPath(entry.getPathString(), move));
+				target.setFileMode(entry.getFileMode());
+				target.setObjectId(entry.getObjectId());
+				target.setLength(entry.getLength());
+				moved.put(target.getPathString(), target);
+			}
+		}
+		untracked.putAll(moved);
+	}
+
+	/**
+	 * @return the move with the deepest previous path the given path is moved by, <code>null</code> if none
+	 */
+	static FileChange findMove(String path, List<FileChange> moves) {
+		FileChange found = null;
+		for (FileChange move : moves) {
+			String previousPath = move.getPreviousPath();
+			if ((path.equals(previousPath) || (move.isFolder() && path.startsWith(previousPath.concat("/"))))
+					&& (found == null || previousPath.length() > found.getPreviousPath().length())) {
+				found = move;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return the path the given path is moved to by the given move
+	 */
+	static String getMovedPath(String path, FileChange move) {
+		return move.getPath().concat(path.substring(move.getPreviousPath().length()));
+	}
+
+	ObjectId getHead() {
+		return head;
+	}
+
+	/**
+	 * Creates a commit of the current tree on top of <code>HEAD</code>.
+	 *
+	 * @return the new commit or <code>null</code> if the tree did not change
+	 */
+	ObjectId commit(PersonIdent author, PersonIdent committer, String message) throws IOException {
+		ObjectId tree = index.writeTree(inserter);
+		if (tree.equals(headTree)) {
+			return null;
+		}
+		CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(tree);
+		if (head != null) {
+			commit.setParentId(head);
+		}
+		commit.setAuthor(author);
+		commit.setCommitter(committer);
+		commit.setMessage(message);
+		ObjectId commitId = inserter.insert(commit);
+		inserter.flush();
+
+		RefUpdate update = repository.updateRef(Constants.HEAD);
+		update.setNewObjectId(commitId);
+		update.setExpectedOldObjectId(head == null ? ObjectId.zeroId() : head);
+		update.setRefLogMessage("commit: " + firstLine(message), false);
+		RefUpdate.Result result = update.update();
+		switch (result) {
+		case NEW:
+		case FAST_FORWARD:
+		case FORCED:
+			break;
+		default:
+			throw new IOException("Unable to update HEAD to " + commitId.name() + ": " + result);
+		}
+		head = commitId;
+		headTree = tree;
+		return commitId;
+	}
+
+	private static String firstLine(String message) {
+		int end = message.indexOf('\n');
+		return end < 0 ? message : message.substring(0, end);
+	}
+
+	/**
+	 * Writes the in memory index as index of the repository, so that it matches the current <code>HEAD</code>.
+	 */
+	void writeIndex() throws IOException {
+		DirCache diskIndex = repository.lockDirCache();
+		try {
+			DirCacheBuilder builder = diskIndex.builder();
+			for (int i = 0; i < index.getEntryCount(); i++) {
+				builder.add(index.getEntry(i));
+			}
+			builder.commit();
+		} finally {
+			diskIndex.unlock();
+		}
+	}
+
+	void close() {
+		inserter.close();
+	}
+}
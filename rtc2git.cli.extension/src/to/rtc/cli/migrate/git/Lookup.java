@@ -0,0 +1,64 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.ibm.team.filesystem.cli.client.AbstractSubcommand;
+import com.ibm.team.filesystem.cli.core.subcommands.CommonOptions;
+import com.ibm.team.filesystem.client.FileSystemException;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.ISubcommand;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.ICommandLine;
+
+/**
+ * Looks up the commit of a migrated RTC change set or the change sets of a commit in the {@link CommitIndex} of the
+ * repository in the given directory. Prints one line per match, being the change set UUID followed by the commit id.
+ */
+public class Lookup extends AbstractSubcommand implements ISubcommand {
+
+	@Override
+	public void run() throws FileSystemException {
+		ICommandLine subargs = config.getSubcommandCommandLine();
+		File directory;
+		if (subargs.hasOption(CommonOptions.OPT_DIRECTORY)) {
+			directory = new File(subargs.getOption(CommonOptions.OPT_DIRECTORY));
+		} else {
+			directory = new File(System.getProperty("user.dir"));
+		}
+		String key = subargs.getOption(LookupOptions.OPT_KEY);
+		PrintStream out = config.getContext().stdout();
+		try {
+			File gitDirectory = new File(directory, Constants.DOT_GIT);
+			CommitIndex index = CommitIndex.open(gitDirectory.isDirectory() ? gitDirectory : directory);
+			List<String> lines = lookup(index, key);
+			if (lines.isEmpty()) {
+				out.println("No entry found for [" + key + "] in " + index.size() + " indexed changesets");
+			}
+			for (String line : lines) {
+				out.println(line);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read the changeset index of " + directory, e);
+		}
+	}
+
+	static List<String> lookup(CommitIndex index, String key) {
+		List<String> lines = new ArrayList<String>();
+		if (ObjectId.isId(key)) {
+			for (String uuid : index.findChangeSets(ObjectId.fromString(key))) {
+				lines.add(uuid + " " + key);
+			}
+		} else {
+			ObjectId commit = index.findCommit(key);
+			if (commit != null) {
+				lines.add(key + " " + commit.name());
+			}
+		}
+		return lines;
+	}
+}
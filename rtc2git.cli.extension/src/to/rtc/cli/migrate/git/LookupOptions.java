@@ -0,0 +1,24 @@
+package to.rtc.cli.migrate.git;
+
+import com.ibm.team.filesystem.cli.core.subcommands.CommonOptions;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.IOptionSource;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.IOptionKey;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.OptionKey;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.Options;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.PositionalOptionDefinition;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.exceptions.ConflictingOptionException;
+
+public class LookupOptions implements IOptionSource {
+
+	public static final IOptionKey OPT_KEY = new OptionKey("key"); //$NON-NLS-1$
+
+	@Override
+	public Options getOptions() throws ConflictingOptionException {
+		Options options = new Options(false);
+
+		options.addOption(new PositionalOptionDefinition(OPT_KEY, "key", 1, 1), //$NON-NLS-1$
+				"UUID of a migrated RTC changeset or id of a commit of the migrated git repository.");
+		options.addOption(CommonOptions.OPT_DIRECTORY, CommonOptions.OPT_DIRECTORY_HELP);
+		return options;
+	}
+}
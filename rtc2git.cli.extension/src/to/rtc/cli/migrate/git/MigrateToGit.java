@@ -1,30 +1,229 @@
 package to.rtc.cli.migrate.git;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
 import to.rtc.cli.migrate.MigrateTo;
+import to.rtc.cli.migrate.MigrateToOptions;
+import to.rtc.cli.migrate.MigratedTrees;
+import to.rtc.cli.migrate.MigrationSettings;
 import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.util.Files;
 
 import com.ibm.team.filesystem.client.FileSystemException;
 import com.ibm.team.rtc.cli.infrastructure.internal.parser.ICommandLine;
 
 public class MigrateToGit extends MigrateTo {
 	private Migrator migratorImplementation;
+	private Properties migrationProperties;
 	private Pattern baselineIncludeRegexPattern;
 
 	@Override
 	public void run() throws FileSystemException {
-		Properties migrationProperties = readProperties(config.getSubcommandCommandLine());
-		baselineIncludeRegexPattern = Pattern.compile(migrationProperties.getProperty("rtc.baseline.include", ""));
-		migratorImplementation = new GitMigrator(migrationProperties);
+		prepare(readProperties(config.getSubcommandCommandLine()),
+				config.getSubcommandCommandLine().hasOption(MigrateToOptions.OPT_RTC_STREAM_CONTENT));
 		try {
 			super.run();
 		} finally {
-			migratorImplementation.close();
+			try {
+				migratorImplementation.close();
+			} finally {
+				releaseShutdown();
+			}
+		}
+		if (!getShardDirectories().isEmpty()) {
+			stitchShards();
+		}
+	}
+
+	/**
+	 * Creates the migrator for the given migration properties, to be closed by the caller once migrated.
+	 */
+	Migrator prepare(Properties properties, boolean streamContent) {
+		migrationProperties = properties;
+		baselineIncludeRegexPattern = Pattern.compile(migrationProperties.getProperty("rtc.baseline.include", ""));
+		if (GitMigrator.getBranch(migrationProperties) != null && !streamContent) {
+			throw new RuntimeException("branch is only supported with --stream-content");
+		}
+		if (ComponentFanOutMigrator.isEnabled(migrationProperties)) {
+			if (GitMigrator.getBranch(migrationProperties) != null) {
+				throw new RuntimeException("branch is not supported with component.fanout");
+			}
+			if (!streamContent) {
+				throw new RuntimeException("component.fanout is only supported with --stream-content");
+			}
+			migratorImplementation = new ComponentFanOutMigrator(migrationProperties);
+		} else {
+			migratorImplementation = new GitMigrator(migrationProperties);
+		}
+		return migratorImplementation;
+	}
+
+	@Override
+	protected void validate(MigrationSettings settings) {
+		if (settings.getShardCount() > 1) {
+			if (ComponentFanOutMigrator.isEnabled(migrationProperties)) {
+				throw new IllegalArgumentException("component.fanout is not supported with --shards");
+			}
+			if (GitMigrator.getBranch(migrationProperties) != null) {
+				throw new IllegalArgumentException("branch is not supported with --shards");
+			}
+		}
+		if (settings.isBaselineCommits() && GitMigrator.getBranch(migrationProperties) != null) {
+			throw new IllegalArgumentException("branch is not supported with --baseline-commits");
+		}
+		if (settings.getVerifyReport() != null) {
+			if (!(migratorImplementation instanceof GitMigrator)) {
+				throw new IllegalArgumentException("component.fanout is not supported with --verify");
+			}
+			if (((GitMigrator) migratorImplementation).rewritesPaths()) {
+				throw new IllegalArgumentException("path.root and path.prefix are not supported with --verify");
+			}
+		}
+	}
+
+	@Override
+	protected Migrator createShardMigrator() {
+		return new GitMigrator(migrationProperties);
+	}
+
+	@Override
+	protected List<String> locateStartingPoint(File sandboxDirectory, Map<String, String> lastChangeSets) {
+		List<String> lines = new ArrayList<String>();
+		File gitDirectory = new File(sandboxDirectory, Constants.DOT_GIT);
+		if (!CommitIndex.exists(gitDirectory)) {
+			return lines;
+		}
+		String branch = GitMigrator.getBranch(migrationProperties);
+		try {
+			CommitIndex index = CommitIndex.open(gitDirectory);
+			ObjectId head;
+			List<ObjectId> commits = new ArrayList<ObjectId>();
+			Git git = Git.open(sandboxDirectory);
+			try {
+				head = git.getRepository().resolve(branch == null ? Constants.HEAD : Constants.R_HEADS + branch);
+				boolean headFound = false;
+				for (Entry<String, String> lastChangeSet : lastChangeSets.entrySet()) {
+					ObjectId commit = index.findCommit(lastChangeSet.getValue());
+					if (commit == null) {
+						lines.add("Last changeset [" + lastChangeSet.getValue() + "] of component ["
+								+ lastChangeSet.getKey() + "] is not in the changeset index");
+					} else {
+						lines.add("Component [" + lastChangeSet.getKey() + "] continues after changeset ["
+								+ lastChangeSet.getValue() + "] migrated as commit [" + commit.name() + "]");
+						headFound |= commit.equals(head);
+						commits.add(commit);
+					}
+				}
+				if (!headFound && head != null) {
+					lines.add("HEAD [" + head.name() + "] is not the commit of any last changeset of the destination "
+							+ "workspace, the repository and the workspace may be out of sync");
+				}
+				if (branch != null && head == null && migratorImplementation instanceof GitMigrator) {
+					ObjectId start = commits.size() == lastChangeSets.size() ? findNewest(git, commits) : null;
+					if (start != null) {
+						((GitMigrator) migratorImplementation).setBranchStart(start);
+						lines.add("Branch [" + branch + "] starts at commit [" + start.name() + "]");
+					} else {
+						lines.add("Branch [" + branch + "] has no start, the last changesets of the destination "
+								+ "workspace are not all migrated along one history");
+					}
+				}
+			} finally {
+				git.close();
+			}
+		} catch (IOException e) {
+			lines.add("Unable to read the changeset index (" + e.getMessage() + ")");
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the commit all others are ancestors of, <code>null</code> if there is none
+	 */
+	private static ObjectId findNewest(Git git, List<ObjectId> commits) throws IOException {
+		RevWalk walk = new RevWalk(git.getRepository());
+		try {
+			RevCommit newest = null;
+			for (ObjectId commit : commits) {
+				RevCommit candidate = walk.parseCommit(commit);
+				if (newest == null || walk.isMergedInto(newest, candidate)) {
+					newest = candidate;
+				} else if (!walk.isMergedInto(candidate, newest)) {
+					return null;
+				}
+			}
+			return newest;
+		} finally {
+			walk.close();
+		}
+	}
+
+	@Override
+	protected long getLastMigratedTime(File sandboxDirectory, Map<String, String> lastChangeSets) {
+		File gitDirectory = new File(sandboxDirectory, Constants.DOT_GIT);
+		if (!CommitIndex.exists(gitDirectory)) {
+			return 0;
+		}
+		long lastMigratedTime = 0;
+		try {
+			CommitIndex index = CommitIndex.open(gitDirectory);
+			Git git = Git.open(sandboxDirectory);
+			RevWalk walk = new RevWalk(git.getRepository());
+			try {
+				for (String lastChangeSet : lastChangeSets.values()) {
+					ObjectId commit = index.findCommit(lastChangeSet);
+					if (commit != null) {
+						lastMigratedTime = Math.max(lastMigratedTime, walk.parseCommit(commit).getAuthorIdent()
+								.getWhen().getTime());
+					}
+				}
+			} finally {
+				walk.close();
+				git.close();
+			}
+		} catch (IOException e) {
+			return 0;
+		}
+		return lastMigratedTime;
+	}
+
+	@Override
+	protected MigratedTrees openMigratedTrees(File sandboxDirectory) throws IOException {
+		return new GitTrees(sandboxDirectory, (GitMigrator) migratorImplementation,
+				GitMigrator.getBranch(migrationProperties));
+	}
+
+	private void stitchShards() {
+		try {
+			HistoryStitcher stitcher = new HistoryStitcher(getSandboxDirectory());
+			try {
+				for (File shardDirectory : getShardDirectories()) {
+					// the initial commit of a shard collapses onto the tip, its snapshot too if nothing differs
+					stitcher.stitch(shardDirectory, 1);
+				}
+			} finally {
+				stitcher.close();
+			}
+			for (File shardDirectory : getShardDirectories()) {
+				Files.delete(shardDirectory);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to stitch the shards", e);
 		}
 	}
 
@@ -39,19 +238,23 @@ public class MigrateToGit extends MigrateTo {
 	}
 
 	private Properties readProperties(ICommandLine subargs) {
-		final Properties props = new Properties();
 		if (subargs.hasOption(MigrateToGitOptions.OPT_MIGRATION_PROPERTIES)) {
+			return readProperties(new File(subargs.getOption(MigrateToGitOptions.OPT_MIGRATION_PROPERTIES)));
+		}
+		return new Properties();
+	}
+
+	static Properties readProperties(File propertiesFile) {
+		final Properties props = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(propertiesFile);
 			try {
-				FileInputStream in = new FileInputStream(
-						subargs.getOption(MigrateToGitOptions.OPT_MIGRATION_PROPERTIES));
-				try {
-					props.load(in);
-				} finally {
-					in.close();
-				}
-			} catch (IOException e) {
-				throw new RuntimeException("Unable to read migration properties", e);
+				props.load(in);
+			} finally {
+				in.close();
 			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read migration properties", e);
 		}
 		return trimProperties(props);
 	}
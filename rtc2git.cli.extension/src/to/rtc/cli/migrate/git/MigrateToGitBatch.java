@@ -0,0 +1,171 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import to.rtc.cli.migrate.BatchManifest;
+import to.rtc.cli.migrate.BatchManifest.Entry;
+import to.rtc.cli.migrate.BatchScheduler;
+import to.rtc.cli.migrate.BatchScheduler.Result;
+import to.rtc.cli.migrate.MigrateToOptions;
+import to.rtc.cli.migrate.MigrationSettings;
+import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.StreamOutput;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.MetricsReporter;
+
+import com.ibm.team.filesystem.cli.client.AbstractSubcommand;
+import com.ibm.team.filesystem.cli.core.util.RepoUtil;
+import com.ibm.team.filesystem.cli.core.util.SubcommandUtil;
+import com.ibm.team.filesystem.client.FileSystemException;
+import com.ibm.team.filesystem.client.rest.IFilesystemRestClient;
+import com.ibm.team.repository.client.ITeamRepository;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.ISubcommand;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.ICommandLine;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.IOptionKey;
+import com.ibm.team.scm.common.IWorkspace;
+
+/**
+ * Migrates all workspaces of a manifest to git within one process, sharing one RTC login and daemon among them. The
+ * migrations run concurrently on a bounded pool, as scheduled by the {@link BatchScheduler}, and always stream the
+ * changeset contents. Every migration writes its output to <code>&lt;sandbox&gt;.log</code> and its progress to
+ * <code>&lt;sandbox&gt;.status</code> next to its sandbox, the console only gets the start and the outcome of each.
+ * Every migration collects its metrics in a registry of its own, written to a subdirectory of the metrics directory
+ * named like its sandbox. As the contents are streamed, no scm command is run that would rewrite the command line of
+ * the configuration shared by the migrations.
+ */
+@SuppressWarnings("restriction")
+public class MigrateToGitBatch extends AbstractSubcommand implements ISubcommand {
+	private static final long MEGABYTE = 1024 * 1024;
+
+	@Override
+	public void run() throws FileSystemException {
+		ICommandLine subargs = config.getSubcommandCommandLine();
+		final StreamOutput output = new StreamOutput(config.getContext().stdout());
+		long start = System.currentTimeMillis();
+		try {
+			File manifestFile = new File(subargs.getOption(MigrateToGitBatchOptions.OPT_MANIFEST));
+			List<Entry> entries = BatchManifest.read(manifestFile);
+			int timeout = getInt(subargs, MigrateToOptions.OPT_RTC_CONNECTION_TIMEOUT, 900);
+			final boolean isUpdateMigration = subargs.hasOption(MigrateToOptions.OPT_RTC_IS_UPDATE_MIGRATION);
+			final long coalescingWindow = TimeUnit.SECONDS.toMillis(getInt(subargs,
+					MigrateToOptions.OPT_RTC_COALESCING_WINDOW, 0));
+			BatchScheduler scheduler = new BatchScheduler(output, getInt(subargs,
+					MigrateToGitBatchOptions.OPT_PARALLEL, 2))
+					.setHeapPerMigration(getInt(subargs, MigrateToGitBatchOptions.OPT_HEAP_PER_MIGRATION, 512)
+							* MEGABYTE)
+					.setMinFreeDisk(getInt(subargs, MigrateToGitBatchOptions.OPT_MIN_FREE_DISK, 1024) * MEGABYTE);
+
+			File metricsDirectory = null;
+			if (subargs.hasOption(MigrateToOptions.OPT_METRICS_DIRECTORY)) {
+				metricsDirectory = new File(subargs.getOptionValue(MigrateToOptions.OPT_METRICS_DIRECTORY).getValue());
+				output.writeLine("***** WRITE METRICS OF EVERY MIGRATION TO " + metricsDirectory.getAbsolutePath()
+						+ " *****");
+			}
+			final File metricsRoot = metricsDirectory;
+
+			output.writeLine("Initialize RTC connection with connection timeout of " + timeout + "s");
+			final IFilesystemRestClient client = SubcommandUtil.setupDaemon(config);
+			final ITeamRepository repo = RepoUtil.login(config, client, config.getConnectionInfo());
+			repo.setConnectionTimeout(timeout);
+
+			output.writeLine("Migrate [" + entries.size() + "] workspaces");
+			List<Result> results = scheduler.run(entries, new BatchScheduler.Job() {
+				@Override
+				public void migrate(Entry entry) throws Exception {
+					MigrationSettings settings = new MigrationSettings()
+							.setSandboxDirectory(entry.getSandboxDirectory()).setUpdateMigration(isUpdateMigration)
+							.setCoalescingWindow(coalescingWindow).setStreamContent(true)
+							.setStatusFile(getSibling(entry.getSandboxDirectory(), ".status"));
+					migrateEntry(entry, settings, client, repo, metricsRoot);
+				}
+			});
+			int failed = 0;
+			for (Result result : results) {
+				if (!result.isSuccessful()) {
+					failed++;
+				}
+			}
+			if (failed > 0) {
+				throw new RuntimeException(failed + " of " + results.size() + " migrations failed");
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read the manifest", e);
+		} finally {
+			output.writeLine("Batch took [" + (System.currentTimeMillis() - start) / 1000 + "] s");
+		}
+	}
+
+	/**
+	 * @param metricsDirectory
+	 *            the directory holding the metrics of all migrations, <code>null</code> if not written
+	 */
+	private void migrateEntry(Entry entry, MigrationSettings settings, IFilesystemRestClient client,
+			ITeamRepository repo, File metricsDirectory) throws Exception {
+		File sandboxDirectory = entry.getSandboxDirectory();
+		if (!sandboxDirectory.isDirectory() && !sandboxDirectory.mkdirs()) {
+			throw new IOException("Unable to create sandbox directory " + sandboxDirectory);
+		}
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsRegistry.bind(registry);
+		MetricsReporter metricsReporter = null;
+		if (metricsDirectory != null) {
+			metricsReporter = new MetricsReporter(registry, new File(metricsDirectory, sandboxDirectory.getName()));
+			metricsReporter.start(60);
+		}
+		try {
+			migrateWithMetrics(entry, settings, client, repo, sandboxDirectory);
+		} finally {
+			MetricsRegistry.bind(null);
+			if (metricsReporter != null) {
+				metricsReporter.close();
+			}
+		}
+	}
+
+	private void migrateWithMetrics(Entry entry, MigrationSettings settings, IFilesystemRestClient client,
+			ITeamRepository repo, File sandboxDirectory) throws Exception {
+		Properties properties = entry.getPropertiesFile() == null ? new Properties() : MigrateToGit
+				.readProperties(entry.getPropertiesFile());
+		PrintStream log = new PrintStream(new FileOutputStream(getSibling(sandboxDirectory, ".log"), true), true,
+				"UTF-8");
+		try {
+			IWorkspace sourceWs = RepoUtil.getWorkspace(entry.getSourceWorkspace(), true, false, repo, config);
+			IWorkspace destinationWs = RepoUtil.getWorkspace(entry.getDestinationWorkspace(), true, false, repo,
+					config);
+			MigrateToGit migration = new MigrateToGit();
+			Migrator migrator = migration.prepare(properties, true);
+			try {
+				migration.migrate(config, new StreamOutput(log), settings, client, repo, sourceWs, destinationWs,
+						entry.getDestinationWorkspace());
+			} finally {
+				try {
+					migrator.close();
+				} finally {
+					migration.releaseShutdown();
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(log);
+			throw e;
+		} finally {
+			log.close();
+		}
+	}
+
+	private static File getSibling(File sandboxDirectory, String suffix) {
+		return new File(sandboxDirectory.getParentFile(), sandboxDirectory.getName() + suffix);
+	}
+
+	private static int getInt(ICommandLine subargs, IOptionKey key, int defaultValue) {
+		if (subargs.hasOption(key)) {
+			return Integer.parseInt(subargs.getOptionValue(key).getValue());
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,49 @@
+package to.rtc.cli.migrate.git;
+
+import to.rtc.cli.migrate.MigrateToOptions;
+
+import com.ibm.team.filesystem.cli.core.util.SubcommandUtil;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.IOptionSource;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.IOptionKey;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.NamedOptionDefinition;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.OptionKey;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.Options;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.PositionalOptionDefinition;
+import com.ibm.team.rtc.cli.infrastructure.internal.parser.exceptions.ConflictingOptionException;
+
+public class MigrateToGitBatchOptions implements IOptionSource {
+
+	public static final IOptionKey OPT_MANIFEST = new OptionKey("manifest"); //$NON-NLS-1$
+	public static final IOptionKey OPT_PARALLEL = new OptionKey("parallel");
+	public static final IOptionKey OPT_HEAP_PER_MIGRATION = new OptionKey("heapPerMigration");
+	public static final IOptionKey OPT_MIN_FREE_DISK = new OptionKey("minFreeDisk");
+
+	@Override
+	public Options getOptions() throws ConflictingOptionException {
+		Options options = new Options(false);
+
+		SubcommandUtil.addRepoLocationToOptions(options);
+		options.addOption(new PositionalOptionDefinition(OPT_MANIFEST, "manifest", 1, 1), //$NON-NLS-1$
+				"File with one migration per line, given as source workspace, destination workspace, sandbox "
+						+ "directory and optionally migration properties file, separated by semicolons. The "
+						+ "migrations stream the changeset contents, so every sandbox has to be loaded once before.");
+		options.addOption(new NamedOptionDefinition(OPT_PARALLEL, "j", "parallel", 1),
+				"Maximum number of migrations running at the same time, defaults to 2.");
+		options.addOption(new NamedOptionDefinition(OPT_HEAP_PER_MIGRATION, "H", "heap-per-migration", 1),
+				"Free heap in MB needed to start another migration while others are running, defaults to 512.");
+		options.addOption(new NamedOptionDefinition(OPT_MIN_FREE_DISK, "D", "min-free-disk", 1),
+				"Free disk space in MB the disk of a sandbox has to keep to start a migration into it, defaults "
+						+ "to 1024.");
+		options.addOption(new NamedOptionDefinition(MigrateToOptions.OPT_RTC_CONNECTION_TIMEOUT, "t", "timeout", 1),
+				"Timeout in seconds of the shared RTC connection, defaults to 900.");
+		options.addOption(new NamedOptionDefinition(MigrateToOptions.OPT_RTC_IS_UPDATE_MIGRATION, "U", "update", 0),
+				"Update the repositories of the manifest instead of migrating from scratch.");
+		options.addOption(new NamedOptionDefinition(MigrateToOptions.OPT_RTC_COALESCING_WINDOW, "W",
+				"coalescing-window", 1),
+				"Coalesce consecutive changesets of the same author within the given number of seconds.");
+		options.addOption(new NamedOptionDefinition(MigrateToOptions.OPT_METRICS_DIRECTORY, "M", "metrics-dir", 1),
+				"Directory the metrics of every migration are written to, each into a subdirectory named like its "
+						+ "sandbox.");
+		return options;
+	}
+}
@@ -0,0 +1,201 @@
+package to.rtc.cli.migrate.git;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import to.rtc.cli.migrate.FileChange;
+
+/**
+ * Decides which paths of the sandbox end up in git and where. Configured by the following properties:
+ * <ul>
+ * <li><code>path.include</code>: <code>.gitignore</code> style patterns, only matching paths are migrated</li>
+ * <li><code>path.exclude</code>: <code>.gitignore</code> style patterns of paths never migrated</li>
+ * <li><code>path.root</code>: only the content of this folder is migrated, as root of the git repository</li>
+ * <li><code>path.prefix.&lt;component&gt;</code>: the folder the content of the component is moved to</li>
+ * </ul>
+ * The patterns are matched against the path in the sandbox. Excluded content is never read, so it is neither hashed
+ * nor stored.
+ */
+final class PathFilter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PathFilter.class);
+	private static final String PREFIX_PROPERTY = "path.prefix.";
+
+	private final List<FastIgnoreRule> includes;
+	private final List<FastIgnoreRule> excludes;
+	private final List<String> excludePatterns;
+	private final String root;
+	private final Map<String, String> prefixes;
+
+	PathFilter(Properties props) {
+		excludePatterns = parsePatterns(props.getProperty("path.exclude"));
+		includes = compile(parsePatterns(props.getProperty("path.include")));
+		excludes = compile(excludePatterns);
+		root = toFolder(props.getProperty("path.root"));
+		prefixes = new HashMap<String, String>();
+		for (Entry<Object, Object> entry : props.entrySet()) {
+			String key = entry.getKey().toString();
+			if (key.startsWith(PREFIX_PROPERTY) && key.length() > PREFIX_PROPERTY.length()) {
+				prefixes.put(key.substring(PREFIX_PROPERTY.length()), toFolder(entry.getValue().toString()));
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if all paths are migrated unchanged
+	 */
+	boolean isEmpty() {
+		return includes.isEmpty() && excludes.isEmpty() && !rewritesPaths();
+	}
+
+	/**
+	 * @return <code>true</code> if paths are re-rooted or prefixed, which is only possible when streaming
+	 */
+	boolean rewritesPaths() {
+		return !root.isEmpty() || !prefixes.isEmpty();
+	}
+
+	/**
+	 * @return the <code>path.exclude</code> patterns, usable as lines of <code>.git/info/exclude</code>
+	 */
+	List<String> getExcludePatterns() {
+		return excludePatterns;
+	}
+
+	/**
+	 * Maps the given sandbox path to its path in git.
+	 *
+	 * @param path
+	 *            the path relative to the sandbox root
+	 * @param folder
+	 *            <code>true</code> if the path denotes a folder
+	 * @param component
+	 *            the name of the component or <code>null</code> if unknown
+	 * @return the path in git or <code>null</code> if the path is not migrated
+	 */
+	String map(String path, boolean folder, String component) {
+		if (!isIncluded(path, folder)) {
+			return null;
+		}
+		String mapped = path;
+		if (!root.isEmpty()) {
+			if (!mapped.startsWith(root)) {
+				return null;
+			}
+			mapped = mapped.substring(root.length());
+		}
+		if (component != null) {
+			String prefix = prefixes.get(component);
+			if (prefix != null) {
+				mapped = prefix.concat(mapped);
+			}
+		}
+		return mapped.isEmpty() ? null : mapped;
+	}
+
+	/**
+	 * Checks the given sandbox path against the include and exclude patterns only.
+	 */
+	boolean isIncluded(String path, boolean folder) {
+		if (!includes.isEmpty() && !matches(includes, path, folder)) {
+			return false;
+		}
+		return !matches(excludes, path, folder);
+	}
+
+	/**
+	 * Maps the paths of the given changes, dropping all changes of paths not migrated.
+	 *
+	 * @param changes
+	 *            the changes of the sandbox
+	 * @param component
+	 *            the name of the component or <code>null</code> if unknown
+	 * @return the changes in git
+	 */
+	List<FileChange> apply(List<FileChange> changes, String component) {
+		if (isEmpty()) {
+			return changes;
+		}
+		List<FileChange> result = new ArrayList<FileChange>(changes.size());
+		for (FileChange change : changes) {
+			String path = map(change.getPath(), change.isFolder(), component);
+			switch (change.getKind()) {
+			case DELETE:
+				if (path != null) {
+					result.add(FileChange.delete(path, change.isFolder()));
+				}
+				break;
+			case MOVE:
+				String previousPath = map(change.getPreviousPath(), change.isFolder(), component);
+				if (path != null && previousPath != null) {
+					result.add(FileChange.move(previousPath, path, change.isFolder()));
+				} else if (previousPath != null) {
+					result.add(FileChange.delete(previousPath, change.isFolder()));
+				} else if (path != null) {
+					// the content was never migrated, it shows up with its next modification
+					LOGGER.warn("Unable to move excluded {} to {}", change.getPreviousPath(), change.getPath());
+				}
+				break;
+			case PUT:
+				if (path != null) {
+					result.add(FileChange.put(path, change.getContent()));
+				}
+				break;
+			}
+		}
+		return result;
+	}
+
+	private static boolean matches(List<FastIgnoreRule> rules, String path, boolean folder) {
+		for (int i = 0; i < rules.size(); i++) {
+			FastIgnoreRule rule = rules.get(i);
+			if (rule.isMatch(path, folder) && rule.getResult()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<String> parsePatterns(String value) {
+		List<String> patterns = new ArrayList<String>();
+		if (value != null) {
+			for (String pattern : value.split(";")) {
+				pattern = pattern.trim();
+				if (!pattern.isEmpty()) {
+					patterns.add(pattern);
+				}
+			}
+		}
+		return patterns;
+	}
+
+	private static List<FastIgnoreRule> compile(Collection<String> patterns) {
+		List<FastIgnoreRule> rules = new ArrayList<FastIgnoreRule>(patterns.size());
+		for (String pattern : patterns) {
+			rules.add(new FastIgnoreRule(pattern));
+		}
+		return rules;
+	}
+
+	private static String toFolder(String value) {
+		if (value == null) {
+			return "";
+		}
+		String folder = value.trim().replace('\\', '/');
+		while (folder.startsWith("/")) {
+			folder = folder.substring(1);
+		}
+		if (!folder.isEmpty() && !folder.endsWith("/")) {
+			folder = folder.concat("/");
+		}
+		return folder;
+	}
+}
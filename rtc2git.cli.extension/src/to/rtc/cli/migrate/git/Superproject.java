@@ -0,0 +1,144 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.Tag;
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * The git repository containing the repositories of a {@link ComponentFanOutMigrator} as submodules. Every change set
+ * migrated into one of the repositories is recorded as a commit moving the submodule pointer, so the history of the
+ * superproject follows the global order of the change sets.
+ */
+final class Superproject {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final CommitMessageRenderer messageRenderer;
+	private final PersonIdent defaultIdent;
+	private final SortedSet<String> submodules = new TreeSet<String>();
+	private Git git;
+	private InMemoryTree tree;
+
+	Superproject(Properties props) {
+		messageRenderer = new CommitMessageRenderer(props);
+		defaultIdent = new PersonIdent(props.getProperty("user.name", "RTC 2 git"),
+				props.getProperty("user.email", "rtc2git@rtc.to"));
+	}
+
+	void init(File rootDirectory) {
+		try {
+			if (new File(rootDirectory, ".git").exists()) {
+				git = Git.open(rootDirectory);
+			} else {
+				git = Git.init().setDirectory(rootDirectory).call();
+			}
+			// the repositories of the components are tracked as submodules, anything else is not
+			File exclude = new File(git.getRepository().getDirectory(), "info/exclude");
+			exclude.getParentFile().mkdirs();
+			List<String> excludeLines = Files.readLines(exclude, UTF8);
+			if (!excludeLines.containsAll(GitMigrator.ROOT_IGNORED_ENTRIES)) {
+				excludeLines.removeAll(GitMigrator.ROOT_IGNORED_ENTRIES);
+				excludeLines.addAll(GitMigrator.ROOT_IGNORED_ENTRIES);
+				Files.writeLines(exclude, excludeLines, UTF8, false);
+			}
+			// only small .gitmodules contents are inserted
+			tree = new InMemoryTree(git.getRepository(), new WindowCacheConfig().getStreamFileThreshold());
+			byte[] gitmodules = tree.read(".gitmodules");
+			if (gitmodules != null) {
+				for (String line : new String(gitmodules, UTF8).split("\n")) {
+					line = line.trim();
+					if (line.startsWith("path = ")) {
+						submodules.add(line.substring(7));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to initialize superproject", e);
+		} catch (GitAPIException e) {
+			throw new RuntimeException("Unable to initialize superproject", e);
+		}
+	}
+
+	/**
+	 * Moves the pointer of the given submodule to the given commit.
+	 *
+	 * @param changeSet
+	 *            the change set committed into the submodule
+	 * @param submodule
+	 *            the name of the repository, being also the path of the submodule
+	 * @param commit
+	 *            the commit of the submodule
+	 * @return the commit of the superproject or <code>null</code> if the pointer did not move
+	 */
+	ObjectId record(ChangeSet changeSet, String submodule, ObjectId commit) {
+		try {
+			if (submodules.add(submodule)) {
+				byte[] gitmodules = getGitmodules().getBytes(UTF8);
+				tree.put(".gitmodules", tree.insert(gitmodules), FileMode.REGULAR_FILE, gitmodules.length);
+			}
+			tree.put(submodule, commit, FileMode.GITLINK, 0);
+			PersonIdent ident = new PersonIdent(changeSet.getCreatorName(), changeSet.getEmailAddress(),
+					changeSet.getCreationDate(), 0);
+			return tree.commit(ident, ident, messageRenderer.render(changeSet));
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to record " + submodule + " in superproject", e);
+		}
+	}
+
+	String getGitmodules() {
+		StringBuilder sb = new StringBuilder();
+		for (String submodule : submodules) {
+			sb.append("[submodule \"").append(submodule).append("\"]\n");
+			sb.append("\tpath = ").append(submodule).append('\n');
+			sb.append("\turl = ./").append(submodule).append('\n');
+		}
+		return sb.toString();
+	}
+
+	void createTag(Tag tag) {
+		String tagName = tag.getName();
+		if (tagName != null && !tagName.isEmpty() && tree.getHead() != null) {
+			try {
+				git.tag().setTagger(defaultIdent).setName(GitMigrator.createTagName(tagName)).call();
+			} catch (GitAPIException e) {
+				throw new RuntimeException("Unable to tag superproject", e);
+			}
+		}
+	}
+
+	void close() {
+		if (tree != null) {
+			try {
+				tree.writeIndex();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				tree.close();
+				tree = null;
+			}
+		}
+		if (git != null) {
+			try {
+				git.gc().call();
+			} catch (GitAPIException e) {
+				e.printStackTrace();
+			} finally {
+				git.close();
+			}
+		}
+	}
+}
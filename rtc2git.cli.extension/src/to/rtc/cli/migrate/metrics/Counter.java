@@ -0,0 +1,19 @@
+package to.rtc.cli.migrate.metrics;
+
+/**
+ * The counted quantities of a migration.
+ */
+public enum Counter {
+	CHANGESETS("changesets"), FILES_TOUCHED("files_touched"), BYTES_HASHED("bytes_hashed"), SYNC_CYCLES("sync_cycles"),
+	SYNC_FAILURES("sync_failures"), CHANGESETS_REUSED("changesets_reused");
+
+	private final String metricName;
+
+	private Counter(String metricName) {
+		this.metricName = metricName;
+	}
+
+	public String getMetricName() {
+		return metricName;
+	}
+}
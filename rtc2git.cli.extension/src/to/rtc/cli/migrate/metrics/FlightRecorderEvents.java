@@ -0,0 +1,124 @@
+package to.rtc.cli.migrate.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Emits the <code>to.rtc.cli.migrate.Phase</code> event to Java Flight Recorder, if the running JVM provides the
+ * dynamic event API of <code>jdk.jfr</code>. The plugin is compiled for Java 6, so the API is accessed by
+ * reflection. On JVMs without Flight Recorder all methods do nothing.
+ */
+final class FlightRecorderEvents {
+	static final String EVENT_NAME = "to.rtc.cli.migrate.Phase";
+
+	private static final int PHASE = 0;
+	private static final int CHANGE_SET = 1;
+	private static final int COMPONENT = 2;
+	private static final int FILE_COUNT = 3;
+
+	private static final FlightRecorderEvents INSTANCE = create();
+
+	private final Object eventFactory;
+	private final Method newEvent;
+	private final Method begin;
+	private final Method set;
+	private final Method shouldCommit;
+	private final Method commit;
+
+	private FlightRecorderEvents() {
+		eventFactory = null;
+		newEvent = null;
+		begin = null;
+		set = null;
+		shouldCommit = null;
+		commit = null;
+	}
+
+	private FlightRecorderEvents(Object eventFactory) throws Exception {
+		this.eventFactory = eventFactory;
+		Class<?> eventClass = Class.forName("jdk.jfr.Event");
+		newEvent = eventFactory.getClass().getMethod("newEvent");
+		begin = eventClass.getMethod("begin");
+		set = eventClass.getMethod("set", int.class, Object.class);
+		shouldCommit = eventClass.getMethod("shouldCommit");
+		commit = eventClass.getMethod("commit");
+	}
+
+	static FlightRecorderEvents getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts a new event.
+	 *
+	 * @return the started event or <code>null</code> if Flight Recorder is not available
+	 */
+	Object begin() {
+		if (eventFactory == null) {
+			return null;
+		}
+		try {
+			Object event = newEvent.invoke(eventFactory);
+			begin.invoke(event);
+			return event;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Ends and commits the given event, if it is enabled in the running recording.
+	 */
+	void commit(Object event, String phase, String changeSet, String component, long fileCount) {
+		if (event == null) {
+			return;
+		}
+		try {
+			if (Boolean.TRUE.equals(shouldCommit.invoke(event))) {
+				set.invoke(event, PHASE, phase);
+				set.invoke(event, CHANGE_SET, changeSet);
+				set.invoke(event, COMPONENT, component);
+				set.invoke(event, FILE_COUNT, fileCount);
+				commit.invoke(event);
+			}
+		} catch (Exception e) {
+			// never let the recording disturb the migration
+		}
+	}
+
+	private static FlightRecorderEvents create() {
+		try {
+			Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+			Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+			Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+			List<Object> eventAnnotations = new ArrayList<Object>();
+			eventAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name"), EVENT_NAME));
+			eventAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label"), "Migration Phase"));
+			eventAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "rtc2git" }));
+			eventAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Description"),
+					"One execution of a RTC or git phase of the migration"));
+
+			List<Object> fields = new ArrayList<Object>();
+			fields.add(field.newInstance(String.class, "phase", labels(annotation, "Phase")));
+			fields.add(field.newInstance(String.class, "changeSet", labels(annotation, "Change Set UUIDs")));
+			fields.add(field.newInstance(String.class, "component", labels(annotation, "Component")));
+			fields.add(field.newInstance(long.class, "fileCount", labels(annotation, "File Count")));
+
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Object eventFactory = eventFactoryClass.getMethod("create", List.class, List.class).invoke(null,
+					eventAnnotations, fields);
+			return new FlightRecorderEvents(eventFactory);
+		} catch (Throwable t) {
+			return new FlightRecorderEvents();
+		}
+	}
+
+	private static List<Object> labels(Constructor<?> annotation, String label) throws Exception {
+		return Collections.singletonList(annotation.newInstance(Class.forName("jdk.jfr.Label"), label));
+	}
+}
@@ -0,0 +1,118 @@
+package to.rtc.cli.migrate.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the latencies of all migration {@link Phase}s and the {@link Counter}s. The registry is shared by the RTC
+ * and the git side of the migration through {@link #getInstance()}. Migrations running next to each other in one
+ * process each {@link #bind(MetricsRegistry)} a registry of their own to the thread running them, which is inherited
+ * by the threads started from it.
+ */
+public final class MetricsRegistry {
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+	private static final ThreadLocal<MetricsRegistry> BOUND = new InheritableThreadLocal<MetricsRegistry>();
+
+	private final Map<Phase, Histogram> histograms;
+	private final Map<Counter, AtomicLong> counters;
+	private final ThreadLocal<String[]> changeSetContext;
+
+	public MetricsRegistry() {
+		histograms = new EnumMap<Phase, Histogram>(Phase.class);
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new Histogram());
+		}
+		counters = new EnumMap<Counter, AtomicLong>(Counter.class);
+		for (Counter counter : Counter.values()) {
+			counters.put(counter, new AtomicLong());
+		}
+		changeSetContext = new ThreadLocal<String[]>() {
+			@Override
+			protected String[] initialValue() {
+				return new String[2];
+			}
+		};
+	}
+
+	/**
+	 * @return the registry bound to the current thread, the registry of the process if none is bound
+	 */
+	public static MetricsRegistry getInstance() {
+		MetricsRegistry registry = BOUND.get();
+		return registry == null ? INSTANCE : registry;
+	}
+
+	/**
+	 * Binds the given registry to the current thread and the threads it starts from now on.
+	 *
+	 * @param registry
+	 *            the registry of the migration run by the current thread, <code>null</code> to use the registry of
+	 *            the process again
+	 */
+	public static void bind(MetricsRegistry registry) {
+		if (registry == null) {
+			BOUND.remove();
+		} else {
+			BOUND.set(registry);
+		}
+	}
+
+	/**
+	 * Starts the time measurement of one execution of the given phase.
+	 */
+	public PhaseTimer start(Phase phase) {
+		return new PhaseTimer(this, phase);
+	}
+
+	/**
+	 * Attaches the given change sets and component to all phases executed by the current thread until
+	 * {@link #leaveChangeSet()} is called.
+	 *
+	 * @param changeSetUuids
+	 *            the UUIDs of the change sets being migrated
+	 * @param component
+	 *            the component of the change sets
+	 */
+	public void enterChangeSet(String changeSetUuids, String component) {
+		changeSetContext.set(new String[] { changeSetUuids, component });
+	}
+
+	public void leaveChangeSet() {
+		changeSetContext.remove();
+	}
+
+	String[] getChangeSetContext() {
+		return changeSetContext.get();
+	}
+
+	/**
+	 * @return the UUIDs of the change sets the current thread has entered, <code>null</code> if none
+	 */
+	public String getChangeSetUuids() {
+		return changeSetContext.get()[0];
+	}
+
+	/**
+	 * @return the component of the change sets the current thread has entered, <code>null</code> if none
+	 */
+	public String getComponent() {
+		return changeSetContext.get()[1];
+	}
+
+	public void record(Phase phase, long nanos) {
+		histograms.get(phase).record(nanos / 1000);
+	}
+
+	public void increment(Counter counter, long delta) {
+		counters.get(counter).addAndGet(delta);
+	}
+
+	public Histogram getHistogram(Phase phase) {
+		return histograms.get(phase);
+	}
+
+	public long getCount(Counter counter) {
+		return counters.get(counter).get();
+	}
+}
@@ -0,0 +1,174 @@
+package to.rtc.cli.migrate.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Writes the content of a {@link MetricsRegistry} into a directory. The Prometheus text file
+ * <code>metrics.prom</code> is refreshed periodically while migrating, the <code>metrics.json</code> and
+ * <code>metrics.csv</code> reports are written on {@link #close()}.
+ */
+public final class MetricsReporter {
+	static final String PROMETHEUS_FILE = "metrics.prom";
+	static final String JSON_FILE = "metrics.json";
+	static final String CSV_FILE = "metrics.csv";
+	private static final double[] PERCENTILES = { 50, 95, 99 };
+
+	private final MetricsRegistry registry;
+	private final File directory;
+	private final Charset charset;
+	private ScheduledExecutorService scheduler;
+
+	public MetricsReporter(MetricsRegistry registry, File directory) {
+		this.registry = registry;
+		this.directory = directory;
+		this.charset = Charset.forName("UTF-8");
+	}
+
+	/**
+	 * Starts refreshing the Prometheus text file within the given period.
+	 *
+	 * @param periodSeconds
+	 *            the number of seconds between two refreshes
+	 */
+	public void start(long periodSeconds) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new RuntimeException("Unable to create metrics directory " + directory);
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "metrics-reporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					write(PROMETHEUS_FILE, toPrometheus());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops the periodic refresh and writes all reports a last time.
+	 */
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			write(PROMETHEUS_FILE, toPrometheus());
+			write(JSON_FILE, toJson());
+			write(CSV_FILE, toCsv());
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write metrics to " + directory, e);
+		}
+	}
+
+	List<String> toPrometheus() {
+		List<String> lines = new ArrayList<String>();
+		lines.add("# HELP rtc2git_phase_seconds Duration of the migration phases.");
+		lines.add("# TYPE rtc2git_phase_seconds summary");
+		for (Phase phase : Phase.values()) {
+			Histogram histogram = registry.getHistogram(phase);
+			String label = "phase=\"" + phase.getMetricName() + "\"";
+			for (double percentile : PERCENTILES) {
+				lines.add("rtc2git_phase_seconds{" + label + ",quantile=\"" + format(percentile / 100) + "\"} "
+						+ seconds(histogram.getPercentile(percentile)));
+			}
+			lines.add("rtc2git_phase_seconds_sum{" + label + "} " + seconds(histogram.getSum()));
+			lines.add("rtc2git_phase_seconds_count{" + label + "} " + histogram.getCount());
+		}
+		for (Counter counter : Counter.values()) {
+			String name = "rtc2git_" + counter.getMetricName() + "_total";
+			lines.add("# TYPE " + name + " counter");
+			lines.add(name + " " + registry.getCount(counter));
+		}
+		return lines;
+	}
+
+	List<String> toJson() {
+		List<String> lines = new ArrayList<String>();
+		lines.add("{");
+		lines.add("  \"phases\": {");
+		Phase[] phases = Phase.values();
+		for (int i = 0; i < phases.length; i++) {
+			Histogram histogram = registry.getHistogram(phases[i]);
+			StringBuilder sb = new StringBuilder("    \"").append(phases[i].getMetricName()).append("\": {");
+			sb.append("\"count\": ").append(histogram.getCount());
+			sb.append(", \"total_ms\": ").append(millis(histogram.getSum()));
+			sb.append(", \"max_ms\": ").append(millis(histogram.getMax()));
+			for (double percentile : PERCENTILES) {
+				sb.append(", \"p").append((int) percentile).append("_ms\": ")
+						.append(millis(histogram.getPercentile(percentile)));
+			}
+			lines.add(sb.append(i < phases.length - 1 ? "}," : "}").toString());
+		}
+		lines.add("  },");
+		lines.add("  \"counters\": {");
+		Counter[] counters = Counter.values();
+		for (int i = 0; i < counters.length; i++) {
+			lines.add("    \"" + counters[i].getMetricName() + "\": " + registry.getCount(counters[i])
+					+ (i < counters.length - 1 ? "," : ""));
+		}
+		lines.add("  }");
+		lines.add("}");
+		return lines;
+	}
+
+	List<String> toCsv() {
+		List<String> lines = new ArrayList<String>();
+		lines.add("name,type,count,total_ms,max_ms,p50_ms,p95_ms,p99_ms");
+		for (Phase phase : Phase.values()) {
+			Histogram histogram = registry.getHistogram(phase);
+			StringBuilder sb = new StringBuilder(phase.getMetricName()).append(",phase,").append(histogram.getCount());
+			sb.append(',').append(millis(histogram.getSum()));
+			sb.append(',').append(millis(histogram.getMax()));
+			for (double percentile : PERCENTILES) {
+				sb.append(',').append(millis(histogram.getPercentile(percentile)));
+			}
+			lines.add(sb.toString());
+		}
+		for (Counter counter : Counter.values()) {
+			lines.add(counter.getMetricName() + ",counter," + registry.getCount(counter) + ",,,,,");
+		}
+		return lines;
+	}
+
+	private void write(String fileName, List<String> lines) throws IOException {
+		Files.replaceLines(new File(directory, fileName), lines, charset);
+	}
+
+	private static String seconds(long micros) {
+		return format(micros / 1000000d);
+	}
+
+	private static String millis(long micros) {
+		return format(micros / 1000d);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
@@ -0,0 +1,21 @@
+package to.rtc.cli.migrate.metrics;
+
+/**
+ * The measured stages of a migration.
+ */
+public enum Phase {
+	LIST_BASELINES("rtc_list_baselines"), CHANGESET_HISTORY("rtc_changeset_history"), RTC_COMMAND("rtc_command"), ACCEPT(
+			"rtc_accept"), LOAD("rtc_load"), FORCED_RELOAD("rtc_forced_reload"), STATUS("git_status"), ADD("git_add"), RM(
+			"git_rm"), COMMIT("git_commit"), TAG("git_tag"), GC("git_gc"), HISTORY_CLEANUP("local_history_cleanup"),
+	SYNC_CYCLE("sync_cycle"), SYNC_LAG("sync_lag");
+
+	private final String metricName;
+
+	private Phase(String metricName) {
+		this.metricName = metricName;
+	}
+
+	public String getMetricName() {
+		return metricName;
+	}
+}
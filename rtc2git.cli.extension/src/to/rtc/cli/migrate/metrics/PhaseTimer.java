@@ -0,0 +1,45 @@
+package to.rtc.cli.migrate.metrics;
+
+/**
+ * Measures one execution of a {@link Phase}, started by {@link MetricsRegistry#start(Phase)}. The execution is also
+ * emitted as Java Flight Recorder event, carrying the change sets and the component being migrated by the current
+ * thread and the number of files handled.
+ */
+public final class PhaseTimer {
+	private final MetricsRegistry registry;
+	private final Phase phase;
+	private final long startNanos;
+	private final Object flightRecorderEvent;
+	private long fileCount;
+
+	PhaseTimer(MetricsRegistry registry, Phase phase) {
+		this.registry = registry;
+		this.phase = phase;
+		this.flightRecorderEvent = FlightRecorderEvents.getInstance().begin();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets the number of files handled within this execution.
+	 *
+	 * @return this timer
+	 */
+	public PhaseTimer setFileCount(long fileCount) {
+		this.fileCount = fileCount;
+		return this;
+	}
+
+	/**
+	 * Records the time elapsed since the start of the timer.
+	 *
+	 * @return the elapsed time in milliseconds
+	 */
+	public long stop() {
+		long elapsedNanos = System.nanoTime() - startNanos;
+		registry.record(phase, elapsedNanos);
+		String[] changeSetContext = registry.getChangeSetContext();
+		FlightRecorderEvents.getInstance().commit(flightRecorderEvent, phase.getMetricName(), changeSetContext[0],
+				changeSetContext[1], fileCount);
+		return elapsedNanos / 1000000;
+	}
+}
@@ -0,0 +1,131 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.replay.Record.RecordedChangeSet;
+import to.rtc.cli.migrate.replay.Record.RecordedTag;
+import to.rtc.cli.migrate.replay.Record.RecordedWorkItem;
+
+/**
+ * Reads the records of a replay archive written by {@link ArchiveWriter} in their original order. The contents of
+ * the file changes are read from the archive only when written by the migrator.
+ */
+final class ArchiveReader {
+	private final ZipFile archive;
+	private final int version;
+	private int records;
+
+	ArchiveReader(File file) throws IOException {
+		archive = new ZipFile(file);
+		ZipEntry format = archive.getEntry(ArchiveWriter.FORMAT_ENTRY);
+		if (format == null) {
+			archive.close();
+			throw new IOException(file + " is not a replay archive");
+		}
+		DataInputStream in = new DataInputStream(archive.getInputStream(format));
+		try {
+			version = in.readInt();
+		} finally {
+			in.close();
+		}
+		if (version < 1 || version > ArchiveWriter.FORMAT_VERSION) {
+			archive.close();
+			throw new IOException("Unsupported replay archive version " + version + " of " + file);
+		}
+	}
+
+	/**
+	 * Returns the next record.
+	 *
+	 * @return the next record or <code>null</code> if all records have been read
+	 */
+	Record next() throws IOException {
+		ZipEntry entry = archive.getEntry(ArchiveWriter.recordName(records + 1));
+		if (entry == null) {
+			return null;
+		}
+		records++;
+		DataInputStream in = new DataInputStream(archive.getInputStream(entry));
+		try {
+			byte type = in.readByte();
+			switch (type) {
+			case ArchiveWriter.INIT:
+				return Record.init(readChanges(in));
+			case ArchiveWriter.CHANGE_SET:
+				String comment = readString(in);
+				String creatorName = readString(in);
+				String emailAddress = readString(in);
+				long creationDate = in.readLong();
+				int workItemCount = in.readInt();
+				List<WorkItem> workItems = new ArrayList<WorkItem>(workItemCount);
+				for (int i = 0; i < workItemCount; i++) {
+					workItems.add(new RecordedWorkItem(in.readLong(), readString(in)));
+				}
+				String component = version < 2 ? null : readString(in);
+				List<String> uuids = new ArrayList<String>();
+				if (version >= 3) {
+					int uuidCount = in.readInt();
+					for (int i = 0; i < uuidCount; i++) {
+						uuids.add(readString(in));
+					}
+				}
+				return Record.changeSet(new RecordedChangeSet(comment, creatorName, emailAddress, creationDate,
+						workItems, component, uuids), readChanges(in));
+			case ArchiveWriter.TAG:
+				return Record.tag(new RecordedTag(readString(in), in.readLong()));
+			default:
+				throw new IOException("Unknown record type " + type + " in " + entry.getName());
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	void close() throws IOException {
+		archive.close();
+	}
+
+	private List<FileChange> readChanges(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<FileChange> changes = new ArrayList<FileChange>(count);
+		for (int i = 0; i < count; i++) {
+			byte kind = in.readByte();
+			String path = readString(in);
+			switch (kind) {
+			case ArchiveWriter.DELETE:
+				changes.add(FileChange.delete(path, in.readBoolean()));
+				break;
+			case ArchiveWriter.MOVE:
+				String previousPath = readString(in);
+				changes.add(FileChange.move(previousPath, path, in.readBoolean()));
+				break;
+			case ArchiveWriter.PUT:
+				String id = readString(in);
+				long size = in.readLong();
+				changes.add(FileChange.put(path, Blob.ofArchive(id, size, in.readBoolean(), archive)));
+				break;
+			default:
+				throw new IOException("Unknown change kind " + kind);
+			}
+		}
+		return changes;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
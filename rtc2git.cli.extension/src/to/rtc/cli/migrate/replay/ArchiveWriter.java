@@ -0,0 +1,200 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.Tag;
+
+/**
+ * Writes a replay archive. The archive is a zip file containing one entry per record in migration order and one entry
+ * per distinct file content, so that a content being part of many change sets is stored only once.
+ */
+final class ArchiveWriter {
+	static final int BUFFER_SIZE = 64 * 1024;
+	static final String FORMAT_ENTRY = "rtc2git-replay";
+	// version 2 added the component of the change sets, version 3 their UUIDs
+	static final int FORMAT_VERSION = 3;
+	static final String RECORD_PREFIX = "records/";
+	static final String BLOB_PREFIX = "blobs/";
+
+	static final byte INIT = 'I';
+	static final byte CHANGE_SET = 'C';
+	static final byte TAG = 'T';
+
+	static final byte DELETE = 'D';
+	static final byte MOVE = 'M';
+	static final byte PUT = 'P';
+
+	private final ZipOutputStream zip;
+	private final DataOutputStream out;
+	private final Set<String> blobs;
+	private final byte[] buffer;
+	private int records;
+
+	ArchiveWriter(File archive) throws IOException {
+		zip = new ZipOutputStream(new FileOutputStream(archive));
+		out = new DataOutputStream(zip);
+		blobs = new HashSet<String>();
+		buffer = new byte[BUFFER_SIZE];
+		zip.putNextEntry(new ZipEntry(FORMAT_ENTRY));
+		out.writeInt(FORMAT_VERSION);
+		out.flush();
+		zip.closeEntry();
+	}
+
+	static String recordName(int number) {
+		return RECORD_PREFIX + String.format("%08d", Integer.valueOf(number));
+	}
+
+	/**
+	 * Adds the content of the given <code>file</code> to the archive, unless the same content is already stored.
+	 *
+	 * @return the content reading from the given file
+	 */
+	Blob addBlob(File file, boolean executable) throws IOException {
+		String id = hash(file);
+		if (blobs.add(id)) {
+			zip.putNextEntry(new ZipEntry(BLOB_PREFIX + id));
+			InputStream in = new FileInputStream(file);
+			try {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					zip.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			zip.closeEntry();
+		}
+		return Blob.ofFile(id, file, executable);
+	}
+
+	/**
+	 * Writes the content of the sandbox before the migrator has been initialized.
+	 */
+	void writeInit(List<FileChange> changes) throws IOException {
+		beginRecord(INIT);
+		writeChanges(changes);
+		endRecord();
+	}
+
+	void writeChangeSet(ChangeSet changeSet, List<FileChange> changes) throws IOException {
+		beginRecord(CHANGE_SET);
+		writeString(changeSet.getComment());
+		writeString(changeSet.getCreatorName());
+		writeString(changeSet.getEmailAddress());
+		out.writeLong(changeSet.getCreationDate());
+		List<WorkItem> workItems = changeSet.getWorkItems();
+		out.writeInt(workItems.size());
+		for (WorkItem workItem : workItems) {
+			out.writeLong(workItem.getNumber());
+			writeString(workItem.getText());
+		}
+		writeString(changeSet.getComponent());
+		List<String> uuids = changeSet.getUuids();
+		out.writeInt(uuids.size());
+		for (String uuid : uuids) {
+			writeString(uuid);
+		}
+		writeChanges(changes);
+		endRecord();
+	}
+
+	void writeTag(Tag tag) throws IOException {
+		beginRecord(TAG);
+		writeString(tag.getName());
+		out.writeLong(tag.getCreationDate());
+		endRecord();
+	}
+
+	void close() throws IOException {
+		zip.close();
+	}
+
+	private void beginRecord(byte type) throws IOException {
+		zip.putNextEntry(new ZipEntry(recordName(++records)));
+		out.writeByte(type);
+	}
+
+	private void endRecord() throws IOException {
+		out.flush();
+		zip.closeEntry();
+	}
+
+	private void writeChanges(List<FileChange> changes) throws IOException {
+		out.writeInt(changes.size());
+		for (FileChange change : changes) {
+			switch (change.getKind()) {
+			case DELETE:
+				out.writeByte(DELETE);
+				writeString(change.getPath());
+				out.writeBoolean(change.isFolder());
+				break;
+			case MOVE:
+				out.writeByte(MOVE);
+				writeString(change.getPath());
+				writeString(change.getPreviousPath());
+				out.writeBoolean(change.isFolder());
+				break;
+			case PUT:
+				Blob blob = (Blob) change.getContent();
+				out.writeByte(PUT);
+				writeString(change.getPath());
+				writeString(blob.getId());
+				out.writeLong(blob.getSize());
+				out.writeBoolean(blob.isExecutable());
+				break;
+			}
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @return the id the content of the given file is stored with
+	 */
+	String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 is not available", e);
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		StringBuilder sb = new StringBuilder(40);
+		for (byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
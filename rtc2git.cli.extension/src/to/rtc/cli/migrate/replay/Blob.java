@@ -0,0 +1,78 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import to.rtc.cli.migrate.FileContent;
+
+/**
+ * The content of a file version stored in a replay archive, identified by the SHA-1 of its bytes. While recording the
+ * content is read from a local file, while replaying directly from the archive.
+ */
+final class Blob implements FileContent {
+	private final String id;
+	private final long size;
+	private final boolean executable;
+	private final File file;
+	private final ZipFile archive;
+
+	private Blob(String id, long size, boolean executable, File file, ZipFile archive) {
+		this.id = id;
+		this.size = size;
+		this.executable = executable;
+		this.file = file;
+		this.archive = archive;
+	}
+
+	static Blob ofFile(String id, File file, boolean executable) {
+		return new Blob(id, file.length(), executable, file, null);
+	}
+
+	static Blob ofArchive(String id, long size, boolean executable, ZipFile archive) {
+		return new Blob(id, size, executable, null, archive);
+	}
+
+	String getId() {
+		return id;
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public boolean isExecutable() {
+		return executable;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		InputStream in = open();
+		try {
+			byte[] buffer = new byte[ArchiveWriter.BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private InputStream open() throws IOException {
+		if (file != null) {
+			return new FileInputStream(file);
+		}
+		ZipEntry entry = archive.getEntry(ArchiveWriter.BLOB_PREFIX + id);
+		if (entry == null) {
+			throw new IOException("Blob " + id + " is missing in " + archive.getName());
+		}
+		return archive.getInputStream(entry);
+	}
+}
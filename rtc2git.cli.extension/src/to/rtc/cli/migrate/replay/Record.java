@@ -0,0 +1,149 @@
+package to.rtc.cli.migrate.replay;
+
+import java.util.Collections;
+import java.util.List;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.Tag;
+
+/**
+ * One record of a replay archive: the initial sandbox content, a change set with its file changes or a tag.
+ */
+final class Record {
+	private final byte type;
+	private final ChangeSet changeSet;
+	private final Tag tag;
+	private final List<FileChange> changes;
+
+	private Record(byte type, ChangeSet changeSet, Tag tag, List<FileChange> changes) {
+		this.type = type;
+		this.changeSet = changeSet;
+		this.tag = tag;
+		this.changes = changes;
+	}
+
+	static Record init(List<FileChange> changes) {
+		return new Record(ArchiveWriter.INIT, null, null, changes);
+	}
+
+	static Record changeSet(ChangeSet changeSet, List<FileChange> changes) {
+		return new Record(ArchiveWriter.CHANGE_SET, changeSet, null, changes);
+	}
+
+	static Record tag(Tag tag) {
+		return new Record(ArchiveWriter.TAG, null, tag, Collections.<FileChange> emptyList());
+	}
+
+	byte getType() {
+		return type;
+	}
+
+	ChangeSet getChangeSet() {
+		return changeSet;
+	}
+
+	Tag getTag() {
+		return tag;
+	}
+
+	List<FileChange> getChanges() {
+		return changes;
+	}
+
+	static final class RecordedChangeSet implements ChangeSet {
+		private final String comment;
+		private final String creatorName;
+		private final String emailAddress;
+		private final long creationDate;
+		private final List<WorkItem> workItems;
+		private final String component;
+		private final List<String> uuids;
+
+		RecordedChangeSet(String comment, String creatorName, String emailAddress, long creationDate,
+				List<WorkItem> workItems, String component, List<String> uuids) {
+			this.comment = comment;
+			this.creatorName = creatorName;
+			this.emailAddress = emailAddress;
+			this.creationDate = creationDate;
+			this.workItems = workItems;
+			this.component = component;
+			this.uuids = uuids;
+		}
+
+		@Override
+		public String getComment() {
+			return comment;
+		}
+
+		@Override
+		public String getCreatorName() {
+			return creatorName;
+		}
+
+		@Override
+		public String getEmailAddress() {
+			return emailAddress;
+		}
+
+		@Override
+		public long getCreationDate() {
+			return creationDate;
+		}
+
+		@Override
+		public List<WorkItem> getWorkItems() {
+			return workItems;
+		}
+
+		@Override
+		public String getComponent() {
+			return component;
+		}
+
+		@Override
+		public List<String> getUuids() {
+			return uuids;
+		}
+	}
+
+	static final class RecordedWorkItem implements ChangeSet.WorkItem {
+		private final long number;
+		private final String text;
+
+		RecordedWorkItem(long number, String text) {
+			this.number = number;
+			this.text = text;
+		}
+
+		@Override
+		public long getNumber() {
+			return number;
+		}
+
+		@Override
+		public String getText() {
+			return text;
+		}
+	}
+
+	static final class RecordedTag implements Tag {
+		private final String name;
+		private final long creationDate;
+
+		RecordedTag(String name, long creationDate) {
+			this.name = name;
+			this.creationDate = creationDate;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getCreationDate() {
+			return creationDate;
+		}
+	}
+}
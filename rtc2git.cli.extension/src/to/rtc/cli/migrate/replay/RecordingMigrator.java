@@ -0,0 +1,175 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.StreamingMigrator;
+import to.rtc.cli.migrate.Tag;
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Records all calls to the wrapped {@link Migrator} into a replay archive, which can be fed into any migrator later on
+ * by the {@link ReplayDriver} without a connection to RTC. The archive contains the sandbox content at initialization,
+ * the metadata and file changes of each change set and the tags.
+ * <p>
+ * When committing from the sandbox, the changes are found by comparing the sandbox with its state at the previous
+ * commit. When streaming, the given file changes are recorded and their contents spooled once, so they are fetched
+ * only a single time from the repository.
+ */
+public class RecordingMigrator implements Migrator {
+	private final Migrator delegate;
+	private final File archiveFile;
+	private ArchiveWriter writer;
+	private SandboxSnapshot snapshot;
+
+	RecordingMigrator(Migrator delegate, File archiveFile) {
+		this.delegate = delegate;
+		this.archiveFile = archiveFile;
+	}
+
+	/**
+	 * Wraps the given migrator, supporting streaming only if the given migrator supports it.
+	 *
+	 * @param migrator
+	 *            the migrator doing the actual migration
+	 * @param archiveFile
+	 *            the replay archive being written
+	 * @return the recording migrator
+	 */
+	public static RecordingMigrator wrap(Migrator migrator, File archiveFile) {
+		if (migrator instanceof StreamingMigrator) {
+			return new Streaming((StreamingMigrator) migrator, archiveFile);
+		}
+		return new RecordingMigrator(migrator, archiveFile);
+	}
+
+	@Override
+	public void init(File sandboxRootDirectory) {
+		try {
+			writer = new ArchiveWriter(archiveFile);
+			snapshot = new SandboxSnapshot(sandboxRootDirectory);
+			writer.writeInit(snapshot.update(writer));
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create replay archive " + archiveFile, e);
+		}
+		delegate.init(sandboxRootDirectory);
+	}
+
+	@Override
+	public int commitChanges(ChangeSet changeSet) {
+		try {
+			writer.writeChangeSet(changeSet, snapshot.update(writer));
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to record change set", e);
+		}
+		return delegate.commitChanges(changeSet);
+	}
+
+	@Override
+	public void createTag(Tag tag) {
+		try {
+			writer.writeTag(tag);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to record tag", e);
+		}
+		delegate.createTag(tag);
+	}
+
+	@Override
+	public void intermediateCleanup() {
+		delegate.intermediateCleanup();
+	}
+
+	@Override
+	public boolean needsIntermediateCleanup() {
+		return delegate.needsIntermediateCleanup();
+	}
+
+	/**
+	 * Completes the replay archive and closes the wrapped migrator.
+	 */
+	@Override
+	public void close() {
+		try {
+			finish();
+		} finally {
+			delegate.close();
+		}
+	}
+
+	/**
+	 * Completes the replay archive without closing the wrapped migrator.
+	 */
+	public void finish() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to close replay archive " + archiveFile, e);
+			} finally {
+				writer = null;
+			}
+		}
+	}
+
+	ArchiveWriter getWriter() {
+		return writer;
+	}
+
+	Migrator getDelegate() {
+		return delegate;
+	}
+
+	private static final class Streaming extends RecordingMigrator implements StreamingMigrator {
+		private final File spoolDirectory;
+
+		Streaming(StreamingMigrator delegate, File archiveFile) {
+			super(delegate, archiveFile);
+			spoolDirectory = new File(archiveFile.getPath() + ".spool");
+		}
+
+		@Override
+		public int commitChanges(ChangeSet changeSet, List<FileChange> changes) {
+			if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs()) {
+				throw new RuntimeException("Unable to create spool directory " + spoolDirectory);
+			}
+			try {
+				List<FileChange> recorded = new ArrayList<FileChange>(changes.size());
+				int spooled = 0;
+				for (FileChange change : changes) {
+					if (change.getKind() == FileChange.Kind.PUT) {
+						File spoolFile = new File(spoolDirectory, String.valueOf(spooled++));
+						spool(change.getContent(), spoolFile);
+						recorded.add(FileChange.put(change.getPath(),
+								getWriter().addBlob(spoolFile, change.getContent().isExecutable())));
+					} else {
+						recorded.add(change);
+					}
+				}
+				getWriter().writeChangeSet(changeSet, recorded);
+				return ((StreamingMigrator) getDelegate()).commitChanges(changeSet, recorded);
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to record change set", e);
+			} finally {
+				Files.delete(spoolDirectory);
+			}
+		}
+
+		private static void spool(FileContent content, File spoolFile) throws IOException {
+			OutputStream out = new FileOutputStream(spoolFile);
+			try {
+				content.writeTo(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.StreamingMigrator;
+import to.rtc.cli.migrate.git.GitMigrator;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.MetricsReporter;
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Feeds the records of a replay archive written by the {@link RecordingMigrator} into a {@link Migrator}, without any
+ * connection to RTC. A {@link StreamingMigrator} gets the file changes directly, any other migrator gets them applied
+ * to the sandbox before each commit.
+ * <p>
+ * Usage: <code>ReplayDriver [--sandbox] [--metrics-dir &lt;dir&gt;] &lt;archive&gt; &lt;directory&gt;
+ * [&lt;migration.properties&gt;]</code> replays the archive into a new git repository in the given directory.
+ */
+public class ReplayDriver {
+	private final File archiveFile;
+	private final Migrator migrator;
+	private boolean useSandbox;
+	private int changeSets;
+	private int tags;
+
+	public ReplayDriver(File archiveFile, Migrator migrator) {
+		this.archiveFile = archiveFile;
+		this.migrator = migrator;
+	}
+
+	/**
+	 * Applies the changes to the sandbox and commits from there, even if the migrator supports streaming.
+	 *
+	 * @param useSandbox
+	 *            <code>true</code> to always commit from the sandbox
+	 * @return this driver
+	 */
+	public ReplayDriver setUseSandbox(boolean useSandbox) {
+		this.useSandbox = useSandbox;
+		return this;
+	}
+
+	/**
+	 * Replays the whole archive into the migrator, the migrator is not closed.
+	 *
+	 * @param sandboxDirectory
+	 *            the directory the migrator is initialized with
+	 * @return the number of replayed change sets
+	 * @throws IOException
+	 *             if the archive could not be read or the sandbox not be updated
+	 */
+	public int replay(File sandboxDirectory) throws IOException {
+		boolean streaming = !useSandbox && migrator instanceof StreamingMigrator;
+		ArchiveReader reader = new ArchiveReader(archiveFile);
+		try {
+			Record record = reader.next();
+			if (record == null || record.getType() != ArchiveWriter.INIT) {
+				throw new IOException("Replay archive " + archiveFile + " does not start with the initial sandbox");
+			}
+			if (!sandboxDirectory.isDirectory() && !sandboxDirectory.mkdirs()) {
+				throw new IOException("Unable to create sandbox " + sandboxDirectory);
+			}
+			apply(sandboxDirectory, record.getChanges());
+			migrator.init(sandboxDirectory);
+			while ((record = reader.next()) != null) {
+				switch (record.getType()) {
+				case ArchiveWriter.CHANGE_SET:
+					if (streaming) {
+						((StreamingMigrator) migrator).commitChanges(record.getChangeSet(), record.getChanges());
+					} else {
+						apply(sandboxDirectory, record.getChanges());
+						migrator.commitChanges(record.getChangeSet());
+					}
+					changeSets++;
+					if (migrator.needsIntermediateCleanup()) {
+						migrator.intermediateCleanup();
+					}
+					break;
+				case ArchiveWriter.TAG:
+					migrator.createTag(record.getTag());
+					tags++;
+					break;
+				default:
+					throw new IOException("Unexpected record type " + record.getType() + " in " + archiveFile);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return changeSets;
+	}
+
+	public int getTagCount() {
+		return tags;
+	}
+
+	/**
+	 * Applies the given file changes to the sandbox.
+	 *
+	 * @param sandboxDirectory
+	 *            the root directory of the sandbox
+	 * @param changes
+	 *            the changes in the order to be applied
+	 * @throws IOException
+	 *             if the sandbox could not be updated
+	 */
+	public static void apply(File sandboxDirectory, List<FileChange> changes) throws IOException {
+		for (FileChange change : changes) {
+			File file = new File(sandboxDirectory, change.getPath());
+			switch (change.getKind()) {
+			case DELETE:
+				Files.delete(file);
+				break;
+			case MOVE:
+				File previous = new File(sandboxDirectory, change.getPreviousPath());
+				mkdirs(file.getParentFile());
+				if (!previous.renameTo(file)) {
+					throw new IOException("Unable to move " + previous + " to " + file);
+				}
+				break;
+			case PUT:
+				if (file.isDirectory()) {
+					Files.delete(file);
+				}
+				mkdirs(file.getParentFile());
+				OutputStream out = new FileOutputStream(file);
+				try {
+					change.getContent().writeTo(out);
+				} finally {
+					out.close();
+				}
+				file.setExecutable(change.getContent().isExecutable());
+				break;
+			}
+		}
+	}
+
+	private static void mkdirs(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean useSandbox = false;
+		File metricsDirectory = null;
+		List<String> arguments = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("--sandbox".equals(args[i])) {
+				useSandbox = true;
+			} else if ("--metrics-dir".equals(args[i]) && i + 1 < args.length) {
+				metricsDirectory = new File(args[++i]);
+			} else {
+				arguments.add(args[i]);
+			}
+		}
+		if (arguments.size() < 2 || arguments.size() > 3) {
+			System.err.println("Usage: ReplayDriver [--sandbox] [--metrics-dir <dir>] <archive> <directory> "
+					+ "[<migration.properties>]");
+			System.exit(1);
+		}
+		Properties properties = new Properties();
+		if (arguments.size() == 3) {
+			FileInputStream in = new FileInputStream(arguments.get(2));
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		GitMigrator migrator = new GitMigrator(properties);
+		ReplayDriver driver = new ReplayDriver(new File(arguments.get(0)), migrator).setUseSandbox(useSandbox);
+		long start = System.currentTimeMillis();
+		int count;
+		try {
+			count = driver.replay(new File(arguments.get(1)));
+		} finally {
+			migrator.close();
+		}
+		System.out.println("Replayed [" + count + "] changesets and [" + driver.getTagCount() + "] tags in ["
+				+ (System.currentTimeMillis() - start) + "] ms");
+		if (metricsDirectory != null) {
+			metricsDirectory.mkdirs();
+			new MetricsReporter(MetricsRegistry.getInstance(), metricsDirectory).close();
+		}
+	}
+}
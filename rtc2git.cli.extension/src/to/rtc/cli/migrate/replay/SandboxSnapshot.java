@@ -0,0 +1,110 @@
+package to.rtc.cli.migrate.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import to.rtc.cli.migrate.FileChange;
+
+/**
+ * Remembers the files of a sandbox to find the changes made by an accept and load. Like the git index, a file is
+ * considered unchanged as long as its size, modification time and executable flag are the same, only changed files
+ * are read. A file modified within the time resolution of the file system around the previous scan may have changed
+ * again after having been read without its modification time telling, so such a racily clean file is read and its
+ * content compared again. The metadata folders of RTC and git are skipped, as well as the <code>.gitignore</code> and
+ * <code>.gitattributes</code> files the migrator derives from the <code>.jazzignore</code> files again when replaying.
+ */
+final class SandboxSnapshot {
+	private static final Set<String> SKIPPED_ROOT_ENTRIES = new HashSet<String>(Arrays.asList(".git", ".jazz5",
+			".jazzShed", ".metadata"));
+	private static final Set<String> SKIPPED_FILES = new HashSet<String>(Arrays.asList(".gitignore", ".gitattributes"));
+	// the coarsest resolution of modification times, being the one of FAT
+	private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+	private final File root;
+	private Map<String, State> states;
+	private long scanTime;
+
+	SandboxSnapshot(File root) {
+		this.root = root;
+		this.states = new TreeMap<String, State>();
+	}
+
+	/**
+	 * Scans the sandbox, adds the contents of all new and modified files to the archive and returns the changes since
+	 * the last scan. Deleted files come first.
+	 */
+	List<FileChange> update(ArchiveWriter writer) throws IOException {
+		long startTime = System.currentTimeMillis();
+		Map<String, State> current = new TreeMap<String, State>();
+		List<FileChange> puts = new ArrayList<FileChange>();
+		File[] children = root.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (!SKIPPED_ROOT_ENTRIES.contains(child.getName())) {
+					scan(child, child.getName(), current, puts, writer);
+				}
+			}
+		}
+		List<FileChange> changes = new ArrayList<FileChange>();
+		for (Entry<String, State> entry : states.entrySet()) {
+			if (!current.containsKey(entry.getKey())) {
+				changes.add(FileChange.delete(entry.getKey(), false));
+			}
+		}
+		changes.addAll(puts);
+		states = current;
+		scanTime = startTime;
+		return changes;
+	}
+
+	private void scan(File file, String path, Map<String, State> current, List<FileChange> puts, ArchiveWriter writer)
+			throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				scan(child, path + '/' + child.getName(), current, puts, writer);
+			}
+		} else if (file.isFile() && !SKIPPED_FILES.contains(file.getName())) {
+			State state = new State(file);
+			State previous = states.get(path);
+			if (previous == null || !previous.isSame(state)) {
+				Blob blob = writer.addBlob(file, state.executable);
+				state.contentId = blob.getId();
+				puts.add(FileChange.put(path, blob));
+			} else if (previous.lastModified + MODIFICATION_TIME_RESOLUTION > scanTime) {
+				state.contentId = writer.hash(file);
+				if (!state.contentId.equals(previous.contentId)) {
+					puts.add(FileChange.put(path, writer.addBlob(file, state.executable)));
+				}
+			} else {
+				state.contentId = previous.contentId;
+			}
+			current.put(path, state);
+		}
+	}
+
+	private static final class State {
+		private final long size;
+		private final long lastModified;
+		private final boolean executable;
+		private String contentId;
+
+		State(File file) {
+			size = file.length();
+			lastModified = file.lastModified();
+			executable = file.canExecute();
+		}
+
+		boolean isSame(State other) {
+			return size == other.size && lastModified == other.lastModified && executable == other.executable;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package to.rtc.cli.migrate.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes directory trees on background threads. A directory is first renamed to a unique tombstone next to it, so
+ * the original location can immediately be used again while the tombstone content is deleted in parallel. A tombstone
+ * that could not be deleted completely is scheduled again by the next deletion next to it and retried once more on
+ * closing.
+ */
+public final class BackgroundDeleter {
+	static final String TOMBSTONE_SUFFIX = ".deleted";
+
+	private final ExecutorService executor;
+	private final AtomicInteger tombstoneCounter;
+	private final Set<File> scheduledTombstones;
+	private final Set<File> failedTombstones;
+
+	public BackgroundDeleter(int threads) {
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger threadCounter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "background-deleter-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.tombstoneCounter = new AtomicInteger();
+		this.scheduledTombstones = Collections.synchronizedSet(new HashSet<File>());
+		this.failedTombstones = Collections.synchronizedSet(new HashSet<File>());
+	}
+
+	/**
+	 * Moves the given directory out of the way and schedules the deletion of its content. Left over tombstones of
+	 * earlier runs next to the directory are scheduled as well.
+	 *
+	 * @param directory
+	 *            the directory to be deleted
+	 * @return <code>true</code> if the directory has been scheduled for deletion, <code>false</code> if it could not
+	 *         be renamed
+	 */
+	public boolean deleteLater(File directory) {
+		File parent = directory.getAbsoluteFile().getParentFile();
+		String prefix = directory.getName() + ".";
+		File[] tombstones = parent.listFiles();
+		if (tombstones != null) {
+			for (File tombstone : tombstones) {
+				String name = tombstone.getName();
+				if (name.startsWith(prefix) && name.endsWith(TOMBSTONE_SUFFIX)) {
+					schedule(tombstone);
+				}
+			}
+		}
+		if (!directory.exists()) {
+			return false;
+		}
+		File tombstone = new File(parent, prefix + System.currentTimeMillis() + "-"
+				+ tombstoneCounter.incrementAndGet() + TOMBSTONE_SUFFIX);
+		if (!directory.renameTo(tombstone)) {
+			return false;
+		}
+		schedule(tombstone);
+		return true;
+	}
+
+	/**
+	 * Waits until all scheduled deletions are finished and stops the background threads. The tombstones that could
+	 * not be deleted are retried once on the calling thread.
+	 *
+	 * @return the tombstones that are left, to be deleted manually
+	 */
+	public List<File> close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<File> left = new ArrayList<File>();
+		synchronized (failedTombstones) {
+			for (File tombstone : failedTombstones) {
+				if (!Files.delete(tombstone) && tombstone.exists()) {
+					left.add(tombstone);
+				}
+			}
+			failedTombstones.clear();
+		}
+		left.addAll(scheduledTombstones);
+		return left;
+	}
+
+	private void schedule(final File tombstone) {
+		if (!scheduledTombstones.add(tombstone)) {
+			return;
+		}
+		failedTombstones.remove(tombstone);
+		final File[] children = tombstone.listFiles();
+		if (children == null || children.length == 0) {
+			finish(tombstone);
+			return;
+		}
+		// the last finished child deletes the then empty tombstone itself
+		final AtomicInteger remaining = new AtomicInteger(children.length);
+		for (final File child : children) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Files.delete(child);
+					if (remaining.decrementAndGet() == 0) {
+						finish(tombstone);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Deletes the tombstone once its children are deleted, remembering it for a retry if anything is left.
+	 */
+	private void finish(File tombstone) {
+		if (!tombstone.delete() && tombstone.exists()) {
+			failedTombstones.add(tombstone);
+		}
+		scheduledTombstones.remove(tombstone);
+	}
+}
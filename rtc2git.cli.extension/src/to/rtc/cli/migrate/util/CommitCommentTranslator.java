@@ -6,6 +6,10 @@
 
 package to.rtc.cli.migrate.util;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.SortedMap;
@@ -19,6 +23,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Translates a commit comment based on a optional set of <code>commit.message.regex.x</code>/
  * <code>commit.message.replacement.x</code> definition applied in their <code>x</code> numerical order.
+ * <p>
+ * The definitions are compiled once: consecutive definitions searching for plain text, that can neither overlap each
+ * other nor their replacements, are combined and applied in a single pass. A definition not matching the comment at
+ * all does not copy it.
  *
  * @author Patrick Reinhart
  */
@@ -26,8 +34,11 @@ public class CommitCommentTranslator {
 	private static final Logger LOGGER = LoggerFactory.getLogger(CommitCommentTranslator.class);
 	private static final String REPLACEMENT_FORMAT = "commit.message.replacement.%s";
 	private static final Pattern SEARCH_PATTERN = Pattern.compile("^commit\\.message\\.regex\\.([0-9]+)$");
+	private static final Pattern LITERAL_PATTERN = Pattern.compile("[^\\\\^$.|?*+()\\[\\]{}]+");
+	private static final Pattern LITERAL_REPLACEMENT = Pattern.compile("[^\\\\$]+");
 
 	private final SortedMap<Integer, SearchEntry> searches = new TreeMap<Integer, SearchEntry>();
+	private final List<SearchEntry> compiledSearches;
 
 	/**
 	 * @param props
@@ -56,6 +67,7 @@ public class CommitCommentTranslator {
 				}
 			}
 		}
+		compiledSearches = combineLiteralSearches(searches.values());
 	}
 
 	/**
@@ -67,13 +79,84 @@ public class CommitCommentTranslator {
 	 */
 	public String translate(String input) {
 		String result = input;
-		for (SearchEntry entry : searches.values()) {
+		for (SearchEntry entry : compiledSearches) {
 			result = entry.apply(result);
 		}
 		return result;
 	}
 
-	static final class SearchEntry {
+	/**
+	 * Combines runs of plain text searches into one entry, if applying them at once gives the same result as applying
+	 * them one after the other. This is the case if no search text shares a character with a previous search text or
+	 * replacement of the run and no replacement is empty, as no match can then overlap another one or be created by a
+	 * previous replacement.
+	 */
+	static List<SearchEntry> combineLiteralSearches(Iterable<SearchEntry> entries) {
+		List<SearchEntry> result = new ArrayList<SearchEntry>();
+		List<SearchEntry> run = new ArrayList<SearchEntry>();
+		StringBuilder searched = new StringBuilder();
+		StringBuilder replaced = new StringBuilder();
+		for (SearchEntry entry : entries) {
+			String literal = entry.getLiteral();
+			if (literal == null || !isIndependent(literal, entry.replacement, searched, replaced)) {
+				addRun(result, run);
+				searched.setLength(0);
+				replaced.setLength(0);
+				if (literal == null || entry.replacement.isEmpty()) {
+					result.add(entry);
+					continue;
+				}
+			}
+			run.add(entry);
+			searched.append(literal);
+			replaced.append(entry.replacement);
+		}
+		addRun(result, run);
+		return result;
+	}
+
+	private static boolean isIndependent(String literal, String replacement, CharSequence searched,
+			CharSequence replaced) {
+		if (replacement.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (indexOf(searched, c) >= 0 || indexOf(replaced, c) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(CharSequence sequence, char c) {
+		for (int i = 0; i < sequence.length(); i++) {
+			if (sequence.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void addRun(List<SearchEntry> result, List<SearchEntry> run) {
+		if (run.size() == 1) {
+			result.add(run.get(0));
+		} else if (run.size() > 1) {
+			Map<String, String> replacements = new HashMap<String, String>();
+			StringBuilder alternatives = new StringBuilder();
+			for (SearchEntry entry : run) {
+				if (alternatives.length() > 0) {
+					alternatives.append('|');
+				}
+				alternatives.append(Pattern.quote(entry.pattern.pattern()));
+				replacements.put(entry.pattern.pattern(), entry.replacement);
+			}
+			result.add(new CombinedSearchEntry(Pattern.compile(alternatives.toString()), replacements));
+		}
+		run.clear();
+	}
+
+	static class SearchEntry {
 		private Pattern pattern;
 		private String replacement;
 
@@ -83,7 +166,51 @@ public class CommitCommentTranslator {
 		}
 
 		String apply(String input) {
-			return pattern.matcher(input).replaceAll(replacement);
+			Matcher matcher = pattern.matcher(input);
+			if (!matcher.find()) {
+				return input;
+			}
+			StringBuffer sb = new StringBuffer(input.length() + 16);
+			do {
+				matcher.appendReplacement(sb, getReplacement(matcher));
+			} while (matcher.find());
+			matcher.appendTail(sb);
+			return sb.toString();
+		}
+
+		String getReplacement(Matcher matcher) {
+			return replacement;
+		}
+
+		/**
+		 * @return the text searched for, if the pattern matches only plain text and the replacement contains no
+		 *         group references, <code>null</code> otherwise
+		 */
+		String getLiteral() {
+			if (pattern.flags() == 0 && LITERAL_PATTERN.matcher(pattern.pattern()).matches()
+					&& LITERAL_REPLACEMENT.matcher(replacement).matches()) {
+				return pattern.pattern();
+			}
+			return null;
+		}
+	}
+
+	static final class CombinedSearchEntry extends SearchEntry {
+		private final Map<String, String> replacements;
+
+		CombinedSearchEntry(Pattern pattern, Map<String, String> replacements) {
+			super(pattern, null);
+			this.replacements = replacements;
+		}
+
+		@Override
+		String getReplacement(Matcher matcher) {
+			return replacements.get(matcher.group());
+		}
+
+		@Override
+		String getLiteral() {
+			return null;
 		}
 	}
 }
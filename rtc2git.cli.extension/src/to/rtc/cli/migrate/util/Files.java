@@ -1,6 +1,7 @@
 package to.rtc.cli.migrate.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -51,6 +52,30 @@ public class Files {
 		}
 	}
 
+	/**
+	 * Reads the whole content of the given <code>file</code>.
+	 * 
+	 * @param file
+	 *            the file being read
+	 * @return the content of the file
+	 * @throws IOException
+	 *             if the read operation fails
+	 */
+	public static byte[] readBytes(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(file.length(), 32));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
 	/**
 	 * Writes all <code>lines</code> given to the <code>file</code> using the given character set <code>cs</code> and
 	 * optionally appends them to an existing file, if <code>append</code> is set to <code>true</code>. The default
@@ -85,24 +110,42 @@ public class Files {
 	}
 
 	/**
+	 * Replaces the <code>file</code> with the given <code>lines</code> by writing them to a temporary file first, so
+	 * that concurrent readers never see a partially written file.
+	 * 
+	 * @param file
+	 *            the file being replaced
+	 * @param lines
+	 *            the lines to be written without any line separators
+	 * @param cs
+	 *            the character set used for writing
+	 * @throws IOException
+	 *             if the write or rename operation fails
+	 */
+	public static void replaceLines(File file, Collection<String> lines, Charset cs) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		writeLines(tempFile, lines, cs, false);
+		if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+			throw new IOException("Unable to replace " + file);
+		}
+	}
+
+	/**
+	 * Deletes the given <code>file</code> or directory including all of its content. Every directory is listed only
+	 * once.
+	 * 
 	 * @param file
+	 *            the file or directory being deleted
+	 * @return <code>true</code> if the file and all of its content have been deleted, <code>false</code> otherwise
 	 */
-	public static void delete(File file) {
-		if (file.isDirectory()) {
-			if (file.list().length == 0) {
-				file.delete();
-			} else {
-				String files[] = file.list();
-				for (String temp : files) {
-					File fileDelete = new File(file, temp);
-					delete(fileDelete);
-				}
-				if (file.list().length == 0) {
-					file.delete();
-				}
+	public static boolean delete(File file) {
+		boolean deleted = true;
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleted &= delete(child);
 			}
-		} else {
-			file.delete();
 		}
+		return file.delete() && deleted;
 	}
 }
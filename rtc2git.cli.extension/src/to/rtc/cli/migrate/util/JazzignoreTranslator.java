@@ -6,6 +6,8 @@ import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +22,9 @@ public class JazzignoreTranslator {
 	private static final Logger LOGGER = LoggerFactory.getLogger(JazzignoreTranslator.class);
 	private static final Pattern EXCLUSION = Pattern.compile("\\{(.*?)\\}");
 	private static final Method CONVERT_GLOB_METHOD = initConvertGlobMethod();
+	private static final int MAX_CHECKED_PATTERNS = 4096;
+	// results of the reflective glob check, which is the most expensive part of the translation
+	private static final Map<String, Boolean> CHECKED_PATTERNS = new ConcurrentHashMap<String, Boolean>();
 
 	/**
 	 * Translates a .jazzignore file to .gitignore
@@ -30,30 +35,41 @@ public class JazzignoreTranslator {
 	 * @return the translation, as a list of lines
 	 */
 	public static List<String> toGitignore(File jazzignore) {
-		List<String> gitignoreLines = new ArrayList<String>();
 		try {
 			// default charset should be ok here
-			List<String> jazzignoreLines = Files.readLines(jazzignore, Charset.defaultCharset());
-			String lineForRegex = "";
-			boolean needToTransform = false;
-			for (String line : jazzignoreLines) {
-				line = line.trim();
-				if (!line.startsWith("#")) {
-					needToTransform = true;
-					lineForRegex += line;
-					if (!line.endsWith("\\")) {
-						addGroupsToList(lineForRegex, gitignoreLines);
-						lineForRegex = "";
-						needToTransform = false;
-					}
-				}
-			}
-			if (needToTransform) {
-				gitignoreLines = addGroupsToList(lineForRegex, gitignoreLines);
-			}
+			return toGitignore(Files.readLines(jazzignore, Charset.defaultCharset()));
 		} catch (IOException ioe) {
 			throw new RuntimeException("unable to read .jazzignore file " + jazzignore.getAbsolutePath(), ioe);
 		}
+	}
+
+	/**
+	 * Translates the lines of a .jazzignore file to .gitignore
+	 *
+	 * @param jazzignoreLines
+	 *            the lines of the input .jazzignore file
+	 *
+	 * @return the translation, as a list of lines
+	 */
+	public static List<String> toGitignore(List<String> jazzignoreLines) {
+		List<String> gitignoreLines = new ArrayList<String>();
+		String lineForRegex = "";
+		boolean needToTransform = false;
+		for (String line : jazzignoreLines) {
+			line = line.trim();
+			if (!line.startsWith("#")) {
+				needToTransform = true;
+				lineForRegex += line;
+				if (!line.endsWith("\\")) {
+					addGroupsToList(lineForRegex, gitignoreLines);
+					lineForRegex = "";
+					needToTransform = false;
+				}
+			}
+		}
+		if (needToTransform) {
+			gitignoreLines = addGroupsToList(lineForRegex, gitignoreLines);
+		}
 		return gitignoreLines;
 	}
 
@@ -81,14 +97,21 @@ public class JazzignoreTranslator {
 	}
 
 	private static boolean checkPattern(String pattern) {
-		if (CONVERT_GLOB_METHOD != null) {
-			try {
-				CONVERT_GLOB_METHOD.invoke(null, pattern);
-			} catch (Exception e) {
-				LOGGER.warn("Ignoring uncompilable pattern: {}", pattern);
-				return false;
+		Boolean valid = CHECKED_PATTERNS.get(pattern);
+		if (valid == null) {
+			valid = Boolean.TRUE;
+			if (CONVERT_GLOB_METHOD != null) {
+				try {
+					CONVERT_GLOB_METHOD.invoke(null, pattern);
+				} catch (Exception e) {
+					LOGGER.warn("Ignoring uncompilable pattern: {}", pattern);
+					valid = Boolean.FALSE;
+				}
+			}
+			if (CHECKED_PATTERNS.size() < MAX_CHECKED_PATTERNS) {
+				CHECKED_PATTERNS.put(pattern, valid);
 			}
 		}
-		return true;
+		return valid.booleanValue();
 	}
 }
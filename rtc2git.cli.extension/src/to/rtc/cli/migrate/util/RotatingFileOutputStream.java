@@ -0,0 +1,82 @@
+package to.rtc.cli.migrate.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends to a file that is rotated once it would exceed a maximum size. The rotated files get the suffixes
+ * <code>.1</code> (newest) up to <code>.n</code> (oldest), older files are deleted.
+ */
+public final class RotatingFileOutputStream extends OutputStream {
+	private final File file;
+	private final long maxBytes;
+	private final int maxBackups;
+	private OutputStream out;
+	private long size;
+
+	/**
+	 * @param file
+	 *            the file to write
+	 * @param maxBytes
+	 *            the size in bytes after which the file is rotated
+	 * @param maxBackups
+	 *            the number of rotated files kept
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public RotatingFileOutputStream(File file, long maxBytes, int maxBackups) throws IOException {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		this.maxBackups = maxBackups;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create directory " + parent);
+		}
+		open();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (size > 0 && size + length > maxBytes) {
+			rotate();
+		}
+		out.write(bytes, offset, length);
+		size += length;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void open() throws IOException {
+		out = new FileOutputStream(file, true);
+		size = file.length();
+	}
+
+	private void rotate() throws IOException {
+		out.close();
+		new File(file.getPath() + "." + maxBackups).delete();
+		for (int i = maxBackups - 1; i > 0; i--) {
+			new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+		}
+		if (maxBackups > 0) {
+			file.renameTo(new File(file.getPath() + ".1"));
+		} else {
+			file.delete();
+		}
+		open();
+	}
+}
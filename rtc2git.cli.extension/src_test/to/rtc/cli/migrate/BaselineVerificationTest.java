@@ -0,0 +1,108 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Tests the {@link BaselineVerification} implementation.
+ */
+public class BaselineVerificationTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testCompare() {
+		Map<String, FileState> expected = files("a/x.txt", 1, "a/y.txt", 2, "b/z.txt", 3);
+		Map<String, FileState> migrated = files("a/x.txt", 1, "a/y.txt", 5, "a/new.txt", 4, "c/other.txt", 6);
+
+		assertThat(BaselineVerification.compare(expected, migrated, null), equalTo(Arrays.asList(
+				"extra a/new.txt", "changed a/y.txt RTC [2 bytes] git [5 bytes]", "missing b/z.txt",
+				"extra c/other.txt")));
+		assertThat(BaselineVerification.compare(expected, migrated, Collections.singleton("a")), equalTo(Arrays
+				.asList("extra a/new.txt", "changed a/y.txt RTC [2 bytes] git [5 bytes]", "missing b/z.txt")));
+	}
+
+	@Test
+	public void testCompare_executable() {
+		Map<String, FileState> expected = Collections.singletonMap("run.sh", new FileState(7, true));
+		Map<String, FileState> migrated = Collections.singletonMap("run.sh", new FileState(7, false));
+
+		assertThat(BaselineVerification.compare(expected, migrated, null),
+				equalTo(Collections.singletonList("changed run.sh RTC [7 bytes, executable] git [7 bytes]")));
+	}
+
+	@Test
+	public void testRun() throws IOException {
+		final Map<String, Map<String, FileState>> baselineFiles = new HashMap<String, Map<String, FileState>>();
+		baselineFiles.put("bl1", files("a/x.txt", 1, "a/ignored.bin", 9));
+		baselineFiles.put("bl2", files("a/x.txt", 2));
+		baselineFiles.put("bl3", files("b/y.txt", 3));
+		final Map<String, Map<String, FileState>> migratedFiles = new HashMap<String, Map<String, FileState>>();
+		migratedFiles.put("first", files("a/x.txt", 1, "b/y.txt", 3));
+		migratedFiles.put("second", files("a/x.txt", 1, "b/y.txt", 3));
+		RtcTagList tags = new RtcTagList(new StreamOutput(System.out));
+		tags.add(new RtcTag("bl1").setOriginalName("first").setCreationDate(1000));
+		tags.add(new RtcTag("bl2").setOriginalName("second").setCreationDate(2000000));
+		tags.add(new RtcTag("bl3").setOriginalName("third").setCreationDate(3000000));
+		tags.getHeadTag();
+		File report = tempFolder.newFile("report.txt");
+
+		int failed = new BaselineVerification(new StreamOutput(System.out), new BaselineVerification.Baselines() {
+			@Override
+			public Map<String, FileState> listFiles(Collection<String> baselineUuids) {
+				Map<String, FileState> files = new HashMap<String, FileState>();
+				for (String uuid : baselineUuids) {
+					files.putAll(baselineFiles.get(uuid));
+				}
+				return files;
+			}
+		}, new MigratedTrees() {
+			@Override
+			public Map<String, FileState> listFiles(Tag tag) {
+				return migratedFiles.get(tag.getName());
+			}
+
+			@Override
+			public boolean isMigrated(String path, FileState file) {
+				return !path.endsWith(".bin");
+			}
+
+			@Override
+			public void close() {
+			}
+		}, 2, 2).run(tags, report);
+
+		assertThat(failed, equalTo(2));
+		List<String> lines = Files.readLines(report, Charset.forName("UTF-8"));
+		Collections.sort(lines);
+		assertThat(lines, equalTo(Arrays.asList("\tchanged a/x.txt RTC [2 bytes] git [1 bytes]",
+				"Tag [first] matches in [1] files within [1] top level folders",
+				"Tag [second] differs in [1] of [1] files within [1] top level folders:",
+				"Tag [third] has not been migrated",
+				"Verification finished, [1] tags match, [2] differ or could not be verified")));
+	}
+
+	private static Map<String, FileState> files(Object... pathsAndSizes) {
+		Map<String, FileState> files = new HashMap<String, FileState>();
+		for (int i = 0; i < pathsAndSizes.length; i += 2) {
+			files.put((String) pathsAndSizes[i], new FileState((Integer) pathsAndSizes[i + 1], false));
+		}
+		return files;
+	}
+}
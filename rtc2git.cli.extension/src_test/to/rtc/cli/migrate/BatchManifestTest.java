@@ -0,0 +1,50 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import to.rtc.cli.migrate.BatchManifest.Entry;
+
+/**
+ * Tests the {@link BatchManifest} implementation.
+ */
+public class BatchManifestTest {
+	private static final File BASE = new File("/migrations").getAbsoluteFile();
+
+	@Test
+	public void testParse() {
+		List<Entry> entries = BatchManifest.parse(Arrays.asList("# source;destination;sandbox;properties", "",
+				" stream A ; ws A ; a ", "streamB;wsB;/data/b;b.properties"), BASE);
+
+		assertThat(entries.size(), equalTo(2));
+		assertThat(entries.get(0).getSourceWorkspace(), equalTo("stream A"));
+		assertThat(entries.get(0).getDestinationWorkspace(), equalTo("ws A"));
+		assertThat(entries.get(0).getSandboxDirectory(), equalTo(new File(BASE, "a")));
+		assertThat(entries.get(0).getPropertiesFile(), nullValue());
+		assertThat(entries.get(1).getSandboxDirectory(), equalTo(new File("/data/b").getAbsoluteFile()));
+		assertThat(entries.get(1).getPropertiesFile(), equalTo(new File(BASE, "b.properties")));
+		assertThat(entries.get(1).toString(), equalTo("streamB -> wsB"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParse_missingSandbox() {
+		BatchManifest.parse(Arrays.asList("streamA;wsA"), BASE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParse_emptyField() {
+		BatchManifest.parse(Arrays.asList("streamA;;a"), BASE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParse_sharedSandbox() {
+		BatchManifest.parse(Arrays.asList("streamA;wsA;a", "streamB;wsB;" + new File(BASE, "a")), BASE);
+	}
+}
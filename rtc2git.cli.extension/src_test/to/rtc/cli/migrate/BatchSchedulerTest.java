@@ -0,0 +1,101 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.BatchManifest.Entry;
+import to.rtc.cli.migrate.BatchScheduler.Result;
+
+/**
+ * Tests the {@link BatchScheduler} implementation.
+ */
+public class BatchSchedulerTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private List<Entry> entries;
+
+	@Before
+	public void setup() {
+		entries = new ArrayList<Entry>();
+		for (int i = 0; i < 5; i++) {
+			entries.add(new Entry("stream" + i, "ws" + i, tempFolder.getRoot(), null));
+		}
+	}
+
+	@Test
+	public void testRunBoundsConcurrency() {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger migrated = new AtomicInteger();
+
+		List<Result> results = new BatchScheduler(new StreamOutput(System.out), 2).run(entries,
+				new BatchScheduler.Job() {
+					@Override
+					public void migrate(Entry entry) throws Exception {
+						int current = running.incrementAndGet();
+						synchronized (maxRunning) {
+							maxRunning.set(Math.max(maxRunning.get(), current));
+						}
+						Thread.sleep(50);
+						running.decrementAndGet();
+						migrated.incrementAndGet();
+					}
+				});
+
+		assertThat("all migrated", migrated.get(), equalTo(5));
+		assertThat("at most two at a time", maxRunning.get() <= 2, is(true));
+		for (int i = 0; i < 5; i++) {
+			assertThat("results in manifest order", results.get(i).getEntry(), equalTo(entries.get(i)));
+			assertThat(results.get(i).isSuccessful(), is(true));
+		}
+	}
+
+	@Test
+	public void testRunReportsFailurePerEntry() {
+		final IllegalStateException failure = new IllegalStateException("broken stream");
+
+		List<Result> results = new BatchScheduler(new StreamOutput(System.out), 3).run(entries,
+				new BatchScheduler.Job() {
+					@Override
+					public void migrate(Entry entry) throws Exception {
+						if (entry.getSourceWorkspace().equals("stream2")) {
+							throw failure;
+						}
+					}
+				});
+
+		assertThat(results.get(1).getFailure(), nullValue());
+		assertThat(results.get(2).getFailure(), equalTo((Throwable) failure));
+		assertThat("others are migrated anyway", results.get(4).isSuccessful(), is(true));
+	}
+
+	@Test
+	public void testRunFailsWithoutDiskSpace() {
+		final AtomicInteger migrated = new AtomicInteger();
+
+		List<Result> results = new BatchScheduler(new StreamOutput(System.out), 2).setMinFreeDisk(Long.MAX_VALUE)
+				.setAdmissionPollMillis(1).run(entries, new BatchScheduler.Job() {
+					@Override
+					public void migrate(Entry entry) throws Exception {
+						migrated.incrementAndGet();
+					}
+				});
+
+		assertThat("nothing migrated", migrated.get(), equalTo(0));
+		for (Result result : results) {
+			assertThat(result.isSuccessful(), is(false));
+		}
+	}
+}
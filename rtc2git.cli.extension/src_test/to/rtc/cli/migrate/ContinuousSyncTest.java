@@ -0,0 +1,98 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import to.rtc.cli.migrate.metrics.Counter;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+import to.rtc.cli.migrate.metrics.Phase;
+
+/**
+ * Tests the {@link ContinuousSync} implementation.
+ */
+public class ContinuousSyncTest {
+	private MetricsRegistry metrics;
+	private ContinuousSync sync;
+
+	@Before
+	public void setup() {
+		metrics = MetricsRegistry.getInstance();
+		sync = new ContinuousSync(new StreamOutput(System.out), 0);
+	}
+
+	@Test
+	public void testRecordCycle() {
+		RtcTagList tagList = new RtcTagList(new StreamOutput(System.out));
+		RtcTag tag = tagList.add(new RtcTag("uuid").setOriginalName("tag").setCreationDate(1000));
+		tag.add(new RtcChangeSet("cs1").setComponent("compA").setCreationDate(300));
+		tag.add(new RtcChangeSet("cs2").setComponent("compB").setCreationDate(500));
+		tag.add(new RtcChangeSet("cs3").setComponent("compA").setCreationDate(400));
+		long cycles = metrics.getCount(Counter.SYNC_CYCLES);
+		long lags = metrics.getHistogram(Phase.SYNC_LAG).getCount();
+
+		assertThat("newest changeset", sync.recordCycle(System.currentTimeMillis(), tagList), equalTo(500L));
+		assertThat("cycle counted", metrics.getCount(Counter.SYNC_CYCLES), equalTo(cycles + 1));
+		assertThat("lag recorded", metrics.getHistogram(Phase.SYNC_LAG).getCount(), equalTo(lags + 1));
+	}
+
+	@Test
+	public void testRecordIdleCycle() {
+		long cycles = metrics.getHistogram(Phase.SYNC_CYCLE).getCount();
+		long lags = metrics.getHistogram(Phase.SYNC_LAG).getCount();
+
+		assertThat("nothing migrated", sync.recordCycle(System.currentTimeMillis(), null), equalTo(0L));
+		assertThat("cycle recorded", metrics.getHistogram(Phase.SYNC_CYCLE).getCount(), equalTo(cycles + 1));
+		assertThat("no lag without changesets", metrics.getHistogram(Phase.SYNC_LAG).getCount(), equalTo(lags));
+	}
+
+	@Test
+	public void testRecordFailure() {
+		ContinuousSync backingOffSync = new ContinuousSync(new StreamOutput(System.out), 1000);
+		long failures = metrics.getCount(Counter.SYNC_FAILURES);
+
+		backingOffSync.recordFailure(System.currentTimeMillis(), new RuntimeException("first"));
+		assertThat("doubled after a failure", backingOffSync.getDelayMillis(), equalTo(2000L));
+		backingOffSync.recordFailure(System.currentTimeMillis(), new RuntimeException("second"));
+		assertThat("doubled again", backingOffSync.getDelayMillis(), equalTo(4000L));
+		for (int i = 0; i < 10; i++) {
+			backingOffSync.recordFailure(System.currentTimeMillis(), new RuntimeException("again"));
+		}
+		assertThat("limited", backingOffSync.getDelayMillis(), equalTo(16000L));
+		assertThat("failures counted", metrics.getCount(Counter.SYNC_FAILURES), equalTo(failures + 12));
+
+		backingOffSync.recordCycle(System.currentTimeMillis(), null);
+		assertThat("reset by a finished cycle", backingOffSync.getDelayMillis(), equalTo(1000L));
+	}
+
+	@Test
+	public void testAwaitNextCycle() {
+		assertThat("next cycle is due", sync.awaitNextCycle(), is(true));
+		sync.requestStop();
+		assertThat("stopped sync has no next cycle", sync.awaitNextCycle(), is(false));
+		sync.finished();
+	}
+
+	@Test(timeout = 10000)
+	public void testStopWakesWaitingCycle() throws Exception {
+		final ContinuousSync waitingSync = new ContinuousSync(new StreamOutput(System.out), 3600000);
+		Thread stopper = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					return;
+				}
+				waitingSync.requestStop();
+			}
+		};
+		stopper.start();
+
+		assertThat("stopped while waiting", waitingSync.awaitNextCycle(), is(false));
+		stopper.join();
+	}
+}
@@ -0,0 +1,115 @@
+package to.rtc.cli.migrate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LoggingPrintStream} and its {@link AsyncLogWriter}.
+ */
+public class LoggingPrintStreamTest {
+	private static final String TIMESTAMP = "\\[\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\] ";
+
+	private ByteArrayOutputStream console;
+	private LoggingPrintStream stream;
+
+	@Before
+	public void setUp() {
+		console = new ByteArrayOutputStream();
+		stream = new LoggingPrintStream(console);
+	}
+
+	@After
+	public void tearDown() {
+		LoggingPrintStream.endChatter();
+	}
+
+	@Test
+	public void testTimestampPerLine() {
+		stream.print("first ");
+		stream.print("line\nsecond line\nthird");
+		stream.println(" line");
+		stream.shutdown();
+
+		assertMatches(TIMESTAMP + "first line\n" + TIMESTAMP + "second line\n" + TIMESTAMP + "third line\n",
+				console.toString());
+	}
+
+	@Test
+	public void testFlushOfIncompleteLine() {
+		stream.print("Password: ");
+		stream.flush();
+		stream.println("done");
+		stream.shutdown();
+
+		assertMatches(TIMESTAMP + "Password: done\n", console.toString());
+	}
+
+	@Test
+	public void testSuppressChatter() {
+		stream.suppressChatter();
+		LoggingPrintStream.beginChatter();
+		stream.println("chatter");
+		LoggingPrintStream.endChatter();
+		stream.println("migration");
+		stream.shutdown();
+
+		assertMatches(TIMESTAMP + "migration\n", console.toString());
+	}
+
+	@Test
+	public void testRedirectChatter() {
+		ByteArrayOutputStream chatter = new ByteArrayOutputStream();
+		stream.redirectChatter(chatter);
+		LoggingPrintStream.beginChatter();
+		stream.println("chatter");
+		LoggingPrintStream.endChatter();
+		stream.println("migration");
+		stream.shutdown();
+
+		assertMatches(TIMESTAMP + "migration\n", console.toString());
+		assertMatches(TIMESTAMP + "chatter\n", chatter.toString());
+	}
+
+	@Test
+	public void testWriteAfterShutdown() {
+		stream.shutdown();
+		stream.println("late");
+
+		assertMatches(TIMESTAMP + "late\n", console.toString());
+	}
+
+	@Test(timeout = 10000)
+	public void testAsyncLogWriterCloseWhileWriting() throws Exception {
+		final AsyncLogWriter writer = new AsyncLogWriter("test-log-writer", console, 4);
+		Thread[] producers = new Thread[4];
+		for (int i = 0; i < producers.length; i++) {
+			producers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						writer.write(new byte[] { 'x' });
+					}
+				}
+			};
+			producers[i].start();
+		}
+		writer.close();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		assertEquals("no line lost", producers.length * 1000, console.size());
+	}
+
+	private static void assertMatches(String regex, String actual) {
+		String text = actual.replace(System.getProperty("line.separator"), "\n");
+		assertTrue(text, Pattern.compile(regex).matcher(text).matches());
+	}
+}
@@ -0,0 +1,135 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MigrationProgress} implementation.
+ */
+public class MigrationProgressTest {
+	private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+
+	private RtcTagList tagList;
+
+	@Before
+	public void setup() {
+		tagList = new RtcTagList(new StreamOutput(System.out));
+		RtcTag tag = tagList.add(new RtcTag("uuid").setOriginalName("tag").setCreationDate(1000));
+		for (int i = 0; i < 60; i++) {
+			tag.add(new RtcChangeSet("cs" + i).setComponent("compA").setCreationDate(i));
+		}
+		for (int i = 0; i < 40; i++) {
+			tag.add(new RtcChangeSet("cs" + i).setComponent("compB").setCreationDate(i));
+		}
+	}
+
+	@Test
+	public void testUnknownEtaBeforeFirstChangeSet() {
+		MigrationProgress progress = new MigrationProgress(tagList, 0);
+
+		assertThat(progress.getPercentComplete(), equalTo(0d));
+		assertThat(progress.getRemainingMillis(), equalTo(-1L));
+		assertThat(progress.getStatusLine(),
+				equalTo("Progress 0.00% [0/100] changesets, 0.00 changesets/s, 0.00 files/s, ETA unknown"));
+	}
+
+	@Test
+	public void testEtaPerComponent() {
+		MigrationProgress progress = new MigrationProgress(tagList, 0);
+
+		// compA: 10 changesets within 10 seconds, compB: 10 changesets within 5 seconds
+		progress.migrated("compA", 10, 20, 10 * SECOND);
+		progress.migrated("compB", 10, 20, 15 * SECOND);
+
+		assertThat(progress.getPercentComplete(), equalTo(20d));
+		// 50 remaining at 1/s plus 30 remaining at 2/s
+		assertThat(progress.getRemainingMillis(), equalTo(65 * SECOND));
+	}
+
+	@Test
+	public void testMovingAverageFollowsSlowdown() {
+		MigrationProgress progress = new MigrationProgress(tagList, 0);
+		long now = 0;
+		for (int i = 0; i < 10; i++) {
+			now += SECOND;
+			progress.migrated("compA", 1, 1, now);
+		}
+		long fastRemaining = progress.getRemainingMillis();
+		for (int i = 0; i < 10; i++) {
+			now += 60 * SECOND;
+			progress.migrated("compA", 1, 1, now);
+		}
+
+		assertTrue(progress.getRemainingMillis() > 5 * fastRemaining);
+	}
+
+	@Test
+	public void testStatusReportInterval() {
+		MigrationProgress progress = new MigrationProgress(tagList, 0);
+
+		assertThat(progress.migrated("compA", 1, 1, SECOND), is(false));
+		assertThat(progress.migrated("compA", 1, 1, 31 * SECOND), is(true));
+		assertThat(progress.migrated("compA", 1, 1, 32 * SECOND), is(false));
+	}
+
+	@Test
+	public void testToJson() {
+		MigrationProgress progress = new MigrationProgress(tagList, 0);
+		progress.migrated("compA", 10, 20, 10 * SECOND);
+
+		List<String> json = progress.toJson(10 * SECOND);
+
+		assertTrue(json.contains("  \"changesets_done\": 10,"));
+		assertTrue(json.contains("  \"changesets_total\": 100,"));
+		assertTrue(json.contains("    \"compA\": {\"changesets_done\": 10, \"changesets_total\": 60, "
+				+ "\"changesets_per_second\": 1.000, \"files_per_second\": 2.000},")
+				|| json.contains("    \"compA\": {\"changesets_done\": 10, \"changesets_total\": 60, "
+						+ "\"changesets_per_second\": 1.000, \"files_per_second\": 2.000}"));
+	}
+
+	@Test
+	public void testFormatTimestamp() {
+		TimeZone defaultZone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("GMT+02:00"));
+			assertThat(MigrationProgress.formatTimestamp(0), equalTo("1970-01-01T02:00:00+02:00"));
+			TimeZone.setDefault(TimeZone.getTimeZone("GMT-03:30"));
+			assertThat(MigrationProgress.formatTimestamp(0), equalTo("1969-12-31T20:30:00-03:30"));
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+	}
+
+	@Test
+	public void testToJsonShowsLastProgress() {
+		TimeZone defaultZone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+			MigrationProgress progress = new MigrationProgress(tagList, 0);
+			progress.migrated("compA", 10, 20, 10 * SECOND);
+
+			List<String> json = progress.toJson(100 * SECOND);
+
+			assertTrue(json.contains("  \"timestamp\": \"1970-01-01T00:01:40+00:00\","));
+			assertTrue(json.contains("  \"last_progress\": \"1970-01-01T00:00:10+00:00\","));
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+	}
+
+	@Test
+	public void testFormatDuration() {
+		assertThat(MigrationProgress.formatDuration(TimeUnit.MINUTES.toMillis(5)), equalTo("5m"));
+		assertThat(MigrationProgress.formatDuration(TimeUnit.HOURS.toMillis(26) + TimeUnit.MINUTES.toMillis(3)),
+				equalTo("1d 2h 3m"));
+	}
+}
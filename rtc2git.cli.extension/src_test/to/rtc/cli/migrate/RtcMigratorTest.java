@@ -0,0 +1,142 @@
+package to.rtc.cli.migrate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the change set grouping of the {@link RtcMigrator}.
+ */
+public class RtcMigratorTest {
+
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	private RtcMigrator rtcMigrator;
+
+	@Before
+	public void setup() {
+		rtcMigrator = new RtcMigrator(new StreamOutput(System.out), null, "workspace", null, new File("."),
+				Collections.<String> emptyList(), false);
+	}
+
+	@After
+	public void tearDown() {
+		rtcMigrator.close();
+	}
+
+	@Test
+	public void testGroupChangeSets_noCoalescingWindow() {
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		changeSets.add(changeSet("1", "john", "compA", 0));
+		changeSets.add(changeSet("2", "john", "compA", 1));
+
+		List<List<RtcChangeSet>> groups = rtcMigrator.groupChangeSets(changeSets);
+
+		assertThat("every changeset is its own group", groups.size(), equalTo(2));
+	}
+
+	@Test
+	public void testGroupChangeSets_sameCreatorAndComponentWithinWindow() {
+		rtcMigrator.setCoalescingWindow(5 * MINUTE);
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		changeSets.add(changeSet("1", "john", "compA", 0));
+		changeSets.add(changeSet("2", "john", "compA", 2 * MINUTE));
+		changeSets.add(changeSet("3", "john", "compA", 5 * MINUTE));
+		changeSets.add(changeSet("4", "john", "compA", 6 * MINUTE));
+
+		List<List<RtcChangeSet>> groups = rtcMigrator.groupChangeSets(changeSets);
+
+		assertThat(groups.size(), equalTo(2));
+		assertThat(groups.get(0).size(), equalTo(3));
+		assertThat(groups.get(1).get(0).getUuid(), equalTo("4"));
+	}
+
+	@Test
+	public void testGroupChangeSets_differentCreatorOrComponentBreaksGroup() {
+		rtcMigrator.setCoalescingWindow(5 * MINUTE);
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		changeSets.add(changeSet("1", "john", "compA", 0));
+		changeSets.add(changeSet("2", "jane", "compA", 1));
+		changeSets.add(changeSet("3", "jane", "compB", 2));
+		changeSets.add(changeSet("4", "jane", "compB", 3));
+
+		List<List<RtcChangeSet>> groups = rtcMigrator.groupChangeSets(changeSets);
+
+		assertThat(groups.size(), equalTo(3));
+		assertThat(groups.get(2).size(), equalTo(2));
+	}
+
+	@Test
+	public void testGroupChangeSets_limitedGroupSize() {
+		rtcMigrator.setCoalescingWindow(5 * MINUTE);
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		for (int i = 0; i <= RtcMigrator.MAX_COALESCED_CHANGESETS; i++) {
+			changeSets.add(changeSet(String.valueOf(i), "john", "compA", i));
+		}
+
+		List<List<RtcChangeSet>> groups = rtcMigrator.groupChangeSets(changeSets);
+
+		assertThat(groups.size(), equalTo(2));
+		assertThat(groups.get(0).size(), equalTo(RtcMigrator.MAX_COALESCED_CHANGESETS));
+	}
+
+	@Test
+	public void testCoalescedChangeSet() {
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		changeSets.add(changeSet("1", "john", "compA", 10).setText("bump version").addWorkItem(4711, "release"));
+		changeSets.add(changeSet("2", "john", "compA", 20).setText("bump version").addWorkItem(4711, "release"));
+		changeSets.add(changeSet("3", "john", "compA", 30).setText("fix build").addWorkItem(4712, "build"));
+
+		CoalescedChangeSet coalesced = new CoalescedChangeSet(changeSets);
+
+		assertThat(coalesced.getComment(),
+				equalTo("bump version" + System.getProperty("line.separator") + "fix build"));
+		assertThat(coalesced.getCreationDate(), equalTo(30L));
+		assertThat(coalesced.getCreatorName(), equalTo("john"));
+		assertThat(coalesced.getWorkItems().size(), equalTo(2));
+	}
+
+	@Test
+	public void testBaselineChangeSet() {
+		List<RtcChangeSet> changeSets = new ArrayList<RtcChangeSet>();
+		changeSets.add(changeSet("1", "john", "compA", 30).setText("bump version"));
+		changeSets.add(changeSet("2", "jane", "compB", 10).setText("fix build"));
+
+		BaselineChangeSet baseline = new BaselineChangeSet("release_1.0", changeSets);
+
+		String lineSeparator = System.getProperty("line.separator");
+		assertThat(baseline.getComment(), equalTo("Baseline [release_1.0]" + lineSeparator + lineSeparator
+				+ "bump version" + lineSeparator + "fix build"));
+		assertThat(baseline.getCreationDate(), equalTo(30L));
+		assertThat("creators differ", baseline.getCreatorName(), equalTo("RTC 2 git"));
+		assertThat("components differ", baseline.getComponent(), equalTo(null));
+		assertThat(baseline.getUuids(), equalTo(Arrays.asList("1", "2")));
+	}
+
+	@Test
+	public void testDropOverwrittenPuts() {
+		FileChange first = FileChange.put("a.txt", null);
+		FileChange other = FileChange.put("b.txt", null);
+		FileChange second = FileChange.put("a.txt", null);
+		FileChange move = FileChange.move("a.txt", "c.txt", false);
+		FileChange third = FileChange.put("a.txt", null);
+
+		assertThat("a put moved away is kept", RtcMigrator.dropOverwrittenPuts(Arrays.asList(first, other, second,
+				move, third)), equalTo(Arrays.asList(other, second, move, third)));
+	}
+
+	private RtcChangeSet changeSet(String uuid, String creator, String component, long creationDate) {
+		return new RtcChangeSet(uuid).setCreatorName(creator).setComponent(component).setCreationDate(creationDate)
+				.setText("");
+	}
+}
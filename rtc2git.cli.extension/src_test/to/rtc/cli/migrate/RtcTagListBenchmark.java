@@ -0,0 +1,81 @@
+package to.rtc.cli.migrate;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the migration plan in the {@link RtcTagList} and the preparation of its tags before migrating,
+ * with the synthetic histories of {@link SyntheticHistory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RtcTagListBenchmark {
+	private static final Pattern INCLUDE_ALL = Pattern.compile(".*");
+
+	@Param({ "10", "100", "1000" })
+	public int baselines;
+
+	@Param({ "1000", "10000", "100000" })
+	public int changeSets;
+
+	private SyntheticHistory history;
+	private StreamOutput output;
+	private RtcTagList tagList;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		history = new SyntheticHistory().setBaselines(baselines).setChangeSets(changeSets);
+		output = new StreamOutput(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				// discard
+			}
+		}));
+	}
+
+	@Setup(Level.Invocation)
+	public void createTagList() {
+		tagList = history.createTagList(output);
+		tagList.sortByCreationDate();
+	}
+
+	@Benchmark
+	public RtcTagList buildPlan() {
+		return history.createTagList(output);
+	}
+
+	@Benchmark
+	public RtcTagList pruneExcludedTags() {
+		tagList.pruneInactiveTags();
+		tagList.pruneExcludedTags(INCLUDE_ALL);
+		return tagList;
+	}
+
+	@Benchmark
+	public int getOrderedChangeSets() {
+		int count = 0;
+		for (RtcTag tag : tagList) {
+			count += tag.getOrderedChangeSets().size();
+		}
+		return count;
+	}
+}
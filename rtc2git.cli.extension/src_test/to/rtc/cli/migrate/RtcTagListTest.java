@@ -14,6 +14,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.junit.Before;
@@ -173,6 +174,19 @@ public class RtcTagListTest {
 		tagList.getTag("itemId", "tagName", 0);
 	}
 
+	@Test
+	public void testGetTagListedBeforeIsAdded() {
+		tagList.setListedSince(TODAY);
+		tagList.add(new RtcTag("uuid").setOriginalName("listed").setCreationDate(TOMORROW));
+
+		RtcTag olderTag = tagList.getTag("itemId", "notListed", YESTERDAY);
+
+		assertThat("tag older than the listing is added", tagList.size(), equalTo(2));
+		assertThat("tag is found once added", tagList.getTag("itemId", "notListed", YESTERDAY), is(olderTag));
+		thrown.expect(RuntimeException.class);
+		tagList.getTag("itemId", "missing", TOMORROW);
+	}
+
 	@Test
 	public void testHeadTagWillNotBeTagged() {
 		RtcTag headTag = tagList.getHeadTag();
@@ -183,6 +197,55 @@ public class RtcTagListTest {
 		assertThat("HEAD tag will never be tagged", tagList.getHeadTag().doCreateTag(), equalTo(false));
 	}
 
+	@Test
+	public void testSplit() {
+		addTag("first", YESTERDAY, 4);
+		addTag("second", TODAY, 1);
+		addTag("third", TOMORROW, 3);
+		tagList.getHeadTag();
+
+		assertThat("one shard keeps all tags", tagList.split(1).get(0).size(), equalTo(4));
+		List<RtcTagList> shards = tagList.split(2);
+		assertThat("split into two shards", shards.size(), equalTo(2));
+		assertThat("first shard ends with the first tag", shards.get(0).size(), equalTo(1));
+		assertThat("second shard holds the remaining tags", shards.get(1).size(), equalTo(3));
+		assertThat("no shard without changesets", tagList.split(3).size(), equalTo(2));
+		assertThat("no shard without changesets", tagList.split(10).size(), equalTo(3));
+	}
+
+	@Test
+	public void testBaselinesOfAllComponentsAreKept() {
+		tagList.add(new RtcTag("baselineA").setOriginalName("release").setCreationDate(TODAY));
+		tagList.add(new RtcTag("baselineB").setOriginalName("release").setCreationDate(TODAY + 1000));
+		RtcTag tag = tagList.getTag("baselineC", "release", TODAY);
+
+		assertThat("one tag for all components", tagList.size(), equalTo(1));
+		assertThat(tag.getBaselineUuids().toString(), equalTo("[baselineA, baselineB, baselineC]"));
+		assertThat("HEAD has no baseline", tagList.getHeadTag().getBaselineUuids().isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testSplitAfter() {
+		addTag("first", YESTERDAY, 4);
+		addTag("second", TODAY, 1);
+		addTag("third", TOMORROW, 3);
+
+		List<RtcTagList> parts = tagList.splitAfter("second");
+		assertThat("snapshot ends with the cutoff", parts.get(0).size(), equalTo(2));
+		assertThat("later tags are replayed", parts.get(1).iterator().next().getName(), equalTo("third"));
+		assertThat("nothing left after the last tag", tagList.splitAfter("third").get(1).size(), equalTo(0));
+
+		thrown.expect(IllegalArgumentException.class);
+		tagList.splitAfter("fourth");
+	}
+
+	private void addTag(String name, long creationDate, int changeSets) {
+		RtcTag tag = tagList.add(new RtcTag(name).setOriginalName(name).setCreationDate(creationDate));
+		for (int i = 0; i < changeSets; i++) {
+			tag.add(new RtcChangeSet(name + i).setComponent("component").setCreationDate(creationDate + i));
+		}
+	}
+
 	@Test
 	public void testHeadTagOnlyExistOnce() {
 		tagList.getHeadTag();
@@ -0,0 +1,291 @@
+package to.rtc.cli.migrate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import to.rtc.cli.migrate.git.GitMigrator;
+import to.rtc.cli.migrate.replay.ReplayDriver;
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Migrates synthetic histories of increasing size with the real {@link GitMigrator} and reports for every scale point
+ * the time needed to build the migration plan, the commits per second, the heap high-water mark and the size of the
+ * resulting repository.
+ * <p>
+ * Usage: <code>ScalingBenchmark [options] [&lt;changesets&gt;...]</code>, the scale points default to 10000, 100000
+ * and 1000000 change sets. Options are <code>--work-dir &lt;dir&gt;</code>, <code>--components &lt;n&gt;</code>,
+ * <code>--baselines &lt;n&gt;</code>, <code>--files-per-changeset &lt;n&gt;</code>,
+ * <code>--median-file-size &lt;bytes&gt;</code>, <code>--binary-ratio &lt;ratio&gt;</code>,
+ * <code>--jazzignore-churn &lt;ratio&gt;</code>, <code>--seed &lt;n&gt;</code>,
+ * <code>--properties &lt;migration.properties&gt;</code> and <code>--sandbox</code> to commit from the sandbox instead
+ * of streaming the contents. The results are appended to <code>scaling.csv</code> in the
+ * work directory.
+ */
+public class ScalingBenchmark {
+	static final String CSV_HEADER = "changesets,components,baselines,mode,plan_ms,migrate_ms,commits_per_second,"
+			+ "heap_peak_bytes,repository_bytes";
+
+	private final File workDirectory;
+	private final PrintStream out;
+	private int components = 4;
+	private int baselines = 100;
+	private int filesPerChangeSet = 5;
+	private int medianFileSize = 1024;
+	private double binaryRatio = 0.05;
+	private double jazzignoreChurn = 0.01;
+	private long seed = 4711;
+	private boolean useSandbox;
+	private Properties properties = new Properties();
+
+	ScalingBenchmark(File workDirectory, PrintStream out) {
+		this.workDirectory = workDirectory;
+		this.out = out;
+	}
+
+	ScalingBenchmark setComponents(int components) {
+		this.components = components;
+		return this;
+	}
+
+	ScalingBenchmark setBaselines(int baselines) {
+		this.baselines = baselines;
+		return this;
+	}
+
+	ScalingBenchmark setFilesPerChangeSet(int filesPerChangeSet) {
+		this.filesPerChangeSet = filesPerChangeSet;
+		return this;
+	}
+
+	ScalingBenchmark setMedianFileSize(int medianFileSize) {
+		this.medianFileSize = medianFileSize;
+		return this;
+	}
+
+	ScalingBenchmark setBinaryRatio(double binaryRatio) {
+		this.binaryRatio = binaryRatio;
+		return this;
+	}
+
+	ScalingBenchmark setJazzignoreChurn(double jazzignoreChurn) {
+		this.jazzignoreChurn = jazzignoreChurn;
+		return this;
+	}
+
+	ScalingBenchmark setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	ScalingBenchmark setUseSandbox(boolean useSandbox) {
+		this.useSandbox = useSandbox;
+		return this;
+	}
+
+	ScalingBenchmark setProperties(Properties properties) {
+		this.properties = properties;
+		return this;
+	}
+
+	/**
+	 * Migrates a synthetic history with the given number of change sets into a new repository.
+	 */
+	Result run(int changeSets) throws IOException {
+		File sandbox = new File(workDirectory, "scale-" + changeSets);
+		if (sandbox.exists() && !Files.delete(sandbox)) {
+			throw new IOException("Unable to clean " + sandbox);
+		}
+		if (!sandbox.mkdirs()) {
+			throw new IOException("Unable to create " + sandbox);
+		}
+		SyntheticHistory history = new SyntheticHistory().setSeed(seed).setComponents(components)
+				.setBaselines(baselines).setChangeSets(changeSets).setFilesPerChangeSet(filesPerChangeSet)
+				.setFileSizes(medianFileSize, 1.0, 16 * 1024 * 1024).setBinaryRatio(binaryRatio)
+				.setJazzignoreChurn(jazzignoreChurn);
+		System.gc();
+		resetPeakUsage();
+		Result result = new Result(changeSets);
+
+		long start = System.currentTimeMillis();
+		RtcTagList tagList = history.createTagList(new StreamOutput(new PrintStream(new NullOutputStream())));
+		tagList.sortByCreationDate();
+		tagList.pruneInactiveTags();
+		tagList.pruneExcludedTags(Pattern.compile(".*"));
+		result.planMillis = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		GitMigrator migrator = new GitMigrator(properties);
+		try {
+			migrator.init(sandbox);
+			for (RtcTag tag : tagList) {
+				for (RtcChangeSet changeSet : tag.getOrderedChangeSets()) {
+					List<FileChange> changes = history.nextChanges(changeSet);
+					if (useSandbox) {
+						ReplayDriver.apply(sandbox, changes);
+						migrator.commitChanges(changeSet);
+					} else {
+						migrator.commitChanges(changeSet, changes);
+					}
+					result.commits++;
+					if (migrator.needsIntermediateCleanup()) {
+						migrator.intermediateCleanup();
+					}
+				}
+				if (tag.doCreateTag()) {
+					migrator.createTag(tag);
+				}
+			}
+			result.migrateMillis = System.currentTimeMillis() - start;
+		} finally {
+			migrator.close();
+		}
+		result.heapPeakBytes = getPeakUsage();
+		result.repositoryBytes = size(new File(sandbox, ".git"));
+		return result;
+	}
+
+	String toCsv(Result result) {
+		return String.format(Locale.ROOT, "%d,%d,%d,%s,%d,%d,%.1f,%d,%d", result.changeSets, components, baselines,
+				useSandbox ? "sandbox" : "stream", result.planMillis, result.migrateMillis,
+				result.getCommitsPerSecond(), result.heapPeakBytes, result.repositoryBytes);
+	}
+
+	private static void resetPeakUsage() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakUsage() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static long size(File file) {
+		File[] children = file.listFiles();
+		if (children == null) {
+			return file.length();
+		}
+		long size = 0;
+		for (File child : children) {
+			size += size(child);
+		}
+		return size;
+	}
+
+	static final class Result {
+		final int changeSets;
+		long planMillis;
+		long migrateMillis;
+		int commits;
+		long heapPeakBytes;
+		long repositoryBytes;
+
+		Result(int changeSets) {
+			this.changeSets = changeSets;
+		}
+
+		double getCommitsPerSecond() {
+			return migrateMillis == 0 ? commits : commits * 1000d / migrateMillis;
+		}
+	}
+
+	private static final class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+			// discard
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		File workDirectory = new File(System.getProperty("java.io.tmpdir"), "rtc2git-scaling");
+		List<Integer> scalePoints = new ArrayList<Integer>();
+		List<String> options = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("--work-dir".equals(args[i])) {
+				workDirectory = new File(args[++i]);
+			} else if (args[i].startsWith("--")) {
+				options.add(args[i]);
+				if (!"--sandbox".equals(args[i])) {
+					options.add(args[++i]);
+				}
+			} else {
+				scalePoints.add(Integer.valueOf(args[i]));
+			}
+		}
+		if (scalePoints.isEmpty()) {
+			scalePoints.add(Integer.valueOf(10000));
+			scalePoints.add(Integer.valueOf(100000));
+			scalePoints.add(Integer.valueOf(1000000));
+		}
+		ScalingBenchmark benchmark = new ScalingBenchmark(workDirectory, System.out);
+		for (int i = 0; i < options.size(); i++) {
+			String option = options.get(i);
+			if ("--sandbox".equals(option)) {
+				benchmark.setUseSandbox(true);
+				continue;
+			}
+			String value = options.get(++i);
+			if ("--components".equals(option)) {
+				benchmark.setComponents(Integer.parseInt(value));
+			} else if ("--baselines".equals(option)) {
+				benchmark.setBaselines(Integer.parseInt(value));
+			} else if ("--files-per-changeset".equals(option)) {
+				benchmark.setFilesPerChangeSet(Integer.parseInt(value));
+			} else if ("--median-file-size".equals(option)) {
+				benchmark.setMedianFileSize(Integer.parseInt(value));
+			} else if ("--binary-ratio".equals(option)) {
+				benchmark.setBinaryRatio(Double.parseDouble(value));
+			} else if ("--jazzignore-churn".equals(option)) {
+				benchmark.setJazzignoreChurn(Double.parseDouble(value));
+			} else if ("--seed".equals(option)) {
+				benchmark.setSeed(Long.parseLong(value));
+			} else if ("--properties".equals(option)) {
+				Properties properties = new Properties();
+				FileInputStream in = new FileInputStream(value);
+				try {
+					properties.load(in);
+				} finally {
+					in.close();
+				}
+				benchmark.setProperties(properties);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + option);
+			}
+		}
+		if (!workDirectory.isDirectory() && !workDirectory.mkdirs()) {
+			throw new IOException("Unable to create " + workDirectory);
+		}
+		File csvFile = new File(workDirectory, "scaling.csv");
+		if (!csvFile.exists()) {
+			Files.writeLines(csvFile, Collections.singletonList(CSV_HEADER), Charset.forName("UTF-8"),
+					false);
+		}
+		benchmark.out.println(CSV_HEADER);
+		for (Integer changeSets : scalePoints) {
+			String line = benchmark.toCsv(benchmark.run(changeSets.intValue()));
+			benchmark.out.println(line);
+			Files.writeLines(csvFile, Collections.singletonList(line), Charset.forName("UTF-8"), true);
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package to.rtc.cli.migrate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a reproducible synthetic RTC history of a stream for benchmarks. The plan of baselines and change sets is
+ * fed into a {@link RtcTagList} the same way as {@link HistoryEntryVisitor} does it for a real stream. The file
+ * changes of every change set are generated on the fly while migrating, so even histories with millions of change
+ * sets need no memory beyond the plan and the set of existing files.
+ */
+final class SyntheticHistory {
+	private static final long START_DATE = 1262304000000L; // 2010-01-01
+	private static final long CHANGE_SET_INTERVAL = TimeUnit.MINUTES.toMillis(7);
+	private static final int DIRECTORIES_PER_COMPONENT = 100;
+	private static final int AUTHORS = 25;
+
+	private long seed = 4711;
+	private int components = 4;
+	private int baselines = 100;
+	private int changeSets = 10000;
+	private int filesPerChangeSet = 5;
+	private int medianFileSize = 4096;
+	private double fileSizeSigma = 1.0;
+	private int maxFileSize = 16 * 1024 * 1024;
+	private double binaryRatio = 0.05;
+	private double jazzignoreChurn = 0.01;
+
+	private Map<String, ComponentFiles> files;
+
+	SyntheticHistory setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	SyntheticHistory setComponents(int components) {
+		this.components = components;
+		return this;
+	}
+
+	SyntheticHistory setBaselines(int baselines) {
+		this.baselines = baselines;
+		return this;
+	}
+
+	SyntheticHistory setChangeSets(int changeSets) {
+		this.changeSets = changeSets;
+		return this;
+	}
+
+	/**
+	 * Sets the average number of files changed per change set, the actual number is uniformly distributed between one
+	 * and twice the average.
+	 */
+	SyntheticHistory setFilesPerChangeSet(int filesPerChangeSet) {
+		this.filesPerChangeSet = filesPerChangeSet;
+		return this;
+	}
+
+	/**
+	 * Sets the log-normal distribution of the file sizes by its median and the standard deviation of the logarithm.
+	 */
+	SyntheticHistory setFileSizes(int medianFileSize, double fileSizeSigma, int maxFileSize) {
+		this.medianFileSize = medianFileSize;
+		this.fileSizeSigma = fileSizeSigma;
+		this.maxFileSize = maxFileSize;
+		return this;
+	}
+
+	/**
+	 * Sets the ratio of binary files with random content, all other files contain text lines.
+	 */
+	SyntheticHistory setBinaryRatio(double binaryRatio) {
+		this.binaryRatio = binaryRatio;
+		return this;
+	}
+
+	/**
+	 * Sets the probability of a change set to modify a <code>.jazzignore</code> file.
+	 */
+	SyntheticHistory setJazzignoreChurn(double jazzignoreChurn) {
+		this.jazzignoreChurn = jazzignoreChurn;
+		return this;
+	}
+
+	int getChangeSets() {
+		return changeSets;
+	}
+
+	/**
+	 * Creates the plan of the migration like reading it from RTC: first the baselines of all components, then the
+	 * change sets of every component assigned to the baseline they belong to.
+	 */
+	RtcTagList createTagList(StreamOutput output) {
+		RtcTagList tagList = new RtcTagList(output);
+		long endDate = START_DATE + changeSets * CHANGE_SET_INTERVAL;
+		long baselineInterval = (endDate - START_DATE) / (baselines + 1);
+		for (int component = 0; component < components; component++) {
+			for (int baseline = 1; baseline <= baselines; baseline++) {
+				tagList.add(new RtcTag("_bl" + baseline).setCreationDate(START_DATE + baseline * baselineInterval)
+						.setOriginalName("Baseline " + baseline));
+			}
+		}
+		tagList.getHeadTag();
+
+		Random random = new Random(seed);
+		List<List<RtcChangeSet>> componentChangeSets = new ArrayList<List<RtcChangeSet>>();
+		for (int component = 0; component < components; component++) {
+			componentChangeSets.add(new ArrayList<RtcChangeSet>());
+		}
+		for (int i = 0; i < changeSets; i++) {
+			int author = random.nextInt(AUTHORS);
+			RtcChangeSet changeSet = new RtcChangeSet("_cs" + i).setText("Synthetic change " + i)
+					.setCreatorName("Author " + author).setCreatorEMail("author" + author + "@example.com")
+					.setCreationDate(START_DATE + i * CHANGE_SET_INTERVAL)
+					.setComponent(getComponentName(random.nextInt(components)));
+			if (random.nextBoolean()) {
+				changeSet.addWorkItem(1000 + random.nextInt(100000), "Synthetic work item");
+			}
+			componentChangeSets.get(getComponentIndex(changeSet.getComponent())).add(changeSet);
+		}
+		for (List<RtcChangeSet> changeSetsOfComponent : componentChangeSets) {
+			RtcTag tag = null;
+			for (RtcChangeSet changeSet : changeSetsOfComponent) {
+				int baseline = (int) ((changeSet.getCreationDate() - START_DATE) / baselineInterval) + 1;
+				tag = baseline > baselines ? tagList.getHeadTag() : tagList.getTag("_bl" + baseline, "Baseline "
+						+ baseline, START_DATE + baseline * baselineInterval);
+				tag.add(changeSet);
+			}
+			if (tag != null) {
+				tag.setContainLastChangeset(true);
+			}
+		}
+		files = new HashMap<String, ComponentFiles>();
+		return tagList;
+	}
+
+	/**
+	 * Generates the file changes of the given change set, based on the files created by the previous change sets of
+	 * the same component. The change sets must be passed in migration order.
+	 */
+	List<FileChange> nextChanges(RtcChangeSet changeSet) {
+		ComponentFiles componentFiles = files.get(changeSet.getComponent());
+		if (componentFiles == null) {
+			componentFiles = new ComponentFiles(changeSet.getComponent());
+			files.put(changeSet.getComponent(), componentFiles);
+		}
+		Random random = new Random(seed * 31 + changeSet.getUuid().hashCode());
+		int count = 1 + random.nextInt(2 * filesPerChangeSet - 1);
+		List<FileChange> changes = new ArrayList<FileChange>(count + 1);
+		for (int i = 0; i < count; i++) {
+			double operation = random.nextDouble();
+			int existing = componentFiles.count;
+			if (existing == 0 || operation < 0.2) {
+				int index = componentFiles.add();
+				changes.add(FileChange.put(componentFiles.getPath(index), createContent(index, random)));
+			} else {
+				int index = componentFiles.pickExisting(random);
+				if (operation < 0.85 || existing < 2) {
+					changes.add(FileChange.put(componentFiles.getPath(index), createContent(index, random)));
+				} else if (operation < 0.95) {
+					componentFiles.remove(index);
+					changes.add(FileChange.delete(componentFiles.getPath(index), false));
+				} else {
+					componentFiles.remove(index);
+					int target = componentFiles.add();
+					changes.add(FileChange.move(componentFiles.getPath(index), componentFiles.getPath(target), false));
+				}
+			}
+		}
+		if (random.nextDouble() < jazzignoreChurn) {
+			String jazzignore = "core.ignore = {*.class} {gen" + random.nextInt(10) + "} \n";
+			changes.add(FileChange.put(componentFiles.name + "/src/dir" + random.nextInt(DIRECTORIES_PER_COMPONENT)
+					+ "/.jazzignore", new SyntheticContent(jazzignore)));
+		}
+		return changes;
+	}
+
+	private FileContent createContent(int index, Random random) {
+		long size = Math.round(medianFileSize * Math.exp(fileSizeSigma * random.nextGaussian()));
+		return new SyntheticContent(Math.min(size, maxFileSize), random.nextLong(), isBinary(index));
+	}
+
+	private boolean isBinary(int index) {
+		return new Random(seed ^ index * 0x9E3779B97F4A7C15L).nextDouble() < binaryRatio;
+	}
+
+	private static String getComponentName(int component) {
+		return "component" + component;
+	}
+
+	private static int getComponentIndex(String component) {
+		return Integer.parseInt(component.substring("component".length()));
+	}
+
+	private final class ComponentFiles {
+		private final String name;
+		private final BitSet existing;
+		private int next;
+		private int count;
+
+		ComponentFiles(String name) {
+			this.name = name;
+			this.existing = new BitSet();
+		}
+
+		int add() {
+			existing.set(next);
+			count++;
+			return next++;
+		}
+
+		void remove(int index) {
+			existing.clear(index);
+			count--;
+		}
+
+		String getPath(int index) {
+			return name + "/src/dir" + index % DIRECTORIES_PER_COMPONENT + "/file" + index
+					+ (isBinary(index) ? ".bin" : ".txt");
+		}
+
+		int pickExisting(Random random) {
+			int index = existing.nextSetBit(random.nextInt(next));
+			return index < 0 ? existing.nextSetBit(0) : index;
+		}
+	}
+
+	/**
+	 * Content generated from a seed, either random bytes or text lines.
+	 */
+	static final class SyntheticContent implements FileContent {
+		private static final byte[] WORD_CHARACTERS = "etaoinshrdlucmfwypvbgkqjxz".getBytes();
+
+		private final long size;
+		private final long seed;
+		private final boolean binary;
+		private final byte[] content;
+
+		SyntheticContent(long size, long seed, boolean binary) {
+			this.size = size;
+			this.seed = seed;
+			this.binary = binary;
+			this.content = null;
+		}
+
+		SyntheticContent(String content) {
+			this.content = content.getBytes();
+			this.size = this.content.length;
+			this.seed = 0;
+			this.binary = false;
+		}
+
+		@Override
+		public long getSize() {
+			return size;
+		}
+
+		@Override
+		public boolean isExecutable() {
+			return false;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			if (content != null) {
+				out.write(content);
+				return;
+			}
+			Random random = new Random(seed);
+			byte[] buffer = new byte[8192];
+			long remaining = size;
+			while (remaining > 0) {
+				int length = (int) Math.min(buffer.length, remaining);
+				if (binary) {
+					random.nextBytes(buffer);
+				} else {
+					for (int i = 0; i < length; i++) {
+						int next = random.nextInt(32);
+						buffer[i] = next < WORD_CHARACTERS.length ? WORD_CHARACTERS[next] : next < 31 ? (byte) ' '
+								: (byte) '\n';
+					}
+				}
+				out.write(buffer, 0, length);
+				remaining -= length;
+			}
+		}
+	}
+}
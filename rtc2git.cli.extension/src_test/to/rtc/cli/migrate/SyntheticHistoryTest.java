@@ -0,0 +1,111 @@
+package to.rtc.cli.migrate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ScalingBenchmark.Result;
+
+/**
+ * Tests the {@link SyntheticHistory} generator and a small run of the {@link ScalingBenchmark}.
+ */
+public class SyntheticHistoryTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private StreamOutput output;
+
+	@Before
+	public void setUp() {
+		output = new StreamOutput(new PrintStream(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void testCreateTagList() {
+		RtcTagList tagList = new SyntheticHistory().setComponents(3).setBaselines(10).setChangeSets(500)
+				.createTagList(output);
+
+		assertEquals(11, tagList.size());
+		int changeSets = 0;
+		for (RtcTag tag : tagList) {
+			changeSets += tag.getOrderedChangeSets().size();
+		}
+		assertEquals(500, changeSets);
+	}
+
+	@Test
+	public void testNextChangesAreReproducible() throws IOException {
+		assertEquals(describeHistory(42), describeHistory(42));
+	}
+
+	@Test
+	public void testJazzignoreChurn() throws IOException {
+		SyntheticHistory history = new SyntheticHistory().setChangeSets(100).setJazzignoreChurn(1);
+		RtcTagList tagList = history.createTagList(output);
+		for (RtcTag tag : tagList) {
+			for (RtcChangeSet changeSet : tag.getOrderedChangeSets()) {
+				List<FileChange> changes = history.nextChanges(changeSet);
+				assertTrue(changes.get(changes.size() - 1).getPath().endsWith("/.jazzignore"));
+			}
+		}
+	}
+
+	@Test
+	public void testScalingBenchmark() throws Exception {
+		File workDirectory = tempFolder.getRoot();
+		ScalingBenchmark benchmark = new ScalingBenchmark(workDirectory, System.out).setBaselines(5)
+				.setMedianFileSize(100);
+
+		Result result = benchmark.run(50);
+
+		assertEquals(50, result.commits);
+		assertTrue(result.repositoryBytes > 0);
+		assertTrue(result.heapPeakBytes > 0);
+		assertTrue(benchmark.toCsv(result).startsWith("50,4,5,stream,"));
+		Git git = Git.open(new File(workDirectory, "scale-50"));
+		try {
+			int commits = 0;
+			for (@SuppressWarnings("unused")
+			RevCommit commit : git.log().call()) {
+				commits++;
+			}
+			assertEquals(51, commits);
+		} finally {
+			git.close();
+		}
+	}
+
+	private String describeHistory(long seed) throws IOException {
+		SyntheticHistory history = new SyntheticHistory().setSeed(seed).setChangeSets(200).setBinaryRatio(0.5);
+		List<String> description = new ArrayList<String>();
+		for (RtcTag tag : history.createTagList(output)) {
+			for (RtcChangeSet changeSet : tag.getOrderedChangeSets()) {
+				description.add(changeSet.getUuid() + " " + changeSet.getCreatorName());
+				for (FileChange change : history.nextChanges(changeSet)) {
+					if (change.getContent() != null) {
+						ByteArrayOutputStream content = new ByteArrayOutputStream();
+						change.getContent().writeTo(content);
+						assertEquals(change.getContent().getSize(), content.size());
+						description.add(change + " " + content.toString("ISO-8859-1").hashCode());
+					} else {
+						description.add(change.toString());
+					}
+				}
+			}
+		}
+		return description.toString();
+	}
+}
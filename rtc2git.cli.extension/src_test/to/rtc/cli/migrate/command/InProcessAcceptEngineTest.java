@@ -0,0 +1,60 @@
+package to.rtc.cli.migrate.command;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.junit.Test;
+
+import com.ibm.team.repository.common.TeamRepositoryException;
+import com.ibm.team.rtc.cli.infrastructure.internal.core.CLIClientException;
+import com.ibm.team.scm.client.IWorkspaceConnection;
+
+/**
+ * Tests the mapping of the outcome of an accept in {@link InProcessAcceptEngine} to the {@link AcceptResult}.
+ */
+@SuppressWarnings("restriction")
+public class InProcessAcceptEngineTest {
+
+	@Test
+	public void testToResult_finished() throws Exception {
+		assertEquals(AcceptResult.OK, InProcessAcceptEngine.toResult(AcceptResult.OK, null));
+		assertEquals(AcceptResult.CONFLICT, InProcessAcceptEngine.toResult(AcceptResult.CONFLICT, null));
+		assertEquals(AcceptResult.NWAY_CONFLICT, InProcessAcceptEngine.toResult(AcceptResult.NWAY_CONFLICT, null));
+	}
+
+	@Test
+	public void testToResult_canceled() throws Exception {
+		assertEquals(AcceptResult.OUT_OF_SYNC,
+				InProcessAcceptEngine.toResult(AcceptResult.OK, new OperationCanceledException()));
+	}
+
+	@Test(expected = CLIClientException.class)
+	public void testToResult_failed() throws Exception {
+		InProcessAcceptEngine.toResult(AcceptResult.CONFLICT, new TeamRepositoryException("failed"));
+	}
+
+	@Test
+	public void testNoMergeDilemmaHandler() {
+		InProcessAcceptEngine.NoMergeDilemmaHandler handler = new InProcessAcceptEngine.NoMergeDilemmaHandler();
+		assertEquals(AcceptResult.OK, handler.getDilemma());
+
+		assertEquals(InProcessAcceptEngine.NoMergeDilemmaHandler.CONTINUE,
+				handler.willCreateNewConflicts(Collections.<IWorkspaceConnection> emptyList()));
+		assertEquals(AcceptResult.CONFLICT, handler.getDilemma());
+
+		assertEquals(InProcessAcceptEngine.NoMergeDilemmaHandler.CONTINUE,
+				handler.nWayConflict(Collections.<IWorkspaceConnection> emptyList()));
+		handler.willCreateNewConflicts(Collections.<IWorkspaceConnection> emptyList());
+		assertEquals(AcceptResult.NWAY_CONFLICT, handler.getDilemma());
+	}
+
+	@Test
+	public void testFromCode() {
+		for (AcceptResult result : AcceptResult.values()) {
+			assertEquals(result, AcceptResult.fromCode(result.getStatus()));
+		}
+		assertEquals(AcceptResult.OK, AcceptResult.fromCode(-4711));
+	}
+}
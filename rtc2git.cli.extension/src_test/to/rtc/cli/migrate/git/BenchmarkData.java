@@ -0,0 +1,72 @@
+package to.rtc.cli.migrate.git;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import to.rtc.cli.migrate.ChangeSet;
+
+/**
+ * Test data shared by the benchmarks of the git migrator.
+ */
+final class BenchmarkData {
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private BenchmarkData() {
+	}
+
+	static ChangeSet createChangeSet(int workItemCount) {
+		final List<ChangeSet.WorkItem> workItems = new ArrayList<ChangeSet.WorkItem>();
+		for (int i = 0; i < workItemCount; i++) {
+			final long number = 4711 + i;
+			workItems.add(new ChangeSet.WorkItem() {
+				@Override
+				public long getNumber() {
+					return number;
+				}
+
+				@Override
+				public String getText() {
+					return "Work item " + number + " describing the defect in more detail";
+				}
+			});
+		}
+		return new ChangeSet() {
+			@Override
+			public String getComment() {
+				return "fixed:   the  NullPointerException when   loading the\tconfiguration";
+			}
+
+			@Override
+			public String getCreatorName() {
+				return "Heiri Mueller";
+			}
+
+			@Override
+			public String getEmailAddress() {
+				return "heiri.mueller@irgendwo.ch";
+			}
+
+			@Override
+			public long getCreationDate() {
+				return 1262304000000L;
+			}
+
+			@Override
+			public List<WorkItem> getWorkItems() {
+				return workItems;
+			}
+
+			@Override
+			public String getComponent() {
+				return "component";
+			}
+
+			@Override
+			public List<String> getUuids() {
+				return Collections.emptyList();
+			}
+		};
+	}
+}
@@ -0,0 +1,272 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.notes.Note;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+
+/**
+ * Tests the {@link CommitIndex} implementation.
+ */
+public class CommitIndexTest {
+	private static final ObjectId FIRST = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+	private static final ObjectId SECOND = ObjectId.fromString("fedcba9876543210fedcba9876543210fedcba98");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File gitDirectory;
+
+	@Before
+	public void setUp() throws IOException {
+		gitDirectory = tempFolder.newFolder(".git");
+	}
+
+	@Test
+	public void testOpen_empty() throws Exception {
+		CommitIndex index = CommitIndex.open(gitDirectory);
+
+		assertEquals(0, index.size());
+		assertNull(index.findCommit("_AAAAAAAAAAAAAAAAAAAAAA"));
+		assertTrue(index.findChangeSets(FIRST).isEmpty());
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		Map<String, ObjectId> entries = new HashMap<String, ObjectId>();
+		entries.put("_zzzzzzzzzzzzzzzzzzzzzz", FIRST);
+		entries.put("_AAAAAAAAAAAAAAAAAAAAAA", SECOND);
+		entries.put("_mmmmmmmmmmmmmmmmmmmmmm", FIRST);
+		CommitIndex.update(gitDirectory, entries);
+		CommitIndex.update(gitDirectory, Collections.singletonMap("_BBBBBBBBBBBBBBBBBBBBBB", SECOND));
+
+		CommitIndex index = CommitIndex.open(gitDirectory);
+		assertEquals(4, index.size());
+		assertEquals(FIRST, index.findCommit("_zzzzzzzzzzzzzzzzzzzzzz"));
+		assertEquals(SECOND, index.findCommit("_AAAAAAAAAAAAAAAAAAAAAA"));
+		assertEquals(FIRST, index.findCommit("_mmmmmmmmmmmmmmmmmmmmmm"));
+		assertEquals(SECOND, index.findCommit("_BBBBBBBBBBBBBBBBBBBBBB"));
+		assertNull(index.findCommit("_CCCCCCCCCCCCCCCCCCCCCC"));
+		assertNull(index.findCommit("_"));
+		assertEquals(Arrays.asList("_mmmmmmmmmmmmmmmmmmmmmm", "_zzzzzzzzzzzzzzzzzzzzzz"), index.findChangeSets(FIRST));
+		assertEquals(Arrays.asList("_AAAAAAAAAAAAAAAAAAAAAA", "_BBBBBBBBBBBBBBBBBBBBBB"), index.findChangeSets(SECOND));
+		assertTrue(index.findChangeSets(ObjectId.zeroId()).isEmpty());
+	}
+
+	@Test
+	public void testUpdate_compact() throws Exception {
+		Map<String, ObjectId> entries = new HashMap<String, ObjectId>();
+		for (int i = 0; i < 5000; i++) {
+			entries.put(String.format("_%022d", i), i % 2 == 0 ? FIRST : SECOND);
+		}
+		CommitIndex.update(gitDirectory, entries);
+		CommitIndex.update(gitDirectory, Collections.singletonMap(String.format("_%022d", 0), SECOND));
+
+		String[] files = new File(gitDirectory, "rtc2git").list();
+		Arrays.sort(files);
+		assertEquals(Arrays.asList("changesets-1.idx", "changesets-1.log"), Arrays.asList(files));
+		CommitIndex index = CommitIndex.open(gitDirectory);
+		assertEquals(5000, index.size());
+		assertEquals(SECOND, index.findCommit(String.format("_%022d", 0)));
+		assertEquals(FIRST, index.findCommit(String.format("_%022d", 4998)));
+		assertEquals(2499, index.findChangeSets(FIRST).size());
+		assertEquals(String.format("_%022d", 0), index.findChangeSets(SECOND).get(0));
+		assertEquals(2501, index.findChangeSets(SECOND).size());
+	}
+
+	@Test
+	public void testOpen_partialLog() throws Exception {
+		CommitIndex.update(gitDirectory, Collections.singletonMap("_AAAAAAAAAAAAAAAAAAAAAA", FIRST));
+		RandomAccessFile log = new RandomAccessFile(new File(gitDirectory, "rtc2git/changesets-0.log"), "rw");
+		log.setLength(log.length() + 10);
+		log.close();
+		CommitIndex index = CommitIndex.open(gitDirectory);
+		assertEquals(1, index.size());
+
+		index.add(Collections.singletonMap("_BBBBBBBBBBBBBBBBBBBBBB", SECOND));
+		index = CommitIndex.open(gitDirectory);
+		assertEquals(2, index.size());
+		assertEquals(FIRST, index.findCommit("_AAAAAAAAAAAAAAAAAAAAAA"));
+		assertEquals(SECOND, index.findCommit("_BBBBBBBBBBBBBBBBBBBBBB"));
+	}
+
+	@Test
+	public void testLookup() throws Exception {
+		CommitIndex.update(gitDirectory, Collections.singletonMap("_AAAAAAAAAAAAAAAAAAAAAA", FIRST));
+		CommitIndex index = CommitIndex.open(gitDirectory);
+
+		assertEquals(Arrays.asList("_AAAAAAAAAAAAAAAAAAAAAA " + FIRST.name()),
+				Lookup.lookup(index, "_AAAAAAAAAAAAAAAAAAAAAA"));
+		assertEquals(Arrays.asList("_AAAAAAAAAAAAAAAAAAAAAA " + FIRST.name()), Lookup.lookup(index, FIRST.name()));
+		assertTrue(Lookup.lookup(index, SECOND.name()).isEmpty());
+	}
+
+	@Test
+	public void testGitMigrator() throws Exception {
+		File basedir = tempFolder.newFolder("repository");
+		Properties props = new Properties();
+		props.setProperty("index.notes", "true");
+		GitMigrator migrator = new GitMigrator(props);
+		migrator.init(basedir);
+		migrator.commitChanges(changeSet("_AAAAAAAAAAAAAAAAAAAAAA"),
+				Arrays.asList(FileChange.put("a.txt", content("a"))));
+		ObjectId first = migrator.getHead();
+		migrator.commitChanges(changeSet("_BBBBBBBBBBBBBBBBBBBBBB", "_CCCCCCCCCCCCCCCCCCCCCC"),
+				Arrays.asList(FileChange.put("b.txt", content("b"))));
+		ObjectId second = migrator.getHead();
+		// nothing changed, so the change set is part of the last commit
+		migrator.commitChanges(changeSet("_DDDDDDDDDDDDDDDDDDDDDD"),
+				Arrays.asList(FileChange.put("b.txt", content("b"))));
+		migrator.close();
+
+		CommitIndex index = CommitIndex.open(new File(basedir, ".git"));
+		assertEquals(4, index.size());
+		assertEquals(first, index.findCommit("_AAAAAAAAAAAAAAAAAAAAAA"));
+		assertEquals(second, index.findCommit("_CCCCCCCCCCCCCCCCCCCCCC"));
+		assertEquals(Arrays.asList("_BBBBBBBBBBBBBBBBBBBBBB", "_CCCCCCCCCCCCCCCCCCCCCC", "_DDDDDDDDDDDDDDDDDDDDDD"),
+				index.findChangeSets(second));
+		Git git = Git.open(basedir);
+		try {
+			List<Note> notes = git.notesList().setNotesRef(CommitIndex.NOTES_REF).call();
+			assertEquals(2, notes.size());
+			RevWalk walk = new RevWalk(git.getRepository());
+			Note note = git.notesShow().setNotesRef(CommitIndex.NOTES_REF).setObjectId(walk.parseCommit(first))
+					.call();
+			walk.close();
+			assertEquals("RTC-Changeset: _AAAAAAAAAAAAAAAAAAAAAA\n",
+					new String(git.getRepository().open(note.getData()).getBytes(), Charset.forName("UTF-8")));
+		} finally {
+			git.close();
+		}
+	}
+
+	@Test
+	public void testGitMigrator_reuseOnBranch() throws Exception {
+		File basedir = tempFolder.newFolder("repository");
+		ObjectId[] first = migrateFirstBranch(basedir);
+		Properties props = new Properties();
+		props.setProperty("branch", "second");
+		GitMigrator migrator = new GitMigrator(props);
+		migrator.setBranchStart(first[0]);
+		migrator.init(basedir);
+		assertEquals(first[0], migrator.getHead());
+
+		assertTrue(migrator.reuse(changeSet("_AAAAAAAAAAAAAAAAAAAAAA")));
+		assertFalse(migrator.isReusePending());
+		assertEquals(first[1], migrator.getHead());
+		assertTrue(migrator.reuse(changeSet("_BBBBBBBBBBBBBBBBBBBBBB")));
+		assertTrue(migrator.isReusePending());
+		assertEquals(first[1], migrator.getHead());
+		assertTrue(migrator.reuse(changeSet("_CCCCCCCCCCCCCCCCCCCCCC")));
+		assertFalse(migrator.isReusePending());
+		assertEquals(first[2], migrator.getHead());
+		assertFalse(migrator.reuse(changeSet("_EEEEEEEEEEEEEEEEEEEEEE")));
+		migrator.commitChanges(changeSet("_EEEEEEEEEEEEEEEEEEEEEE"),
+				Arrays.asList(FileChange.put("e.txt", content("e"))));
+		ObjectId divergent = migrator.getHead();
+		migrator.close();
+
+		Git git = Git.open(basedir);
+		try {
+			assertEquals(first[2], git.getRepository().resolve("refs/heads/first"));
+			assertEquals(divergent, git.getRepository().resolve("refs/heads/second"));
+			assertEquals("refs/heads/second", git.getRepository().getFullBranch());
+			RevWalk walk = new RevWalk(git.getRepository());
+			assertEquals(first[2], walk.parseCommit(divergent).getParent(0));
+			walk.close();
+		} finally {
+			git.close();
+		}
+		assertEquals(divergent, CommitIndex.open(new File(basedir, ".git")).findCommit("_EEEEEEEEEEEEEEEEEEEEEE"));
+	}
+
+	@Test
+	public void testGitMigrator_abandonReuse() throws Exception {
+		File basedir = tempFolder.newFolder("repository");
+		ObjectId[] first = migrateFirstBranch(basedir);
+		Properties props = new Properties();
+		props.setProperty("branch", "second");
+		GitMigrator migrator = new GitMigrator(props);
+		migrator.setBranchStart(first[1]);
+		migrator.init(basedir);
+
+		assertTrue(migrator.reuse(changeSet("_BBBBBBBBBBBBBBBBBBBBBB")));
+		assertTrue(migrator.isReusePending());
+		// the commit also holds a change set the stream does not have
+		assertFalse(migrator.reuse(changeSet("_EEEEEEEEEEEEEEEEEEEEEE")));
+		migrator.abandonReuse();
+		assertFalse(migrator.isReusePending());
+		assertEquals(first[1], migrator.getHead());
+		// neither a commit not following HEAD is reused
+		assertFalse(migrator.reuse(changeSet("_AAAAAAAAAAAAAAAAAAAAAA")));
+		migrator.close();
+	}
+
+	/**
+	 * @return the initial commit and the commits of the change sets A and B with C, migrated to branch first
+	 */
+	private ObjectId[] migrateFirstBranch(File basedir) {
+		Properties props = new Properties();
+		props.setProperty("branch", "first");
+		GitMigrator migrator = new GitMigrator(props);
+		migrator.init(basedir);
+		ObjectId initial = migrator.getHead();
+		migrator.commitChanges(changeSet("_AAAAAAAAAAAAAAAAAAAAAA"),
+				Arrays.asList(FileChange.put("a.txt", content("a"))));
+		ObjectId first = migrator.getHead();
+		migrator.commitChanges(changeSet("_BBBBBBBBBBBBBBBBBBBBBB", "_CCCCCCCCCCCCCCCCCCCCCC"),
+				Arrays.asList(FileChange.put("b.txt", content("b"))));
+		ObjectId second = migrator.getHead();
+		migrator.close();
+		return new ObjectId[] { initial, first, second };
+	}
+
+	private FileContent content(String text) {
+		final byte[] bytes = text.getBytes(Charset.forName("UTF-8"));
+		return new FileContent() {
+			@Override
+			public long getSize() {
+				return bytes.length;
+			}
+
+			@Override
+			public boolean isExecutable() {
+				return false;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private static ChangeSet changeSet(String... uuids) {
+		return new TestChangeSet.Builder().setUuids(uuids).build();
+	}
+}
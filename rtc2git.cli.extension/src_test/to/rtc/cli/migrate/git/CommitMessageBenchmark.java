@@ -0,0 +1,128 @@
+package to.rtc.cli.migrate.git;
+
+import java.util.Formatter;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.util.CommitCommentTranslator;
+
+/**
+ * Measures the assembly of the commit message done for every commit, with the formats and replacements of a typical
+ * <code>migration.properties</code>. The compiled {@link CommitMessageRenderer} is compared with the previous
+ * rendering through {@link String#format(String, Object...)} and a {@link Formatter} per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class CommitMessageBenchmark {
+	@Param({ "0", "1", "10", "50" })
+	public int workItems;
+
+	private GitMigrator migrator;
+	private CommitMessageRenderer renderer;
+	private CommitCommentTranslator translator;
+	private Properties properties;
+	private ChangeSet changeSet;
+
+	@Setup
+	public void setUp() {
+		properties = new Properties();
+		properties.setProperty("rtc.workitem.number.format", "AP-%s");
+		properties.setProperty("rtc.workitem.number.delimiter", ", ");
+		properties.setProperty("rtc.workitem.text.format", "%1s: %2s");
+		properties.setProperty("commit.message.format", "%1s %2s%n%n%3s");
+		properties.setProperty("commit.message.regex.1", "^(?i)fix(ed)?:?\\s*(.*)$");
+		properties.setProperty("commit.message.replacement.1", "Fix $2");
+		properties.setProperty("commit.message.regex.2", "\\s+");
+		properties.setProperty("commit.message.replacement.2", " ");
+		migrator = new GitMigrator(properties);
+		translator = new CommitCommentTranslator(properties);
+		renderer = new CommitMessageRenderer(properties);
+		changeSet = BenchmarkData.createChangeSet(workItems);
+	}
+
+	@Benchmark
+	public String render() {
+		return renderer.render(changeSet);
+	}
+
+	@Benchmark
+	public String formatterPath() {
+		String format = properties.getProperty("commit.message.format", "%1s %2s");
+		return String.format(format, formatWorkItemNumbers(changeSet.getWorkItems()),
+				translator.translate(formatCommentText(changeSet)), formatWorkItemTexts(changeSet.getWorkItems()))
+				.trim();
+	}
+
+	@Benchmark
+	public String getWorkItemNumbers() {
+		return migrator.getWorkItemNumbers(changeSet.getWorkItems());
+	}
+
+	@Benchmark
+	public String getWorkItemTexts() {
+		return migrator.getWorkItemTexts(changeSet.getWorkItems());
+	}
+
+	@Benchmark
+	public String translate() {
+		return translator.translate(changeSet.getComment());
+	}
+
+	private String formatCommentText(ChangeSet changeSet) {
+		String workItemText = changeSet.getWorkItems().isEmpty() ? "" : changeSet.getWorkItems().get(0).getText();
+		boolean substitute = Boolean.valueOf(properties.getProperty("rtc.changeset.comment.substitute", "false"));
+		if (changeSet.getComment().isEmpty() && substitute) {
+			return workItemText;
+		}
+		return String.format(properties.getProperty("rtc.changeset.comment.format", "%1s"), changeSet.getComment(),
+				workItemText);
+	}
+
+	private String formatWorkItemNumbers(List<WorkItem> workItems) {
+		return formatWorkItems(workItems, properties.getProperty("rtc.workitem.number.format", "%1s"),
+				properties.getProperty("rtc.workitem.number.delimiter", " "));
+	}
+
+	private String formatWorkItemTexts(List<WorkItem> workItems) {
+		return formatWorkItems(workItems, properties.getProperty("rtc.workitem.text.format", "%1s %2s"),
+				properties.getProperty("rtc.workitem.text.delimiter", System.getProperty("line.separator")));
+	}
+
+	private static String formatWorkItems(List<WorkItem> workItems, String format, String delimiter) {
+		if (workItems.isEmpty()) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder();
+		Formatter formatter = new Formatter(sb);
+		try {
+			for (WorkItem workItem : workItems) {
+				if (sb.length() > 0) {
+					sb.append(delimiter);
+				}
+				formatter.format(format, String.valueOf(workItem.getNumber()), workItem.getText());
+			}
+		} finally {
+			formatter.close();
+		}
+		return sb.toString();
+	}
+}
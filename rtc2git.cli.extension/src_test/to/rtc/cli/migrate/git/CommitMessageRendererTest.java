@@ -0,0 +1,81 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import to.rtc.cli.migrate.git.CommitMessageRenderer.Template;
+
+/**
+ * Tests the {@link CommitMessageRenderer} implementation.
+ */
+public class CommitMessageRendererTest {
+	private Properties props;
+
+	@Before
+	public void setUp() {
+		props = new Properties();
+	}
+
+	@Test
+	public void testTemplateCompiled() {
+		assertTrue(Template.compile("%1s %2s").isCompiled());
+		assertTrue(Template.compile("%2$s: %1$-8s|%.3s%n%%").isCompiled());
+		assertFalse(Template.compile("%d").isCompiled());
+		assertFalse(Template.compile("%S").isCompiled());
+		assertFalse(Template.compile("%<s").isCompiled());
+		assertFalse(Template.compile("50%").isCompiled());
+	}
+
+	@Test
+	public void testTemplateSameAsFormatter() {
+		String[] formats = { "%1s %2s", "%1s", "%s", "RTC-%s", "%1s%n%n%2s%n%n%3s", "%2$s: %1$s", "[%-6s]", "[%6s]",
+				"%.2s-%3$s", "%3s %% %s", "no arguments", "", "%1$S", "%-3s|" };
+		String[][] arguments = { { "4711", "the comment", "text" }, { "", "", "" }, { "a%b", "$1 \\n", null } };
+		for (String format : formats) {
+			for (String[] args : arguments) {
+				assertEquals(format, String.format(format, (Object[]) args),
+						Template.compile(format).appendTo(new StringBuilder(), args).toString());
+			}
+		}
+	}
+
+	@Test(expected = java.util.MissingFormatArgumentException.class)
+	public void testTemplateMissingArgument() {
+		Template.compile("%1s %2s %3s").appendTo(new StringBuilder(), new String[] { "a", "b", "c" }, 2);
+	}
+
+	@Test
+	public void testRender() {
+		props.setProperty("rtc.workitem.number.format", "RTC-%s");
+		props.setProperty("rtc.workitem.number.delimiter", ", ");
+		props.setProperty("rtc.workitem.text.format", "%1s: %2s");
+		props.setProperty("rtc.workitem.text.delimiter", "\n");
+		props.setProperty("commit.message.format", "%1s %2s%n%n%3s");
+		props.setProperty("commit.message.regex.1", "^B([0-9]+): (.+)$");
+		props.setProperty("commit.message.replacement.1", "BUG-$1 $2");
+		CommitMessageRenderer renderer = new CommitMessageRenderer(props);
+		String lf = System.getProperty("line.separator");
+
+		assertEquals("RTC-4711, RTC-4712 BUG-1 gaga" + lf + lf + "4711: first\n4712: second",
+				renderer.render(new TestChangeSet.Builder().setComment("B1: gaga").addWorkItem(4711, "first")
+						.addWorkItem(4712, "second").build()));
+		assertEquals("BUG-2 gugus", renderer.render(new TestChangeSet.Builder().setComment("B2: gugus").build()));
+	}
+
+	@Test
+	public void testRender_substituteComment() {
+		props.setProperty("rtc.changeset.comment.substitute", "true");
+		props.setProperty("rtc.changeset.comment.format", "%1$s (%2$s)");
+		CommitMessageRenderer renderer = new CommitMessageRenderer(props);
+
+		assertEquals("4711 first", renderer.render(new TestChangeSet.Builder().setComment("").addWorkItem(4711, "first").build()));
+		assertEquals("4711 comment (first)", renderer.render(new TestChangeSet.Builder().addWorkItem(4711, "first").build()));
+		assertEquals("comment ()", renderer.render(new TestChangeSet.Builder().build()));
+	}
+}
@@ -0,0 +1,260 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.Tag;
+import to.rtc.cli.migrate.metrics.MetricsRegistry;
+
+/**
+ * Tests the {@link ComponentFanOutMigrator} implementation.
+ */
+public class ComponentFanOutMigratorTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Charset cs;
+	private Properties props;
+	private ComponentFanOutMigrator migrator;
+	private List<Git> gits;
+	private File basedir;
+
+	@Before
+	public void setUp() {
+		cs = Charset.forName("UTF-8");
+		props = new Properties();
+		props.setProperty("component.fanout", "true");
+		gits = new ArrayList<Git>();
+		basedir = tempFolder.getRoot();
+	}
+
+	@After
+	public void tearDown() {
+		for (Git git : gits) {
+			git.close();
+		}
+	}
+
+	@Test
+	public void testIsEnabled() {
+		assertTrue(ComponentFanOutMigrator.isEnabled(props));
+		assertFalse(ComponentFanOutMigrator.isEnabled(new Properties()));
+	}
+
+	@Test
+	public void testGetRepositoryName() {
+		props.setProperty("component.repository.Component B", "shared");
+		migrator = new ComponentFanOutMigrator(props);
+
+		assertEquals("Component_A", migrator.getRepositoryName("Component A"));
+		assertEquals("shared", migrator.getRepositoryName("Component B"));
+		assertEquals("_.hidden", migrator.getRepositoryName(".hidden"));
+		assertEquals(ComponentFanOutMigrator.DEFAULT_REPOSITORY, migrator.getRepositoryName(null));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCommitChanges_needsStreaming() {
+		migrator = new ComponentFanOutMigrator(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(changeSet("a", "comment"));
+	}
+
+	@Test
+	public void testCommitChanges() throws Exception {
+		props.setProperty("component.repository.c", "b");
+		migrator = new ComponentFanOutMigrator(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(changeSet("a", "first"),
+				Arrays.asList(FileChange.put("projectA/file.txt", content("a1"))));
+		migrator.commitChanges(changeSet("b", "second"),
+				Arrays.asList(FileChange.put("projectB/file.txt", content("b1"))));
+		migrator.commitChanges(changeSet("c", "third"),
+				Arrays.asList(FileChange.put("projectC/file.txt", content("c1"))));
+		migrator.commitChanges(changeSet("a", "fourth"),
+				Arrays.asList(FileChange.put("projectA/file.txt", content("a2"))));
+		migrator.createTag(new TestTag("baseline 1"));
+		migrator.close();
+
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(migrator.getRepositoryNames()));
+		Git a = open(new File(basedir, "a"));
+		RevCommit head = a.log().call().iterator().next();
+		assertEquals("fourth", head.getFullMessage());
+		assertEquals("a2", read(a, head, "projectA/file.txt"));
+		assertNull(read(a, head, "projectB/file.txt"));
+		assertEquals(1, a.tagList().call().size());
+		Git b = open(new File(basedir, "b"));
+		head = b.log().call().iterator().next();
+		assertEquals("third", head.getFullMessage());
+		assertEquals("b1", read(b, head, "projectB/file.txt"));
+		assertEquals("c1", read(b, head, "projectC/file.txt"));
+		assertEquals("refs/tags/baseline_1", b.tagList().call().get(0).getName());
+		assertFalse(new File(basedir, ".git").exists());
+	}
+
+	@Test
+	public void testCommitChanges_superproject() throws Exception {
+		props.setProperty("component.superproject", "true");
+		migrator = new ComponentFanOutMigrator(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(changeSet("a", "first"),
+				Arrays.asList(FileChange.put("projectA/file.txt", content("a1"))));
+		migrator.commitChanges(changeSet("b", "second"),
+				Arrays.asList(FileChange.put("projectB/file.txt", content("b1"))));
+		migrator.commitChanges(changeSet("a", "unchanged"),
+				Arrays.asList(FileChange.put("projectA/file.txt", content("a1"))));
+		migrator.commitChanges(changeSet("a", "third"),
+				Arrays.asList(FileChange.put("projectA/file.txt", content("a2"))));
+		migrator.createTag(new TestTag("baseline"));
+		migrator.close();
+
+		Git superproject = open(basedir);
+		List<String> messages = new ArrayList<String>();
+		for (RevCommit commit : superproject.log().call()) {
+			messages.add(commit.getFullMessage());
+		}
+		Collections.reverse(messages);
+		assertEquals(Arrays.asList("first", "second", "third"), messages);
+		RevCommit head = superproject.log().call().iterator().next();
+		ObjectId headOfA = open(new File(basedir, "a")).getRepository().resolve("HEAD");
+		ObjectId headOfB = open(new File(basedir, "b")).getRepository().resolve("HEAD");
+		assertEquals(headOfA, gitlink(superproject, head, "a"));
+		assertEquals(headOfB, gitlink(superproject, head, "b"));
+		assertEquals("[submodule \"a\"]\n\tpath = a\n\turl = ./a\n[submodule \"b\"]\n\tpath = b\n\turl = ./b\n",
+				read(superproject, head, ".gitmodules"));
+		assertEquals(1, superproject.tagList().call().size());
+	}
+
+	@Test
+	public void testInChangeSet() throws Exception {
+		final MetricsRegistry metrics = MetricsRegistry.getInstance();
+		final String[] context = new String[2];
+		metrics.enterChangeSet("_AAAAAAAAAAAAAAAAAAAAAA", "a");
+		Callable<ObjectId> task = ComponentFanOutMigrator.inChangeSet(new Callable<ObjectId>() {
+			@Override
+			public ObjectId call() {
+				context[0] = metrics.getChangeSetUuids();
+				context[1] = metrics.getComponent();
+				return null;
+			}
+		});
+		metrics.leaveChangeSet();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(task).get();
+			assertEquals("_AAAAAAAAAAAAAAAAAAAAAA", context[0]);
+			assertEquals("a", context[1]);
+			// the writer thread leaves the change set again
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					context[0] = metrics.getChangeSetUuids();
+				}
+			}).get();
+			assertNull(context[0]);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Git open(File directory) throws IOException {
+		Git git = Git.open(directory);
+		gits.add(git);
+		return git;
+	}
+
+	private String read(Git git, RevCommit commit, String path) throws Exception {
+		TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree());
+		if (treeWalk == null) {
+			return null;
+		}
+		try {
+			return new String(git.getRepository().open(treeWalk.getObjectId(0)).getBytes(), cs);
+		} finally {
+			treeWalk.close();
+		}
+	}
+
+	private ObjectId gitlink(Git git, RevCommit commit, String path) throws Exception {
+		TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree());
+		try {
+			assertEquals(FileMode.GITLINK, treeWalk.getFileMode(0));
+			return treeWalk.getObjectId(0);
+		} finally {
+			treeWalk.close();
+		}
+	}
+
+	private static ChangeSet changeSet(String component, String comment) {
+		return new TestChangeSet.Builder().setComponent(component).setComment(comment).build();
+	}
+
+	private FileContent content(String text) {
+		final byte[] bytes = text.getBytes(cs);
+		return new FileContent() {
+			@Override
+			public long getSize() {
+				return bytes.length;
+			}
+
+			@Override
+			public boolean isExecutable() {
+				return false;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private static final class TestTag implements Tag {
+		private final String name;
+
+		TestTag(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getCreationDate() {
+			return 0;
+		}
+	}
+}
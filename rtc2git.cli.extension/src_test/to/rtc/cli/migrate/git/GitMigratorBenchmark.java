@@ -0,0 +1,137 @@
+package to.rtc.cli.migrate.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Measures {@link GitMigrator#commitChanges(ChangeSet)} on a prepared sandbox and
+ * {@link GitMigrator#commitChanges(ChangeSet, List)} with streamed contents, for a varying number of modified files
+ * within a tree of existing files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class GitMigratorBenchmark {
+	private static final int EXISTING_FILES = 2000;
+
+	@Param({ "1", "10", "100" })
+	public int filesPerCommit;
+
+	@Param({ "sandbox", "stream" })
+	public String mode;
+
+	private File sandbox;
+	private GitMigrator migrator;
+	private List<FileChange> changes;
+	private ChangeSet changeSet;
+	private int round;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		sandbox = File.createTempFile("rtc2git-benchmark", "");
+		if (!sandbox.delete() || !sandbox.mkdirs()) {
+			throw new IOException("Unable to create " + sandbox);
+		}
+		for (int i = 0; i < EXISTING_FILES; i++) {
+			Files.writeLines(getFile(i), Collections.singletonList(getContent(i, 0)), BenchmarkData.CHARSET, false);
+		}
+		migrator = new GitMigrator(new Properties());
+		migrator.init(sandbox);
+		changeSet = BenchmarkData.createChangeSet(1);
+	}
+
+	@Setup(Level.Invocation)
+	public void prepareChanges() throws IOException {
+		round++;
+		changes = new ArrayList<FileChange>(filesPerCommit);
+		for (int i = 0; i < filesPerCommit; i++) {
+			int file = (round * filesPerCommit + i) % EXISTING_FILES;
+			String content = getContent(file, round);
+			if ("stream".equals(mode)) {
+				changes.add(FileChange.put(getPath(file), new StringContent(content)));
+			} else {
+				Files.writeLines(getFile(file), Collections.singletonList(content), BenchmarkData.CHARSET, false);
+			}
+		}
+	}
+
+	@Benchmark
+	public void commitChanges() {
+		if ("stream".equals(mode)) {
+			migrator.commitChanges(changeSet, changes);
+		} else {
+			migrator.commitChanges(changeSet);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		migrator.close();
+		Files.delete(sandbox);
+	}
+
+	private File getFile(int file) {
+		File result = new File(sandbox, getPath(file));
+		result.getParentFile().mkdirs();
+		return result;
+	}
+
+	private static String getPath(int file) {
+		return "component/src/dir" + file % 50 + "/File" + file + ".java";
+	}
+
+	private static String getContent(int file, int round) {
+		return "class File" + file + " { int round = " + round + "; }";
+	}
+
+	private static final class StringContent implements FileContent {
+		private final byte[] bytes;
+
+		StringContent(String content) {
+			bytes = (content + "\n").getBytes(BenchmarkData.CHARSET);
+		}
+
+		@Override
+		public long getSize() {
+			return bytes.length;
+		}
+
+		@Override
+		public boolean isExecutable() {
+			return false;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(bytes);
+		}
+	}
+}
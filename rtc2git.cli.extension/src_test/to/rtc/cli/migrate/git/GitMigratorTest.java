@@ -6,6 +6,7 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,6 +25,7 @@ import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,6 +34,8 @@ import org.junit.rules.TemporaryFolder;
 
 import to.rtc.cli.migrate.ChangeSet;
 import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
 import to.rtc.cli.migrate.Tag;
 import to.rtc.cli.migrate.util.Files;
 
@@ -204,7 +208,7 @@ public class GitMigratorTest {
 		File testFile = new File(basedir, "somefile");
 		Files.writeLines(testFile, Collections.singletonList("somevalue"), cs, false);
 
-		migrator.commitChanges(TestChangeSet.INSTANCE);
+		assertEquals(1, migrator.commitChanges(TestChangeSet.INSTANCE));
 
 		checkGit("Heiri Mueller", "heiri.mueller@irgendwo.ch", "4711 the checkin comment");
 		checkExactLines(testFile, Collections.singletonList("somevalue"));
@@ -365,6 +369,234 @@ public class GitMigratorTest {
 				"/subdir/subsub/some.dLL", "/some.zip", "/subdir/some.jar"));
 	}
 
+	@Test
+	public void testIgnoredFilesBySizeAndPathAddedOnceToRootGitIgnore() throws Exception {
+		props.setProperty("ignore.file.size", "1k");
+		props.setProperty("ignore.file.paths", "**/generated/*.java");
+		migrator.initialize(props);
+		migrator.init(basedir);
+
+		Files.writeLines(new File(basedir, "big.txt"), Collections.singletonList(new String(new char[2000])), cs,
+				false);
+		create(new File(basedir, "small.txt"));
+		create(new File(basedir, "subdir/generated/Some.java"));
+		migrator.commitChanges(TestChangeSet.INSTANCE);
+		// a tracked file growing beyond the limit is ignored from then on, but listed only once
+		for (int i = 1; i <= 2; i++) {
+			Files.writeLines(new File(basedir, "small.txt"), Collections.singletonList(new String(new char[2000 * i])),
+					cs, false);
+			migrator.commitChanges(TestChangeSet.INSTANCE);
+		}
+
+		checkAllLines(new File(basedir, ".gitignore"), Arrays.asList("/.jazz5", "/.jazzShed", "/.metadata",
+				"/big.txt", "/subdir/generated/Some.java", "/small.txt"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges() throws Exception {
+		create(new File(basedir, "old/existing.txt"));
+		migrator.init(basedir);
+
+		assertEquals(3, migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(
+				FileChange.move("old", "new", true), FileChange.put("new/added.txt", content("added")),
+				FileChange.put("other.txt", content("other")))));
+		assertEquals(1, migrator.commitChanges(TestChangeSet.NO_WORKITEM_INSTANCE,
+				Arrays.asList(FileChange.delete("other.txt", false))));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("the checkin comment", head.getFullMessage());
+		assertEquals("", readHead(head, "new/existing.txt"));
+		assertEquals("added", readHead(head, "new/added.txt"));
+		assertNull(readHead(head, "old/existing.txt"));
+		assertNull(readHead(head, "other.txt"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_jazzignoreAndIgnoredExtensions() throws Exception {
+		props.setProperty("ignore.file.extensions", ".zip");
+		migrator.initialize(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(
+				FileChange.put("subdir/.jazzignore", content("core.ignore = {*.suo}\ncore.ignore.recursive = {*.class}")),
+				FileChange.put("subdir/some.zip", content("zip"))));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("/*.suo\n*.class\n", readHead(head, "subdir/.gitignore"));
+		assertNull(readHead(head, "subdir/some.zip"));
+		assertTrue(readHead(head, ".gitignore").contains("/subdir/some.zip\n"));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.delete("subdir/.jazzignore", false)));
+
+		head = git.log().call().iterator().next();
+		assertNull(readHead(head, "subdir/.gitignore"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_ignoredByJazzignore() throws Exception {
+		migrator.init(basedir);
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(
+				FileChange.put("subdir/.jazzignore", content("core.ignore.recursive = {*.class}")),
+				FileChange.put("subdir/tracked.class", content("tracked"))));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.put("subdir/tracked.class",
+				content("changed")), FileChange.put("subdir/deep/new.class", content("new")),
+				FileChange.put("subdir/deep/new.java", content("new"))));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("changed", readHead(head, "subdir/tracked.class"));
+		assertNull(readHead(head, "subdir/deep/new.class"));
+		assertEquals("new", readHead(head, "subdir/deep/new.java"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_unignoredByJazzignore() throws Exception {
+		migrator.init(basedir);
+		migrator.commitChanges(TestChangeSet.INSTANCE,
+				Arrays.asList(FileChange.put("subdir/.jazzignore", content("core.ignore.recursive = {*.class}"))));
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.put("subdir/a.class", content("a")),
+				FileChange.put("subdir/b.class", content("b"))));
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.move("subdir", "moved", true)));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertNull(readHead(head, "moved/a.class"));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.delete("moved/b.class", false),
+				FileChange.put("moved/.jazzignore", content("core.ignore.recursive = {*.suo}"))));
+
+		head = git.log().call().iterator().next();
+		assertEquals("a", readHead(head, "moved/a.class"));
+		assertNull(readHead(head, "moved/b.class"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_swap() throws Exception {
+		migrator.init(basedir);
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.put("a.txt", content("a")),
+				FileChange.put("b.txt", content("b")), FileChange.put("x/c.txt", content("c")),
+				FileChange.put("x/d.txt", content("d")), FileChange.put("y/e.txt", content("e"))));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.move("a.txt", "b.txt", false),
+				FileChange.move("b.txt", "a.txt", false), FileChange.move("x/c.txt", "y/f.txt", false),
+				FileChange.move("x", "y", true), FileChange.move("y", "x", true)));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("b", readHead(head, "a.txt"));
+		assertEquals("a", readHead(head, "b.txt"));
+		assertEquals("c", readHead(head, "y/f.txt"));
+		assertEquals("d", readHead(head, "y/d.txt"));
+		assertEquals("e", readHead(head, "x/e.txt"));
+		assertNull(readHead(head, "x/d.txt"));
+		assertNull(readHead(head, "y/e.txt"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_coalescedMoves() throws Exception {
+		migrator.init(basedir);
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.put("a.txt", content("a"))));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.move("a.txt", "b.txt", false),
+				FileChange.move("b.txt", "c.txt", false), FileChange.move("c.txt", "a.txt", false),
+				FileChange.move("a.txt", "d.txt", false)));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("a", readHead(head, "d.txt"));
+		assertNull(readHead(head, "a.txt"));
+		assertNull(readHead(head, "b.txt"));
+		assertNull(readHead(head, "c.txt"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_excludedPaths() throws Exception {
+		props.setProperty("path.exclude", "/component/generated/; *.iso");
+		migrator.initialize(props);
+		migrator.init(basedir);
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(FileChange.put("component/src/a.txt", content("a")),
+				FileChange.put("component/generated/b.txt", content("b")), FileChange.put("image.iso", content("iso"))));
+		git = Git.open(basedir);
+		RevCommit first = git.log().call().iterator().next();
+
+		migrator.commitChanges(TestChangeSet.INSTANCE,
+				Arrays.asList(FileChange.put("component/generated/b.txt", content("changed"))));
+		migrator.commitChanges(TestChangeSet.INSTANCE,
+				Arrays.asList(FileChange.move("component/src/a.txt", "component/generated/a.txt", false)));
+
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals(first, head.getParent(0));
+		assertEquals("a", readHead(first, "component/src/a.txt"));
+		assertNull(readHead(first, "component/generated/b.txt"));
+		assertNull(readHead(first, "image.iso"));
+		assertNull(readHead(head, "component/src/a.txt"));
+		assertNull(readHead(head, "component/generated/a.txt"));
+		checkAllLines(new File(basedir, ".git/info/exclude"), Arrays.asList("/component/generated/", "*.iso"));
+	}
+
+	@Test
+	public void testCommitStreamedChanges_rootAndPrefix() throws Exception {
+		props.setProperty("path.root", "component/project");
+		props.setProperty("path.prefix.component", "legacy");
+		migrator.initialize(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(TestChangeSet.INSTANCE, Arrays.asList(
+				FileChange.put("component/project/src/a.txt", content("a")),
+				FileChange.put("component/other/b.txt", content("b")), FileChange.put("component/c.txt", content("c"))));
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("a", readHead(head, "legacy/src/a.txt"));
+		assertNull(readHead(head, "legacy/other/b.txt"));
+		assertNull(readHead(head, "component/other/b.txt"));
+		assertNull(readHead(head, "legacy/c.txt"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCommitChanges_rootNeedsStreaming() throws Exception {
+		props.setProperty("path.root", "component/project");
+		migrator.initialize(props);
+		migrator.init(basedir);
+
+		migrator.commitChanges(TestChangeSet.INSTANCE);
+	}
+
+	@Test
+	public void testCommitChanges_excludedPathsNotAdded() throws Exception {
+		props.setProperty("path.include", "/component/");
+		migrator.initialize(props);
+		migrator.init(basedir);
+		create(new File(basedir, "component/a.txt"));
+		create(new File(basedir, "other/b.txt"));
+
+		migrator.commitChanges(TestChangeSet.INSTANCE);
+
+		git = Git.open(basedir);
+		RevCommit head = git.log().call().iterator().next();
+		assertEquals("", readHead(head, "component/a.txt"));
+		assertNull(readHead(head, "other/b.txt"));
+	}
+
+	@Test
+	public void testGitignoreNotRewrittenIfTranslationUnchanged() throws Exception {
+		migrator.init(basedir);
+		File jazzignore = new File(basedir, ".jazzignore");
+		File gitignore = new File(basedir, ".gitignore");
+		Files.writeLines(jazzignore, Arrays.asList("core.ignore = {*.suo}"), cs, false);
+		migrator.commitChanges(TestChangeSet.INSTANCE);
+		assertTrue(gitignore.setLastModified(1000));
+
+		Files.writeLines(jazzignore, Arrays.asList("# comment only", "core.ignore = {*.suo}"), cs, false);
+		migrator.commitChanges(TestChangeSet.INSTANCE);
+
+		assertEquals(1000, gitignore.lastModified());
+		checkExactLines(gitignore, Arrays.asList("/*.suo"));
+	}
+
 	@Test
 	public void testCreateTagNameReplacesWhiteSpacesWithUnderscore() {
 		String tagname = migrator.createTagName("tag with whitespaces");
@@ -470,6 +702,38 @@ public class GitMigratorTest {
 		file.createNewFile();
 	}
 
+	private FileContent content(String text) {
+		final byte[] bytes = text.getBytes(cs);
+		return new FileContent() {
+			@Override
+			public long getSize() {
+				return bytes.length;
+			}
+
+			@Override
+			public boolean isExecutable() {
+				return false;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private String readHead(RevCommit commit, String path) throws Exception {
+		TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree());
+		if (treeWalk == null) {
+			return null;
+		}
+		try {
+			return new String(git.getRepository().open(treeWalk.getObjectId(0)).getBytes(), cs);
+		} finally {
+			treeWalk.close();
+		}
+	}
+
 	private void checkExactLines(File fileName, List<String> expected) throws Exception {
 		assertEquals(expected, Files.readLines(fileName, cs));
 	}
@@ -527,6 +791,16 @@ public class GitMigratorTest {
 			items.add(TestWorkItem.INSTANCE1);
 			return items;
 		}
+
+		@Override
+		public String getComponent() {
+			return "component";
+		}
+
+		@Override
+		public List<String> getUuids() {
+			return Collections.emptyList();
+		}
 	}
 
 	private enum TestWorkItem implements WorkItem {
@@ -0,0 +1,144 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.FileState;
+import to.rtc.cli.migrate.Tag;
+
+/**
+ * Tests the {@link GitTrees} implementation.
+ */
+public class GitTreesTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Charset cs;
+	private File sandbox;
+	private Properties props;
+
+	@Before
+	public void setUp() throws IOException {
+		cs = Charset.forName("UTF-8");
+		sandbox = tempFolder.newFolder("sandbox");
+		props = new Properties();
+		props.setProperty("ignore.file.extensions", ".bin");
+
+		GitMigrator migrator = new GitMigrator(props);
+		migrator.init(sandbox);
+		migrator.commitChanges(changeSet("first"), Arrays.asList(
+				FileChange.put("a.txt", content("1", false)), FileChange.put("bin/run.sh", content("echo", true))));
+		migrator.createTag(new TestTag("baseline 1"));
+		migrator.commitChanges(changeSet("second"),
+				Arrays.asList(FileChange.put("a.txt", content("22", false))));
+		migrator.createTag(new TestTag("baseline 2"));
+		migrator.close();
+	}
+
+	@Test
+	public void testListFiles() throws Exception {
+		GitTrees trees = new GitTrees(sandbox, new GitMigrator(props), null);
+		try {
+			Map<String, FileState> expected = new HashMap<String, FileState>();
+			expected.put("a.txt", new FileState(1, false));
+			expected.put("bin/run.sh", new FileState(4, true));
+			assertEquals(expected, trees.listFiles(new TestTag("baseline 1")));
+			expected.put("a.txt", new FileState(2, false));
+			assertEquals(expected, trees.listFiles(new TestTag("baseline 2")));
+			assertNull(trees.listFiles(new TestTag("baseline 3")));
+		} finally {
+			trees.close();
+		}
+	}
+
+	@Test
+	public void testIsMigrated() throws Exception {
+		GitTrees trees = new GitTrees(sandbox, new GitMigrator(props), null);
+		try {
+			assertTrue(trees.isMigrated("a.txt", new FileState(1, false)));
+			assertFalse(trees.isMigrated("lib/some.bin", new FileState(1, false)));
+			assertFalse(trees.isMigrated("sub/.gitignore", new FileState(1, false)));
+		} finally {
+			trees.close();
+		}
+	}
+
+	@Test
+	public void testListFiles_branchTag() throws Exception {
+		Git git = Git.open(sandbox);
+		try {
+			git.tag().setName("feature/baseline_1").call();
+		} finally {
+			git.close();
+		}
+		GitTrees trees = new GitTrees(sandbox, new GitMigrator(props), "feature");
+		try {
+			assertEquals(new FileState(2, false), trees.listFiles(new TestTag("baseline 1")).get("a.txt"));
+			assertEquals(new FileState(2, false), trees.listFiles(new TestTag("baseline 2")).get("a.txt"));
+		} finally {
+			trees.close();
+		}
+	}
+
+	private static ChangeSet changeSet(String comment) {
+		return new TestChangeSet.Builder().setComment(comment).setUuids("_" + comment).build();
+	}
+
+	private FileContent content(String text, final boolean executable) {
+		final byte[] bytes = text.getBytes(cs);
+		return new FileContent() {
+			@Override
+			public long getSize() {
+				return bytes.length;
+			}
+
+			@Override
+			public boolean isExecutable() {
+				return executable;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private static final class TestTag implements Tag {
+		private final String name;
+
+		TestTag(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getCreationDate() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.Tag;
+
+/**
+ * Tests the {@link HistoryStitcher} implementation.
+ */
+public class HistoryStitcherTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Charset cs;
+	private File target;
+	private File shard;
+
+	@Before
+	public void setUp() throws IOException {
+		cs = Charset.forName("UTF-8");
+		target = tempFolder.newFolder("target");
+		shard = tempFolder.newFolder("target.shard-1");
+
+		GitMigrator migrator = new GitMigrator(new Properties());
+		migrator.init(target);
+		migrator.commitChanges(changeSet("first"), Arrays.asList(FileChange.put("a.txt", content("1"))));
+		migrator.commitChanges(changeSet("second"), Arrays.asList(FileChange.put("a.txt", content("2"))));
+		migrator.createTag(new TestTag("baseline 1"));
+		migrator.close();
+	}
+
+	@Test
+	public void testStitch() throws Exception {
+		GitMigrator migrator = new GitMigrator(new Properties());
+		migrator.init(shard);
+		migrator.commitChanges(changeSet("snapshot"), Arrays.asList(FileChange.put("a.txt", content("2"))));
+		migrator.commitChanges(changeSet("third"),
+				Arrays.asList(FileChange.put("a.txt", content("3")), FileChange.put("b.txt", content("b"))));
+		migrator.commitChanges(changeSet("fourth"), Arrays.asList(FileChange.delete("b.txt", false)));
+		migrator.createTag(new TestTag("baseline 2"));
+		migrator.close();
+
+		HistoryStitcher stitcher = new HistoryStitcher(target);
+		assertEquals(2, stitcher.stitch(shard, 1));
+		stitcher.close();
+
+		Git git = Git.open(target);
+		try {
+			assertEquals(Arrays.asList("Initial commit", "first", "second", "third", "fourth"), getMessages(git));
+			RevCommit head = git.log().call().iterator().next();
+			assertEquals(1, head.getParentCount());
+			assertEquals("3", read(git, head, "a.txt"));
+			assertEquals(null, read(git, head, "b.txt"));
+			List<Ref> tags = git.tagList().call();
+			assertEquals(2, tags.size());
+			assertEquals("refs/tags/baseline_2", tags.get(1).getName());
+			assertEquals(head.getId(), git.getRepository().getRefDatabase().peel(tags.get(1)).getPeeledObjectId());
+			assertEquals(0, git.getRepository().getRefDatabase().getRefs("refs/shards/").size());
+			CommitIndex index = CommitIndex.open(git.getRepository().getDirectory());
+			assertEquals(head.getId(), index.findCommit("_fourth"));
+			assertEquals(head.getParent(0).getId(), index.findCommit("_third"));
+			assertEquals(head.getParent(0).getParent(0).getId(), index.findCommit("_second"));
+		} finally {
+			git.close();
+		}
+	}
+
+	@Test
+	public void testStitch_keepsDifferingSnapshot() throws Exception {
+		GitMigrator migrator = new GitMigrator(new Properties());
+		migrator.init(shard);
+		migrator.commitChanges(changeSet("snapshot"), Arrays.asList(FileChange.put("a.txt", content("x"))));
+		migrator.close();
+
+		HistoryStitcher stitcher = new HistoryStitcher(target);
+		assertEquals(1, stitcher.stitch(shard, 1));
+		stitcher.close();
+
+		Git git = Git.open(target);
+		try {
+			assertEquals(Arrays.asList("Initial commit", "first", "second", "snapshot"), getMessages(git));
+		} finally {
+			git.close();
+		}
+	}
+
+	private List<String> getMessages(Git git) throws Exception {
+		List<String> messages = new ArrayList<String>();
+		for (RevCommit commit : git.log().call()) {
+			messages.add(commit.getFullMessage());
+		}
+		Collections.reverse(messages);
+		return messages;
+	}
+
+	private String read(Git git, RevCommit commit, String path) throws Exception {
+		TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree());
+		if (treeWalk == null) {
+			return null;
+		}
+		try {
+			return new String(git.getRepository().open(treeWalk.getObjectId(0)).getBytes(), cs);
+		} finally {
+			treeWalk.close();
+		}
+	}
+
+	private static ChangeSet changeSet(String comment) {
+		return new TestChangeSet.Builder().setComment(comment).setUuids("_" + comment).build();
+	}
+
+	private FileContent content(String text) {
+		final byte[] bytes = text.getBytes(cs);
+		return new FileContent() {
+			@Override
+			public long getSize() {
+				return bytes.length;
+			}
+
+			@Override
+			public boolean isExecutable() {
+				return false;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private static final class TestTag implements Tag {
+		private final String name;
+
+		TestTag(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getCreationDate() {
+			return 0;
+		}
+	}
+}
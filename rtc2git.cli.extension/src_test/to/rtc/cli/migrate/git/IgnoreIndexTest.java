@@ -0,0 +1,68 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link IgnoreIndex} implementation.
+ */
+public class IgnoreIndexTest {
+	private IgnoreIndex index;
+
+	@Before
+	public void setUp() {
+		index = new IgnoreIndex();
+	}
+
+	@Test
+	public void testTranslationCachedByContent() throws Exception {
+		byte[] content = "core.ignore = {*.suo}\ncore.ignore.recursive = {*.class}\n".getBytes("UTF-8");
+		ObjectId id = index.idFor(content);
+		assertNull(index.getTranslation(id));
+
+		List<String> translation = index.translate(id, content);
+		assertEquals(Arrays.asList("/*.suo", "*.class"), translation);
+		assertSame(translation, index.getTranslation(index.idFor(content.clone())));
+		assertEquals(1, index.getHits());
+		assertEquals(1, index.getMisses());
+	}
+
+	@Test
+	public void testUpdateOnlyIfChanged() throws Exception {
+		assertTrue(index.update("sub/", Arrays.asList("/*.suo")));
+		assertFalse(index.update("sub/", Arrays.asList("/*.suo")));
+		assertTrue(index.update("sub/", Arrays.asList("/*.suo", "*.class")));
+		index.remove("sub/");
+		assertTrue(index.update("sub/", Arrays.asList("/*.suo", "*.class")));
+	}
+
+	@Test
+	public void testIsIgnored() throws Exception {
+		assertFalse(index.isIgnored("a.class"));
+		index.update("", Arrays.asList("/.jazz5", "/bin"));
+		index.update("sub/", Arrays.asList("/*.suo", "*.class", "!keep.class"));
+		index.update("sub/deep/", Collections.singletonList("/gen"));
+
+		assertTrue(index.isIgnored("bin/a.txt"));
+		assertFalse(index.isIgnored("sub/bin/a.txt"));
+		assertTrue(index.isIgnored("sub/x.suo"));
+		assertFalse(index.isIgnored("sub/deep/x.suo"));
+		assertFalse(index.isIgnored("x.suo"));
+		assertTrue(index.isIgnored("sub/deep/a.class"));
+		assertFalse(index.isIgnored("sub/deep/keep.class"));
+		assertFalse(index.isIgnored("a.class"));
+		assertTrue(index.isIgnored("sub/deep/gen/x/y.txt"));
+		assertFalse(index.isIgnored("sub/gen/y.txt"));
+	}
+}
@@ -0,0 +1,55 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link IgnoredFileMatcher} implementation.
+ */
+public class IgnoredFileMatcherTest {
+
+	@Test
+	public void testEmpty() {
+		IgnoredFileMatcher matcher = new IgnoredFileMatcher(Arrays.asList(""), Collections.<String> emptyList(),
+				IgnoredFileMatcher.NO_SIZE_LIMIT);
+		assertTrue(matcher.isEmpty());
+		assertFalse(matcher.hasSizeLimit());
+		assertFalse(matcher.matches("some.zip", 4711));
+	}
+
+	@Test
+	public void testExtensions() {
+		IgnoredFileMatcher matcher = new IgnoredFileMatcher(Arrays.asList(".zip", ".jar", ".tar.gz", "z", ".dLL"),
+				Collections.<String> emptyList(), IgnoredFileMatcher.NO_SIZE_LIMIT);
+		assertFalse(matcher.isEmpty());
+		assertTrue(matcher.matches("some.zip", -1));
+		assertTrue(matcher.matches("dir/some.jar", -1));
+		assertTrue(matcher.matches("dir/some.tar.gz", -1));
+		assertTrue(matcher.matches("dir/some.gz", -1));
+		assertTrue(matcher.matches("some.dLL", -1));
+		assertFalse(matcher.matches("some.dll", -1));
+		assertFalse(matcher.matches("some.java", -1));
+		assertFalse(matcher.matches("jar", -1));
+		assertFalse(matcher.matches("", -1));
+	}
+
+	@Test
+	public void testSizeAndPaths() {
+		IgnoredFileMatcher matcher = new IgnoredFileMatcher(Collections.<String> emptyList(), Arrays.asList(
+				"**/lib/*.jar", "/dist/", "*.log"), 1024);
+		assertTrue(matcher.hasSizeLimit());
+		assertTrue(matcher.matches("big.txt", 1025));
+		assertFalse(matcher.matches("small.txt", 1024));
+		assertFalse(matcher.matches("unknown.txt", -1));
+		assertTrue(matcher.matches("a/b/lib/x.jar", 0));
+		assertFalse(matcher.matches("a/b/x.jar", 0));
+		assertTrue(matcher.matches("dist/app.exe", 0));
+		assertFalse(matcher.matches("a/dist/app.exe", 0));
+		assertTrue(matcher.matches("a/server.log", 0));
+	}
+}
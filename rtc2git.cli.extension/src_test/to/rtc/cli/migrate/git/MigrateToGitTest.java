@@ -14,6 +14,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import to.rtc.cli.migrate.MigrationSettings;
 import to.rtc.cli.migrate.util.Files;
 
 public class MigrateToGitTest {
@@ -34,6 +35,58 @@ public class MigrateToGitTest {
 		assertEquals("my value ;", trimmed.getProperty("p2"));
 	}
 
+	@Test(expected = IllegalArgumentException.class)
+	public void testValidate_shardsWithFanout() {
+		Properties properties = new Properties();
+		properties.setProperty("component.fanout", "true");
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(properties, true);
+		migration.validate(new MigrationSettings().setShardCount(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValidate_shardsWithBranch() {
+		Properties properties = new Properties();
+		properties.setProperty("branch", "feature");
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(properties, true);
+		migration.validate(new MigrationSettings().setShardCount(2));
+	}
+
+	@Test
+	public void testValidate_shards() {
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(new Properties(), true);
+		migration.validate(new MigrationSettings().setShardCount(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValidate_baselineCommitsWithBranch() {
+		Properties properties = new Properties();
+		properties.setProperty("branch", "feature");
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(properties, true);
+		migration.validate(new MigrationSettings().setBaselineCommits(true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValidate_verifyWithFanout() {
+		Properties properties = new Properties();
+		properties.setProperty("component.fanout", "true");
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(properties, true);
+		migration.validate(new MigrationSettings().setVerifyReport(new File("verify.txt")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValidate_verifyWithPathRoot() {
+		Properties properties = new Properties();
+		properties.setProperty("path.root", "sub");
+		MigrateToGit migration = new MigrateToGit();
+		migration.prepare(properties, true);
+		migration.validate(new MigrationSettings().setVerifyReport(new File("verify.txt")));
+	}
+
 	private Charset getPropertyCharset() {
 		return Charset.forName("ISO-8859-1");
 	}
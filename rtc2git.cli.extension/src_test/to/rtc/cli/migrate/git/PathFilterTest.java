@@ -0,0 +1,96 @@
+package to.rtc.cli.migrate.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileChange.Kind;
+
+/**
+ * Tests the {@link PathFilter} implementation.
+ */
+public class PathFilterTest {
+
+	@Test
+	public void testEmpty() {
+		PathFilter filter = new PathFilter(new Properties());
+		List<FileChange> changes = Arrays.asList(FileChange.delete("a", false));
+
+		assertTrue(filter.isEmpty());
+		assertFalse(filter.rewritesPaths());
+		assertTrue(filter.getExcludePatterns().isEmpty());
+		assertEquals("a/b.txt", filter.map("a/b.txt", false, "component"));
+		assertSame(changes, filter.apply(changes, "component"));
+	}
+
+	@Test
+	public void testIncludeAndExclude() {
+		Properties props = new Properties();
+		props.setProperty("path.include", "/componentA/; src/");
+		props.setProperty("path.exclude", " **/generated/ ;*.iso;");
+		PathFilter filter = new PathFilter(props);
+
+		assertFalse(filter.isEmpty());
+		assertFalse(filter.rewritesPaths());
+		assertEquals(Arrays.asList("**/generated/", "*.iso"), filter.getExcludePatterns());
+		assertTrue(filter.isIncluded("componentA/file.txt", false));
+		assertTrue(filter.isIncluded("componentA", true));
+		assertTrue(filter.isIncluded("componentB/src/file.txt", false));
+		assertFalse(filter.isIncluded("componentB/file.txt", false));
+		assertFalse(filter.isIncluded("componentA/generated/file.txt", false));
+		assertFalse(filter.isIncluded("componentA/image.iso", false));
+		assertNull(filter.map("componentB/file.txt", false, null));
+	}
+
+	@Test
+	public void testRootAndPrefix() {
+		Properties props = new Properties();
+		props.setProperty("path.root", "\\component\\project");
+		props.setProperty("path.prefix.component", "legacy/");
+		PathFilter filter = new PathFilter(props);
+
+		assertTrue(filter.rewritesPaths());
+		assertEquals("legacy/src/a.txt", filter.map("component/project/src/a.txt", false, "component"));
+		assertEquals("src/a.txt", filter.map("component/project/src/a.txt", false, "other"));
+		assertEquals("src/a.txt", filter.map("component/project/src/a.txt", false, null));
+		assertNull(filter.map("component/other/a.txt", false, "component"));
+		assertNull(filter.map("component/project", true, null));
+	}
+
+	@Test
+	public void testApply() {
+		Properties props = new Properties();
+		props.setProperty("path.exclude", "/excluded/");
+		props.setProperty("path.prefix.component", "prefix");
+		PathFilter filter = new PathFilter(props);
+
+		List<FileChange> changes = filter.apply(Arrays.asList(FileChange.put("a.txt", null),
+				FileChange.put("excluded/b.txt", null), FileChange.delete("excluded/c.txt", false),
+				FileChange.delete("d", true), FileChange.move("e.txt", "excluded/e.txt", false),
+				FileChange.move("excluded/f.txt", "f.txt", false), FileChange.move("g", "h", true)), "component");
+
+		assertEquals(4, changes.size());
+		check(changes.get(0), Kind.PUT, null, "prefix/a.txt", false);
+		check(changes.get(1), Kind.DELETE, null, "prefix/d", true);
+		check(changes.get(2), Kind.DELETE, null, "prefix/e.txt", false);
+		check(changes.get(3), Kind.MOVE, "prefix/g", "prefix/h", true);
+	}
+
+	private static void check(FileChange change, Kind kind, String previousPath, String path, boolean folder) {
+		assertEquals(kind, change.getKind());
+		if (previousPath != null) {
+			assertEquals(previousPath, change.getPreviousPath());
+		}
+		assertEquals(path, change.getPath());
+		assertEquals(folder, change.isFolder());
+	}
+}
@@ -0,0 +1,114 @@
+package to.rtc.cli.migrate.git;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import to.rtc.cli.migrate.ChangeSet;
+
+/**
+ * A change set for the tests of the git migration, always created by the same author. Build it with only the
+ * properties a test cares about, the others keep their defaults.
+ */
+final class TestChangeSet implements ChangeSet {
+	private final String component;
+	private final String comment;
+	private final long creationDate;
+	private final List<String> uuids;
+	private final List<WorkItem> workItems;
+
+	private TestChangeSet(Builder builder) {
+		this.component = builder.component;
+		this.comment = builder.comment;
+		this.creationDate = builder.creationDate;
+		this.uuids = Collections.unmodifiableList(new ArrayList<String>(builder.uuids));
+		this.workItems = Collections.unmodifiableList(new ArrayList<WorkItem>(builder.workItems));
+	}
+
+	@Override
+	public String getComment() {
+		return comment;
+	}
+
+	@Override
+	public String getCreatorName() {
+		return "Heiri Mueller";
+	}
+
+	@Override
+	public String getEmailAddress() {
+		return "heiri.mueller@irgendwo.ch";
+	}
+
+	@Override
+	public long getCreationDate() {
+		return creationDate;
+	}
+
+	@Override
+	public List<WorkItem> getWorkItems() {
+		return workItems;
+	}
+
+	@Override
+	public String getComponent() {
+		return component;
+	}
+
+	@Override
+	public List<String> getUuids() {
+		return uuids;
+	}
+
+	/**
+	 * Builds a change set of the component <code>component</code> with the comment <code>comment</code>, created at
+	 * 1000, without uuids and work items unless set otherwise.
+	 */
+	static final class Builder {
+		private String component = "component";
+		private String comment = "comment";
+		private long creationDate = 1000;
+		private List<String> uuids = Collections.emptyList();
+		private final List<WorkItem> workItems = new ArrayList<WorkItem>();
+
+		Builder setComponent(String component) {
+			this.component = component;
+			return this;
+		}
+
+		Builder setComment(String comment) {
+			this.comment = comment;
+			return this;
+		}
+
+		Builder setCreationDate(long creationDate) {
+			this.creationDate = creationDate;
+			return this;
+		}
+
+		Builder setUuids(String... uuids) {
+			this.uuids = Arrays.asList(uuids);
+			return this;
+		}
+
+		Builder addWorkItem(final long number, final String text) {
+			workItems.add(new WorkItem() {
+				@Override
+				public long getNumber() {
+					return number;
+				}
+
+				@Override
+				public String getText() {
+					return text;
+				}
+			});
+			return this;
+		}
+
+		TestChangeSet build() {
+			return new TestChangeSet(this);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package to.rtc.cli.migrate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link FlightRecorderEvents} and their use by the {@link PhaseTimer}.
+ */
+public class FlightRecorderEventsTest {
+
+	@Test
+	public void testBegin() {
+		Object event = FlightRecorderEvents.getInstance().begin();
+
+		if (isFlightRecorderAvailable()) {
+			assertNotNull(event);
+		} else {
+			assertNull(event);
+		}
+		FlightRecorderEvents.getInstance().commit(event, "git_add", "_uuid", "component", 1);
+	}
+
+	@Test
+	public void testCommitWithoutEvent() {
+		FlightRecorderEvents.getInstance().commit(null, "git_add", null, null, 0);
+	}
+
+	@Test
+	public void testPhaseTimerWithinChangeSet() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.enterChangeSet("_uuid1,_uuid2", "component");
+		try {
+			registry.start(Phase.ADD).setFileCount(2).stop();
+		} finally {
+			registry.leaveChangeSet();
+		}
+		registry.record(Phase.ADD, TimeUnit.SECONDS.toNanos(1));
+
+		assertEquals(2, registry.getHistogram(Phase.ADD).getCount());
+		assertNull(registry.getChangeSetContext()[0]);
+	}
+
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.EventFactory");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package to.rtc.cli.migrate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link Histogram} implementation.
+ */
+public class HistogramTest {
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 10; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(10, histogram.getCount());
+		assertEquals(55, histogram.getSum());
+		assertEquals(10, histogram.getMax());
+		assertEquals(5, histogram.getPercentile(50));
+		assertEquals(10, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void testPercentilesWithinRelativeError() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i * 10L);
+		}
+
+		assertWithin(500000, histogram.getPercentile(50));
+		assertWithin(950000, histogram.getPercentile(95));
+		assertWithin(990000, histogram.getPercentile(99));
+		assertEquals(1000000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testBucketBoundaries() {
+		for (long value : new long[] { 0, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE }) {
+			int index = Histogram.indexOf(value);
+			assertTrue(value <= Histogram.highestValueOf(index));
+			assertTrue(index == 0 || value > Histogram.highestValueOf(index - 1));
+		}
+	}
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue(actual + " not within 7% of " + expected, Math.abs(actual - expected) <= expected * 0.07);
+	}
+}
@@ -0,0 +1,44 @@
+package to.rtc.cli.migrate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MetricsRegistry} implementation.
+ */
+public class MetricsRegistryTest {
+
+	@After
+	public void tearDown() {
+		MetricsRegistry.bind(null);
+	}
+
+	@Test
+	public void testBind() throws Exception {
+		MetricsRegistry global = MetricsRegistry.getInstance();
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsRegistry.bind(registry);
+		assertSame(registry, MetricsRegistry.getInstance());
+
+		final AtomicReference<MetricsRegistry> inherited = new AtomicReference<MetricsRegistry>();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				inherited.set(MetricsRegistry.getInstance());
+				MetricsRegistry.getInstance().increment(Counter.CHANGESETS, 3);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertSame(registry, inherited.get());
+		assertEquals(3, registry.getCount(Counter.CHANGESETS));
+
+		MetricsRegistry.bind(null);
+		assertSame(global, MetricsRegistry.getInstance());
+	}
+}
@@ -0,0 +1,71 @@
+package to.rtc.cli.migrate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.util.Files;
+
+/**
+ * Tests the {@link MetricsReporter} implementation.
+ */
+public class MetricsReporterTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private MetricsRegistry registry;
+	private MetricsReporter reporter;
+
+	@Before
+	public void setUp() {
+		registry = new MetricsRegistry();
+		reporter = new MetricsReporter(registry, tempFolder.getRoot());
+	}
+
+	@Test
+	public void testToPrometheus() {
+		registry.record(Phase.ACCEPT, TimeUnit.MILLISECONDS.toNanos(1500));
+		registry.increment(Counter.CHANGESETS, 3);
+
+		List<String> lines = reporter.toPrometheus();
+
+		assertTrue(lines.contains("rtc2git_phase_seconds{phase=\"rtc_accept\",quantile=\"0.500\"} 1.500"));
+		assertTrue(lines.contains("rtc2git_phase_seconds_count{phase=\"rtc_accept\"} 1"));
+		assertTrue(lines.contains("rtc2git_phase_seconds_count{phase=\"git_gc\"} 0"));
+		assertTrue(lines.contains("rtc2git_changesets_total 3"));
+	}
+
+	@Test
+	public void testToCsv() {
+		registry.record(Phase.COMMIT, TimeUnit.MILLISECONDS.toNanos(2));
+		registry.increment(Counter.BYTES_HASHED, 4711);
+
+		List<String> lines = reporter.toCsv();
+
+		assertEquals("name,type,count,total_ms,max_ms,p50_ms,p95_ms,p99_ms", lines.get(0));
+		assertTrue(lines.contains("git_commit,phase,1,2.000,2.000,2.000,2.000,2.000"));
+		assertTrue(lines.contains("bytes_hashed,counter,4711,,,,,"));
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		reporter.start(3600);
+		reporter.close();
+
+		Charset cs = Charset.forName("UTF-8");
+		File json = new File(tempFolder.getRoot(), MetricsReporter.JSON_FILE);
+		assertEquals(reporter.toJson(), Files.readLines(json, cs));
+		assertTrue(new File(tempFolder.getRoot(), MetricsReporter.CSV_FILE).exists());
+		assertTrue(new File(tempFolder.getRoot(), MetricsReporter.PROMETHEUS_FILE).exists());
+		assertEquals(3, tempFolder.getRoot().list().length);
+	}
+}
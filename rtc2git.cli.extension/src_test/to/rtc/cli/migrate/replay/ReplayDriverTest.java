@@ -0,0 +1,257 @@
+package to.rtc.cli.migrate.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.ChangeSet;
+import to.rtc.cli.migrate.ChangeSet.WorkItem;
+import to.rtc.cli.migrate.FileChange;
+import to.rtc.cli.migrate.FileContent;
+import to.rtc.cli.migrate.Migrator;
+import to.rtc.cli.migrate.StreamingMigrator;
+import to.rtc.cli.migrate.Tag;
+import to.rtc.cli.migrate.replay.Record.RecordedChangeSet;
+import to.rtc.cli.migrate.replay.Record.RecordedTag;
+import to.rtc.cli.migrate.replay.Record.RecordedWorkItem;
+
+/**
+ * Tests the {@link RecordingMigrator} and {@link ReplayDriver} implementations.
+ */
+public class ReplayDriverTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File archive;
+	private File sandbox;
+	private ChangeSet first;
+	private ChangeSet second;
+
+	@Before
+	public void setUp() throws Exception {
+		archive = new File(tempFolder.getRoot(), "history.zip");
+		sandbox = tempFolder.newFolder("sandbox");
+		first = new RecordedChangeSet("first comment", "John Doe", "john.doe@somewhere.com", 1000,
+				Arrays.<WorkItem> asList(new RecordedWorkItem(4711, "The one and only")), "component",
+				Arrays.asList("_first"));
+		second = new RecordedChangeSet("second comment", "Jane Doe", null, 2000, Collections.<WorkItem> emptyList(),
+				null, Collections.<String> emptyList());
+	}
+
+	@Test
+	public void testRecordAndReplaySandbox() throws Exception {
+		write(sandbox, "a.txt", "a", 1000);
+		write(sandbox, ".jazz5/metadata", "skipped", 1000);
+		CollectingMigrator recorded = new CollectingMigrator();
+		RecordingMigrator recorder = RecordingMigrator.wrap(recorded, archive);
+		assertFalse(recorder instanceof StreamingMigrator);
+
+		recorder.init(sandbox);
+		write(sandbox, "a.txt", "aa", 2000);
+		write(sandbox, "dir/b.txt", "b", 2000);
+		recorder.commitChanges(first);
+		recorder.createTag(new RecordedTag("baseline 1", 1500));
+		assertTrue(new File(sandbox, "a.txt").delete());
+		write(sandbox, ".gitignore", "/generated", 3000);
+		recorder.commitChanges(second);
+		recorder.close();
+		assertTrue(recorded.closed);
+
+		CollectingMigrator replayed = new CollectingMigrator();
+		File replaySandbox = new File(tempFolder.getRoot(), "replay");
+		assertEquals(2, new ReplayDriver(archive, replayed).replay(replaySandbox));
+
+		assertEquals(recorded.log, replayed.log);
+		assertEquals(Arrays.asList("{a.txt=a}", "{a.txt=aa, dir/b.txt=b}", "{dir/b.txt=b}"), replayed.sandboxes);
+		assertFalse(new File(replaySandbox, ".jazz5").exists());
+	}
+
+	@Test
+	public void testRecordAndReplayStreamed() throws Exception {
+		write(sandbox, "a.txt", "a", 1000);
+		CollectingStreamingMigrator recorded = new CollectingStreamingMigrator();
+		RecordingMigrator recorder = RecordingMigrator.wrap(recorded, archive);
+		assertTrue(recorder instanceof StreamingMigrator);
+
+		recorder.init(sandbox);
+		((StreamingMigrator) recorder).commitChanges(first,
+				Arrays.asList(FileChange.put("a.txt", new TestContent("aa", false)),
+						FileChange.put("bin/run.sh", new TestContent("#!/bin/sh", true))));
+		recorder.createTag(new RecordedTag("baseline 1", 1500));
+		((StreamingMigrator) recorder).commitChanges(second,
+				Arrays.asList(FileChange.delete("a.txt", false), FileChange.move("bin", "tools", true),
+						FileChange.put("same.txt", new TestContent("aa", false))));
+		recorder.close();
+		assertFalse(new File(archive.getPath() + ".spool").exists());
+
+		CollectingStreamingMigrator replayed = new CollectingStreamingMigrator();
+		assertEquals(2, new ReplayDriver(archive, replayed).replay(new File(tempFolder.getRoot(), "replay")));
+		assertEquals(recorded.log, replayed.log);
+		assertEquals(Arrays.asList("{a.txt=a}"), replayed.sandboxes);
+
+		CollectingStreamingMigrator fromSandbox = new CollectingStreamingMigrator();
+		new ReplayDriver(archive, fromSandbox).setUseSandbox(true).replay(new File(tempFolder.getRoot(), "sandbox2"));
+		assertEquals(Arrays.asList("{a.txt=a}", "{a.txt=aa, bin/run.sh=#!/bin/sh}",
+				"{same.txt=aa, tools/run.sh=#!/bin/sh}"), fromSandbox.sandboxes);
+		assertTrue(new File(tempFolder.getRoot(), "sandbox2/tools/run.sh").canExecute());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReplayNoArchive() throws Exception {
+		write(tempFolder.getRoot(), "history.zip", "no zip", 1000);
+		new ReplayDriver(archive, new CollectingMigrator()).replay(sandbox);
+	}
+
+	private static File write(File directory, String path, String content, long lastModified) throws IOException {
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		file.setLastModified(lastModified);
+		return file;
+	}
+
+	private static String read(FileContent content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		content.writeTo(out);
+		assertEquals(content.getSize(), out.size());
+		return out.toString("UTF-8");
+	}
+
+	private static class CollectingMigrator implements Migrator {
+		final List<String> log = new ArrayList<String>();
+		final List<String> sandboxes = new ArrayList<String>();
+		File root;
+		boolean closed;
+
+		@Override
+		public void init(File sandboxRootDirectory) {
+			root = sandboxRootDirectory;
+			sandboxes.add(sandbox());
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		@Override
+		public void createTag(Tag tag) {
+			log.add("tag " + tag.getName() + " " + tag.getCreationDate());
+		}
+
+		@Override
+		public int commitChanges(ChangeSet changeSet) {
+			log.add(describe(changeSet));
+			sandboxes.add(sandbox());
+			return 0;
+		}
+
+		@Override
+		public void intermediateCleanup() {
+		}
+
+		@Override
+		public boolean needsIntermediateCleanup() {
+			return false;
+		}
+
+		String describe(ChangeSet changeSet) {
+			StringBuilder sb = new StringBuilder("commit ").append(changeSet.getComment()).append(' ')
+					.append(changeSet.getCreatorName()).append(' ').append(changeSet.getEmailAddress()).append(' ')
+					.append(changeSet.getCreationDate());
+			for (WorkItem workItem : changeSet.getWorkItems()) {
+				sb.append(' ').append(workItem.getNumber()).append(' ').append(workItem.getText());
+			}
+			return sb.append(' ').append(changeSet.getUuids()).toString();
+		}
+
+		private String sandbox() {
+			Map<String, String> files = new TreeMap<String, String>();
+			try {
+				collect(root, "", files);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return files.toString();
+		}
+
+		private void collect(File directory, String prefix, Map<String, String> files) throws IOException {
+			for (File file : directory.listFiles()) {
+				if (file.getName().startsWith(".")) {
+					continue;
+				} else if (file.isDirectory()) {
+					collect(file, prefix + file.getName() + "/", files);
+				} else {
+					files.put(prefix + file.getName(), read(Blob.ofFile(null, file, file.canExecute())));
+				}
+			}
+		}
+	}
+
+	private static class CollectingStreamingMigrator extends CollectingMigrator implements StreamingMigrator {
+		@Override
+		public int commitChanges(ChangeSet changeSet, List<FileChange> changes) {
+			StringBuilder sb = new StringBuilder(describe(changeSet));
+			try {
+				for (FileChange change : changes) {
+					sb.append(", ").append(change);
+					if (change.getContent() != null) {
+						sb.append('=').append(read(change.getContent())).append(' ')
+								.append(change.getContent().isExecutable());
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			log.add(sb.toString());
+			return changes.size();
+		}
+	}
+
+	private static class TestContent implements FileContent {
+		private final byte[] bytes;
+		private final boolean executable;
+
+		TestContent(String content, boolean executable) throws IOException {
+			this.bytes = content.getBytes("UTF-8");
+			this.executable = executable;
+		}
+
+		@Override
+		public long getSize() {
+			return bytes.length;
+		}
+
+		@Override
+		public boolean isExecutable() {
+			return executable;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package to.rtc.cli.migrate.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import to.rtc.cli.migrate.FileChange;
+
+/**
+ * Tests the {@link SandboxSnapshot} implementation.
+ */
+public class SandboxSnapshotTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File sandbox;
+	private ArchiveWriter writer;
+	private SandboxSnapshot snapshot;
+
+	@Before
+	public void setUp() throws Exception {
+		sandbox = tempFolder.newFolder("sandbox");
+		writer = new ArchiveWriter(new File(tempFolder.getRoot(), "history.zip"));
+		snapshot = new SandboxSnapshot(sandbox);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		writer.close();
+	}
+
+	@Test
+	public void testUpdate_unchanged() throws Exception {
+		long lastModified = System.currentTimeMillis() - 3600000;
+		write("a.txt", "a", lastModified);
+		assertEquals(1, snapshot.update(writer).size());
+
+		assertTrue(snapshot.update(writer).isEmpty());
+		assertTrue(snapshot.update(writer).isEmpty());
+	}
+
+	@Test
+	public void testUpdate_racilyClean() throws Exception {
+		long lastModified = System.currentTimeMillis();
+		write("a.txt", "a", lastModified);
+		assertEquals(1, snapshot.update(writer).size());
+
+		// the same size and modification time, only the content tells the change
+		write("a.txt", "b", lastModified);
+		List<FileChange> changes = snapshot.update(writer);
+		assertEquals(1, changes.size());
+		assertEquals("a.txt", changes.get(0).getPath());
+		assertTrue(snapshot.update(writer).isEmpty());
+	}
+
+	private void write(String path, String content, long lastModified) throws IOException {
+		File file = new File(sandbox, path);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		file.setLastModified(lastModified);
+	}
+}
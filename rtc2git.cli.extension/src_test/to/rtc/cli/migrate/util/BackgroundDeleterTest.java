@@ -0,0 +1,77 @@
+package to.rtc.cli.migrate.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link BackgroundDeleter} implementation.
+ */
+public class BackgroundDeleterTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private BackgroundDeleter deleter;
+	private File basedir;
+
+	@Before
+	public void setUp() {
+		deleter = new BackgroundDeleter(2);
+		basedir = tempFolder.getRoot();
+	}
+
+	@Test
+	public void testDeleteLater() throws Exception {
+		File history = createTree(new File(basedir, ".history"));
+
+		assertTrue(deleter.deleteLater(history));
+		assertFalse(history.exists());
+		assertTrue(deleter.close().isEmpty());
+
+		assertEquals(0, basedir.list().length);
+	}
+
+	@Test
+	public void testDeleteLater_missingDirectory() {
+		assertFalse(deleter.deleteLater(new File(basedir, ".history")));
+		assertTrue(deleter.close().isEmpty());
+	}
+
+	@Test
+	public void testDeleteLater_leftOverTombstones() throws Exception {
+		createTree(new File(basedir, ".history.4711-1" + BackgroundDeleter.TOMBSTONE_SUFFIX));
+		File other = createTree(new File(basedir, "other"));
+
+		assertFalse(deleter.deleteLater(new File(basedir, ".history")));
+		assertTrue(deleter.close().isEmpty());
+
+		assertEquals(1, basedir.list().length);
+		assertTrue(other.exists());
+	}
+
+	@Test
+	public void testDelete() throws Exception {
+		File directory = createTree(new File(basedir, "directory"));
+
+		assertTrue(Files.delete(directory));
+
+		assertFalse(directory.exists());
+	}
+
+	private File createTree(File directory) throws Exception {
+		for (int i = 0; i < 3; i++) {
+			File subdir = new File(directory, "sub" + i + "/subsub");
+			assertTrue(subdir.mkdirs());
+			assertTrue(new File(subdir, "file").createNewFile());
+			assertTrue(new File(directory, "file" + i).createNewFile());
+		}
+		return directory;
+	}
+}
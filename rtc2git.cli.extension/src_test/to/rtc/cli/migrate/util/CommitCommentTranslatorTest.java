@@ -8,7 +8,10 @@ package to.rtc.cli.migrate.util;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -74,4 +77,35 @@ public class CommitCommentTranslatorTest {
 		assertEquals("RTC-1234 Some changes", translator.translate("US01234: Some changes"));
 		assertEquals("RTC-1234 Some changes", translator.translate("US01234: Some changes"));
 	}
+
+	@Test
+	public void testTranslateLiteralsInSinglePass() throws Exception {
+		props.clear();
+		props.setProperty("commit.message.regex.1", "WIP");
+		props.setProperty("commit.message.replacement.1", "work in progress");
+		props.setProperty("commit.message.regex.2", "\u00e4");
+		props.setProperty("commit.message.replacement.2", "ae");
+		props.setProperty("commit.message.regex.3", "\u00f6");
+		props.setProperty("commit.message.replacement.3", "oe");
+		translator = new CommitCommentTranslator(props);
+
+		assertEquals("work in progress: aendern am Koerper", translator.translate("WIP: \u00e4ndern am K\u00f6rper"));
+		assertEquals("work in progress: aendern, schoen", translator.translate("WIP: \u00e4ndern, sch\u00f6n"));
+	}
+
+	@Test
+	public void testCombineLiteralSearches() throws Exception {
+		List<CommitCommentTranslator.SearchEntry> entries = CommitCommentTranslator.combineLiteralSearches(Arrays
+				.asList(entry("\u00e4", "ae"), entry("\u00f6", "oe"), entry("\u00fc", "ue"), entry("Revision ([0-9]+)", "$1"),
+						entry("Rev", "R"), entry("R", "r"), entry("x", "")));
+		assertEquals(5, entries.size());
+		assertEquals(CommitCommentTranslator.CombinedSearchEntry.class, entries.get(0).getClass());
+		assertEquals("aeoeue", entries.get(0).apply("\u00e4\u00f6\u00fc"));
+		assertEquals("r", CommitCommentTranslator.combineLiteralSearches(Arrays.asList(entry("Rev", "R"),
+				entry("R", "r"))).get(1).apply("R"));
+	}
+
+	private static CommitCommentTranslator.SearchEntry entry(String regex, String replacement) {
+		return new CommitCommentTranslator.SearchEntry(Pattern.compile(regex), replacement);
+	}
 }
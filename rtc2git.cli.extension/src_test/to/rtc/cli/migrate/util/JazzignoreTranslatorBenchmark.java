@@ -0,0 +1,51 @@
+package to.rtc.cli.migrate.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the translation of <code>.jazzignore</code> files with a varying number of patterns into
+ * <code>.gitignore</code> lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class JazzignoreTranslatorBenchmark {
+	@Param({ "1", "10", "100" })
+	public int patterns;
+
+	private List<String> jazzignoreLines;
+
+	@Setup
+	public void setUp() {
+		jazzignoreLines = new ArrayList<String>();
+		jazzignoreLines.add("### Jazz Ignore 0");
+		jazzignoreLines.add("core.ignore = \\");
+		for (int i = 0; i < patterns; i++) {
+			jazzignoreLines.add("\t{bin" + i + "} \\");
+		}
+		jazzignoreLines.add("\t{*.class}");
+		jazzignoreLines.add("core.ignore.recursive = {*.gen} {target}");
+	}
+
+	@Benchmark
+	public List<String> toGitignore() {
+		return JazzignoreTranslator.toGitignore(jazzignoreLines);
+	}
+}
@@ -0,0 +1,36 @@
+package to.rtc.cli.migrate.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link RotatingFileOutputStream} implementation.
+ */
+public class RotatingFileOutputStreamTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testRotate() throws Exception {
+		File file = new File(tempFolder.getRoot(), "logs/rtc.log");
+		RotatingFileOutputStream out = new RotatingFileOutputStream(file, 10, 2);
+		try {
+			for (int i = 0; i < 4; i++) {
+				out.write("12345678\n".getBytes());
+			}
+		} finally {
+			out.close();
+		}
+
+		assertEquals(9, file.length());
+		assertEquals(9, new File(file.getPath() + ".1").length());
+		assertEquals(9, new File(file.getPath() + ".2").length());
+		assertFalse(new File(file.getPath() + ".3").exists());
+	}
+}